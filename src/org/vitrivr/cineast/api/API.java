@@ -40,6 +40,7 @@ import org.vitrivr.cineast.core.evaluation.EvaluationConfig;
 import org.vitrivr.cineast.core.evaluation.EvaluationException;
 import org.vitrivr.cineast.core.evaluation.EvaluationRuntime;
 import org.vitrivr.cineast.core.features.codebook.CodebookGenerator;
+import org.vitrivr.cineast.core.features.codebook.ImageCodebookGenerator;
 import org.vitrivr.cineast.core.features.listener.RetrievalResultCSVExporter;
 import org.vitrivr.cineast.core.features.retriever.RetrieverInitializer;
 import org.vitrivr.cineast.core.importer.DataImportHandler;
@@ -173,13 +174,17 @@ public class API {
    *              images).
    * @param output Path to the output file for the codebook.
    * @param words The number of words in the codebook.
+   * @param exact true if image codebooks should be clustered with the exact k-means instead of mini-batches.
    */
-  private static void handleCodebook(String name, Path input, Path output, int words) {
+  private static void handleCodebook(String name, Path input, Path output, int words, boolean exact) {
     CodebookGenerator generator = ReflectionHelper.newCodebookGenerator(name);
     if (generator != null) {
+      if (generator instanceof ImageCodebookGenerator) {
+        ((ImageCodebookGenerator) generator).setExact(exact);
+      }
       try {
         generator.generate(input, output, words);
-      } catch (IOException e) {
+      } catch (IOException | IllegalArgumentException e) {
         e.printStackTrace();
       }
     } else {
@@ -380,9 +385,10 @@ public class API {
               Path src = Paths.get(commands.get(2));
               Path dst = Paths.get(commands.get(3));
               Integer words = Integer.parseInt(commands.get(4));
+              boolean exact = commands.size() > 5 && commands.get(5).equalsIgnoreCase("exact");
 
                             /* Start codebook generation. */
-              API.handleCodebook(codebookGenerator, src, dst, words);
+              API.handleCodebook(codebookGenerator, src, dst, words, exact);
               break;
             }
             case "import": {
@@ -512,7 +518,7 @@ public class API {
             }
             case "help":{
                   System.out.println("3d\t\t\ttests the 3d rendering capabilities");
-                  System.out.println("codebook\t\tgenerates a visual codebook from a folder containing images");
+                  System.out.println("codebook\t\tgenerates a visual codebook from a folder containing images (append 'exact' for the exact k-means)");
                   System.out.println("\t\t\t\t<generator> <source> <destination> <number of words>");
                   System.out.println("exit\t\t\texit cineast");
                   System.out.println("exportresults\t\tenables RetrievalResultCSVExporter for retrieval results");
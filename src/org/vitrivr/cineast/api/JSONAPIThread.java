@@ -33,6 +33,7 @@ import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
 import org.vitrivr.cineast.core.db.DBSelector;
 import org.vitrivr.cineast.core.db.dao.reader.MultimediaObjectLookup;
 import org.vitrivr.cineast.core.db.dao.reader.SegmentLookup;
+import org.vitrivr.cineast.core.features.listener.ProvisionalResultListener;
 import org.vitrivr.cineast.core.features.neuralnet.NeuralNetFeature;
 import org.vitrivr.cineast.core.util.ContinuousRetrievalLogic;
 import org.vitrivr.cineast.core.util.LogHelper;
@@ -206,9 +207,11 @@ public class JSONAPIThread extends Thread {
 
         /*
          * Input: Multiple QueryContainers A QueryContainer can contain
-         * an id
+         * an id; optionally streaming: true
          * 
-         * Output: A sorted list of movie sequences
+         * Output: A sorted list of movie sequences per container and category.
+         * If streaming is set, provisional batches (inner type "provisional")
+         * are sent whenever a retriever finishes, see the "query" case.
          */
       case "multiSketch": {
         JsonArray queryArray = clientJSON.get("query").asArray();
@@ -221,6 +224,9 @@ public class JSONAPIThread extends Thread {
         }
         
         QueryConfig qconf = QueryConfig.newQueryConfigFromOther(Config.sharedConfig().getQuery());
+
+        /* if set, provisional results are printed whenever a retriever finishes */
+        boolean streaming = clientJSON.get("streaming") != null && clientJSON.get("streaming").asBoolean();
         
 //        DBResultCache.createIfNecessary(resultCacheName);
         
@@ -228,15 +234,23 @@ public class JSONAPIThread extends Thread {
         for (Iterator<JsonValue> it = queryArray.iterator(); it.hasNext(); ++index) {
 
           JsonObject query = it.next().asObject();
+          ImageQueryContainer qc = query.get("id") != null ? null : JSONUtils.queryContainerFromJSON(query);
           for (JsonValue category : query.get("categories").asArray()) {
 
+            ProvisionalResultPrinter streamer = streaming
+                ? new ProvisionalResultPrinter(new TObjectDoubleHashMap<>(), 1f, category.asString(), index, videoids, shotids)
+                : null;
+
             List<SegmentScoreElement> scores;
-            if (query.get("id") != null) {
+            if (qc == null) {
               String id = query.get("id").asString();
-              scores = ContinuousRetrievalLogic.retrieve(id, category.asString(), qconf);
+              scores = ContinuousRetrievalLogic.retrieve(id, category.asString(), qconf, streamer);
             } else {
-              ImageQueryContainer qc = JSONUtils.queryContainerFromJSON(query);
-              scores = ContinuousRetrievalLogic.retrieve(qc, category.asString(), qconf);
+              scores = ContinuousRetrievalLogic.retrieve(qc, category.asString(), qconf, streamer);
+            }
+            if (streamer != null) {
+              videoids = streamer.videoids;
+              shotids = streamer.shotids;
             }
             List<StringDoublePair> pairs = scores.stream().map(e -> new StringDoublePair(e.getSegmentId(), e.getScore())).collect(
                 Collectors.toList());
@@ -246,6 +260,11 @@ public class JSONAPIThread extends Thread {
             JSONUtils.printResultsBatched(printer, pairs, category.asString(), index);
 
           }
+
+          /* The container is shared by the categories; release its cached data once all of them have been retrieved. */
+          if (qc != null) {
+            qc.release();
+          }
         }
 
 //        String resultName = DBResultCache.newCachedResult(shotids);
@@ -254,6 +273,19 @@ public class JSONAPIThread extends Thread {
         break;
       }
       
+        /*
+         * Input: Multiple QueryContainers with their categories; optionally
+         * streaming: true
+         * 
+         * Output: The shots, videos and a batch of results (inner type
+         * "result") per category after every container, holding the results
+         * of all containers of the category so far. If streaming is set, a
+         * batch with the inner type "provisional" and the fields completed
+         * and total (the number of finished and of all retrievers) is sent
+         * whenever a retriever finishes, preceded by its shots and videos.
+         * A provisional batch is superseded by the next batch of the same
+         * category.
+         */
       case "query":{
         
         JsonArray queryArray = clientJSON.get("query").asArray();
@@ -266,10 +298,14 @@ public class JSONAPIThread extends Thread {
         }
         
         QueryConfig qconf = QueryConfig.newQueryConfigFromOther(Config.sharedConfig().getQuery());
+
+        /* if set, provisional results are printed whenever a retriever finishes */
+        boolean streaming = clientJSON.get("streaming") != null && clientJSON.get("streaming").asBoolean();
         
 //        DBResultCache.createIfNecessary(resultCacheName);
         
         HashMap<String, ArrayList<ImageQueryContainer>> categoryMap = new HashMap<>();
+        List<ImageQueryContainer> containers = new ArrayList<>();
         
         for(JsonValue jval : queryArray){
           JsonObject jobj = jval.asObject();
@@ -277,6 +313,7 @@ public class JSONAPIThread extends Thread {
           if(qc.getWeight() == 0f || jobj.get("categories") == null){
             continue;
           }
+          containers.add(qc);
           for(JsonValue c : jobj.get("categories").asArray()){
             String category = c.asString();
             if(!categoryMap.containsKey(category)){
@@ -295,37 +332,23 @@ public class JSONAPIThread extends Thread {
           for(ImageQueryContainer qc : categoryMap.get(category)){
             
             float weight = qc.getWeight() > 0f ? 1f : -1f; //TODO better normalisation 
+
+            ProvisionalResultPrinter streamer = streaming
+                ? new ProvisionalResultPrinter(map, weight, category, 1, videoids, shotids)
+                : null;
             
             if(qc.hasId()){
-              result = ContinuousRetrievalLogic.retrieve(qc.getId(), category, qconf);
+              result = ContinuousRetrievalLogic.retrieve(qc.getId(), category, qconf, streamer);
             }else{
-              result = ContinuousRetrievalLogic.retrieve(qc, category, qconf);
+              result = ContinuousRetrievalLogic.retrieve(qc, category, qconf, streamer);
             }
-            for (SegmentScoreElement element : result) {
-              String segmentId = element.getSegmentId();
-              double score = element.getScore();
-              if (Double.isInfinite(score) || Double.isNaN(score)) {
-                continue;
-              }
-              map.adjustOrPutValue(segmentId, score * weight, score * weight);
+            if (streamer != null) {
+              videoids = streamer.videoids;
+              shotids = streamer.shotids;
             }
+            mergeScores(map, result, weight);
             
-            List<StringDoublePair> list = new ArrayList<>(map.size());
-            Set<String> keys = map.keySet();
-            for (String key : keys) {
-              double val = map.get(key);
-              if (val > 0) {
-                list.add(new StringDoublePair(key, val));
-              }
-            }
-
-            Collections.sort(list, StringDoublePair.COMPARATOR);
-
-            int MAX_RESULTS = Config.sharedConfig().getRetriever().getMaxResults();
-
-            if (list.size() > MAX_RESULTS) {
-              list = list.subList(0, MAX_RESULTS);
-            }
+            List<StringDoublePair> list = sortAndTruncate(map);
             videoids = JSONUtils.printVideosBatched(printer, list, videoids);
             shotids = JSONUtils.printShotsBatched(printer, list, shotids);
             JSONUtils.printResultsBatched(printer, list, category, 1);
@@ -334,6 +357,11 @@ public class JSONAPIThread extends Thread {
           
           
         }
+
+        /* The containers are shared by the categories; release their cached data once all of them have been retrieved. */
+        for (ImageQueryContainer qc : containers) {
+          qc.release();
+        }
         
         break;
       }
@@ -694,4 +722,69 @@ public class JSONAPIThread extends Thread {
 
   }
 
+  /**
+   * Prints the provisional results of a query container while it is being retrieved, merged with the results of the
+   * previous containers of the category, as a batch with the inner type "provisional", preceded by the shots and
+   * videos the results refer to. The final results are still printed as a batch of results.
+   */
+  private final class ProvisionalResultPrinter implements ProvisionalResultListener {
+    private final TObjectDoubleHashMap<String> previous;
+    private final float weight;
+    private final String category;
+    private final int index;
+    private HashSet<String> videoids;
+    private HashSet<String> shotids;
+
+    private ProvisionalResultPrinter(TObjectDoubleHashMap<String> previous, float weight, String category, int index,
+        HashSet<String> videoids, HashSet<String> shotids) {
+      this.previous = previous;
+      this.weight = weight;
+      this.category = category;
+      this.index = index;
+      this.videoids = videoids;
+      this.shotids = shotids;
+    }
+
+    @Override
+    public void notify(List<SegmentScoreElement> provisional, int completed, int total) {
+      TObjectDoubleHashMap<String> partial = new TObjectDoubleHashMap<>(this.previous);
+      mergeScores(partial, provisional, this.weight);
+      List<StringDoublePair> list = sortAndTruncate(partial);
+      this.videoids = JSONUtils.printVideosBatched(printer, list, this.videoids);
+      this.shotids = JSONUtils.printShotsBatched(printer, list, this.shotids);
+      JSONUtils.printProvisionalResultsBatched(printer, list, this.category, this.index, completed, total);
+    }
+  }
+
+  private static void mergeScores(TObjectDoubleHashMap<String> map, List<SegmentScoreElement> result, float weight) {
+    for (SegmentScoreElement element : result) {
+      String segmentId = element.getSegmentId();
+      double score = element.getScore();
+      if (Double.isInfinite(score) || Double.isNaN(score)) {
+        continue;
+      }
+      map.adjustOrPutValue(segmentId, score * weight, score * weight);
+    }
+  }
+
+  private static List<StringDoublePair> sortAndTruncate(TObjectDoubleHashMap<String> map) {
+    List<StringDoublePair> list = new ArrayList<>(map.size());
+    Set<String> keys = map.keySet();
+    for (String key : keys) {
+      double val = map.get(key);
+      if (val > 0) {
+        list.add(new StringDoublePair(key, val));
+      }
+    }
+
+    Collections.sort(list, StringDoublePair.COMPARATOR);
+
+    int MAX_RESULTS = Config.sharedConfig().getRetriever().getMaxResults();
+
+    if (list.size() > MAX_RESULTS) {
+      list = list.subList(0, MAX_RESULTS);
+    }
+    return list;
+  }
+
 }
@@ -41,6 +41,19 @@ public final class JSONEncoder {
 		return _return;
 	}
 	
+	/**
+	 * Encodes provisional results of a query that is still running. Unlike a batch of results, the batch has the inner
+	 * type "provisional" and holds the number of finished and of all retrievers; it is superseded by the next
+	 * provisional batch and finally by the batch of results of the same category and container.
+	 */
+	public static final JsonObject encodeProvisionalResultBatched(List<StringDoublePair> sdpList, String category, int containerId, int completed, int total){
+		JsonObject _return = encodeResultBatched(sdpList, category, containerId);
+		_return.set("inner", "provisional");
+		_return.add("completed", completed);
+		_return.add("total", total);
+		return _return;
+	}
+	
 	public static final JsonObject encodeShot(String shotId, String videoId, long startFrame, long endFrame, boolean includeType){
 		JsonObject _return = new JsonObject();
 		if(includeType){
@@ -182,6 +182,20 @@ public class JSONUtils {
 		printer.println(',');
 	}
 	
+	/**
+	 * Sends provisional results of a running query to the client; see {@link JSONEncoder#encodeProvisionalResultBatched}.
+	 * @param printer Output goes here
+	 * @param resultlist Pair of shots and provisional scores
+	 * @param category which category has been used to generate the results
+	 * @param index index of the query (used for multisketch)
+	 * @param completed number of retrievers which have finished
+	 * @param total number of retrievers involved in the query
+	 */
+	public static void printProvisionalResultsBatched(PrintStream printer, List<StringDoublePair> resultlist, String category, int index, int completed, int total) {
+		printer.print(JSONEncoder.encodeProvisionalResultBatched(resultlist, category, index, completed, total).toString());
+		printer.println(',');
+	}
+	
 	public static HashSet<String> printShotsBatched(PrintStream printer, List<StringDoublePair> resultlist, HashSet<String> shotids) {
 		ArrayList<SegmentDescriptor> sdList = new ArrayList<>(resultlist.size());
 		SegmentLookup sl = new SegmentLookup();
@@ -41,11 +41,13 @@ public class FindSegmentSimilarActionHandler extends ParsingActionHandler<Simila
                 if (term.getCategories() == null) {
                     continue;
                 }
+                /* The categories of a term share its container, so that they re-use the data it caches. */
+                QueryContainer container = term.toContainer();
                 term.getCategories().forEach((String category) -> {
                     if (!categoryMap.containsKey(category)) {
                         categoryMap.put(category, new ArrayList<QueryContainer>());
                     }
-                    categoryMap.get(category).add(term.toContainer());
+                    categoryMap.get(category).add(container);
                 });
             }
         }
@@ -97,6 +99,15 @@ public class FindSegmentSimilarActionHandler extends ParsingActionHandler<Simila
             returnMap.put(category, resultList);
         }
 
+        /* Release the cached data of the containers once all categories have been retrieved. */
+        for (List<QueryContainer> containers : categoryMap.values()) {
+            for (QueryContainer qc : containers) {
+                if (qc != null) {
+                    qc.release();
+                }
+            }
+        }
+
         return new SimilarityQueryResultBatch(returnMap, qconf.getQueryId().toString());
     }
 
@@ -65,11 +65,13 @@ public class QueryMessageHandler extends StatelessWebsocketMessageHandler<Simila
         if (term.getCategories() == null) {
           continue;
         }
+        /* The categories of a term share its container, so that they re-use the data it caches. */
+        QueryContainer container = term.toContainer();
         term.getCategories().forEach((String category) -> {
           if (!categoryMap.containsKey(category)) {
             categoryMap.put(category, new ArrayList<QueryContainer>());
           }
-          categoryMap.get(category).add(term.toContainer());
+          categoryMap.get(category).add(container);
         });
       }
     }
@@ -120,6 +122,13 @@ public class QueryMessageHandler extends StatelessWebsocketMessageHandler<Simila
       }
     }
 
+    /* Release the cached data of the containers once all categories have been retrieved. */
+    for (List<QueryContainer> containers : categoryMap.values()) {
+      for (QueryContainer qc : containers) {
+        qc.release();
+      }
+    }
+
     /* End of Query: Send QueryEnd Message to Client. */
     this.write(session, new QueryEnd(startMarker.getQueryId()));
   }
@@ -2,18 +2,26 @@ package org.vitrivr.cineast.api.websocket.handlers.queries;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
+import org.eclipse.jetty.websocket.api.Session;
 import org.vitrivr.cineast.api.websocket.handlers.abstracts.StatelessWebsocketMessageHandler;
 import org.vitrivr.cineast.core.config.Config;
 import org.vitrivr.cineast.core.data.StringDoublePair;
 import org.vitrivr.cineast.core.data.entities.MultimediaObjectDescriptor;
 import org.vitrivr.cineast.core.data.entities.SegmentDescriptor;
+import org.vitrivr.cineast.core.data.messages.result.ObjectQueryResult;
+import org.vitrivr.cineast.core.data.messages.result.QueryResultDelta;
+import org.vitrivr.cineast.core.data.messages.result.SegmentQueryResult;
+import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
 import org.vitrivr.cineast.core.db.dao.reader.MultimediaObjectLookup;
 import org.vitrivr.cineast.core.db.dao.reader.SegmentLookup;
 
+import gnu.trove.map.TObjectDoubleMap;
+
 /**
  * @author rgasser
  * @version 1.0
@@ -94,4 +102,109 @@ public abstract class AbstractQueryMessageHandler<T> extends StatelessWebsocketM
 
         return vdList;
     }
+
+    /**
+     * Converts the positive entries of a score-map to a list of StringDoublePairs, sorted by descending score and
+     * truncated to MAX_RESULTS.
+     *
+     * @param map Score-map to convert.
+     * @return Sorted and truncated list.
+     */
+    protected List<StringDoublePair> toSortedList(TObjectDoubleMap<String> map) {
+        final List<StringDoublePair> list = new ArrayList<>(map.size());
+        map.forEachEntry((key, value) -> {
+            if (value > 0) {
+                list.add(new StringDoublePair(key, value));
+            }
+            return true;
+        });
+        return this.sortAndTruncate(list);
+    }
+
+    /**
+     * Converts a list of SegmentScoreElements to a list of StringDoublePairs, sorted by descending score and
+     * truncated to MAX_RESULTS.
+     *
+     * @param scores List of SegmentScoreElements.
+     * @return Sorted and truncated list.
+     */
+    protected List<StringDoublePair> toSortedList(List<SegmentScoreElement> scores) {
+        final List<StringDoublePair> list = new ArrayList<>(scores.size());
+        for (SegmentScoreElement score : scores) {
+            list.add(new StringDoublePair(score.getSegmentId(), score.getScore()));
+        }
+        return this.sortAndTruncate(list);
+    }
+
+    private List<StringDoublePair> sortAndTruncate(List<StringDoublePair> list) {
+        list.sort(StringDoublePair.COMPARATOR);
+        if (list.size() > MAX_RESULTS) {
+            list.subList(MAX_RESULTS, list.size()).clear();
+        }
+        return list;
+    }
+
+    /**
+     * Sends provisional top-k results of a single category to the client while a streaming query is running. Only
+     * differences to the previously sent state are transmitted: segments (and their objects) are sent once when they
+     * first appear, followed by a {@link QueryResultDelta} with the added / changed scores and the removed segments.
+     *
+     * Instances hold per-query state and must not be shared between queries.
+     */
+    protected final class ProvisionalResultStreamer {
+        private final Session session;
+        private final String queryId;
+        private final String category;
+
+        /** Provisional top-k as last sent to the client. */
+        private Map<String, Double> current = new HashMap<>();
+
+        /** IDs of the segments whose descriptors have already been sent. */
+        private final HashSet<String> sentSegments = new HashSet<>();
+
+        public ProvisionalResultStreamer(Session session, String queryId, String category) {
+            this.session = session;
+            this.queryId = queryId;
+            this.category = category;
+        }
+
+        /**
+         * Sends the difference between the provided provisional results and the previously sent ones.
+         *
+         * @param provisional Sorted and truncated provisional results.
+         * @param completed Number of retrievers that have finished.
+         * @param total Total number of retrievers.
+         */
+        public void update(List<StringDoublePair> provisional, int completed, int total) {
+            Map<String, Double> next = new HashMap<>(provisional.size());
+            List<StringDoublePair> changed = new ArrayList<>();
+            List<StringDoublePair> unseen = new ArrayList<>();
+            for (StringDoublePair pair : provisional) {
+                next.put(pair.key, pair.value);
+                Double previous = this.current.get(pair.key);
+                if (previous == null || previous != pair.value) {
+                    changed.add(pair);
+                }
+                if (this.sentSegments.add(pair.key)) {
+                    unseen.add(pair);
+                }
+            }
+            List<String> removed = new ArrayList<>();
+            for (String key : this.current.keySet()) {
+                if (!next.containsKey(key)) {
+                    removed.add(key);
+                }
+            }
+            this.current = next;
+
+            if (changed.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+            if (!unseen.isEmpty()) {
+                write(this.session, new SegmentQueryResult(this.queryId, loadSegments(unseen)));
+                write(this.session, new ObjectQueryResult(this.queryId, loadObjects(unseen)));
+            }
+            write(this.session, new QueryResultDelta(this.queryId, this.category, changed, removed, completed, total));
+        }
+    }
 }
@@ -2,7 +2,6 @@ package org.vitrivr.cineast.api.websocket.handlers.queries;
 
 import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.vitrivr.cineast.core.config.Config;
@@ -14,6 +13,7 @@ import org.vitrivr.cineast.core.data.messages.result.QueryEnd;
 import org.vitrivr.cineast.core.data.messages.result.QueryStart;
 import org.vitrivr.cineast.core.data.messages.result.SegmentQueryResult;
 import org.vitrivr.cineast.core.data.messages.result.SimilarityQueryResult;
+import org.vitrivr.cineast.core.features.listener.ProvisionalResultListener;
 import org.vitrivr.cineast.core.util.ContinuousRetrievalLogic;
 
 /**
@@ -48,11 +48,14 @@ public class MoreLikeThisQueryMessageHandler extends AbstractQueryMessageHandler
 
         /* Retrieve per-category results and return them. */
         for (String category : categoryMap) {
-            List<StringDoublePair> results = ContinuousRetrievalLogic.retrieve(message.getSegmentId(), category, qconf).stream()
-                    .map(score -> new StringDoublePair(score.getSegmentId(), score.getScore()))
-                    .sorted(StringDoublePair.COMPARATOR)
-                    .limit(MAX_RESULTS)
-                    .collect(Collectors.toList());
+            /* In streaming mode: send provisional results whenever a retriever has finished. */
+            ProvisionalResultListener listener = null;
+            if (message.isStreaming()) {
+                final ProvisionalResultStreamer streamer = new ProvisionalResultStreamer(session, startMarker.getQueryId(), category);
+                listener = (provisional, completed, total) -> streamer.update(this.toSortedList(provisional), completed, total);
+            }
+
+            List<StringDoublePair> results = this.toSortedList(ContinuousRetrievalLogic.retrieve(message.getSegmentId(), category, qconf, listener));
 
             this.write(session, new SegmentQueryResult(startMarker.getQueryId(), this.loadSegments(results)));
             this.write(session, new ObjectQueryResult(startMarker.getQueryId(), this.loadObjects(results)));
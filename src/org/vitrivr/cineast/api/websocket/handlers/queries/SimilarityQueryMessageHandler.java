@@ -18,6 +18,7 @@ import org.vitrivr.cineast.core.data.messages.result.SegmentQueryResult;
 import org.vitrivr.cineast.core.data.messages.result.SimilarityQueryResult;
 import org.vitrivr.cineast.core.data.query.containers.QueryContainer;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
+import org.vitrivr.cineast.core.features.listener.ProvisionalResultListener;
 import org.vitrivr.cineast.core.util.ContinuousRetrievalLogic;
 import org.vitrivr.cineast.core.util.LogHelper;
 
@@ -45,39 +46,36 @@ public class SimilarityQueryMessageHandler extends AbstractQueryMessageHandler<S
         this.write(session, new QueryStart(qconf.getQueryId().toString()));
 
 
+        final HashMap<String, ArrayList<QueryContainer>> categoryMap = new HashMap<>();
         try {
             /*
              * Prepare map that maps category  to QueryTerm components.
              */
-            final HashMap<String, ArrayList<QueryContainer>> categoryMap = QueryComponent.toCategoryMap(message.getComponents());
+            categoryMap.putAll(QueryComponent.toCategoryMap(message.getComponents()));
 
             /*
              * Execute similarity queries for all Category -> QueryContainer combinations in the map.
              */
             for (String category : categoryMap.keySet()) {
                 TObjectDoubleHashMap<String> map = new TObjectDoubleHashMap<>();
+                final ProvisionalResultStreamer streamer = message.isStreaming() ? new ProvisionalResultStreamer(session, qconf.getQueryId().toString(), category) : null;
                 for (QueryContainer qc : categoryMap.get(category)) {
                     /* Merge partial results with score-map. */
                     float weight = qc.getWeight() > 0f ? 1f : -1f; //TODO better normalisation
-                    ScoreElement.mergeWithScoreMap(ContinuousRetrievalLogic.retrieve(qc, category, qconf), map, weight);
 
-                    /* Convert partial-results to list of StringDoublePairs. */
-                    final List<StringDoublePair> list = new ArrayList<>(map.size());
-                    map.forEachEntry((key, value) -> {
-                        if (value > 0) {
-                          list.add(new StringDoublePair(key, value));
-                        }
-                        return true;
-                    });
-
-                    /*
-                     * Resize the list to the size constrained by MAX_RESULTS after sorting it
-                     * in ascending order.
-                     */
-                    list.sort(StringDoublePair.COMPARATOR);
-                    if (list.size() > MAX_RESULTS) {
-                        list.subList(MAX_RESULTS, list.size()).clear();
+                    /* In streaming mode: send provisional results merged with the results of the previous containers. */
+                    ProvisionalResultListener listener = null;
+                    if (streamer != null) {
+                        listener = (provisional, completed, total) -> {
+                            TObjectDoubleHashMap<String> partial = new TObjectDoubleHashMap<>(map);
+                            ScoreElement.mergeWithScoreMap(provisional, partial, weight);
+                            streamer.update(this.toSortedList(partial), completed, total);
+                        };
                     }
+                    ScoreElement.mergeWithScoreMap(ContinuousRetrievalLogic.retrieve(qc, category, qconf, listener), map, weight);
+
+                    /* Convert partial-results to sorted and truncated list of StringDoublePairs. */
+                    final List<StringDoublePair> list = this.toSortedList(map);
 
                     /*
                      * Write query responses to WebSocket stream.
@@ -95,6 +93,13 @@ public class SimilarityQueryMessageHandler extends AbstractQueryMessageHandler<S
             /* On exception: Send QueryError message to client. */
             this.write(session, new QueryError(qconf.getQueryId().toString(), exception.getMessage()));
             LOGGER.error("An exception occurred during execution of similarity message {}.", LogHelper.getStackTrace(exception));
+        } finally {
+            /* Release the cached data of the containers once all categories have been retrieved. */
+            for (List<QueryContainer> containers : categoryMap.values()) {
+                for (QueryContainer qc : containers) {
+                    qc.release();
+                }
+            }
         }
     }
 }
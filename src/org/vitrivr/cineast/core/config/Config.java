@@ -61,6 +61,19 @@ public class Config {
         }
     }
 
+    /**
+     * Returns the directory the embedded indexes are stored in: the index location of the database config if one has
+     * been configured, and the folder 'index' within the output location of the extractor otherwise.
+     *
+     * @return Directory of the embedded indexes.
+     */
+    public File indexLocation() {
+        if (this.database != null && this.database.getIndexLocation() != null) {
+            return this.database.getIndexLocation();
+        }
+        return new File(this.extractor == null ? new File(".") : this.extractor.getOutputLocation(), "index");
+    }
+
     @JsonProperty
     public APIConfig getApi() {
         return api;
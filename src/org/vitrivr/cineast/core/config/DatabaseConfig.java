@@ -1,10 +1,13 @@
 package org.vitrivr.cineast.core.config;
 
+import java.io.File;
 import java.util.function.Supplier;
 
+import org.vitrivr.cineast.core.db.BatchingDBSelector;
 import org.vitrivr.cineast.core.db.DBSelectorSupplier;
 import org.vitrivr.cineast.core.db.NoDBSelector;
 import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
+import org.vitrivr.cineast.core.db.adampro.ADAMproInsertPipeline;
 import org.vitrivr.cineast.core.db.adampro.ADAMproSelector;
 import org.vitrivr.cineast.core.db.adampro.ADAMproWriter;
 import org.vitrivr.cineast.core.db.json.JsonFileWriter;
@@ -27,15 +30,49 @@ public final class DatabaseConfig {
 	public static final int DEFAULT_PORT = 5890;
 	public static final boolean DEFAULT_PLAINTEXT = true;
 
+	/** Default number of gRPC channels opened per connection pool. */
+	public static final int DEFAULT_CONNECTIONS = 4;
+
+	/** Default per-call deadline in milliseconds; 0 disables the deadline. */
+	public static final long DEFAULT_DEADLINE = 0;
+
+	/** Default maximum number of concurrent in-flight calls per connection pool. */
+	public static final int DEFAULT_MAX_INFLIGHT = 64;
+
+	/** Default flag whether inserts are sent asynchronously without waiting for the acknowledgement. */
+	public static final boolean DEFAULT_ASYNC_INSERTS = true;
+
+	/** Default maximum number of asynchronous insert messages in flight. */
+	public static final int DEFAULT_MAX_INFLIGHT_INSERTS = 8;
+
+	/** Default number of times a failed asynchronous insert is retried. */
+	public static final int DEFAULT_INSERT_RETRIES = 3;
+
+	/** Default time in milliseconds concurrent kNN queries are collected into a batch; 0 disables batching. */
+	public static final long DEFAULT_BATCH_WINDOW = 0;
+
+	/** Default maximum number of kNN queries executed in one batch. */
+	public static final int DEFAULT_MAX_QUERY_BATCH_SIZE = 32;
+
 	private String host = DEFAULT_HOST;
 	private int port =  DEFAULT_PORT;
 	private boolean plaintext = DEFAULT_PLAINTEXT;
+	private int connections = DEFAULT_CONNECTIONS;
+	private long deadline = DEFAULT_DEADLINE;
+	private int maxInflight = DEFAULT_MAX_INFLIGHT;
+	private boolean asyncInserts = DEFAULT_ASYNC_INSERTS;
+	private int maxInflightInserts = DEFAULT_MAX_INFLIGHT_INSERTS;
+	private int insertRetries = DEFAULT_INSERT_RETRIES;
+	private long batchWindow = DEFAULT_BATCH_WINDOW;
+	private int maxQueryBatchSize = DEFAULT_MAX_QUERY_BATCH_SIZE;
 	private Writer writer = Writer.ADAMPRO;
 	private Selector selector = Selector.ADAMPRO;
 
 	private Integer batchsize = DEFAULT_BATCH_SIZE;
+
+	/** Directory of the embedded indexes; null to use the folder 'index' within the output location of the extractor. */
+	private File indexLocation = null;
 	
-	private static final PersistencyWriterSupplier ADAMPRO_WRITER_SUPPLY = () -> new ADAMproWriter();	
 	private static final PersistencyWriterSupplier PROTO_WRITER_SUPPLY = () -> new ProtobufFileWriter();
 	private static final PersistencyWriterSupplier JSON_WRITER_SUPPLY = () -> new JsonFileWriter();
 	
@@ -95,6 +132,117 @@ public final class DatabaseConfig {
 		this.plaintext = plaintext;
 	}
 
+	/**
+	 * @return the number of gRPC channels (and stubs) the database connection pool maintains
+	 */
+	@JsonProperty
+	public int getConnections() {
+		return this.connections;
+	}
+	public void setConnections(int connections) {
+		if(connections < 1){
+			throw new IllegalArgumentException("Number of connections must be positive");
+		}
+		this.connections = connections;
+	}
+
+	/**
+	 * @return the deadline in milliseconds applied to every database call, 0 if no deadline is set
+	 */
+	@JsonProperty
+	public long getDeadline() {
+		return this.deadline;
+	}
+	public void setDeadline(long deadline) {
+		if(deadline < 0){
+			throw new IllegalArgumentException("Deadline cannot be negative");
+		}
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @return the maximum number of calls which may be in flight at the same time per connection pool
+	 */
+	@JsonProperty
+	public int getMaxInflight() {
+		return this.maxInflight;
+	}
+	public void setMaxInflight(int maxInflight) {
+		if(maxInflight < 1){
+			throw new IllegalArgumentException("Maximum number of in-flight calls must be positive");
+		}
+		this.maxInflight = maxInflight;
+	}
+
+	/**
+	 * @return true if inserts are coalesced and sent asynchronously, false if every persist call
+	 * waits for the acknowledgement of the database
+	 */
+	@JsonProperty
+	public boolean getAsyncInserts() {
+		return this.asyncInserts;
+	}
+	public void setAsyncInserts(boolean asyncInserts) {
+		this.asyncInserts = asyncInserts;
+	}
+
+	/**
+	 * @return the maximum number of asynchronous insert messages which may be in flight at the same time
+	 */
+	@JsonProperty
+	public int getMaxInflightInserts() {
+		return this.maxInflightInserts;
+	}
+	public void setMaxInflightInserts(int maxInflightInserts) {
+		if(maxInflightInserts < 1){
+			throw new IllegalArgumentException("Maximum number of in-flight inserts must be positive");
+		}
+		this.maxInflightInserts = maxInflightInserts;
+	}
+
+	/**
+	 * @return the number of times a failed asynchronous insert is retried before it is reported as failed
+	 */
+	@JsonProperty
+	public int getInsertRetries() {
+		return this.insertRetries;
+	}
+	public void setInsertRetries(int insertRetries) {
+		if(insertRetries < 0){
+			throw new IllegalArgumentException("Number of insert retries cannot be negative");
+		}
+		this.insertRetries = insertRetries;
+	}
+
+	/**
+	 * @return the time in milliseconds a kNN query waits for concurrent queries on the same entity
+	 * to be executed together, 0 if queries are not batched
+	 */
+	@JsonProperty
+	public long getBatchWindow() {
+		return this.batchWindow;
+	}
+	public void setBatchWindow(long batchWindow) {
+		if(batchWindow < 0){
+			throw new IllegalArgumentException("Batch window cannot be negative");
+		}
+		this.batchWindow = batchWindow;
+	}
+
+	/**
+	 * @return the maximum number of concurrent kNN queries which are executed as one batch
+	 */
+	@JsonProperty
+	public int getMaxQueryBatchSize() {
+		return this.maxQueryBatchSize;
+	}
+	public void setMaxQueryBatchSize(int maxQueryBatchSize) {
+		if(maxQueryBatchSize < 1){
+			throw new IllegalArgumentException("Maximum query batch size must be positive");
+		}
+		this.maxQueryBatchSize = maxQueryBatchSize;
+	}
+
 	@JsonProperty
 	public Integer getBatchsize() {
 		return batchsize;
@@ -103,6 +251,19 @@ public final class DatabaseConfig {
 		this.batchsize = batchsize;
 	}
 
+	/**
+	 * @return the directory the embedded indexes (e.g. of labels, texts and fingerprints) are written to during
+	 * extraction and read from at query time, null if they are stored within the output location of the extractor.
+	 * Nodes which only execute queries must be configured with the directory the extraction has written to.
+	 */
+	@JsonProperty
+	public File getIndexLocation() {
+		return this.indexLocation;
+	}
+	public void setIndexLocation(String indexLocation) {
+		this.indexLocation = indexLocation == null ? null : new File(indexLocation);
+	}
+
 	@JsonProperty
 	public Writer getWriter(){
 		return this.writer;
@@ -122,7 +283,7 @@ public final class DatabaseConfig {
 	public PersistencyWriterSupplier getWriterSupplier(){
 		switch(this.writer){
 		case ADAMPRO:
-			return ADAMPRO_WRITER_SUPPLY;
+			return () -> new ADAMproWriter(this);
 		case PROTO:
 			return PROTO_WRITER_SUPPLY;
 		case JSON:
@@ -133,7 +294,33 @@ public final class DatabaseConfig {
 		}
 	}
 	
+	/**
+	 * Registers a listener which is informed about tuples the writers of this configuration failed
+	 * to persist asynchronously. Has no effect if inserts are synchronous.
+	 */
+	public void addInsertFailureListener(ADAMproInsertPipeline.InsertFailureListener listener){
+		if(this.writer == Writer.ADAMPRO && this.asyncInserts){
+			ADAMproInsertPipeline.forConfig(this).addFailureListener(listener);
+		}
+	}
+
+	public void removeInsertFailureListener(ADAMproInsertPipeline.InsertFailureListener listener){
+		if(this.writer == Writer.ADAMPRO && this.asyncInserts){
+			ADAMproInsertPipeline.forConfig(this).removeFailureListener(listener);
+		}
+	}
+
 	public DBSelectorSupplier getSelectorSupplier(){
+		DBSelectorSupplier supplier = getUnbatchedSelectorSupplier();
+		if(this.batchWindow <= 0 || this.maxQueryBatchSize < 2 || this.selector == Selector.NONE){
+			return supplier;
+		}
+		final long window = this.batchWindow;
+		final int maxBatchSize = this.maxQueryBatchSize;
+		return () -> new BatchingDBSelector(supplier.get(), window, maxBatchSize);
+	}
+
+	private DBSelectorSupplier getUnbatchedSelectorSupplier(){
 		switch(this.selector){
 		case ADAMPRO:
 			return ADAMPRO_SELECTOR_SUPPLY;
@@ -96,6 +96,7 @@ public class IngestConfig implements ExtractionContextProvider {
         this.metadata = metadata;
     }
 
+    @Override
     @JsonProperty
     public DatabaseConfig getDatabase() {
         return database;
@@ -103,23 +104,23 @@ public class IngestConfig implements ExtractionContextProvider {
     public void setDatabase(DatabaseConfig database) {
         /* Merge with global settings if not set. */
         DatabaseConfig global = Config.sharedConfig().getDatabase();
-        if (this.database.getSelector() == null) {
-          this.database.setSelector(global.getSelector());
+        if (database.getSelector() == null) {
+          database.setSelector(global.getSelector());
         }
-        if (this.database.getWriter() == null) {
-          this.database.setWriter(global.getWriter());
+        if (database.getWriter() == null) {
+          database.setWriter(global.getWriter());
         }
-        if (this.database.getBatchsize() == DatabaseConfig.DEFAULT_BATCH_SIZE) {
-          this.database.setBatchsize(global.getBatchsize());
+        if (database.getBatchsize() == DatabaseConfig.DEFAULT_BATCH_SIZE) {
+          database.setBatchsize(global.getBatchsize());
         }
-        if (this.database.getHost() == DatabaseConfig.DEFAULT_HOST) {
-          this.database.setHost(global.getHost());
+        if (database.getHost() == DatabaseConfig.DEFAULT_HOST) {
+          database.setHost(global.getHost());
         }
-        if (this.database.getPort() == DatabaseConfig.DEFAULT_PORT) {
-          this.database.setPort(global.getPort());
+        if (database.getPort() == DatabaseConfig.DEFAULT_PORT) {
+          database.setPort(global.getPort());
         }
-        if (this.database.getPlaintext() == DatabaseConfig.DEFAULT_PLAINTEXT) {
-          this.database.setPlaintext(global.getPlaintext());
+        if (database.getPlaintext() == DatabaseConfig.DEFAULT_PLAINTEXT) {
+          database.setPlaintext(global.getPlaintext());
         }
         
         /* Apply. */
@@ -20,6 +20,8 @@ public class NeuralNetConfig {
     private static final float DEFAULT_CUTOFF = 0.2f;
     private static final String DEFAULT_LABEL_PATH = "resources/vgg16/synset.txt";
     private static final String DEFAULT_CONCEPT_PATH = "resources/classes.csv";
+    private static final int DEFAULT_BATCH_SIZE = 16;
+    private static final long DEFAULT_BATCH_TIMEOUT = 20;
     private static final NeuralNetFactory DEFAULT_NEURAL_NET_FACTORY = () -> new VGG16Net(DEFAULT_MODEL_PATH, DEFAULT_LABEL_PATH);
 
     private String modelPath;
@@ -27,6 +29,8 @@ public class NeuralNetConfig {
     private NeuralNetFactory neuralNetFactory;
     private String labelPath;
     private String conceptsPath;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long batchTimeout = DEFAULT_BATCH_TIMEOUT;
 
 
     @JsonCreator
@@ -80,6 +84,28 @@ public class NeuralNetConfig {
         this.conceptsPath = conceptsPath;
     }
 
+    /**
+     * Maximum number of images the shared inference service classifies in a single pass.
+     */
+    @JsonProperty
+    public int getBatchSize() {
+        return batchSize;
+    }
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Maximum time in milliseconds the shared inference service waits for a batch to fill up.
+     */
+    @JsonProperty
+    public long getBatchTimeout() {
+        return batchTimeout;
+    }
+    public void setBatchTimeout(long batchTimeout) {
+        this.batchTimeout = batchTimeout;
+    }
+
     public static NeuralNetConfig parse(JsonObject obj) {
         if (obj == null) {
             throw new NullPointerException("JsonObject was null");
@@ -133,7 +159,28 @@ public class NeuralNetConfig {
             }
         }
 
-        return new NeuralNetConfig(_modelPath, _cutoff, _factory, _labelPath, _conceptsPath);
+        int _batchSize = DEFAULT_BATCH_SIZE;
+        if (obj.get("batchSize") != null) {
+            try {
+                _batchSize = obj.get("batchSize").asInt();
+            } catch (UnsupportedOperationException e) {
+                throw new IllegalArgumentException("'batchSize' was not an int in API configuration");
+            }
+        }
+
+        long _batchTimeout = DEFAULT_BATCH_TIMEOUT;
+        if (obj.get("batchTimeout") != null) {
+            try {
+                _batchTimeout = obj.get("batchTimeout").asLong();
+            } catch (UnsupportedOperationException e) {
+                throw new IllegalArgumentException("'batchTimeout' was not a long in API configuration");
+            }
+        }
+
+        NeuralNetConfig config = new NeuralNetConfig(_modelPath, _cutoff, _factory, _labelPath, _conceptsPath);
+        config.setBatchSize(_batchSize);
+        config.setBatchTimeout(_batchTimeout);
+        return config;
 
     }
 
@@ -73,6 +73,28 @@ public class QueryConfig extends ReadableQueryConfig {
     return this;
   }
 
+  /**
+   * Sets the number of results a retriever should return for this query.
+   *
+   * @param resultsPerModule number of results, values smaller than 1 reset to the configured default
+   * @return this
+   */
+  public QueryConfig setMaxResultsPerModule(int resultsPerModule) {
+    this.resultsPerModule = resultsPerModule;
+    return this;
+  }
+
+  /**
+   * Sets the number of top ranked results that are already known to the caller and may be skipped.
+   *
+   * @param resultsOffset number of results to skip
+   * @return this
+   */
+  public QueryConfig setResultsOffset(int resultsOffset) {
+    this.resultsOffset = Math.max(0, resultsOffset);
+    return this;
+  }
+
   @Override
   public QueryConfig clone() {
     return new QueryConfig(this);
@@ -30,6 +30,8 @@ public class ReadableQueryConfig {
     protected float norm = Float.NaN;
     protected CorrespondenceFunction correspondence = null;
     protected Set<Hints> hints = new HashSet<>();
+    protected int resultsPerModule = -1;
+    protected int resultsOffset = 0;
 
     /**
      *
@@ -45,6 +47,8 @@ public class ReadableQueryConfig {
         this.distanceWeights = qc.distanceWeights;
         this.norm = qc.norm;
         this.hints.addAll(qc.hints);
+        this.resultsPerModule = qc.resultsPerModule;
+        this.resultsOffset = qc.resultsOffset;
     }
 
     public ReadableQueryConfig(ReadableQueryConfig qc) {
@@ -66,4 +70,23 @@ public class ReadableQueryConfig {
     public Set<Hints> getHints() {
         return this.hints;
     }
+
+    /**
+     * @return the number of results a retriever should return for this query, i.e. the exclusive upper bound of the
+     * result ranks. Falls back to the globally configured number of results per module.
+     */
+    public int getMaxResultsPerModule() {
+        if (this.resultsPerModule > 0) {
+            return this.resultsPerModule;
+        }
+        return Config.sharedConfig().getRetriever().getMaxResultsPerModule();
+    }
+
+    /**
+     * @return the number of top ranked results the caller already knows from a previous, shallower execution of the
+     * same query. Retrievers may skip these results but are not required to.
+     */
+    public int getResultsOffset() {
+        return this.resultsOffset;
+    }
 }
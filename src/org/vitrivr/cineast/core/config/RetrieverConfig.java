@@ -61,6 +61,7 @@ public final class RetrieverConfig {
 	private int taskQueueSize = 10;
 	private int maxResults = 100;
 	private int resultsPerModule = 50;
+	private boolean thresholdFusion = false;
 	private HashMap<String, List<DoublePair<Class<? extends Retriever>>>> retrieverCategories = DEFAULT_RETRIEVER_CATEGORIES;
 	
 
@@ -165,6 +166,19 @@ public final class RetrieverConfig {
 		this.resultsPerModule = resultsPerModule;
 	}
 
+	/**
+	 * If set, fused queries fetch the results of the individual retrievers in increasing depth and stop
+	 * as soon as the top {@link #getMaxResults()} results can no longer change, instead of always fetching
+	 * {@link #getMaxResultsPerModule()} results from every retriever.
+	 */
+	@JsonProperty
+	public boolean getThresholdFusion(){
+		return this.thresholdFusion;
+	}
+	public void setThresholdFusion(boolean thresholdFusion) {
+		this.thresholdFusion = thresholdFusion;
+	}
+
 	@JsonProperty("features")
 	@JsonDeserialize(contentUsing = FeatureCategoriesDeserializer.class)
 	public List<String> getRetrieverCategories(){
@@ -1,15 +1,17 @@
 package org.vitrivr.cineast.core.data.frames;
 
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.Arrays;
 
 import javax.sound.sampled.AudioFormat;
 
 /**
  * Represents a single audio-frame containing a specific number of samples (the number depends on the decoder that
  * created the AudioFrame). Sample data is stored in a byte array and internally represented as 16bit int PCM i.e. each sample
- * is represented by a signed 16bit short between -32767 and 32767.
+ * is represented by a signed 16bit short between -32767 and 32767. The samples of multiple channels are interleaved and
+ * stored in little endian byte order.
+ *
+ * The byte array may be larger than the actual data so that appending other frames takes amortized linear time.
  *
  * The AudioFrame class supports different sample-rates and an arbitrary number of samples and is compatible with the
  * Java Audio API.
@@ -34,8 +36,11 @@ public class AudioFrame {
     /** Number of samples per channel in this AudioFrame. */
     private int numberOfSamples;
 
-    /** ByteBuffer holding the raw 16bit int data. */
-    private ByteBuffer data;
+    /** Byte array holding the raw 16bit int data. Only the first {@link #length} bytes are valid. */
+    private byte[] data;
+
+    /** Number of valid bytes in the data array. */
+    private int length;
 
     /** AudioDescriptor that describes the audio in this frame. */
     private final AudioDescriptor descriptor;
@@ -89,7 +94,7 @@ public class AudioFrame {
      * @return
      */
     public final int size() {
-        return this.data.array().length;
+        return this.length;
     }
 
     /**
@@ -115,7 +120,10 @@ public class AudioFrame {
      * @return Byte array containing the frames data of this AudioFrame.
      */
     public final byte[] getData() {
-        return data.array();
+        if (this.data.length != this.length) {
+            this.data = Arrays.copyOf(this.data, this.length);
+        }
+        return this.data;
     }
 
     /**
@@ -172,7 +180,11 @@ public class AudioFrame {
      */
     public final short getSampleAsShort(int idx, int channel) {
         if (channel < this.descriptor.getChannels()) {
-            return this.data.getShort(2*idx * this.descriptor.getChannels() + 2*channel);
+            final int position = 2*idx * this.descriptor.getChannels() + 2*channel;
+            if (position < 0 || position + 1 >= this.length) {
+                throw new IndexOutOfBoundsException("Sample " + idx + " is out of bounds.");
+            }
+            return this.sampleAt(position);
         } else {
             throw new IllegalArgumentException("The channel indexed must not exceed the number of channels!");
         }
@@ -220,10 +232,91 @@ public class AudioFrame {
         return (meanSample/(this.descriptor.getChannels() * Short.MAX_VALUE));
     }
 
+    /**
+     * Copies the samples of the specified channel as double values between -1.0 and 1.0 into the
+     * provided array, starting at the given offset.
+     *
+     * @param channel Index of the channel (zero-based)
+     * @param target Array to copy the samples to; must provide numberOfSamples() slots starting at offset.
+     * @param offset Position in the target array of the first sample.
+     * @return Number of samples copied.
+     */
+    public final int copySamples(int channel, double[] target, int offset) {
+        final int channels = this.descriptor.getChannels();
+        if (channel >= channels) {
+            throw new IllegalArgumentException("The channel indexed must not exceed the number of channels!");
+        }
+        for (int i = 0, position = 2*channel; i < this.numberOfSamples; i++, position += 2*channels) {
+            target[offset + i] = ((double)this.sampleAt(position)/(double)Short.MAX_VALUE);
+        }
+        return this.numberOfSamples;
+    }
+
+    /**
+     * Copies the samples of the specified channel into the provided array, starting at the given offset.
+     *
+     * @param channel Index of the channel (zero-based)
+     * @param target Array to copy the samples to; must provide numberOfSamples() slots starting at offset.
+     * @param offset Position in the target array of the first sample.
+     * @return Number of samples copied.
+     */
+    public final int copySamples(int channel, short[] target, int offset) {
+        final int channels = this.descriptor.getChannels();
+        if (channel >= channels) {
+            throw new IllegalArgumentException("The channel indexed must not exceed the number of channels!");
+        }
+        for (int i = 0, position = 2*channel; i < this.numberOfSamples; i++, position += 2*channels) {
+            target[offset + i] = this.sampleAt(position);
+        }
+        return this.numberOfSamples;
+    }
+
+    /**
+     * Copies the mean sample values (across all channels) as double values between -1.0 and 1.0 into
+     * the provided array, starting at the given offset. Equivalent to calling {@link #getMeanSampleAsDouble(int)}
+     * for every sample.
+     *
+     * @param target Array to copy the samples to; must provide numberOfSamples() slots starting at offset.
+     * @param offset Position in the target array of the first sample.
+     * @return Number of samples copied.
+     */
+    public final int copyMeanSamples(double[] target, int offset) {
+        final int channels = this.descriptor.getChannels();
+        for (int i = 0, position = 0; i < this.numberOfSamples; i++) {
+            float meanSample = 0;
+            for (int c = 0; c < channels; c++, position += 2) {
+                meanSample += this.sampleAt(position);
+            }
+            target[offset + i] = (meanSample/(channels * Short.MAX_VALUE));
+        }
+        return this.numberOfSamples;
+    }
+
+    /**
+     * Copies the mean sample values (across all channels) into the provided array, starting at the
+     * given offset. Equivalent to calling {@link #getMeanSampleAsShort(int)} for every sample.
+     *
+     * @param target Array to copy the samples to; must provide numberOfSamples() slots starting at offset.
+     * @param offset Position in the target array of the first sample.
+     * @return Number of samples copied.
+     */
+    public final int copyMeanSamples(short[] target, int offset) {
+        final int channels = this.descriptor.getChannels();
+        for (int i = 0, position = 0; i < this.numberOfSamples; i++) {
+            int meanSample = 0;
+            for (int c = 0; c < channels; c++, position += 2) {
+                meanSample += this.sampleAt(position);
+            }
+            target[offset + i] = (short)(meanSample/channels);
+        }
+        return this.numberOfSamples;
+    }
+
     /**
      * Appends an AudioFrame to the current AudioFrame if the two frames have the same specs in
      * terms of sampleRate and number of channels. The raw bytes of the other AudioFrame are
-     * appended to the byte-array of the current AudioFrame.
+     * appended to the byte-array of the current AudioFrame, which grows geometrically so that
+     * repeated appends take amortized linear time.
      *
      * @param that The AudioFrame to append to the current frame.
      * @param numberOfSamples The number of samples to append. Must be smaller than the size of the other AudioFrame!
@@ -234,17 +327,19 @@ public class AudioFrame {
           return false;
         }
         int bytes = that.descriptor.getChannels() * numberOfSamples * (BITS_PER_SAMPLE/8);
-        if (bytes > that.data.capacity()) {
+        if (bytes > that.length) {
           return false;
         }
 
-        /* Copy data. */
-        byte[] data = new byte[this.data.capacity() + bytes];
-        System.arraycopy(this.data.array(), 0, data, 0, this.data.capacity());
-        System.arraycopy(that.data.array(), 0, data, this.data.capacity(), bytes);
+        /* Grow the array if necessary and copy data. */
+        final int required = this.length + bytes;
+        if (required > this.data.length) {
+            this.data = Arrays.copyOf(this.data, Math.max(required, 2 * this.data.length));
+        }
+        System.arraycopy(that.data, 0, this.data, this.length, bytes);
 
-        /* Update local ByteBuffer reference. */
-        this.setData(data);
+        this.length = required;
+        this.numberOfSamples = required/(2 * this.descriptor.getChannels());
         return true;
     }
 
@@ -262,7 +357,18 @@ public class AudioFrame {
      * @param data
      */
     private void setData(byte[] data) {
-        this.data = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        this.data = data;
+        this.length = data.length;
         this.numberOfSamples = data.length/(2 * this.descriptor.getChannels());
     }
+
+    /**
+     * Decodes the little endian 16bit sample starting at the specified byte position.
+     *
+     * @param position Position of the first byte of the sample.
+     * @return Sample value.
+     */
+    private short sampleAt(int position) {
+        return (short)((this.data[position] & 0xFF) | (this.data[position + 1] << 8));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,425 @@
+package org.vitrivr.cineast.core.data.m3d;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.joml.Vector4i;
+import org.vitrivr.cineast.core.util.mesh.MeshMathUtil;
+
+/**
+ * An immutable ReadableMesh whose vertices and faces are stored in flat arrays instead of an object graph:
+ *
+ * - Positions and colours as three floats (x, y, z and r, g, b) per vertex.
+ * - Faces as four vertex indices per face, the fourth of which is -1 for triangular faces.
+ *
+ * Because an ArrayMesh cannot be changed after construction, it can be shared between threads without any locking.
+ * Derived properties (vertex-normals, bounding-box, barycenter and surface-area) are calculated lazily upon first
+ * access. Transformations return a new ArrayMesh that shares the colours and faces of the original one.
+ *
+ * Consumers that depend on the object representation ({@link #getVertices()}, {@link #getFaces()} and
+ * {@link #getVertex(int)}) are served by an equivalent {@link Mesh}, which is created upon first access. Consumers
+ * that care about memory and speed should use the index-based accessors instead.
+ */
+public final class ArrayMesh implements ReadableMesh {
+
+    /** Vertex positions; three floats per vertex. */
+    private final float[] positions;
+
+    /** Vertex colours; three floats per vertex. */
+    private final float[] colors;
+
+    /** Vertex indices; four per face with -1 as fourth index of triangular faces. */
+    private final int[] indices;
+
+    /** Vertex normals; three floats per vertex. Calculated lazily. */
+    private volatile float[] normals;
+
+    /** The bounding box of the mesh. Calculated lazily. */
+    private volatile float[] boundingbox;
+
+    /** The position of the Mesh's barycenter. Calculated lazily. */
+    private volatile Vector3f barycenter;
+
+    /** The surface-area of the mesh. Calculated lazily. */
+    private volatile Double surfaceArea;
+
+    /** Object representation of this ArrayMesh. Created lazily. */
+    private volatile Mesh mesh;
+
+    /**
+     * Returns an ArrayMesh representation of the provided mesh. If the mesh already is an ArrayMesh, it is
+     * returned as is.
+     *
+     * @param mesh ReadableMesh to convert.
+     * @return ArrayMesh
+     */
+    public static ArrayMesh from(ReadableMesh mesh) {
+        if (mesh instanceof ArrayMesh) {
+            return (ArrayMesh) mesh;
+        } else {
+            return new ArrayMesh(mesh);
+        }
+    }
+
+    /**
+     * Copy constructor for ArrayMesh. Copies the positions, colours and faces of the provided mesh.
+     *
+     * @param mesh Mesh that should be copied.
+     */
+    public ArrayMesh(ReadableMesh mesh) {
+        if (mesh instanceof ArrayMesh) {
+            this.positions = ((ArrayMesh) mesh).positions;
+            this.colors = ((ArrayMesh) mesh).colors;
+            this.indices = ((ArrayMesh) mesh).indices;
+            return;
+        }
+
+        final List<Mesh.Vertex> vertices = mesh.getVertices();
+        this.positions = new float[3 * vertices.size()];
+        this.colors = new float[3 * vertices.size()];
+        for (int i = 0; i < vertices.size(); i++) {
+            final Mesh.Vertex vertex = vertices.get(i);
+            this.positions[3 * i] = vertex.getPosition().x();
+            this.positions[3 * i + 1] = vertex.getPosition().y();
+            this.positions[3 * i + 2] = vertex.getPosition().z();
+            this.colors[3 * i] = vertex.getColor().x();
+            this.colors[3 * i + 1] = vertex.getColor().y();
+            this.colors[3 * i + 2] = vertex.getColor().z();
+        }
+
+        final List<Mesh.Face> faces = mesh.getFaces();
+        this.indices = new int[4 * faces.size()];
+        for (int i = 0; i < faces.size(); i++) {
+            final Mesh.Face face = faces.get(i);
+            this.indices[4 * i] = face.getVertexIndex(0);
+            this.indices[4 * i + 1] = face.getVertexIndex(1);
+            this.indices[4 * i + 2] = face.getVertexIndex(2);
+            this.indices[4 * i + 3] = face.getType() == Mesh.FaceType.QUAD ? face.getVertexIndex(3) : -1;
+        }
+    }
+
+    /**
+     * Constructor for ArrayMesh. The provided arrays are copied.
+     *
+     * @param positions Vertex positions; three floats (x, y, z) per vertex.
+     * @param colors Vertex colours; three floats (r, g, b) per vertex.
+     * @param indices Vertex indices; four per face with -1 as fourth index of triangular faces.
+     * @throws IllegalArgumentException If the arrays don't match or if a face references a non-existing vertex.
+     */
+    public ArrayMesh(float[] positions, float[] colors, int[] indices) {
+        this(positions, colors, indices, positions.length / 3, indices.length / 4);
+        if (positions.length % 3 != 0 || colors.length != positions.length) {
+            throw new IllegalArgumentException("Positions and colours must both consist of three floats per vertex.");
+        }
+        if (indices.length % 4 != 0) {
+            throw new IllegalArgumentException("Faces must consist of four vertex indices each.");
+        }
+    }
+
+    /**
+     * Constructor for ArrayMesh. Copies the first vertices and faces from the provided arrays, which may be
+     * larger than that (e.g. if they were filled by a decoder that didn't know the size of the mesh in advance).
+     *
+     * @param positions Vertex positions; three floats (x, y, z) per vertex.
+     * @param colors Vertex colours; three floats (r, g, b) per vertex.
+     * @param indices Vertex indices; four per face with -1 as fourth index of triangular faces.
+     * @param vertices Number of vertices to copy.
+     * @param faces Number of faces to copy.
+     * @throws IllegalArgumentException If the arrays are too small or if a face references a non-existing vertex.
+     */
+    public ArrayMesh(float[] positions, float[] colors, int[] indices, int vertices, int faces) {
+        if (vertices < 0 || faces < 0 || positions.length < 3 * vertices || colors.length < 3 * vertices || indices.length < 4 * faces) {
+            throw new IllegalArgumentException("Positions, colours and indices must hold at least the requested number of vertices and faces.");
+        }
+        for (int i = 0; i < 4 * faces; i++) {
+            if (indices[i] >= vertices || (indices[i] < 0 && (i % 4 != 3 || indices[i] != -1))) {
+                throw new IllegalArgumentException(String.format("Invalid vertex index %d in face %d.", indices[i], i / 4));
+            }
+        }
+        this.positions = Arrays.copyOf(positions, 3 * vertices);
+        this.colors = Arrays.copyOf(colors, 3 * vertices);
+        this.indices = Arrays.copyOf(indices, 4 * faces);
+    }
+
+    /**
+     * Internal constructor that takes ownership of the provided arrays.
+     */
+    private ArrayMesh(float[] positions, ArrayMesh original) {
+        this.positions = positions;
+        this.colors = original.colors;
+        this.indices = original.indices;
+    }
+
+    /**
+     * Applies a transformation matrix to all the vertices of this ArrayMesh and returns the result
+     * as a new ArrayMesh. This ArrayMesh is not affected by the operation.
+     *
+     * @param transformation Transformation matrix that should be applied.
+     * @return Transformed ArrayMesh.
+     */
+    public ArrayMesh transform(Matrix4f transformation) {
+        final float[] transformed = new float[this.positions.length];
+        final Vector3f position = new Vector3f();
+        for (int i = 0; i < transformed.length; i += 3) {
+            position.set(this.positions[i], this.positions[i + 1], this.positions[i + 2]).mulPosition(transformation);
+            transformed[i] = position.x;
+            transformed[i + 1] = position.y;
+            transformed[i + 2] = position.z;
+        }
+        return new ArrayMesh(transformed, this);
+    }
+
+    /**
+     * Returns the position of a vertex.
+     *
+     * @param vertexIndex Index of the vertex.
+     * @param dest Vector to store the position in.
+     * @return dest
+     */
+    public Vector3f getPosition(int vertexIndex, Vector3f dest) {
+        return dest.set(this.positions[3 * vertexIndex], this.positions[3 * vertexIndex + 1], this.positions[3 * vertexIndex + 2]);
+    }
+
+    /**
+     * Returns the colour of a vertex.
+     *
+     * @param vertexIndex Index of the vertex.
+     * @param dest Vector to store the colour in.
+     * @return dest
+     */
+    public Vector3f getColor(int vertexIndex, Vector3f dest) {
+        return dest.set(this.colors[3 * vertexIndex], this.colors[3 * vertexIndex + 1], this.colors[3 * vertexIndex + 2]);
+    }
+
+    /**
+     * Returns the normal of a vertex, i.e. the mean of the normals of all faces the vertex is part of.
+     *
+     * @param vertexIndex Index of the vertex.
+     * @param dest Vector to store the normal in.
+     * @return dest
+     */
+    public Vector3f getNormal(int vertexIndex, Vector3f dest) {
+        final float[] normals = this.normals();
+        return dest.set(normals[3 * vertexIndex], normals[3 * vertexIndex + 1], normals[3 * vertexIndex + 2]);
+    }
+
+    /**
+     * Returns the type of a face.
+     *
+     * @param faceIndex Index of the face.
+     * @return FaceType of the face.
+     */
+    public Mesh.FaceType getFaceType(int faceIndex) {
+        return this.indices[4 * faceIndex + 3] < 0 ? Mesh.FaceType.TRI : Mesh.FaceType.QUAD;
+    }
+
+    /**
+     * Returns the number of vertices of a face, i.e. three for triangles and four for quads.
+     *
+     * @param faceIndex Index of the face.
+     * @return Number of vertices of the face.
+     */
+    public int getFaceSize(int faceIndex) {
+        return this.indices[4 * faceIndex + 3] < 0 ? 3 : 4;
+    }
+
+    /**
+     * Returns the index of one of the vertices of a face.
+     *
+     * @param faceIndex Index of the face.
+     * @param corner Index of the vertex within the face (0 to 3).
+     * @return Index of the vertex or -1, if the face is a triangle and corner is 3.
+     */
+    public int getFaceVertex(int faceIndex, int corner) {
+        return this.indices[4 * faceIndex + corner];
+    }
+
+    /**
+     * Returns the list of vertices. The returned collection is unmodifiable.
+     *
+     * @return Unmodifiable list of vertices.
+     */
+    @Override
+    public List<Mesh.Vertex> getVertices() {
+        return this.mesh().getVertices();
+    }
+
+    /**
+     * Accessor for an individual vertex.
+     *
+     * @param vertexIndex Index of the vertex that should be returned.
+     * @return Vertex.
+     */
+    @Override
+    public Mesh.Vertex getVertex(int vertexIndex) {
+        return this.mesh().getVertex(vertexIndex);
+    }
+
+    /**
+     * Returns the list of faces. The returned collection is unmodifiable.
+     *
+     * @return Unmodifiable list of faces.
+     */
+    @Override
+    public List<Mesh.Face> getFaces() {
+        return this.mesh().getFaces();
+    }
+
+    /**
+     * Returns the number of vertices in this Mesh.
+     *
+     * @return Number of vertices.
+     */
+    @Override
+    public int numberOfVertices() {
+        return this.positions.length / 3;
+    }
+
+    /**
+     * Returns the number of faces in this Mesh.
+     *
+     * @return Number of faces.
+     */
+    @Override
+    public int numberOfFaces() {
+        return this.indices.length / 4;
+    }
+
+    /**
+     * Returns the total surface area of the Mesh.
+     *
+     * @return Surface area of the mesh.
+     */
+    @Override
+    public double surfaceArea() {
+        Double surfaceArea = this.surfaceArea;
+        if (surfaceArea == null) {
+            surfaceArea = MeshMathUtil.surfaceArea(this.positions, this.indices);
+            this.surfaceArea = surfaceArea;
+        }
+        return surfaceArea;
+    }
+
+    /**
+     * Calculates and returns the Mesh's bounding-box
+     *
+     * @return Bounding-box of the mesh.
+     */
+    @Override
+    public float[] bounds() {
+        float[] boundingbox = this.boundingbox;
+        if (boundingbox == null) {
+            boundingbox = MeshMathUtil.bounds(this.positions, this.indices);
+            this.boundingbox = boundingbox;
+        }
+        return Arrays.copyOf(boundingbox, 6);
+    }
+
+    /**
+     * Calculates and returns the Mesh's barycenter.
+     *
+     * @return Barycenter of the Mesh.
+     */
+    @Override
+    public Vector3fc barycenter() {
+        Vector3f barycenter = this.barycenter;
+        if (barycenter == null) {
+            barycenter = MeshMathUtil.barycenter(this.positions, this.indices);
+            this.barycenter = barycenter;
+        }
+        return barycenter;
+    }
+
+    /**
+     * Indicates, whether the mesh is an empty Mesh or not
+     *
+     * @return True if mesh is empty, false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return this.indices.length == 0;
+    }
+
+    /**
+     * Returns the vertex normals. They are calculated like the ones of a {@link Mesh}: As the mean of the
+     * normals of all faces a vertex is part of, ignoring faces without a valid normal.
+     *
+     * @return Array of vertex normals.
+     */
+    private float[] normals() {
+        float[] normals = this.normals;
+        if (normals == null) {
+            final int faces = this.numberOfFaces();
+
+            /* Count the faces each vertex is part of. */
+            final int[] count = new int[this.numberOfVertices()];
+            for (int f = 0; f < faces; f++) {
+                for (int c = 0; c < 4; c++) {
+                    if (this.isFirstOccurrence(f, c)) {
+                        count[this.indices[4 * f + c]] += 1;
+                    }
+                }
+            }
+
+            /* Sum the face normals in the order of the faces. */
+            normals = new float[this.positions.length];
+            final Vector3f fn = new Vector3f();
+            for (int f = 0; f < faces; f++) {
+                MeshMathUtil.normal(this.positions, this.indices, f, fn);
+                if (Float.isNaN(fn.x) || Float.isNaN(fn.y) || Float.isNaN(fn.z)) {
+                    continue;
+                }
+                for (int c = 0; c < 4; c++) {
+                    if (this.isFirstOccurrence(f, c)) {
+                        final int v = this.indices[4 * f + c];
+                        normals[3 * v] += fn.x / count[v];
+                        normals[3 * v + 1] += fn.y / count[v];
+                        normals[3 * v + 2] += fn.z / count[v];
+                    }
+                }
+            }
+            this.normals = normals;
+        }
+        return normals;
+    }
+
+    /**
+     * Checks if the vertex at the provided corner of a face is valid and does not occur at a previous corner of the same face.
+     */
+    private boolean isFirstOccurrence(int face, int corner) {
+        final int v = this.indices[4 * face + corner];
+        if (v < 0) {
+            return false;
+        }
+        for (int c = 0; c < corner; c++) {
+            if (this.indices[4 * face + c] == v) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the object representation of this ArrayMesh, which is created upon first access. Its vertex normals
+     * are calculated by the Mesh itself when the faces are added.
+     *
+     * @return Mesh
+     */
+    private Mesh mesh() {
+        Mesh mesh = this.mesh;
+        if (mesh == null) {
+            mesh = new Mesh(this.numberOfFaces(), this.numberOfVertices());
+            for (int i = 0; i < this.numberOfVertices(); i++) {
+                mesh.addVertex(this.getPosition(i, new Vector3f()), this.getColor(i, new Vector3f()), new Vector3f());
+            }
+            for (int f = 0; f < this.numberOfFaces(); f++) {
+                mesh.addFace(new Vector4i(this.indices[4 * f], this.indices[4 * f + 1], this.indices[4 * f + 2], this.indices[4 * f + 3]));
+            }
+            this.mesh = mesh;
+        }
+        return mesh;
+    }
+}
@@ -207,6 +207,16 @@ public class Mesh implements WritableMesh {
             }
         }
 
+        /**
+         * Returns the index of one of the vertices that make up this face.
+         *
+         * @param i Position of the vertex within the face.
+         * @return Index of the vertex within the Mesh.
+         */
+        final int getVertexIndex(int i) {
+            return this.vertexIndices[i];
+        }
+
         /**
          * Returns the list of vertices that make up this face.
          *
@@ -1,5 +1,7 @@
 package org.vitrivr.cineast.core.data.m3d;
 
+import java.util.Arrays;
+
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
 import org.joml.Vector3i;
@@ -8,6 +10,8 @@ import org.joml.Vector3i;
  * This class represents a Voxel grid, i.e. a 3-dimensional grid of 3D pixels (called Voxels). Every voxel
  * can either be visible or invisible.
  *
+ * The visibility of the voxels is stored in a bitmap, i.e. a single bit per voxel in a long[] array.
+ *
  * @author rgasser
  * @version 1.0
  * @created 06.01.17
@@ -42,8 +46,8 @@ public class VoxelGrid {
     /** Number of invisible voxels in the grid. */
     private int invisible = 0;
 
-    /** Array holding the actual voxels. */
-    private final Voxel[][][] voxelGrid;
+    /** Bitmap holding the actual voxels; the bit at index (x * sizeY + y) * sizeZ + z is set if the voxel is visible. */
+    private final long[] voxelGrid;
 
     /** Defines the center of the voxel-grid (in the world coordinate system). It corresponds to the
      * center of the voxel at (sizeX/2, sizeY/2, sizeZ/2).
@@ -80,19 +84,15 @@ public class VoxelGrid {
         this.sizeZ = sizeZ;
         this.resolution = resolution;
         this.length = sizeX * sizeY * sizeZ;
-        this.voxelGrid = new Voxel[sizeX][sizeY][sizeZ];
-        for (short i = 0;i<this.sizeX;i++) {
-            for (short j = 0;j<this.sizeY;j++) {
-                for (short k = 0;k<this.sizeZ;k++) {
-                    if (active) {
-                        this.voxelGrid[i][j][k] = Voxel.VISIBLE;
-                        this.visible += 1;
-                    } else {
-                        this.voxelGrid[i][j][k] = Voxel.INVISIBLE;
-                        this.invisible += 1;
-                    }
-                }
+        this.voxelGrid = new long[(this.length + 63) >>> 6];
+        if (active) {
+            Arrays.fill(this.voxelGrid, -1L);
+            if ((this.length & 63) != 0) {
+                this.voxelGrid[this.voxelGrid.length - 1] = -1L >>> (64 - (this.length & 63));
             }
+            this.visible = this.length;
+        } else {
+            this.invisible = this.length;
         }
     }
 
@@ -204,7 +204,7 @@ public class VoxelGrid {
      * @throws ArrayIndexOutOfBoundsException If one of the three indices is larger than the grid.
      */
     public final Voxel get(int x, int y, int z) {
-        return this.voxelGrid[x][y][z];
+        return this.isVisible(x, y, z) ? Voxel.VISIBLE : Voxel.INVISIBLE;
     }
 
     /**
@@ -216,7 +216,8 @@ public class VoxelGrid {
      * @throws ArrayIndexOutOfBoundsException If one of the three indices is larger than the grid.
      */
     public final boolean isVisible(int x, int y, int z) {
-        return this.voxelGrid[x][y][z] == Voxel.VISIBLE;
+        final int index = this.index(x, y, z);
+        return (this.voxelGrid[index >>> 6] & (1L << index)) != 0;
     }
 
     /**
@@ -230,7 +231,21 @@ public class VoxelGrid {
      * @throws ArrayIndexOutOfBoundsException If one of the three indices is larger than the grid.
      */
     public Vector3f getVoxelCenter(int x, int y, int z) {
-        return new Vector3f((x-VoxelGrid.this.sizeX/2) * VoxelGrid.this.resolution + this.center.x, (y-VoxelGrid.this.sizeY/2)*VoxelGrid.this.resolution + this.center.y, (z-VoxelGrid.this.sizeZ/2)*VoxelGrid.this.resolution + this.center.z);
+        return this.getVoxelCenter(x, y, z, new Vector3f());
+    }
+
+    /**
+     * Calculates the center of the Voxel in a 3D coordinate system using the grids resolution property
+     * and stores it in the provided vector.
+     *
+     * @param x x position of the Voxel.
+     * @param y y position of the Voxel.
+     * @param z z position of the Voxel.
+     * @param dest Vector to store the center of the voxel in.
+     * @return dest
+     */
+    public Vector3f getVoxelCenter(int x, int y, int z, Vector3f dest) {
+        return dest.set((x-VoxelGrid.this.sizeX/2) * VoxelGrid.this.resolution + this.center.x, (y-VoxelGrid.this.sizeY/2)*VoxelGrid.this.resolution + this.center.y, (z-VoxelGrid.this.sizeZ/2)*VoxelGrid.this.resolution + this.center.z);
     }
 
     /**
@@ -243,17 +258,52 @@ public class VoxelGrid {
      * @throws ArrayIndexOutOfBoundsException If one of the three indices is larger than the grid.
      */
     public final void toggleVoxel(boolean visible, int x, int y, int z) {
-        if (visible && this.voxelGrid[x][y][z] == Voxel.INVISIBLE) {
-            this.voxelGrid[x][y][z] = Voxel.VISIBLE;
+        final int index = this.index(x, y, z);
+        final long mask = 1L << index;
+        final boolean current = (this.voxelGrid[index >>> 6] & mask) != 0;
+        if (visible && !current) {
+            this.voxelGrid[index >>> 6] |= mask;
             this.invisible -= 1;
             this.visible += 1;
-        } else if (!visible && this.voxelGrid[x][y][z] == Voxel.VISIBLE) {
-            this.voxelGrid[x][y][z] = Voxel.INVISIBLE;
+        } else if (!visible && current) {
+            this.voxelGrid[index >>> 6] &= ~mask;
             this.invisible += 1;
             this.visible -= 1;
         }
     }
 
+    /**
+     * Makes all Voxels visible that are visible in the provided VoxelGrid, i.e. merges the two grids
+     * by a bitwise OR. Both grids must have the same size.
+     *
+     * @param other VoxelGrid to merge into this VoxelGrid.
+     * @throws IllegalArgumentException If the two grids differ in size.
+     */
+    final void or(VoxelGrid other) {
+        if (other.sizeX != this.sizeX || other.sizeY != this.sizeY || other.sizeZ != this.sizeZ) {
+            throw new IllegalArgumentException("Only VoxelGrids of the same size can be merged.");
+        }
+        int visible = 0;
+        for (int i = 0; i < this.voxelGrid.length; i++) {
+            this.voxelGrid[i] |= other.voxelGrid[i];
+            visible += Long.bitCount(this.voxelGrid[i]);
+        }
+        this.visible = visible;
+        this.invisible = this.length - visible;
+    }
+
+    /**
+     * Returns the index of the bit that represents the Voxel at the specified position.
+     *
+     * @throws ArrayIndexOutOfBoundsException If one of the three indices is outside of the grid.
+     */
+    private int index(int x, int y, int z) {
+        if (x < 0 || x >= this.sizeX || y < 0 || y >= this.sizeY || z < 0 || z >= this.sizeZ) {
+            throw new ArrayIndexOutOfBoundsException(String.format("Voxel (%d, %d, %d) is outside of the grid.", x, y, z));
+        }
+        return (x * this.sizeY + y) * this.sizeZ + z;
+    }
+
     /**
      * Converts the VoxelGrid into a string that can be read by Matlab (e.g. for 3D scatter plots).
      * The array contains the coordinates of all visible voxels.
@@ -266,7 +316,7 @@ public class VoxelGrid {
         for (int x=0;x<this.sizeX;x++) {
             for (int y=0;y<this.sizeY;y++) {
                 for (int z=0;z<this.sizeZ;z++) {
-                    if (this.voxelGrid[x][y][z] == Voxel.VISIBLE) {
+                    if (this.isVisible(x,y,z)) {
                         buffer.append(String.format("%d %d %d; ",x,y,z));
                     }
                 }
@@ -1,17 +1,15 @@
 package org.vitrivr.cineast.core.data.m3d;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
-import org.joml.Vector3i;
-import org.vitrivr.cineast.core.data.Pair;
 import org.vitrivr.cineast.core.util.math.MathConstants;
-import org.vitrivr.cineast.core.util.mesh.MeshMathUtil;
 
 /**
  * This class can be used to to transform a 3D polygon Mesh into a 3D VoxelGrid. The class performs this
@@ -36,6 +34,9 @@ public class Voxelizer {
     /** */
     private static final Logger LOGGER = LogManager.getLogger();
 
+    /** Minimum number of faces per chunk when voxelizing a mesh in parallel. */
+    private static final int FACES_PER_CHUNK = 4096;
+
     /** Resolution, i.e. size of a single voxel. */
     private final float resolution;
 
@@ -94,58 +95,130 @@ public class Voxelizer {
     }
 
     /**
-     * Voxelizes the provided mesh into the provided VoxelGrid
+     * Voxelizes the provided mesh into the provided VoxelGrid. Large meshes are split into one chunk of faces per
+     * processor, as long as every chunk holds at least FACES_PER_CHUNK faces.
      *
      * @param mesh Mesh that should be voxelized.
      * @param grid VoxelGrid to use for voxelization.
      * @return VoxelGrid representation of the mesh.
      */
     public VoxelGrid voxelize(ReadableMesh mesh, VoxelGrid grid) {
+        return this.voxelize(mesh, grid, Math.min(Runtime.getRuntime().availableProcessors(), mesh.numberOfFaces() / FACES_PER_CHUNK));
+    }
+
+    /**
+     * Voxelizes the provided mesh into the provided VoxelGrid. The faces are split into the specified number of chunks
+     * that are voxelized in parallel, each into a VoxelGrid of its own. These grids are then merged into the provided
+     * grid by a bitwise OR. The result does not depend on the number of chunks.
+     *
+     * @param mesh Mesh that should be voxelized.
+     * @param grid VoxelGrid to use for voxelization.
+     * @param chunks Number of chunks to split the faces into; the faces are voxelized sequentially if it is smaller than two.
+     * @return VoxelGrid representation of the mesh.
+     */
+    public VoxelGrid voxelize(ReadableMesh mesh, VoxelGrid grid, int chunks) {
 
         long start =  System.currentTimeMillis();
 
         /* Process the faces and perform all the relevant tests described in [1]. */
-        for (Mesh.Face face : mesh.getFaces()) {
-            List<Mesh.Vertex> vertices = face.getVertices();
-            List<Pair<Vector3i,Vector3f>> enclosings = Voxelizer.this.enclosingGrid(vertices, grid);
-            for (Pair<Vector3i,Vector3f> enclosing : enclosings) {
-                /* Perform vertex-tests. */
-                if (Voxelizer.this.vertextTest(vertices.get(0), enclosing)) {
-                    grid.toggleVoxel(true, enclosing.first.x, enclosing.first.y, enclosing.first.z);
-                    continue;
+        final ArrayMesh faces = ArrayMesh.from(mesh);
+        final int count = faces.numberOfFaces();
+        if (chunks <= 1 || count < 2) {
+            this.voxelize(faces, 0, count, grid);
+        } else {
+            final List<VoxelGrid> partials = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+                final VoxelGrid partial = new VoxelGrid(grid.getSizeX(), grid.getSizeY(), grid.getSizeZ(), grid.getResolution(), false);
+                return this.voxelize(faces, (int) ((long) count * c / chunks), (int) ((long) count * (c + 1) / chunks), partial);
+            }).collect(Collectors.toList());
+            for (VoxelGrid partial : partials) {
+                grid.or(partial);
+            }
+        }
+
+        long stop = System.currentTimeMillis();
+        LOGGER.log(Level.DEBUG, String.format("Voxelization of mesh completed in %d ms (Size: %d x %d x %d).", (stop - start), grid.getSizeX(), grid.getSizeY(), grid.getSizeZ()));
+
+        return grid;
+    }
+
+    /**
+     * Voxelizes a range of faces into the provided VoxelGrid. Voxels that lie outside of the grid are skipped.
+     *
+     * @param mesh ArrayMesh whose faces should be voxelized.
+     * @param from Index of the first face to voxelize (inclusive).
+     * @param to Index of the last face to voxelize (exclusive).
+     * @param grid VoxelGrid to use for voxelization.
+     * @return VoxelGrid representation of the faces.
+     */
+    private VoxelGrid voxelize(ArrayMesh mesh, int from, int to, VoxelGrid grid) {
+        /* Vectors that are re-used for all faces and voxels. */
+        final Vector3f a = new Vector3f();
+        final Vector3f b = new Vector3f();
+        final Vector3f c = new Vector3f();
+        final Vector3f position = new Vector3f();
+        final Vector3f center = new Vector3f();
+        final Vector3f normal = new Vector3f();
+        final Vector3f temp = new Vector3f();
+
+        for (int f = from; f < to; f++) {
+            mesh.getPosition(mesh.getFaceVertex(f, 0), a);
+            mesh.getPosition(mesh.getFaceVertex(f, 1), b);
+            mesh.getPosition(mesh.getFaceVertex(f, 2), c);
+
+            /* Calculate the normal of the face, which spans the plane used by the plane-test. */
+            normal.set(b).sub(a).cross(temp.set(c).sub(a));
+
+            /* Derive max and min voxel-indices from the bounding-box of the face. */
+            float maxX = -Float.MAX_VALUE, minX = Float.MAX_VALUE;
+            float maxY = -Float.MAX_VALUE, minY = Float.MAX_VALUE;
+            float maxZ = -Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+            for (int v = 0; v < mesh.getFaceSize(f); v++) {
+                mesh.getPosition(mesh.getFaceVertex(f, v), position);
+                if (position.x > maxX) {
+                    maxX = position.x;
                 }
-                if (Voxelizer.this.vertextTest(vertices.get(1), enclosing)) {
-                    grid.toggleVoxel(true, enclosing.first.x, enclosing.first.y, enclosing.first.z);
-                    continue;
+                if (position.x < minX) {
+                    minX = position.x;
                 }
-                if (Voxelizer.this.vertextTest(vertices.get(2), enclosing)) {
-                    grid.toggleVoxel(true, enclosing.first.x, enclosing.first.y, enclosing.first.z);
-                    continue;
+                if (position.y > maxY) {
+                    maxY = position.y;
                 }
-                 /* Perform edge-tests. */
-                if (Voxelizer.this.edgeTest(vertices.get(0), vertices.get(1), enclosing)) {
-                    grid.toggleVoxel(true, enclosing.first.x, enclosing.first.y, enclosing.first.z);
-                    continue;
+                if (position.y < minY) {
+                    minY = position.y;
                 }
-                if (Voxelizer.this.edgeTest(vertices.get(1), vertices.get(2), enclosing)) {
-                    grid.toggleVoxel(true, enclosing.first.x, enclosing.first.y, enclosing.first.z);
-                    continue;
+                if (position.z > maxZ) {
+                    maxZ = position.z;
                 }
-                if (Voxelizer.this.edgeTest(vertices.get(2), vertices.get(0), enclosing)) {
-                    grid.toggleVoxel(true, enclosing.first.x, enclosing.first.y, enclosing.first.z);
-                    continue;
+                if (position.z < minZ) {
+                    minZ = position.z;
                 }
+            }
+            final int x0 = Math.max(0, this.coordinateToVoxel(minX, grid.getGridCenter().x(), grid.getSizeX()));
+            final int x1 = Math.min(grid.getSizeX() - 1, this.coordinateToVoxel(maxX, grid.getGridCenter().x(), grid.getSizeX()));
+            final int y0 = Math.max(0, this.coordinateToVoxel(minY, grid.getGridCenter().y(), grid.getSizeY()));
+            final int y1 = Math.min(grid.getSizeY() - 1, this.coordinateToVoxel(maxY, grid.getGridCenter().y(), grid.getSizeY()));
+            final int z0 = Math.max(0, this.coordinateToVoxel(minZ, grid.getGridCenter().z(), grid.getSizeZ()));
+            final int z1 = Math.min(grid.getSizeZ() - 1, this.coordinateToVoxel(maxZ, grid.getGridCenter().z(), grid.getSizeZ()));
+
+            /* Test all the voxels enclosing the face. */
+            for (int i = x0; i <= x1; i++) {
+                for (int j = y0; j <= y1; j++) {
+                    for (int k = z0; k <= z1; k++) {
+                        if (grid.isVisible(i, j, k)) {
+                            continue;
+                        }
+                        grid.getVoxelCenter(i, j, k, center);
 
-                /* Perform plane-tests. */
-                if (Voxelizer.this.planeTest(vertices.get(0), vertices.get(1), vertices.get(2), enclosing)) {
-                    grid.toggleVoxel(true, enclosing.first.x, enclosing.first.y, enclosing.first.z);
+                        /* Perform vertex-tests, edge-tests and plane-tests. */
+                        if (this.vertextTest(a, center) || this.vertextTest(b, center) || this.vertextTest(c, center)
+                                || this.edgeTest(a, b, center, temp) || this.edgeTest(b, c, center, temp) || this.edgeTest(c, a, center, temp)
+                                || this.planeTest(normal, center, temp)) {
+                            grid.toggleVoxel(true, i, j, k);
+                        }
+                    }
                 }
             }
         }
-
-        long stop = System.currentTimeMillis();
-        LOGGER.log(Level.DEBUG, String.format("Voxelization of mesh completed in %d ms (Size: %d x %d x %d).", (stop - start), grid.getSizeX(), grid.getSizeY(), grid.getSizeZ()));
-
         return grid;
     }
 
@@ -153,29 +226,30 @@ public class Voxelizer {
      * Performs the vertex-test described in [1]. Checks if the provided voxel's center is within the area
      * of circle with radius L/2 around the vertex (L being the size of a voxel).
      *
-     * @param vertex Vertex to be tested.
-     * @param voxel Voxel to be tested.
+     * @param vertex Position of the vertex to be tested.
+     * @param center Center of the voxel to be tested.
      * @return true if the voxel's center is within the circle, false otherwise.
      */
-    private boolean vertextTest(Mesh.Vertex vertex, Pair<Vector3i,Vector3f> voxel) {
-       return vertex.getPosition().distanceSquared(voxel.second) > this.rcsq;
+    private boolean vertextTest(Vector3fc vertex, Vector3f center) {
+       return vertex.distanceSquared(center) > this.rcsq;
     }
 
     /**
      * Performs the edge-test described in [1]. Checks if the provided voxel's center is enclosed in the cylinder
      * around the line between vertex a and vertex b.
      *
-     * @param a First vertex that constitutes the line used to draw a cylinder around.
-     * @param b Second vertex that constitutes the line used to draw a cylinder around.
-     * @param voxel Voxel to be tested.
+     * @param a Position of the first vertex that constitutes the line used to draw a cylinder around.
+     * @param b Position of the second vertex that constitutes the line used to draw a cylinder around.
+     * @param center Center of the voxel to be tested; it is translated by -a as a side effect.
+     * @param line Vector used to store the line between a and b.
      * @return true if voxel's center is contained in cylinder, false otherwise.
      */
-    private boolean edgeTest(Mesh.Vertex a, Mesh.Vertex b, Pair<Vector3i,Vector3f> voxel) {
-        Vector3f line = (new Vector3f(b.getPosition())).sub(a.getPosition());
-        Vector3f pd = voxel.second.sub(a.getPosition());
+    private boolean edgeTest(Vector3fc a, Vector3fc b, Vector3f center, Vector3f line) {
+        line.set(b).sub(a);
+        Vector3f pd = center.sub(a);
 
         /* Calculate distance between a and b (Edge). */
-        float lsq = a.getPosition().distanceSquared(b.getPosition());
+        float lsq = a.distanceSquared(b);
         float dot = line.dot(pd);
 
         if (dot < 0.0f || dot > lsq) {
@@ -193,65 +267,29 @@ public class Voxelizer {
      * The original version of the test performs three addition checks with planes that go through the edges. These
      * tests are ommited because we only work on a reduced set of voxels that directly enclose the vertices in question.
      *
-     * @param a First vertex that spans the face.
-     * @param b Second vertex that spans the face.
-     * @param c Third vertex that spans the face.
-     * @param voxel Voxel to be tested.
+     * @param planenorm Normal of the plane spanned by the face.
+     * @param vcenter Center of the voxel to be tested.
+     * @param temp Vector used for intermediate results.
      * @return true if voxel's center is contained in the area, false otherwise.
      */
-    private boolean planeTest(Mesh.Vertex a, Mesh.Vertex b, Mesh.Vertex c, Pair<Vector3i,Vector3f> voxel) {
-        /* Retrieve center and corner of voxel. */
-        Vector3f vcenter = voxel.second;
-        Vector3f vcorner = (new Vector3f(this.rc, this.rc, this.rc)).add(vcenter);
-
-        /* Calculate the vectors spanning the plane of the facepolyon and its plane-normal. */
-        Vector3f ab = (new Vector3f(b.getPosition())).sub(a.getPosition());
-        Vector3f ac = (new Vector3f(c.getPosition())).sub(a.getPosition());
-        Vector3f planenorm = (new Vector3f(ab)).cross(ac);
+    private boolean planeTest(Vector3fc planenorm, Vector3f vcenter, Vector3f temp) {
+        /* Calculate the distance t for enclosing planes using the corner of the voxel. */
+        float t = (float)(this.rc* MathConstants.SQRT3*temp.set(this.rc, this.rc, this.rc).add(vcenter).angleCos(vcenter));
 
-        /* Calculate the distance t for enclosing planes. */
-        float t = (float)(this.rc* MathConstants.SQRT3*vcorner.angleCos(vcenter));
-
-        /* Derive new displaced plane normals. */
-        Vector3f planenorm_plus = new Vector3f(planenorm.x + t, planenorm.y + t, planenorm.z + t);
-        Vector3f planenorm_minus = new Vector3f(planenorm.x - t, planenorm.y - t, planenorm.z - t);
-
-        /* Check if the center is under the planenorm_plus and above the planenorm_minus. */
-        return planenorm_plus.dot(vcenter) < 0 && planenorm_minus.dot(vcenter) > 0;
+        /* Check if the center is under the plane displaced by +t and above the plane displaced by -t. */
+        return temp.set(planenorm.x() + t, planenorm.y() + t, planenorm.z() + t).dot(vcenter) < 0 && temp.set(planenorm.x() - t, planenorm.y() - t, planenorm.z() - t).dot(vcenter) > 0;
     }
 
     /**
-     * Calculates and returns the enclosing grid, i.e. a list of Voxels from the grid that enclose the list
-     * of provided vertices.
+     * Transforms a world-coordinate into the corresponding voxel index along one axis of the grid
+     * (see {@link VoxelGrid#coordinateToVoxel(Vector3fc)}).
      *
-     * @param vertices The Vertices for which an enclosing grid needs to be found.
-     * @param grid VoxelGrid to select voxels from.
-     * @return List of voxels that confine the provided vertices.
+     * @param coordinate Coordinate to be transformed.
+     * @param center Coordinate of the grid's center along the same axis.
+     * @param size Size of the grid along the same axis.
+     * @return Voxel index; not necessarily within the bounds of the grid.
      */
-    private List<Pair<Vector3i,Vector3f>> enclosingGrid(List<Mesh.Vertex> vertices, VoxelGrid grid) {
-        /* Calculate bounding box for provided vertices. */
-        ArrayList<Vector3fc> positions = new ArrayList<>(vertices.size());
-        for (Mesh.Vertex vertex : vertices) {
-            positions.add(vertex.getPosition());
-        }
-
-        float bounds[] = MeshMathUtil.bounds(positions);
-
-        /* Derive max and min voxel-indices from bounding-boxes. */
-        Vector3i max = grid.coordinateToVoxel(new Vector3f(bounds[0], bounds[2], bounds[4]));
-        Vector3i min = grid.coordinateToVoxel(new Vector3f(bounds[1], bounds[3], bounds[5]));
-
-        /* Initialize an empty ArrayList for the Voxel-Elements. */
-        List<Pair<Vector3i,Vector3f>> enclosing = new ArrayList<>((max.x-min.x) * (max.y-min.y) * (max.z-min.z));
-        for (int i = min.x; i <= max.x; i++) {
-            for (int j = min.y;j<= max.y; j++) {
-                for (int k = min.z; k <= max.z; k++) {
-                    enclosing.add(new Pair<>(new Vector3i(i,j,k), grid.getVoxelCenter(i,j,k)));
-                }
-            }
-        }
-
-        /* Return list of enclosing voxels. */
-        return enclosing;
+    private int coordinateToVoxel(float coordinate, float center, int size) {
+        return (int)Math.ceil((coordinate + center) / this.resolution + size/2);
     }
 }
@@ -8,6 +8,7 @@ import org.vitrivr.cineast.core.data.messages.result.MetadataQueryResult;
 import org.vitrivr.cineast.core.data.messages.result.ObjectQueryResult;
 import org.vitrivr.cineast.core.data.messages.result.QueryEnd;
 import org.vitrivr.cineast.core.data.messages.result.QueryError;
+import org.vitrivr.cineast.core.data.messages.result.QueryResultDelta;
 import org.vitrivr.cineast.core.data.messages.result.QueryStart;
 import org.vitrivr.cineast.core.data.messages.result.SegmentQueryResult;
 import org.vitrivr.cineast.core.data.messages.result.SimilarityQueryResult;
@@ -31,7 +32,7 @@ public enum MessageType {
     SESSION_START(StartSessionMessage.class),
 
     /* Query results. */
-    QR_START(QueryStart.class), QR_END(QueryEnd.class), QR_ERROR(QueryError.class), QR_OBJECT(ObjectQueryResult.class),  QR_METADATA(MetadataQueryResult.class), QR_SEGMENT(SegmentQueryResult.class), QR_SIMILARITY(SimilarityQueryResult.class);
+    QR_START(QueryStart.class), QR_END(QueryEnd.class), QR_ERROR(QueryError.class), QR_OBJECT(ObjectQueryResult.class),  QR_METADATA(MetadataQueryResult.class), QR_SEGMENT(SegmentQueryResult.class), QR_SIMILARITY(SimilarityQueryResult.class), QR_DELTA(QueryResultDelta.class);
 
     private Class<? extends Message> c;
 
@@ -24,16 +24,21 @@ public class MoreLikeThisQuery implements Message {
     /** List of feature categories that should be considered by the MLT query. */
     private String[] categories;
 
+    /** Whether provisional results should be streamed to the client while the query is running. */
+    private boolean streaming;
+
     /**
      * Constructor for the SimilarityQuery object.
      *
      * @param segmentId SegmentId.
      * @param categories List of named feature categories.
+     * @param streaming True if provisional results should be streamed, defaults to false.
      */
     @JsonCreator
-    public MoreLikeThisQuery(@JsonProperty("segmentId") String segmentId, @JsonProperty("categories") String[] categories) {
+    public MoreLikeThisQuery(@JsonProperty("segmentId") String segmentId, @JsonProperty("categories") String[] categories, @JsonProperty("streaming") Boolean streaming) {
         this.segmentId = segmentId;
         this.categories = categories;
+        this.streaming = streaming != null && streaming;
     }
 
     /**
@@ -58,6 +63,15 @@ public class MoreLikeThisQuery implements Message {
         }
     }
 
+    /**
+     * Getter for streaming.
+     *
+     * @return True if provisional results should be streamed to the client.
+     */
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+
     /**
      * Returns the type of particular message. Expressed as MessageTypes enum.
      *
@@ -55,11 +55,12 @@ public class QueryComponent {
         final HashMap<String, ArrayList<QueryContainer>> categoryMap = new HashMap<>();
         for (QueryComponent component : components) {
             for (QueryTerm term : component.getTerms()) {
+                /* The categories of a term share its container, so that they re-use the data it caches. */
+                QueryContainer container = term.toContainer();
                 for (String category : term.getCategories()) {
                     if (!categoryMap.containsKey(category)) {
                         categoryMap.put(category, new ArrayList<>());
                     }
-                    QueryContainer container = term.toContainer();
                     if (container != null) {
                       categoryMap.get(category).add(container);
                     }
@@ -25,16 +25,21 @@ public class SimilarityQuery implements Message {
     /** List of MediaTypes that should be considered when executing the query. */
     private MediaType[] types;
 
+    /** Whether provisional results should be streamed to the client while the query is running. */
+    private boolean streaming;
+
     /**
      * Constructor for the SimilarityQuery object.
      *
      * @param components List of query components.
      * @param types List of MediaTypes.
+     * @param streaming True if provisional results should be streamed, defaults to false.
      */
     @JsonCreator
-    public SimilarityQuery(@JsonProperty("containers") QueryComponent[] components, @JsonProperty("types") MediaType[] types) {
+    public SimilarityQuery(@JsonProperty("containers") QueryComponent[] components, @JsonProperty("types") MediaType[] types, @JsonProperty("streaming") Boolean streaming) {
         this.components = components;
         this.types = types;
+        this.streaming = streaming != null && streaming;
     }
 
     /**
@@ -50,6 +55,15 @@ public class SimilarityQuery implements Message {
         }
     }
 
+    /**
+     * Getter for streaming.
+     *
+     * @return True if provisional results should be streamed to the client.
+     */
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+
     /**
      * Returns the type of particular message. Expressed as MessageTypes enum.
      *
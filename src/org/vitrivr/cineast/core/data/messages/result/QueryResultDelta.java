@@ -0,0 +1,72 @@
+package org.vitrivr.cineast.core.data.messages.result;
+
+import java.util.List;
+
+import org.vitrivr.cineast.core.data.StringDoublePair;
+import org.vitrivr.cineast.core.data.messages.abstracts.AbstractQueryResultMessage;
+import org.vitrivr.cineast.core.data.messages.interfaces.MessageType;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * Provisional update of the top-k results of a category while a streaming query is still running.
+ * The content holds the segments which entered the top-k or whose score changed since the last
+ * update, removed lists the segments which dropped out of it. The final result of the category is
+ * still sent as {@link SimilarityQueryResult}.
+ */
+public class QueryResultDelta extends AbstractQueryResultMessage<StringDoublePair> {
+    /** Category the update belongs to. */
+    private final String category;
+
+    /** IDs of the segments which are no longer part of the provisional top-k. */
+    private final List<String> removed;
+
+    /** Number of retrievers which have finished when the update was created. */
+    private final int completed;
+
+    /** Total number of retrievers involved in the query. */
+    private final int total;
+
+    /**
+     *
+     * @param queryId ID of the query the update belongs to.
+     * @param category Category the update belongs to.
+     * @param content Segments which were added or changed their score.
+     * @param removed IDs of the segments which were removed.
+     * @param completed Number of finished retrievers.
+     * @param total Total number of retrievers.
+     */
+    @JsonCreator
+    public QueryResultDelta(String queryId, String category, List<StringDoublePair> content, List<String> removed, int completed, int total) {
+        super(queryId, content);
+        this.category = category;
+        this.removed = removed;
+        this.completed = completed;
+        this.total = total;
+    }
+
+    public String getCategory() {
+        return this.category;
+    }
+
+    public List<String> getRemoved() {
+        return this.removed;
+    }
+
+    public int getCompleted() {
+        return this.completed;
+    }
+
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    public MessageType getMessageType() {
+        return MessageType.QR_DELTA;
+    }
+}
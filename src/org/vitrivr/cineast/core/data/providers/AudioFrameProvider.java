@@ -41,9 +41,7 @@ public interface AudioFrameProvider {
         short[] samples = new short[this.getNumberOfSamples()];
         int idx = 0;
         for (AudioFrame frame : this.getAudioFrames()) {
-            for (int sample = 0; sample < frame.numberOfSamples(); sample++, idx++) {
-                samples[idx] = frame.getSampleAsShort(sample, channel);
-            }
+            idx += frame.copySamples(channel, samples, idx);
         }
         return samples;
     }
@@ -58,9 +56,7 @@ public interface AudioFrameProvider {
         double[] samples = new double[this.getNumberOfSamples()];
         int idx = 0;
         for (AudioFrame frame : this.getAudioFrames()) {
-            for (int sample = 0; sample < frame.numberOfSamples(); sample++, idx++) {
-                samples[idx] = frame.getSampleAsDouble(sample, channel);
-            }
+            idx += frame.copySamples(channel, samples, idx);
         }
         return samples;
     }
@@ -74,9 +70,7 @@ public interface AudioFrameProvider {
         short[] samples = new short[this.getNumberOfSamples()];
         int idx = 0;
         for (AudioFrame frame : this.getAudioFrames()) {
-            for (int sample = 0; sample < frame.numberOfSamples(); sample++, idx++) {
-                samples[idx] = frame.getMeanSampleAsShort(sample);
-            }
+            idx += frame.copyMeanSamples(samples, idx);
         }
         return samples;
     }
@@ -90,9 +84,7 @@ public interface AudioFrameProvider {
         double[] samples = new double[this.getNumberOfSamples()];
         int idx = 0;
         for (AudioFrame frame : this.getAudioFrames()) {
-            for (int sample = 0; sample < frame.numberOfSamples(); sample++, idx++) {
-                samples[idx] = frame.getMeanSampleAsDouble(sample);
-            }
+            idx += frame.copyMeanSamples(samples, idx);
         }
         return samples;
     }
@@ -33,7 +33,8 @@ public interface AudioSTFTProvider {
      * @param overlap Overlap in samples between two subsequent windows.
      * @param function WindowFunction to apply before calculating the STFT.
      *
-     * @return STFT of the current AudioSegment.
+     * @return STFT of the current AudioSegment. Implementations may return a shared, cached instance; callers that
+     * want to modify the STFT must do so on a {@link STFT#copy()}.
      */
     default STFT getSTFT(int windowsize, int overlap, int padding, WindowFunction function) {
         double[] data = new double[windowsize];
@@ -0,0 +1,36 @@
+package org.vitrivr.cineast.core.data.providers;
+
+import java.util.List;
+
+import org.vitrivr.cineast.core.data.MultiImage;
+import org.vitrivr.cineast.core.util.images.HOGHelper;
+import org.vitrivr.cineast.core.util.images.SURFHelper;
+
+import boofcv.factory.feature.dense.ConfigDenseHoG;
+import boofcv.struct.feature.BrightFeature;
+import boofcv.struct.feature.TupleDesc_F64;
+
+public interface DescriptorProvider {
+
+  /**
+   * Returns the SURF descriptors of one of the images of the segment.
+   *
+   * @param image Image for which to obtain the SURF descriptors.
+   * @return List of SURF descriptors. Implementations may return a shared, cached list, which must not be modified.
+   */
+  public default List<BrightFeature> getStableSurf(MultiImage image) {
+    return SURFHelper.getStableSurfDescriptors(image);
+  }
+
+  /**
+   * Returns the HOG descriptors of one of the images of the segment.
+   *
+   * @param image Image for which to obtain the HOG descriptors.
+   * @param config ConfigDenseHoG object that specifies the parameters for the HOG algorithm.
+   * @return List of HOG descriptors. Implementations may return a shared, cached list, which must not be modified.
+   */
+  public default List<TupleDesc_F64> getHOGDescriptors(MultiImage image, ConfigDenseHoG config) {
+    return HOGHelper.getHOGDescriptorList(image, config);
+  }
+
+}
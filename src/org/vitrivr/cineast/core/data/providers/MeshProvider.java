@@ -1,5 +1,9 @@
 package org.vitrivr.cineast.core.data.providers;
 
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+
 import org.vitrivr.cineast.core.data.m3d.Mesh;
 import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.data.m3d.WritableMesh;
@@ -55,4 +59,19 @@ public interface MeshProvider {
     default WritableMesh copyNormalizedMesh() {
         return new Mesh(this.getNormalizedMesh());
     }
+
+    /**
+     * Returns renderings of the KHL transformed 3D Mesh, as seen from the provided camera positions
+     * towards the origin. Defaults to an empty list, if the method hasn't been implemented.
+     *
+     * <strong>Important: </strong> The images returned by this method are potentially shared by
+     * different feature modules and Threads. They must not be modified!
+     *
+     * @param camerapositions Camera positions; the first three elements of each entry are used as x, y and z coordinates.
+     * @param size Width and height of the rendered images.
+     * @return List of images; one per camera position.
+     */
+    default List<BufferedImage> getNormalizedRenderings(double[][] camerapositions, int size) {
+        return Collections.emptyList();
+    }
 }
@@ -17,4 +17,19 @@ public interface VoxelGridProvider {
     default VoxelGrid getVoxelgrid() {
         return VoxelGrid.EMPTY;
     }
+
+    /**
+     * Returns a VoxelGrid of the KHL transformed 3D Mesh. Defaults to the empty VoxelGrid,
+     * if not implemented.
+     *
+     * <strong>Important: </strong> The instance of the VoxelGrid returned by this method is
+     * potentially shared by different feature modules and Threads. It must not be modified!
+     *
+     * @param resolution Size of a single voxel.
+     * @param size Number of voxels in each dimension.
+     * @return VoxelGrid
+     */
+    default VoxelGrid getNormalizedVoxelgrid(float resolution, int size) {
+        return VoxelGrid.EMPTY;
+    }
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import org.vitrivr.cineast.core.data.frames.AudioDescriptor;
 import org.vitrivr.cineast.core.data.frames.AudioFrame;
 import org.vitrivr.cineast.core.util.dsp.fft.STFT;
+import org.vitrivr.cineast.core.util.dsp.fft.STFTCache;
 import org.vitrivr.cineast.core.util.dsp.fft.windows.WindowFunction;
 
 /**
@@ -26,6 +27,9 @@ public class AudioQueryContainer extends QueryContainer {
     /** {@link AudioDescriptor} describing the properties of the underlying audio stream. */
     private AudioDescriptor descriptor;
 
+    /** STFTs of the audio that have been calculated so far. */
+    private final STFTCache stftCache = new STFTCache();
+
     /**
      * Returns a list of audio-frames contained in the AudioSegment. The
      * default implementation returns a list containing one, empty frame.
@@ -84,15 +88,13 @@ public class AudioQueryContainer extends QueryContainer {
      * @param padding Zero-padding before and after the actual sample data. Causes the window to contain (windowsize-2*padding) data-points..
      * @param function WindowFunction to apply before calculating the STFT.
      *
-     * @return STFT of the current AudioSegment.
+     * @return STFT of the current AudioSegment. The STFT is shared and must not be modified.
      */
     @Override
     public STFT getSTFT(int windowsize, int overlap, int padding, WindowFunction function) {
         if (2*padding >= windowsize) {
           throw new IllegalArgumentException("The combined padding must be smaller than the sample window.");
         }
-        STFT stft = new STFT(windowsize, overlap, padding, function, this.descriptor.getSamplingrate());
-        stft.forward(this.getMeanSamplesAsDouble());
-        return stft;
+        return this.stftCache.get(windowsize, overlap, padding, function, this.descriptor.getSamplingrate(), this::getMeanSamplesAsDouble);
     }
 }
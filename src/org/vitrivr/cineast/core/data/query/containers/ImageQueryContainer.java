@@ -9,7 +9,11 @@ import org.vitrivr.cineast.core.data.Pair;
 import org.vitrivr.cineast.core.data.frames.VideoDescriptor;
 import org.vitrivr.cineast.core.data.frames.VideoFrame;
 import org.vitrivr.cineast.core.decode.subtitle.SubtitleItem;
+import org.vitrivr.cineast.core.util.images.DescriptorCache;
 
+import boofcv.factory.feature.dense.ConfigDenseHoG;
+import boofcv.struct.feature.BrightFeature;
+import boofcv.struct.feature.TupleDesc_F64;
 import georegression.struct.point.Point2D_F32;
 
 public class ImageQueryContainer extends QueryContainer {
@@ -20,6 +24,7 @@ public class ImageQueryContainer extends QueryContainer {
 	private List<Pair<Integer, LinkedList<Point2D_F32>>> paths = new ArrayList<Pair<Integer, LinkedList<Point2D_F32>>>();
 	private List<Pair<Integer, LinkedList<Point2D_F32>>> bgPaths = new ArrayList<Pair<Integer, LinkedList<Point2D_F32>>>();
 	private float relativeStart = 0, relativeEnd = 0;
+	private final DescriptorCache descriptorCache = new DescriptorCache();
 	
 	
 	public ImageQueryContainer(MultiImage img){
@@ -45,6 +50,21 @@ public class ImageQueryContainer extends QueryContainer {
 		return this.videoFrame;
 	}
 
+	@Override
+	public List<BrightFeature> getStableSurf(MultiImage image) {
+		return this.descriptorCache.getStableSurf(image);
+	}
+
+	@Override
+	public List<TupleDesc_F64> getHOGDescriptors(MultiImage image, ConfigDenseHoG config) {
+		return this.descriptorCache.getHOGDescriptors(image, config);
+	}
+
+	@Override
+	public void release() {
+		this.descriptorCache.release();
+	}
+
 	@Override
 	public int getStart() {
 		return 0;
@@ -1,8 +1,14 @@
 package org.vitrivr.cineast.core.data.query.containers;
 
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+
 import org.vitrivr.cineast.core.data.MultiImage;
 import org.vitrivr.cineast.core.data.m3d.Mesh;
-import org.vitrivr.cineast.core.util.mesh.MeshTransformUtil;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
+import org.vitrivr.cineast.core.data.m3d.VoxelGrid;
+import org.vitrivr.cineast.core.util.mesh.MeshCache;
 
 /**
  * @author rgasser
@@ -11,11 +17,8 @@ import org.vitrivr.cineast.core.util.mesh.MeshTransformUtil;
  */
 public class ModelQueryContainer extends QueryContainer {
 
-    /** Original Mesh as transferred by the client. */
-    private final Mesh mesh;
-
-    /** KHL transformed version of the original Mesh. */
-    private final Mesh normalizedMesh;
+    /** Original Mesh as transferred by the client and the data derived from it; null for Query-by-2D-Sketch. */
+    private final MeshCache cache;
 
     /** Image containing a 2D sketch of the 3D model in question. */
     private final MultiImage image;
@@ -26,9 +29,8 @@ public class ModelQueryContainer extends QueryContainer {
      *
      * @param mesh Mesh for which to create a ModelQueryContainer.
      */
-    public ModelQueryContainer(Mesh mesh) {
-        this.mesh = new Mesh(mesh);
-        this.normalizedMesh = MeshTransformUtil.khlTransform(mesh, 1.0f);
+    public ModelQueryContainer(ReadableMesh mesh) {
+        this.cache = new MeshCache(mesh);
         this.image = MultiImage.EMPTY_MULTIIMAGE;
     }
 
@@ -40,18 +42,34 @@ public class ModelQueryContainer extends QueryContainer {
      */
     public ModelQueryContainer(MultiImage image) {
         this.image = image;
-        this.mesh = Mesh.EMPTY;
-        this.normalizedMesh = Mesh.EMPTY;
+        this.cache = null;
+    }
+
+    @Override
+    public ReadableMesh getMesh() {
+        return this.cache != null ? this.cache.getMesh() : Mesh.EMPTY;
+    }
+
+    @Override
+    public ReadableMesh getNormalizedMesh() {
+        return this.cache != null ? this.cache.getNormalizedMesh() : Mesh.EMPTY;
+    }
+
+    @Override
+    public VoxelGrid getNormalizedVoxelgrid(float resolution, int size) {
+        return this.cache != null ? this.cache.getNormalizedVoxelgrid(resolution, size) : VoxelGrid.EMPTY;
     }
 
     @Override
-    public Mesh getMesh() {
-        return this.mesh;
+    public List<BufferedImage> getNormalizedRenderings(double[][] camerapositions, int size) {
+        return this.cache != null ? this.cache.getNormalizedRenderings(camerapositions, size) : Collections.emptyList();
     }
 
     @Override
-    public Mesh getNormalizedMesh() {
-        return this.normalizedMesh;
+    public void release() {
+        if (this.cache != null) {
+            this.cache.release();
+        }
     }
 
     @Override
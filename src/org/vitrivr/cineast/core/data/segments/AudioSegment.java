@@ -7,6 +7,8 @@ import java.util.List;
 import org.vitrivr.cineast.core.data.frames.AudioDescriptor;
 import org.vitrivr.cineast.core.data.frames.AudioFrame;
 import org.vitrivr.cineast.core.util.dsp.fft.STFT;
+import org.vitrivr.cineast.core.util.dsp.fft.STFTCache;
+import org.vitrivr.cineast.core.util.dsp.fft.STFTStream;
 import org.vitrivr.cineast.core.util.dsp.fft.windows.WindowFunction;
 
 /**
@@ -45,6 +47,9 @@ public class AudioSegment implements SegmentContainer {
      */
     private AudioDescriptor descriptor;
 
+    /** STFTs of this AudioSegment that have been calculated so far. */
+    private final STFTCache stftCache = new STFTCache();
+
     /**
      * @return a unique id of this
      */
@@ -110,10 +115,23 @@ public class AudioSegment implements SegmentContainer {
         this.totalSamples += frame.numberOfSamples();
         this.totalDuration += frame.getDuration();
         this.frames.add(frame);
+        this.stftCache.invalidate();
 
         return true;
     }
 
+    /**
+     * Declares this AudioSegment to be a part of a continuous audio stream, e.g. one of several overlapping
+     * segments of a longer recording. STFT windows this AudioSegment shares with other segments of the same
+     * stream are then only calculated once.
+     *
+     * @param stream STFTStream of the recording.
+     * @param position Position of the first sample of this AudioSegment within the recording.
+     */
+    public void setStream(STFTStream stream, long position) {
+        this.stftCache.attach(stream, position);
+    }
+
     /**
      * Getter for the total number of samples in the AudioSegment.
      *
@@ -217,15 +235,13 @@ public class AudioSegment implements SegmentContainer {
      * @param padding Zero-padding before and after the actual sample data. Causes the window to contain (windowsize-2*padding) data-points..
      * @param function WindowFunction to apply before calculating the STFT.
      *
-     * @return STFT of the current AudioSegment or null if the segment is empty.
+     * @return STFT of the current AudioSegment or null if the segment is empty. The STFT is shared and must not be modified.
      */
     @Override
     public STFT getSTFT(int windowsize, int overlap, int padding, WindowFunction function) {
         if (2*padding >= windowsize) {
           throw new IllegalArgumentException("The combined padding must be smaller than the sample window.");
         }
-        STFT stft = new STFT(windowsize, overlap, padding, function, this.descriptor.getSamplingrate());
-        stft.forward(this.getMeanSamplesAsDouble());
-        return stft;
+        return this.stftCache.get(windowsize, overlap, padding, function, this.descriptor.getSamplingrate(), this::getMeanSamplesAsDouble);
     }
 }
@@ -8,6 +8,11 @@ import org.vitrivr.cineast.core.data.MultiImage;
 import org.vitrivr.cineast.core.data.MultiImageFactory;
 import org.vitrivr.cineast.core.data.frames.VideoDescriptor;
 import org.vitrivr.cineast.core.data.frames.VideoFrame;
+import org.vitrivr.cineast.core.util.images.DescriptorCache;
+
+import boofcv.factory.feature.dense.ConfigDenseHoG;
+import boofcv.struct.feature.BrightFeature;
+import boofcv.struct.feature.TupleDesc_F64;
 
 /**
  * @author rgasser
@@ -24,6 +29,9 @@ public class ImageSegment implements SegmentContainer {
 
     private String objectId;
 
+    /** Local feature descriptors of the image that have been calculated so far. */
+    private final DescriptorCache descriptorCache = new DescriptorCache();
+
     /**
      *
      * @param image
@@ -104,4 +112,29 @@ public class ImageSegment implements SegmentContainer {
     public VideoFrame getMostRepresentativeFrame() {
         return this.videoFrame;
     }
+
+    /**
+     * Returns the SURF descriptors of the image. The list is shared and must not be modified.
+     *
+     * @return
+     */
+    @Override
+    public List<BrightFeature> getStableSurf(MultiImage image) {
+        return this.descriptorCache.getStableSurf(image);
+    }
+
+    /**
+     * Returns the HOG descriptors of the image. The list is shared and must not be modified.
+     *
+     * @return
+     */
+    @Override
+    public List<TupleDesc_F64> getHOGDescriptors(MultiImage image, ConfigDenseHoG config) {
+        return this.descriptorCache.getHOGDescriptors(image, config);
+    }
+
+    @Override
+    public void release() {
+        this.descriptorCache.release();
+    }
 }
@@ -1,11 +1,12 @@
 package org.vitrivr.cineast.core.data.segments;
 
-import org.vitrivr.cineast.core.data.m3d.Mesh;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
 import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.data.m3d.VoxelGrid;
 import org.vitrivr.cineast.core.data.m3d.Voxelizer;
-import org.vitrivr.cineast.core.data.m3d.WritableMesh;
-import org.vitrivr.cineast.core.util.mesh.MeshTransformUtil;
+import org.vitrivr.cineast.core.util.mesh.MeshCache;
 
 /**
  * @author rgasser
@@ -23,11 +24,11 @@ public class Model3DSegment implements SegmentContainer {
     /** ID of the multimedia object this AudioSegment belongs to. */
     private String objectId;
 
-    /** The original 3D Mesh as extracted from a model file. */
-    private final Mesh mesh;
-
-    /** The KHL transformed version of the original Mesh. */
-    private final Mesh normalizedMesh;
+    /**
+     * Holds the original 3D Mesh as extracted from a model file and caches the KHL transformed version
+     * as well as the VoxelGrids and renderings derived from it, so that they can be shared by all extractors.
+     */
+    private final MeshCache cache;
 
     /** The 3D VoxelGrid associated with the Model3DSegment. This grid is created lazily. */
     private final Object gridLock = new Object();
@@ -38,9 +39,8 @@ public class Model3DSegment implements SegmentContainer {
      *
      * @param mesh 3D Mesh associated with the segment.
      */
-    public Model3DSegment(Mesh mesh) {
-        this.mesh = new Mesh(mesh);
-        this.normalizedMesh = MeshTransformUtil.khlTransform(mesh, 1.0f);
+    public Model3DSegment(ReadableMesh mesh) {
+        this.cache = new MeshCache(mesh);
     }
 
     /**
@@ -84,7 +84,7 @@ public class Model3DSegment implements SegmentContainer {
      */
     @Override
     public final ReadableMesh getMesh() {
-        return this.mesh;
+        return this.cache.getMesh();
     }
 
     /**
@@ -92,8 +92,40 @@ public class Model3DSegment implements SegmentContainer {
      * @return
      */
     @Override
-    public final WritableMesh getNormalizedMesh() {
-        return this.normalizedMesh;
+    public final ReadableMesh getNormalizedMesh() {
+        return this.cache.getNormalizedMesh();
+    }
+
+    /**
+     * Returns a VoxelGrid of the KHL transformed Mesh. The grid is cached by resolution and size.
+     *
+     * @param resolution Size of a single voxel.
+     * @param size Number of voxels in each dimension.
+     * @return VoxelGrid
+     */
+    @Override
+    public final VoxelGrid getNormalizedVoxelgrid(float resolution, int size) {
+        return this.cache.getNormalizedVoxelgrid(resolution, size);
+    }
+
+    /**
+     * Returns renderings of the KHL transformed Mesh. The images are cached by size and camera position.
+     *
+     * @param camerapositions Camera positions; the first three elements of each entry are used as x, y and z coordinates.
+     * @param size Width and height of the rendered images.
+     * @return List of images; one per camera position.
+     */
+    @Override
+    public final List<BufferedImage> getNormalizedRenderings(double[][] camerapositions, int size) {
+        return this.cache.getNormalizedRenderings(camerapositions, size);
+    }
+
+    /**
+     * Releases the cached VoxelGrids and renderings once the segment has been processed by all extractors.
+     */
+    @Override
+    public void release() {
+        this.cache.release();
     }
 
 
@@ -106,7 +138,7 @@ public class Model3DSegment implements SegmentContainer {
     public final VoxelGrid getGrid() {
         synchronized (this.gridLock) {
             if (this.grid == null) {
-                this.grid = DEFAULT_VOXELIZER.voxelize(this.mesh);
+                this.grid = DEFAULT_VOXELIZER.voxelize(this.cache.getMesh());
             }
         }
         return this.grid;
@@ -3,6 +3,7 @@ package org.vitrivr.cineast.core.data.segments;
 import org.vitrivr.cineast.core.data.providers.AudioFrameProvider;
 import org.vitrivr.cineast.core.data.providers.AudioSTFTProvider;
 import org.vitrivr.cineast.core.data.providers.AvgImgProvider;
+import org.vitrivr.cineast.core.data.providers.DescriptorProvider;
 import org.vitrivr.cineast.core.data.providers.DurationProvider;
 import org.vitrivr.cineast.core.data.providers.FrameListProvider;
 import org.vitrivr.cineast.core.data.providers.IdProvider;
@@ -17,5 +18,13 @@ import org.vitrivr.cineast.core.data.providers.TagProvider;
 import org.vitrivr.cineast.core.data.providers.TextProvider;
 import org.vitrivr.cineast.core.data.providers.VoxelGridProvider;
 
-public interface SegmentContainer extends IdProvider, AvgImgProvider, DurationProvider, MedianImgProvider, MostRepresentativeFrameProvider, SubtitleItemProvider, PathProvider, TagProvider, FrameListProvider, AudioFrameProvider, AudioSTFTProvider, MeshProvider, VoxelGridProvider, LocationProvider, InstantProvider, TextProvider {
+public interface SegmentContainer extends IdProvider, AvgImgProvider, DurationProvider, MedianImgProvider, MostRepresentativeFrameProvider, SubtitleItemProvider, PathProvider, TagProvider, FrameListProvider, AudioFrameProvider, AudioSTFTProvider, MeshProvider, VoxelGridProvider, LocationProvider, InstantProvider, TextProvider, DescriptorProvider {
+
+    /**
+     * Releases the data cached by the SegmentContainer. Invoked by the ExtractionPipeline once all
+     * extractors have processed the segment and by the callers of the ContinuousQueryDispatcher once
+     * the query has been retrieved for all categories. The SegmentContainer remains usable but has to
+     * re-create the data.
+     */
+    default void release() {}
 }
@@ -20,8 +20,13 @@ import org.vitrivr.cineast.core.descriptor.MedianImg;
 import org.vitrivr.cineast.core.descriptor.MostRepresentative;
 import org.vitrivr.cineast.core.descriptor.PathList;
 import org.vitrivr.cineast.core.util.dsp.fft.STFT;
+import org.vitrivr.cineast.core.util.dsp.fft.STFTCache;
 import org.vitrivr.cineast.core.util.dsp.fft.windows.WindowFunction;
+import org.vitrivr.cineast.core.util.images.DescriptorCache;
 
+import boofcv.factory.feature.dense.ConfigDenseHoG;
+import boofcv.struct.feature.BrightFeature;
+import boofcv.struct.feature.TupleDesc_F64;
 import boofcv.struct.geo.AssociatedPair;
 import georegression.struct.point.Point2D_F32;
 
@@ -53,6 +58,12 @@ public class VideoSegment implements SegmentContainer {
 	/** VideoDescriptor for the video stream in this VideoSegment. */
 	private VideoDescriptor videoDescriptor = null;
 
+	/** STFTs of the audio in this VideoSegment that have been calculated so far. */
+	private final STFTCache stftCache = new STFTCache();
+
+	/** Local feature descriptors of the images of this VideoSegment that have been calculated so far. */
+	private final DescriptorCache descriptorCache = new DescriptorCache();
+
 	/**
 	 *
 	 */
@@ -140,6 +151,7 @@ public class VideoSegment implements SegmentContainer {
         this.totalSamples += frame.numberOfSamples();
         this.totalAudioDuration += frame.getDuration();
         this.audioFrames.add(frame);
+        this.stftCache.invalidate();
 
         return true;
     }
@@ -192,18 +204,37 @@ public class VideoSegment implements SegmentContainer {
 	 * @param padding Zero-padding before and after the actual sample data. Causes the window to contain (windowsize-2*padding) data-points..
 	 * @param function WindowFunction to apply before calculating the STFT.
      *
-     * @return STFT of the audio in the current VideoSegment or null if the segment has no audio.
+     * @return STFT of the audio in the current VideoSegment or null if the segment has no audio. The STFT is shared and must not be modified.
      */
     @Override
     public STFT getSTFT(int windowsize, int overlap, int padding, WindowFunction function) {
 		if (2*padding >= windowsize) {
       throw new IllegalArgumentException("The combined padding must be smaller than the sample window.");
     }
-		STFT stft = new STFT(windowsize, overlap, padding, function, this.audioDescriptor.getSamplingrate());
-		stft.forward(this.getMeanSamplesAsDouble());
-		return stft;
+		return this.stftCache.get(windowsize, overlap, padding, function, this.audioDescriptor.getSamplingrate(), this::getMeanSamplesAsDouble);
     }
 
+	/**
+	 * @return SURF descriptors of the provided image. The list is shared and must not be modified.
+	 */
+	@Override
+	public List<BrightFeature> getStableSurf(MultiImage image) {
+		return this.descriptorCache.getStableSurf(image);
+	}
+
+	/**
+	 * @return HOG descriptors of the provided image. The list is shared and must not be modified.
+	 */
+	@Override
+	public List<TupleDesc_F64> getHOGDescriptors(MultiImage image, ConfigDenseHoG config) {
+		return this.descriptorCache.getHOGDescriptors(image, config);
+	}
+
+	@Override
+	public void release() {
+		this.descriptorCache.release();
+	}
+
 	public void addSubtitleItem(SubtitleItem si){
 		this.subItems.add(si);
 	}
@@ -233,28 +264,29 @@ public class VideoSegment implements SegmentContainer {
 	private Object getPathsLock = new Object();
 	@Override
   public List<Pair<Integer, LinkedList<Point2D_F32>>> getPaths() {
-		synchronized (getPathsLock) {
-			if(this.paths == null){
-				this.allPaths = PathList.getDensePaths(videoFrames);
-				this.paths = new ArrayList<Pair<Integer, LinkedList<Point2D_F32>>>();
-				this.bgPaths = new ArrayList<Pair<Integer, LinkedList<Point2D_F32>>>();
-				PathList.separateFgBgPaths(videoFrames, this.allPaths, this.paths, this.bgPaths);
-			}
-		}
+		this.computePaths();
 		return this.paths;
 	}
 	
 	@Override
   public List<Pair<Integer, LinkedList<Point2D_F32>>> getBgPaths() {
+		this.computePaths();
+		return this.bgPaths;
+	}
+
+	/**
+	 * Tracks the foreground and background paths of the segment, unless this has been done before. Usually invoked
+	 * by the path stage of the ExtractionPipeline before any of the motion extractors runs.
+	 */
+	private void computePaths() {
 		synchronized (getPathsLock) {
-			if(this.bgPaths == null){
+			if(this.paths == null){
 				this.allPaths = PathList.getDensePaths(videoFrames);
 				this.paths = new ArrayList<Pair<Integer, LinkedList<Point2D_F32>>>();
 				this.bgPaths = new ArrayList<Pair<Integer, LinkedList<Point2D_F32>>>();
 				PathList.separateFgBgPaths(videoFrames, this.allPaths, this.paths, this.bgPaths);
 			}
 		}
-		return this.bgPaths;
 	}
 
     /**
@@ -269,6 +301,8 @@ public class VideoSegment implements SegmentContainer {
 		subItems.clear();
 		this.videoFrames = null;
 		this.audioFrames = null;
+		this.stftCache.invalidate();
+		this.descriptorCache.release();
 		if(avgImg != null){
 			this.avgImg.clear();
 			this.avgImg = null;
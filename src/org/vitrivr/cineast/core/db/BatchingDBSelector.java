@@ -0,0 +1,142 @@
+package org.vitrivr.cineast.core.db;
+
+import java.util.List;
+import java.util.Map;
+
+import org.vitrivr.cineast.core.config.ReadableQueryConfig;
+import org.vitrivr.cineast.core.data.distance.DistanceElement;
+import org.vitrivr.cineast.core.data.providers.primitive.PrimitiveTypeProvider;
+
+/**
+ * {@link DBSelector} which combines concurrent kNN queries on the same entity into batched queries.
+ * Calls to {@link #getNearestNeighbours(int, float[], String, Class, ReadableQueryConfig)} wait up
+ * to a configurable time window for further queries from other threads and are then executed
+ * together using {@link DBSelector#getBatchedNearestNeighbourLists(int, List, String, Class, List)}
+ * of the wrapped selector. All other calls are passed through.
+ */
+public class BatchingDBSelector implements DBSelector {
+
+  private final DBSelector selector;
+  private final long window;
+  private final int maxBatchSize;
+  private String entityName;
+
+  /**
+   * @param selector the selector which executes the queries
+   * @param window time in milliseconds a query waits for further queries to batch with
+   * @param maxBatchSize maximum number of queries per batch
+   */
+  public BatchingDBSelector(DBSelector selector, long window, int maxBatchSize) {
+    if (selector == null) {
+      throw new NullPointerException("selector cannot be null");
+    }
+    this.selector = selector;
+    this.window = window;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+  }
+
+  /**
+   * @return the selector which executes the queries, e.g. to access functionality specific to its
+   * storage engine
+   */
+  public DBSelector unwrap() {
+    return this.selector;
+  }
+
+  @Override
+  public boolean open(String name) {
+    this.entityName = name;
+    return this.selector.open(name);
+  }
+
+  @Override
+  public boolean close() {
+    return this.selector.close();
+  }
+
+  @Override
+  public <T extends DistanceElement> List<T> getNearestNeighbours(int k, float[] vector,
+      String column, Class<T> distanceElementClass, ReadableQueryConfig config) {
+    if (this.window <= 0 || this.maxBatchSize == 1) {
+      return this.selector.getNearestNeighbours(k, vector, column, distanceElementClass, config);
+    }
+    return NearestNeighbourBatcher.get(this.entityName, column, distanceElementClass)
+        .submit(this.selector, k, vector, config, this.window, this.maxBatchSize);
+  }
+
+  @Override
+  public <T extends DistanceElement> List<T> getBatchedNearestNeighbours(int k,
+      List<float[]> vectors, String column, Class<T> distanceElementClass,
+      List<ReadableQueryConfig> configs) {
+    return this.selector.getBatchedNearestNeighbours(k, vectors, column, distanceElementClass,
+        configs);
+  }
+
+  @Override
+  public <T extends DistanceElement> List<List<T>> getBatchedNearestNeighbourLists(int k,
+      List<float[]> vectors, String column, Class<T> distanceElementClass,
+      List<ReadableQueryConfig> configs) {
+    return this.selector.getBatchedNearestNeighbourLists(k, vectors, column, distanceElementClass,
+        configs);
+  }
+
+  @Override
+  public <T extends DistanceElement> List<T> getCombinedNearestNeighbours(int k,
+      List<float[]> vectors, String column, Class<T> distanceElementClass,
+      List<ReadableQueryConfig> configs, MergeOperation merge, Map<String, String> options) {
+    return this.selector.getCombinedNearestNeighbours(k, vectors, column, distanceElementClass,
+        configs, merge, options);
+  }
+
+  @Override
+  public List<Map<String, PrimitiveTypeProvider>> getNearestNeighbourRows(int k, float[] vector,
+      String column, ReadableQueryConfig config) {
+    return this.selector.getNearestNeighbourRows(k, vector, column, config);
+  }
+
+  @Override
+  public List<float[]> getFeatureVectors(String fieldName, String value, String vectorName) {
+    return this.selector.getFeatureVectors(fieldName, value, vectorName);
+  }
+
+  @Override
+  public List<Map<String, PrimitiveTypeProvider>> getRows(String fieldName, String value) {
+    return this.selector.getRows(fieldName, value);
+  }
+
+  @Override
+  public List<Map<String, PrimitiveTypeProvider>> getRows(String fieldName, String... values) {
+    return this.selector.getRows(fieldName, values);
+  }
+
+  @Override
+  public List<Map<String, PrimitiveTypeProvider>> getRows(String fieldName,
+      Iterable<String> values) {
+    return this.selector.getRows(fieldName, values);
+  }
+
+  @Override
+  public List<PrimitiveTypeProvider> getAll(String column) {
+    return this.selector.getAll(column);
+  }
+
+  @Override
+  public List<Map<String, PrimitiveTypeProvider>> getAll() {
+    return this.selector.getAll();
+  }
+
+  @Override
+  public long count() {
+    return this.selector.count();
+  }
+
+  @Override
+  public boolean existsEntity(String name) {
+    return this.selector.existsEntity(name);
+  }
+
+  @Override
+  public List<Map<String, PrimitiveTypeProvider>> preview(int k) {
+    return this.selector.preview(k);
+  }
+}
@@ -1,5 +1,6 @@
 package org.vitrivr.cineast.core.db;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,33 @@ public interface DBSelector {
   <T extends DistanceElement> List<T> getNearestNeighbours(int k, float[] vector, String column,
       Class<T> distanceElementClass, ReadableQueryConfig config);
 
+  /**
+   * Returns a page of the nearest neighbours of the given {@code vector}, i.e. the elements at ranks
+   * {@code offset} (inclusive) to {@code offset + limit} (exclusive) of the kNN result. The default
+   * implementation fetches the first {@code offset + limit} elements and drops the first
+   * {@code offset}; selectors whose storage engine supports offsets should override it.
+   *
+   * @param offset number of nearest neighbours to skip
+   * @param limit maximum number of results
+   * @param vector query vector
+   * @param column feature column to do the search
+   * @param distanceElementClass class of the {@link DistanceElement} type
+   * @param config query config
+   * @param <T> type of the {@link DistanceElement}
+   * @return a list of elements with their distance
+   */
+  default <T extends DistanceElement> List<T> getNearestNeighbourPage(int offset, int limit, float[] vector, String column,
+      Class<T> distanceElementClass, ReadableQueryConfig config) {
+    List<T> results = this.getNearestNeighbours(offset + limit, vector, column, distanceElementClass, config);
+    if (offset <= 0) {
+      return results;
+    }
+    if (offset >= results.size()) {
+      return new ArrayList<>(0);
+    }
+    return new ArrayList<>(results.subList(offset, results.size()));
+  }
+
   /**
    * Performs a batched kNN-search with multiple query vectors. That is, the storage engine is tasked to perform the kNN search for each vector
    * in the provided list and returns the union of the results for every query.
@@ -44,6 +72,30 @@ public interface DBSelector {
    */
   <T extends DistanceElement> List<T> getBatchedNearestNeighbours(int k, List<float[]> vectors, String column, Class<T> distanceElementClass, List<ReadableQueryConfig> configs);
 
+  /**
+   * Performs a batched kNN-search with multiple query vectors like {@link #getBatchedNearestNeighbours(int, List, String, Class, List)}
+   * but keeps the results of the individual queries apart. The default implementation executes one kNN-search per vector;
+   * selectors whose storage engine supports batched queries should override it.
+   *
+   * @param k The number k vectors to return per query.
+   * @param vectors The list of vectors to use.
+   * @param column The column to perform the kNN search on.
+   * @param distanceElementClass class of the {@link DistanceElement} type
+   * @param configs The query configuration, which may contain distance definitions or query-hints.
+   * @param <T> The type T of the resulting <T> type of the {@link DistanceElement}.
+   * @return One list of results per query vector, in the order of the vectors.
+   */
+  default <T extends DistanceElement> List<List<T>> getBatchedNearestNeighbourLists(int k, List<float[]> vectors, String column, Class<T> distanceElementClass, List<ReadableQueryConfig> configs) {
+    if (vectors.size() > configs.size()) {
+      throw new IllegalArgumentException("You must provide a separate QueryConfig entry for each vector - even if it is the same instance of the QueryConfig.");
+    }
+    List<List<T>> results = new ArrayList<>(vectors.size());
+    for (int i = 0; i < vectors.size(); ++i) {
+      results.add(this.getNearestNeighbours(k, vectors.get(i), column, distanceElementClass, configs.get(i)));
+    }
+    return results;
+  }
+
   /**
    * Performs a combined kNN-search with multiple query vectors. That is, the storage engine is tasked to perform the kNN search for each vector and then
    * merge the partial result sets pairwise using the desired MergeOperation.
@@ -97,6 +149,16 @@ public interface DBSelector {
    */
   List<Map<String, PrimitiveTypeProvider>> getAll();
 
+  /**
+   * Returns the number of rows in the opened entity. The default implementation returns -1;
+   * selectors whose storage engine can count the rows without reading them should override it.
+   *
+   * @return number of rows or a negative value if it is unknown
+   */
+  default long count() {
+    return -1;
+  }
+
   boolean existsEntity(String name);
 
   /**
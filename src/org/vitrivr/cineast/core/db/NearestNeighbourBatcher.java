@@ -0,0 +1,168 @@
+package org.vitrivr.cineast.core.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.vitrivr.cineast.core.config.ReadableQueryConfig;
+import org.vitrivr.cineast.core.data.distance.DistanceElement;
+import org.vitrivr.cineast.core.util.LogHelper;
+
+/**
+ * Collects kNN requests on the same entity and column which arrive within a short time window and
+ * executes them as a single batched query. The first request of a window becomes the leader: it
+ * waits until the window has passed or the batch is full, executes the batch using its own
+ * {@link DBSelector} and hands the individual results to the waiting requests.
+ */
+final class NearestNeighbourBatcher {
+
+  private static final Logger LOGGER = LogManager.getLogger();
+
+  private static final ConcurrentHashMap<String, NearestNeighbourBatcher> BATCHERS = new ConcurrentHashMap<>();
+
+  private final String column;
+  private final Class<? extends DistanceElement> distanceElementClass;
+  private List<Request> pending = null;
+
+  private NearestNeighbourBatcher(String column,
+      Class<? extends DistanceElement> distanceElementClass) {
+    this.column = column;
+    this.distanceElementClass = distanceElementClass;
+  }
+
+  /**
+   * Returns the batcher shared by all requests for the given entity, column and result type.
+   */
+  static NearestNeighbourBatcher get(String entity, String column,
+      Class<? extends DistanceElement> distanceElementClass) {
+    String key = entity + '/' + column + '/' + distanceElementClass.getName();
+    return BATCHERS.computeIfAbsent(key, k -> new NearestNeighbourBatcher(column, distanceElementClass));
+  }
+
+  /**
+   * Adds a kNN request to the current batch and blocks until its results are available.
+   *
+   * @param selector the selector used to execute the batch if this request becomes its leader
+   * @param k maximum number of results
+   * @param vector query vector
+   * @param config query config
+   * @param window time in milliseconds the leader waits for further requests
+   * @param maxBatchSize number of requests after which a batch is executed without waiting
+   */
+  @SuppressWarnings("unchecked")
+  <T extends DistanceElement> List<T> submit(DBSelector selector, int k, float[] vector,
+      ReadableQueryConfig config, long window, int maxBatchSize) {
+    Request request = new Request(k, vector, config);
+    List<Request> batch;
+    synchronized (this) {
+      if (this.pending != null) {
+        this.pending.add(request);
+        if (this.pending.size() >= maxBatchSize) {
+          this.notifyAll();
+        }
+        batch = null;
+      } else {
+        batch = new ArrayList<>(maxBatchSize);
+        batch.add(request);
+        this.pending = batch;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(window);
+        long remaining;
+        while (batch.size() < maxBatchSize
+            && (remaining = deadline - System.nanoTime()) > 0) {
+          try {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+        this.pending = null;
+      }
+    }
+
+    if (batch != null) {
+      execute(selector, batch);
+    }
+    return (List<T>) request.await();
+  }
+
+  private void execute(DBSelector selector, List<Request> batch) {
+    try {
+      if (batch.size() == 1) {
+        Request request = batch.get(0);
+        request.complete(selector.getNearestNeighbours(request.k, request.vector, this.column,
+            this.distanceElementClass, request.config));
+        return;
+      }
+
+      int k = 0;
+      List<float[]> vectors = new ArrayList<>(batch.size());
+      List<ReadableQueryConfig> configs = new ArrayList<>(batch.size());
+      for (Request request : batch) {
+        k = Math.max(k, request.k);
+        vectors.add(request.vector);
+        configs.add(request.config);
+      }
+
+      List<? extends List<? extends DistanceElement>> results = selector
+          .getBatchedNearestNeighbourLists(k, vectors, this.column, this.distanceElementClass, configs);
+      for (int i = 0; i < batch.size(); ++i) {
+        Request request = batch.get(i);
+        List<? extends DistanceElement> result = i < results.size() ? results.get(i) : new ArrayList<>(0);
+        if (result.size() > request.k) {
+          result = new ArrayList<>(result.subList(0, request.k));
+        }
+        request.complete(result);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("batched kNN query on column {} failed: {}", this.column, LogHelper.getStackTrace(e));
+    } finally {
+      /* Make sure no request waits forever. */
+      for (Request request : batch) {
+        request.complete(new ArrayList<>(0));
+      }
+    }
+  }
+
+  private static final class Request {
+
+    private final int k;
+    private final float[] vector;
+    private final ReadableQueryConfig config;
+    private List<? extends DistanceElement> result = null;
+
+    Request(int k, float[] vector, ReadableQueryConfig config) {
+      this.k = k;
+      this.vector = vector;
+      this.config = config;
+    }
+
+    /**
+     * Sets the result unless it has been set before.
+     */
+    synchronized void complete(List<? extends DistanceElement> result) {
+      if (this.result == null) {
+        this.result = result;
+        this.notifyAll();
+      }
+    }
+
+    synchronized List<? extends DistanceElement> await() {
+      boolean interrupted = false;
+      while (this.result == null) {
+        try {
+          this.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      return this.result;
+    }
+  }
+}
@@ -0,0 +1,337 @@
+package org.vitrivr.cineast.core.db.adampro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.vitrivr.adampro.grpc.AdamGrpc.AckMessage;
+import org.vitrivr.adampro.grpc.AdamGrpc.InsertMessage;
+import org.vitrivr.adampro.grpc.AdamGrpc.InsertMessage.TupleInsertMessage;
+import org.vitrivr.cineast.core.config.DatabaseConfig;
+import org.vitrivr.cineast.core.util.LogHelper;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Asynchronous write path to ADAMpro. Tuples handed to {@link #insert(String, List)} are coalesced
+ * per entity into {@link InsertMessage}s which are bounded both in number of tuples and in size.
+ * Complete messages are sent without waiting for the acknowledgement, while the number of inserts
+ * in flight is bounded to apply back-pressure to the producers. Partially filled messages are sent
+ * after a short linger time or when the entity is flushed explicitly. Failed inserts are retried
+ * a configurable number of times before they are reported to the registered
+ * {@link InsertFailureListener}s.
+ *
+ * Writers obtain a shared pipeline for their {@link DatabaseConfig} through
+ * {@link #forConfig(DatabaseConfig)}; shared pipelines are closed, i.e. drained, when the JVM shuts
+ * down.
+ */
+public class ADAMproInsertPipeline implements AutoCloseable {
+
+  private static final Logger LOGGER = LogManager.getLogger();
+
+  /** Maximum size in bytes of a single InsertMessage, below the maximum message size of the channel. */
+  private static final int MAX_MESSAGE_BYTES = 8_000_000;
+
+  /** Time in milliseconds a partially filled message may wait for further tuples. */
+  private static final long LINGER = 200;
+
+  /** Base delay in milliseconds before a failed insert is retried, multiplied by the attempt. */
+  private static final long RETRY_BACKOFF = 500;
+
+  /**
+   * Callback which is informed about inserts that could not be completed after all retries.
+   */
+  @FunctionalInterface
+  public interface InsertFailureListener {
+
+    /**
+     * @param entity name of the entity the tuples were destined for
+     * @param tuples number of tuples which were not persisted
+     * @param cause the error of the last attempt
+     */
+    void onFailure(String entity, int tuples, Throwable cause);
+  }
+
+  private static final InsertFailureListener LOGGING_LISTENER = (entity, tuples, cause) -> LOGGER
+      .error("failed to insert {} tuples into entity {}: {}", tuples, entity,
+          LogHelper.getStackTrace(cause));
+
+  /** Shared pipelines by the settings of the {@link DatabaseConfig} they were created for. */
+  private static final ConcurrentHashMap<String, ADAMproInsertPipeline> SHARED = new ConcurrentHashMap<>();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      for (ADAMproInsertPipeline pipeline : SHARED.values()) {
+        pipeline.close();
+      }
+    }, "adampro-insert-pipeline-shutdown"));
+  }
+
+  private final ADAMproWrapper adampro;
+  private final boolean ownsWrapper;
+  private final int batchsize;
+  private final int retries;
+  private final Semaphore inflight;
+  private final ConcurrentHashMap<String, EntityBuffer> buffers = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler;
+  private final List<InsertFailureListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Returns the pipeline shared by all writers using the given configuration, i.e. the same
+   * connection and insert settings. The pipeline has its own connection to ADAMpro.
+   */
+  public static ADAMproInsertPipeline forConfig(DatabaseConfig config) {
+    String key = config.getHost() + ':' + config.getPort() + ':' + config.getPlaintext() + ':'
+        + config.getConnections() + ':' + config.getDeadline() + ':' + config.getMaxInflight() + ':'
+        + config.getBatchsize() + ':' + config.getMaxInflightInserts() + ':' + config.getInsertRetries();
+    return SHARED.computeIfAbsent(key, k -> new ADAMproInsertPipeline(new ADAMproWrapper(config), config, true));
+  }
+
+  public ADAMproInsertPipeline(ADAMproWrapper adampro, DatabaseConfig config) {
+    this(adampro, config, false);
+  }
+
+  private ADAMproInsertPipeline(ADAMproWrapper adampro, DatabaseConfig config, boolean ownsWrapper) {
+    this.adampro = adampro;
+    this.ownsWrapper = ownsWrapper;
+    this.batchsize = config.getBatchsize();
+    this.retries = config.getInsertRetries();
+    this.inflight = new Semaphore(config.getMaxInflightInserts());
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "adampro-insert-pipeline");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler.scheduleWithFixedDelay(this::flushLingering, LINGER, LINGER, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Registers a listener which is informed about failed inserts in addition to the log.
+   */
+  public void addFailureListener(InsertFailureListener listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener registered with {@link #addFailureListener(InsertFailureListener)}.
+   */
+  public void removeFailureListener(InsertFailureListener listener) {
+    this.listeners.remove(listener);
+  }
+
+  /**
+   * Queues the tuples for insertion into the given entity. Returns as soon as the tuples are queued,
+   * which may require waiting for a free in-flight slot if a message was completed by this call.
+   */
+  public void insert(String entity, List<TupleInsertMessage> tuples) {
+    EntityBuffer buffer = this.buffers.computeIfAbsent(entity, EntityBuffer::new);
+    for (InsertMessage message : buffer.append(tuples)) {
+      submit(buffer, message, 0);
+    }
+  }
+
+  /**
+   * Sends all tuples queued for the given entity.
+   */
+  public void flush(String entity) {
+    EntityBuffer buffer = this.buffers.get(entity);
+    if (buffer == null) {
+      return;
+    }
+    InsertMessage message = buffer.drain();
+    if (message != null) {
+      submit(buffer, message, 0);
+    }
+  }
+
+  /**
+   * Sends all tuples queued for the given entity and waits until every insert for that entity
+   * has either been acknowledged or reported as failed.
+   */
+  public void awaitCompletion(String entity) {
+    flush(entity);
+    EntityBuffer buffer = this.buffers.get(entity);
+    if (buffer == null) {
+      return;
+    }
+    try {
+      buffer.awaitIdle();
+    } catch (InterruptedException e) {
+      LOGGER.warn("interrupted while waiting for pending inserts into {}", entity);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void flushLingering() {
+    long now = System.currentTimeMillis();
+    for (EntityBuffer buffer : this.buffers.values()) {
+      if (buffer.lingeringSince(now) >= LINGER) {
+        flush(buffer.entity);
+      }
+    }
+  }
+
+  private void submit(EntityBuffer buffer, InsertMessage message, int attempt) {
+    try {
+      this.inflight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(buffer, message, e);
+      return;
+    }
+
+    ListenableFuture<AckMessage> future;
+    try {
+      future = this.adampro.insert(message);
+    } catch (RuntimeException e) {
+      this.inflight.release();
+      retryOrFail(buffer, message, attempt, e);
+      return;
+    }
+
+    Futures.addCallback(future, new FutureCallback<AckMessage>() {
+      @Override
+      public void onSuccess(AckMessage ack) {
+        inflight.release();
+        if (ack.getCode() == AckMessage.Code.OK) {
+          buffer.completed();
+        } else {
+          retryOrFail(buffer, message, attempt, new IllegalStateException(ack.getMessage()));
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        inflight.release();
+        retryOrFail(buffer, message, attempt, t);
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  private void retryOrFail(EntityBuffer buffer, InsertMessage message, int attempt, Throwable cause) {
+    if (attempt >= this.retries || this.scheduler.isShutdown()) {
+      fail(buffer, message, cause);
+      return;
+    }
+    LOGGER.warn("insert of {} tuples into {} failed (attempt {}), retrying: {}",
+        message.getTuplesCount(), buffer.entity, attempt + 1, cause.getMessage());
+    this.scheduler.schedule(() -> submit(buffer, message, attempt + 1),
+        RETRY_BACKOFF * (attempt + 1), TimeUnit.MILLISECONDS);
+  }
+
+  private void fail(EntityBuffer buffer, InsertMessage message, Throwable cause) {
+    try {
+      LOGGING_LISTENER.onFailure(buffer.entity, message.getTuplesCount(), cause);
+      for (InsertFailureListener listener : this.listeners) {
+        listener.onFailure(buffer.entity, message.getTuplesCount(), cause);
+      }
+    } finally {
+      buffer.completed();
+    }
+  }
+
+  /**
+   * Sends the tuples queued for all entities and waits until all pending inserts are completed.
+   */
+  public void awaitCompletion() {
+    for (String entity : this.buffers.keySet()) {
+      awaitCompletion(entity);
+    }
+  }
+
+  /**
+   * Flushes all entities, waits for the pending inserts and stops the background flushing. Closes
+   * the connection if it was created by this pipeline.
+   */
+  @Override
+  public synchronized void close() {
+    if (this.scheduler.isShutdown()) {
+      return;
+    }
+    awaitCompletion();
+    this.scheduler.shutdown();
+    if (this.ownsWrapper) {
+      this.adampro.close();
+    }
+  }
+
+  /**
+   * Per-entity state: tuples waiting to be sent and the number of messages not yet completed.
+   */
+  private final class EntityBuffer {
+
+    private final String entity;
+    private List<TupleInsertMessage> tuples = new ArrayList<>();
+    private int bytes = 0;
+    private long firstAppend = 0;
+    private int pending = 0;
+
+    EntityBuffer(String entity) {
+      this.entity = entity;
+    }
+
+    /**
+     * Appends the tuples and returns all messages which have been completed by doing so.
+     */
+    synchronized List<InsertMessage> append(List<TupleInsertMessage> newTuples) {
+      List<InsertMessage> ready = new ArrayList<>(1);
+      for (TupleInsertMessage tuple : newTuples) {
+        int size = tuple.getSerializedSize();
+        if (!this.tuples.isEmpty() && this.bytes + size > MAX_MESSAGE_BYTES) {
+          ready.add(drain());
+        }
+        if (this.tuples.isEmpty()) {
+          this.firstAppend = System.currentTimeMillis();
+        }
+        this.tuples.add(tuple);
+        this.bytes += size;
+        if (this.tuples.size() >= batchsize) {
+          ready.add(drain());
+        }
+      }
+      return ready;
+    }
+
+    /**
+     * Builds a message from all queued tuples, null if there are none.
+     */
+    synchronized InsertMessage drain() {
+      if (this.tuples.isEmpty()) {
+        return null;
+      }
+      InsertMessage message = InsertMessage.newBuilder().setEntity(this.entity)
+          .addAllTuples(this.tuples).build();
+      this.tuples = new ArrayList<>();
+      this.bytes = 0;
+      this.pending += 1;
+      return message;
+    }
+
+    synchronized long lingeringSince(long now) {
+      return this.tuples.isEmpty() ? 0 : now - this.firstAppend;
+    }
+
+    synchronized void completed() {
+      this.pending -= 1;
+      if (this.pending == 0) {
+        this.notifyAll();
+      }
+    }
+
+    synchronized void awaitIdle() throws InterruptedException {
+      while (this.pending > 0) {
+        this.wait();
+      }
+    }
+  }
+}
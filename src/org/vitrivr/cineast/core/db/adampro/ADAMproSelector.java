@@ -167,6 +167,28 @@ public class ADAMproSelector implements DBSelector {
      */
     @Override
     public <T extends DistanceElement> List<T> getBatchedNearestNeighbours(int k, List<float[]> vectors, String column, Class<T> distanceElementClass, List<ReadableQueryConfig> configs) {
+        List<List<T>> partials = this.getBatchedNearestNeighbourLists(k, vectors, column, distanceElementClass, configs);
+        List<T> results = new ArrayList<>(partials.size() * k);
+        for (List<T> partial : partials) {
+            results.addAll(partial);
+        }
+        return results;
+    }
+
+    /**
+     * Performs a batched kNN-search with multiple vectors in a single call to ADAM pro and returns the results of each
+     * query separately. Queries which fail yield an empty list.
+     *
+     * @param k The number k vectors to return per query.
+     * @param vectors The list of vectors to use.
+     * @param column The column to perform the kNN search on.
+     * @param distanceElementClass The class to use to create the resulting DistanceElements
+     * @param configs The query configurations, which may contain distance definitions or query-hints. Every feature should have its own QueryConfig object.
+     * @param <T> The type T of the resulting DistanceElements.
+     * @return One list of results per vector, in the order of the vectors.
+     */
+    @Override
+    public <T extends DistanceElement> List<List<T>> getBatchedNearestNeighbourLists(int k, List<float[]> vectors, String column, Class<T> distanceElementClass, List<ReadableQueryConfig> configs) {
         /* Check if sizes of configs and vectors array correspond. */
         if (vectors.size() > configs.size()) {
           throw new IllegalArgumentException("You must provide a separate QueryConfig entry for each vector - even if it is the same instance of the QueryConfig.");
@@ -180,7 +202,7 @@ public class ADAMproSelector implements DBSelector {
 
             /* Extract hints from QueryConfig. If they're not set, then replace by DEFAULT_HINT. */
             Collection<ReadableQueryConfig.Hints> hints;
-            if (!config.getHints().isEmpty()) {
+            if (config != null && !config.getHints().isEmpty()) {
                 hints = config.getHints();
             } else {
                 hints = ADAMproMessageBuilder.DEFAULT_HINT;
@@ -195,21 +217,24 @@ public class ADAMproSelector implements DBSelector {
 
         ListenableFuture<BatchedQueryResultsMessage> future = this.adampro.batchedQuery(batchedQueryMessage);
 
+        /* Prepare one empty list of results per query. */
+        List<List<T>> results = new ArrayList<>(vectors.size());
+        for (int i = 0; i<vectors.size(); i++) {
+            results.add(new ArrayList<>(0));
+        }
+
         BatchedQueryResultsMessage result;
         try {
             result = future.get();
         } catch (InterruptedException | ExecutionException e) {
             LOGGER.error(LogHelper.getStackTrace(e));
-            return new ArrayList<>(0);
+            return results;
         }
 
-        /* Prepare empty list of results. */
-        List<T> results = new ArrayList<>(result.getResultsCount());
-
         /*
-         * Merge results of the partial queries.
+         * Collect results of the partial queries.
          */
-        for (int i = 0; i<result.getResultsCount(); i++) {
+        for (int i = 0; i<result.getResultsCount() && i<vectors.size(); i++) {
             QueryResultsMessage partial = result.getResults(i);
             AckMessage ack = partial.getAck();
             if (ack.getCode() != AckMessage.Code.OK) {
@@ -222,7 +247,7 @@ public class ADAMproSelector implements DBSelector {
             }
 
             QueryResultInfoMessage response = partial.getResponses(0); // only head (end-result) is important
-            results.addAll(handleNearestNeighbourResponse(response, k, distanceElementClass));
+            results.set(i, handleNearestNeighbourResponse(response, k, distanceElementClass));
         }
 
         return results;
@@ -410,6 +435,21 @@ public class ADAMproSelector implements DBSelector {
         return preview(count);
     }
 
+    /**
+     * Returns the number of rows ADAMpro reports in the properties of the entity.
+     */
+    @Override
+    public long count() {
+        ListenableFuture<PropertiesMessage> future = this.adampro.getProperties(
+                EntityPropertiesMessage.newBuilder().setEntity(this.entityName).build());
+        try {
+            return Long.parseLong(future.get().getPropertiesMap().get("count"));
+        } catch (InterruptedException | ExecutionException | NumberFormatException e) {
+            LOGGER.error("error in count, entitiy {}: {}", this.entityName, LogHelper.getStackTrace(e));
+            return -1;
+        }
+    }
+
     @Override
     public boolean existsEntity(String eName) {
         ListenableFuture<ExistsMessage> future = this.adampro.existsEntity(eName);
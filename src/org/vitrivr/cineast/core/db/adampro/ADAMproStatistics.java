@@ -0,0 +1,80 @@
+package org.vitrivr.cineast.core.db.adampro;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timing information for the calls dispatched by an {@link ADAMproWrapper}. For every call,
+ * the time spent waiting for an in-flight slot on the client side (queue time) is recorded separately
+ * from the time between dispatch and the arrival of the response (server time).
+ *
+ * All methods are safe to be called concurrently.
+ */
+public class ADAMproStatistics {
+
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder queueNanos = new LongAdder();
+  private final LongAdder serverNanos = new LongAdder();
+  private final AtomicInteger inflight = new AtomicInteger();
+
+  void dispatched(long queueNanos) {
+    this.queueNanos.add(queueNanos);
+    this.inflight.incrementAndGet();
+  }
+
+  void completed(long serverNanos, boolean failed) {
+    this.inflight.decrementAndGet();
+    this.calls.increment();
+    this.serverNanos.add(serverNanos);
+    if (failed) {
+      this.failures.increment();
+    }
+  }
+
+  /**
+   * @return number of calls which have completed so far
+   */
+  public long getCalls() {
+    return this.calls.sum();
+  }
+
+  /**
+   * @return number of completed calls which ended with an error, including exceeded deadlines
+   */
+  public long getFailures() {
+    return this.failures.sum();
+  }
+
+  /**
+   * @return number of calls currently dispatched but not yet completed
+   */
+  public int getInflight() {
+    return this.inflight.get();
+  }
+
+  /**
+   * @return total time in milliseconds calls spent waiting for an in-flight slot
+   */
+  public long getQueueTime() {
+    return TimeUnit.NANOSECONDS.toMillis(this.queueNanos.sum());
+  }
+
+  /**
+   * @return total time in milliseconds between dispatch and completion of calls
+   */
+  public long getServerTime() {
+    return TimeUnit.NANOSECONDS.toMillis(this.serverNanos.sum());
+  }
+
+  @Override
+  public String toString() {
+    long calls = getCalls();
+    return String.format(
+        "ADAMproStatistics{calls=%d, failures=%d, inflight=%d, queueTime=%dms (avg %.2fms), serverTime=%dms (avg %.2fms)}",
+        calls, getFailures(), getInflight(), getQueueTime(),
+        calls == 0 ? 0d : (double) getQueueTime() / calls, getServerTime(),
+        calls == 0 ? 0d : (double) getServerTime() / calls);
+  }
+}
@@ -1,6 +1,10 @@
 package org.vitrivr.cineast.core.db.adampro;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -24,13 +28,25 @@ import org.vitrivr.cineast.core.config.Config;
 import org.vitrivr.cineast.core.config.DatabaseConfig;
 import org.vitrivr.cineast.core.util.LogHelper;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 
 import io.grpc.ManagedChannel;
 import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.AbstractStub;
 import io.grpc.stub.StreamObserver;
 
+/**
+ * Connection layer to ADAMpro. Maintains a pool of gRPC channels and stubs (see
+ * {@link DatabaseConfig#getConnections()}) to which calls are dispatched round-robin without any
+ * client side locking. The number of concurrent in-flight calls is bounded by
+ * {@link DatabaseConfig#getMaxInflight()} and every call is subject to the deadline configured in
+ * {@link DatabaseConfig#getDeadline()}. Queue and server times are recorded in an
+ * {@link ADAMproStatistics} instance.
+ */
 public class ADAMproWrapper implements AutoCloseable {
 
   private static final Logger LOGGER = LogManager.getLogger();
@@ -41,22 +57,96 @@ public class ADAMproWrapper implements AutoCloseable {
   private static final PropertiesMessage INTERRUPTED_PROPERTIES_MESSAGE = PropertiesMessage
       .newBuilder().setAck(INTERRUPTED_ACK_MESSAGE).build();
 
-  private ManagedChannel channel;
-  private final AdamDefinitionFutureStub definitionStub;
-  private final AdamSearchFutureStub searchStub;
+  private final ManagedChannel[] channels;
+  private final AdamDefinitionFutureStub[] definitionStubs;
+  private final AdamSearchFutureStub[] searchStubs;
+
+  /** Round-robin counter used to select the stub for the next call. */
+  private final AtomicInteger next = new AtomicInteger();
+
+  /** Bounds the number of calls in flight at the same time. */
+  private final Semaphore inflight;
+
+  /** Deadline in milliseconds for every call, 0 if none. */
+  private final long deadline;
+
+  private final ADAMproStatistics statistics = new ADAMproStatistics();
 
   private static final int maxMessageSize = 10_000_000;
-  
+
   public ADAMproWrapper() {
-    DatabaseConfig config = Config.sharedConfig().getDatabase();
-    this.channel = NettyChannelBuilder.forAddress(config.getHost(), config.getPort())
-        .maxMessageSize(maxMessageSize).usePlaintext(config.getPlaintext()).build();
-    this.definitionStub = AdamDefinitionGrpc.newFutureStub(channel);
-    this.searchStub = AdamSearchGrpc.newFutureStub(channel);
+    this(Config.sharedConfig().getDatabase());
+  }
+
+  public ADAMproWrapper(DatabaseConfig config) {
+    int connections = config.getConnections();
+    this.channels = new ManagedChannel[connections];
+    this.definitionStubs = new AdamDefinitionFutureStub[connections];
+    this.searchStubs = new AdamSearchFutureStub[connections];
+    for (int i = 0; i < connections; ++i) {
+      this.channels[i] = NettyChannelBuilder.forAddress(config.getHost(), config.getPort())
+          .maxMessageSize(maxMessageSize).usePlaintext(config.getPlaintext()).build();
+      this.definitionStubs[i] = AdamDefinitionGrpc.newFutureStub(this.channels[i]);
+      this.searchStubs[i] = AdamSearchGrpc.newFutureStub(this.channels[i]);
+    }
+    this.inflight = new Semaphore(config.getMaxInflight());
+    this.deadline = config.getDeadline();
+  }
+
+  /**
+   * @return the timing statistics of the calls dispatched by this wrapper
+   */
+  public ADAMproStatistics getStatistics() {
+    return this.statistics;
+  }
+
+  /**
+   * Dispatches a call to the next stub in the pool once an in-flight slot is available. The slot is
+   * released as soon as the call completes, regardless of its outcome.
+   */
+  private <S extends AbstractStub<S>, T> ListenableFuture<T> dispatch(S[] stubs,
+      Function<S, ListenableFuture<T>> call) {
+    long queued = System.nanoTime();
+    try {
+      this.inflight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Futures.immediateFailedFuture(e);
+    }
+    final long dispatched = System.nanoTime();
+    this.statistics.dispatched(dispatched - queued);
+
+    S stub = stubs[Math.floorMod(this.next.getAndIncrement(), stubs.length)];
+    if (this.deadline > 0) {
+      stub = stub.withDeadlineAfter(this.deadline, TimeUnit.MILLISECONDS);
+    }
+
+    ListenableFuture<T> future;
+    try {
+      future = call.apply(stub);
+    } catch (RuntimeException e) {
+      this.inflight.release();
+      this.statistics.completed(System.nanoTime() - dispatched, true);
+      throw e;
+    }
+    Futures.addCallback(future, new FutureCallback<T>() {
+      @Override
+      public void onSuccess(T result) {
+        inflight.release();
+        statistics.completed(System.nanoTime() - dispatched, false);
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        inflight.release();
+        statistics.completed(System.nanoTime() - dispatched, true);
+      }
+    }, MoreExecutors.directExecutor());
+    return future;
   }
 
-  public synchronized ListenableFuture<AckMessage> createEntity(CreateEntityMessage message) {
-    return this.definitionStub.createEntity(message);
+  public ListenableFuture<AckMessage> createEntity(CreateEntityMessage message) {
+    return dispatch(this.definitionStubs, stub -> stub.createEntity(message));
   }
 
   public AckMessage createEntityBlocking(CreateEntityMessage message) {
@@ -69,8 +159,8 @@ public class ADAMproWrapper implements AutoCloseable {
     }
   }
 
-  public synchronized ListenableFuture<AckMessage> insert(InsertMessage message) {
-    return this.definitionStub.insert(message);
+  public ListenableFuture<AckMessage> insert(InsertMessage message) {
+    return dispatch(this.definitionStubs, stub -> stub.insert(message));
   }
 
   public AckMessage insertBlocking(InsertMessage message) {
@@ -84,8 +174,8 @@ public class ADAMproWrapper implements AutoCloseable {
   }
 
   public ListenableFuture<ExistsMessage> existsEntity(String eName) {
-    return this.definitionStub.existsEntity(
-        EntityNameMessage.newBuilder().setEntity(eName).build());
+    EntityNameMessage message = EntityNameMessage.newBuilder().setEntity(eName).build();
+    return dispatch(this.definitionStubs, stub -> stub.existsEntity(message));
   }
   
   public boolean existsEntityBlocking(String eName) {
@@ -99,7 +189,8 @@ public class ADAMproWrapper implements AutoCloseable {
   }
 
   public AckMessage dropEntityBlocking(EntityNameMessage message) {
-    ListenableFuture<AckMessage> future = this.definitionStub.dropEntity(message);
+    ListenableFuture<AckMessage> future = dispatch(this.definitionStubs,
+        stub -> stub.dropEntity(message));
     try {
       return future.get();
     } catch (InterruptedException | ExecutionException e) {
@@ -112,33 +203,21 @@ public class ADAMproWrapper implements AutoCloseable {
     return standardQuery(message);
   }
 
-   public ListenableFuture<QueryResultsMessage> standardQuery(QueryMessage message) {
-    synchronized (this.searchStub) {
-      return this.searchStub.doQuery(message);
-    }
+  public ListenableFuture<QueryResultsMessage> standardQuery(QueryMessage message) {
+    return dispatch(this.searchStubs, stub -> stub.doQuery(message));
   }
 
   public ListenableFuture<AdamGrpc.BatchedQueryResultsMessage> batchedQuery(BatchedQueryMessage message) {
-    synchronized (this.searchStub) {
-      return this.searchStub.doBatchQuery(message);
-    }
+    return dispatch(this.searchStubs, stub -> stub.doBatchQuery(message));
   }
 
 
   public ListenableFuture<QueryResultsMessage> previewEntity(PreviewMessage message) {
-    ListenableFuture<QueryResultsMessage> future;
-    synchronized (this.searchStub) {
-      future = this.searchStub.preview(message);
-    }
-    return future;
+    return dispatch(this.searchStubs, stub -> stub.preview(message));
   }
 
   public ListenableFuture<PropertiesMessage> getProperties(EntityPropertiesMessage message) {
-    ListenableFuture<PropertiesMessage> future;
-    synchronized (this.searchStub) {
-      future = this.definitionStub.getEntityProperties(message);
-    }
-    return future;
+    return dispatch(this.definitionStubs, stub -> stub.getEntityProperties(message));
   }
 
   public PropertiesMessage getPropertiesBlocking(EntityPropertiesMessage message) {
@@ -153,7 +232,10 @@ public class ADAMproWrapper implements AutoCloseable {
 
   @Override
   public void close() {
-    this.channel.shutdown();
+    LOGGER.debug("closing ADAMpro connection pool: {}", this.statistics);
+    for (ManagedChannel channel : this.channels) {
+      channel.shutdown();
+    }
   }
 
   @Override
@@ -204,7 +286,8 @@ public class ADAMproWrapper implements AutoCloseable {
   }
 
   public ListenableFuture<AckMessage> dropEntity(String entityName){
-    return this.definitionStub.dropEntity(EntityNameMessage.newBuilder().setEntity(entityName).build());
+    EntityNameMessage message = EntityNameMessage.newBuilder().setEntity(entityName).build();
+    return dispatch(this.definitionStubs, stub -> stub.dropEntity(message));
   }
 
   public boolean dropEntityBlocking(String entityName) {
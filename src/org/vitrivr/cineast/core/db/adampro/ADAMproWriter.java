@@ -17,6 +17,8 @@ import org.vitrivr.adampro.grpc.AdamGrpc.InsertMessage.TupleInsertMessage;
 import org.vitrivr.adampro.grpc.AdamGrpc.QueryMessage;
 import org.vitrivr.adampro.grpc.AdamGrpc.QueryResultInfoMessage;
 import org.vitrivr.adampro.grpc.AdamGrpc.QueryResultsMessage;
+import org.vitrivr.cineast.core.config.Config;
+import org.vitrivr.cineast.core.config.DatabaseConfig;
 import org.vitrivr.cineast.core.db.PersistentTuple;
 import org.vitrivr.cineast.core.db.protobuf.ProtobufTupleGenerator;
 import org.vitrivr.cineast.core.util.LogHelper;
@@ -34,16 +36,46 @@ public class ADAMproWriter extends ProtobufTupleGenerator {
   private static final ADAMproWrapper GLOBAL_ADAMPRO_WRAPPER = useGlobalWrapper
       ? new ADAMproWrapper() : null;
 
-  private ADAMproWrapper adampro = useGlobalWrapper ? GLOBAL_ADAMPRO_WRAPPER : new ADAMproWrapper();
+  private final ADAMproWrapper adampro;
+
+  /** pipeline for asynchronous inserts, null if inserts are synchronous */
+  private final ADAMproInsertPipeline pipeline;
 
   private static final Logger LOGGER = LogManager.getLogger();
   
   private String entityName;
-  private final InsertMessage.Builder imBuilder = InsertMessage.newBuilder();
   private QueryMessage.Builder qmBuilder;
   private final WhereMessage.Builder wmBuilder = WhereMessage.newBuilder();
   private FromMessage from;
 
+  public ADAMproWriter() {
+    this(Config.sharedConfig().getDatabase());
+  }
+
+  /**
+   * Creates a writer which connects and inserts according to the given configuration, e.g. the
+   * database configuration of an extraction run. Writers share the global connection if the
+   * configuration connects in the same way as the global one and share an
+   * {@link ADAMproInsertPipeline} if they use the same settings.
+   */
+  public ADAMproWriter(DatabaseConfig config) {
+    boolean global = useGlobalWrapper && sameConnection(config, Config.sharedConfig().getDatabase());
+    this.adampro = global ? GLOBAL_ADAMPRO_WRAPPER : new ADAMproWrapper(config);
+    if (!config.getAsyncInserts()) {
+      this.pipeline = null;
+    } else if (useGlobalWrapper) {
+      this.pipeline = ADAMproInsertPipeline.forConfig(config);
+    } else {
+      this.pipeline = new ADAMproInsertPipeline(this.adampro, config);
+    }
+  }
+
+  private static boolean sameConnection(DatabaseConfig a, DatabaseConfig b) {
+    return a == b || (a.getHost().equals(b.getHost()) && a.getPort() == b.getPort()
+        && a.getPlaintext() == b.getPlaintext() && a.getConnections() == b.getConnections()
+        && a.getDeadline() == b.getDeadline() && a.getMaxInflight() == b.getMaxInflight());
+  }
+
   @Override
   public boolean open(String name) {
     this.entityName = name;
@@ -52,15 +84,43 @@ public class ADAMproWriter extends ProtobufTupleGenerator {
     return true;
   }
 
+  /**
+   * Waits for all pending asynchronous inserts into the entity of this writer. The connection is
+   * only closed if this writer does not use the shared one.
+   */
   @Override
   public boolean close() {
-    if (useGlobalWrapper) {
+    if (this.pipeline != null && this.entityName != null) {
+      this.pipeline.awaitCompletion(this.entityName);
+    }
+    if (this.adampro == GLOBAL_ADAMPRO_WRAPPER) {
       return false;
     }
+    if (this.pipeline != null && !useGlobalWrapper) {
+      this.pipeline.close();
+    }
     this.adampro.close();
     return true;
   }
 
+  /**
+   * Registers a listener informed about asynchronous inserts which failed after all retries. Since
+   * tuples of all writers sharing a pipeline are coalesced, the listener applies to all of them
+   * and should be removed with {@link #removeInsertFailureListener} when no longer needed. Has no
+   * effect if inserts are synchronous.
+   */
+  public void addInsertFailureListener(ADAMproInsertPipeline.InsertFailureListener listener) {
+    if (this.pipeline != null) {
+      this.pipeline.addFailureListener(listener);
+    }
+  }
+
+  public void removeInsertFailureListener(ADAMproInsertPipeline.InsertFailureListener listener) {
+    if (this.pipeline != null) {
+      this.pipeline.removeFailureListener(listener);
+    }
+  }
+
   @Override
   public boolean idExists(String id) {
     return exists("id", id);
@@ -115,20 +175,26 @@ public class ADAMproWriter extends ProtobufTupleGenerator {
     return persist(tuples);
   }
 
+  /**
+   * Persists the tuples. If inserts are asynchronous, the tuples are handed to the
+   * {@link ADAMproInsertPipeline} and true is returned once they are queued; failures are then
+   * reported to the pipeline's failure listener. Otherwise the call blocks until the database
+   * acknowledged the insert.
+   */
   @Override
   public boolean persist(List<PersistentTuple> tuples) {
-    InsertMessage im;
-    synchronized (this.imBuilder) {
-      this.imBuilder.clear();
-      this.imBuilder.setEntity(this.entityName);
-      ArrayList<TupleInsertMessage> tmp = new ArrayList<>(tuples.size());
-      for (PersistentTuple tuple : tuples) {
-        TupleInsertMessage tim = getPersistentRepresentation(tuple);
-        tmp.add(tim);
-      }
-      this.imBuilder.addAllTuples(tmp);
-      im = this.imBuilder.build();
+    if (tuples.isEmpty()) {
+      return true;
+    }
+    ArrayList<TupleInsertMessage> tmp = new ArrayList<>(tuples.size());
+    for (PersistentTuple tuple : tuples) {
+      tmp.add(getPersistentRepresentation(tuple));
+    }
+    if (this.pipeline != null) {
+      this.pipeline.insert(this.entityName, tmp);
+      return true;
     }
+    InsertMessage im = InsertMessage.newBuilder().setEntity(this.entityName).addAllTuples(tmp).build();
     ListenableFuture<AckMessage> future = this.adampro.insert(im);
     AckMessage ack;
     try{
@@ -17,8 +17,6 @@ import org.vitrivr.cineast.core.db.PersistentTuple;
 
 public abstract class ProtobufTupleGenerator extends AbstractPersistencyWriter<TupleInsertMessage> {
 
-	private static final Builder builder = AdamGrpc.InsertMessage.TupleInsertMessage.newBuilder();
-	
 	private final DataMessage.Builder insertMessageBuilder = DataMessage.newBuilder();
 	
 	private DataMessage generateInsertMessage(Object o){
@@ -96,18 +94,16 @@ public abstract class ProtobufTupleGenerator extends AbstractPersistencyWriter<T
 
 	@Override
   public TupleInsertMessage getPersistentRepresentation(PersistentTuple tuple) {
-    synchronized (builder) {
-      builder.clear();      
-      HashMap<String, DataMessage> tmpMap = new HashMap<>();
-      int nameIndex = 0;
-      
-      for(Object o : tuple.getElements()){
-        
-        tmpMap.put(names[nameIndex++], generateInsertMessage(o));
-        
-      }
-      return builder.putAllData(tmpMap).build();
+    Builder builder = AdamGrpc.InsertMessage.TupleInsertMessage.newBuilder();
+    HashMap<String, DataMessage> tmpMap = new HashMap<>();
+    int nameIndex = 0;
+
+    for(Object o : tuple.getElements()){
+
+      tmpMap.put(names[nameIndex++], generateInsertMessage(o));
+
     }
+    return builder.putAllData(tmpMap).build();
   }
 
 }
@@ -0,0 +1,163 @@
+package org.vitrivr.cineast.core.decode.m3d;
+
+import java.util.Arrays;
+
+import org.vitrivr.cineast.core.data.m3d.ArrayMesh;
+
+/**
+ * Collects the vertices and faces read by a mesh decoder in primitive arrays and turns them into an {@link ArrayMesh}.
+ * The arrays are pre-sized with the expected number of vertices and faces and grow if necessary.
+ *
+ * Vertices can optionally be de-duplicated by position, which is required for formats that store the vertices
+ * of every face separately (i.e. STL). Positions are considered equal if their bit patterns are equal, which is
+ * the same notion of equality as the one used by {@link org.joml.Vector3f#equals(Object)}.
+ */
+final class MeshBuilder {
+
+    /** Colour assigned to all vertices (white, same as {@link org.vitrivr.cineast.core.data.m3d.Mesh#addVertex(org.joml.Vector3f)}). */
+    private static final float DEFAULT_COLOR = 1.0f;
+
+    /** Vertex positions; three floats per vertex. */
+    private float[] positions;
+
+    /** Vertex indices; four per face with -1 as fourth index of triangular faces. */
+    private int[] indices;
+
+    /** Number of vertices added so far. */
+    private int vertices;
+
+    /** Number of faces added so far. */
+    private int faces;
+
+    /** Open addressing hash table that maps positions to vertex indices (+1, so that 0 marks an empty slot). Created lazily. */
+    private int[] table;
+
+    /**
+     * Constructor for MeshBuilder.
+     *
+     * @param vertices Expected number of vertices (not a fixed limit).
+     * @param faces Expected number of faces (not a fixed limit).
+     */
+    MeshBuilder(int vertices, int faces) {
+        this.positions = new float[3 * Math.max(vertices, 1)];
+        this.indices = new int[4 * Math.max(faces, 1)];
+    }
+
+    /**
+     * Adds a new vertex.
+     *
+     * @return Index of the new vertex.
+     */
+    int addVertex(float x, float y, float z) {
+        if (3 * this.vertices == this.positions.length) {
+            this.positions = Arrays.copyOf(this.positions, grow(this.positions.length, 3));
+        }
+        this.positions[3 * this.vertices] = x;
+        this.positions[3 * this.vertices + 1] = y;
+        this.positions[3 * this.vertices + 2] = z;
+        return this.vertices++;
+    }
+
+    /**
+     * Returns the index of the vertex at the provided position. If there is no such vertex yet, a new one is added.
+     *
+     * @return Index of the vertex.
+     */
+    int addUniqueVertex(float x, float y, float z) {
+        if (this.table == null || 2 * this.vertices >= this.table.length) {
+            this.rehash();
+        }
+        final int mask = this.table.length - 1;
+        for (int slot = hash(x, y, z) & mask; ; slot = (slot + 1) & mask) {
+            final int entry = this.table[slot] - 1;
+            if (entry < 0) {
+                this.table[slot] = this.vertices + 1;
+                return this.addVertex(x, y, z);
+            } else if (this.equals(entry, x, y, z)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Adds a new face. Triangular faces use -1 as fourth index.
+     *
+     * @return True if the face was added, false if one of the indices points to a non-existing vertex.
+     */
+    boolean addFace(int v1, int v2, int v3, int v4) {
+        if (!this.valid(v1) || !this.valid(v2) || !this.valid(v3) || (v4 != -1 && !this.valid(v4))) {
+            return false;
+        }
+        if (4 * this.faces == this.indices.length) {
+            this.indices = Arrays.copyOf(this.indices, grow(this.indices.length, 4));
+        }
+        this.indices[4 * this.faces] = v1;
+        this.indices[4 * this.faces + 1] = v2;
+        this.indices[4 * this.faces + 2] = v3;
+        this.indices[4 * this.faces + 3] = v4;
+        this.faces++;
+        return true;
+    }
+
+    /**
+     * Returns the number of vertices added so far.
+     */
+    int numberOfVertices() {
+        return this.vertices;
+    }
+
+    /**
+     * Creates an ArrayMesh from the vertices and faces added so far.
+     *
+     * @return ArrayMesh
+     */
+    ArrayMesh build() {
+        final float[] colors = new float[3 * this.vertices];
+        Arrays.fill(colors, DEFAULT_COLOR);
+        return new ArrayMesh(this.positions, colors, this.indices, this.vertices, this.faces);
+    }
+
+    private boolean valid(int vertex) {
+        return vertex >= 0 && vertex < this.vertices;
+    }
+
+    private boolean equals(int vertex, float x, float y, float z) {
+        return Float.floatToIntBits(this.positions[3 * vertex]) == Float.floatToIntBits(x)
+                && Float.floatToIntBits(this.positions[3 * vertex + 1]) == Float.floatToIntBits(y)
+                && Float.floatToIntBits(this.positions[3 * vertex + 2]) == Float.floatToIntBits(z);
+    }
+
+    /**
+     * (Re-)creates the hash table with room for at least twice the number of vertices.
+     */
+    private void rehash() {
+        int size = 16;
+        while (size < 4 * Math.max(this.vertices, this.positions.length / 3)) {
+            size <<= 1;
+        }
+        this.table = new int[size];
+        final int mask = size - 1;
+        for (int v = 0; v < this.vertices; v++) {
+            int slot = hash(this.positions[3 * v], this.positions[3 * v + 1], this.positions[3 * v + 2]) & mask;
+            while (this.table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = v + 1;
+        }
+    }
+
+    private static int hash(float x, float y, float z) {
+        int h = Float.floatToIntBits(x);
+        h = 31 * h + Float.floatToIntBits(y);
+        h = 31 * h + Float.floatToIntBits(z);
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the new length of an array with the provided stride, which grows by 50% (but at least four elements).
+     */
+    private static int grow(int length, int stride) {
+        return length + stride * Math.max(length / stride / 2, 4);
+    }
+}
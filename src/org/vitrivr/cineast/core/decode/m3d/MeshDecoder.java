@@ -1,6 +1,6 @@
 package org.vitrivr.cineast.core.decode.m3d;
 
-import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.decode.general.Decoder;
 
 /**
@@ -11,6 +11,6 @@ import org.vitrivr.cineast.core.decode.general.Decoder;
  * @version 1.0
  * @created 28.12.16
  */
-public interface MeshDecoder extends Decoder<Mesh> {
+public interface MeshDecoder extends Decoder<ReadableMesh> {
 
 }
@@ -0,0 +1,311 @@
+package org.vitrivr.cineast.core.decode.m3d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tokenizer for the ASCII based mesh formats (OBJ, OFF and ASCII STL). It scans the bytes of a (usually memory-mapped)
+ * file and parses numbers directly from them, i.e. without creating a String per line or token.
+ *
+ * Tokens are separated by whitespace. Line breaks are only significant to {@link #endOfLine()} and {@link #skipLine()};
+ * the methods that read numbers never move past the end of the current line. Lines starting with '#' are treated
+ * as comments and skipped by {@link #skipBlank()}.
+ */
+final class MeshTokenizer {
+
+    /** Largest mantissa that can be represented exactly by a double. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /** Powers of ten that can be represented exactly by a double. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** The bytes that are being tokenized. */
+    private final ByteBuffer buffer;
+
+    /** Current position within the buffer. */
+    private int position;
+
+    /** Limit of the buffer. */
+    private final int limit;
+
+    /**
+     * Maps the provided file into memory. Files larger than 2GB cannot be mapped at once and are rejected.
+     *
+     * @param path Path to the file that should be mapped.
+     * @return Read-only MappedByteBuffer.
+     * @throws IOException If the file could not be mapped.
+     */
+    static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("The file %s is too large to be mapped into memory (%d bytes).", path.toString(), channel.size()));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Constructor for MeshTokenizer.
+     *
+     * @param buffer The bytes to tokenize. Tokenization starts at the current position of the buffer.
+     */
+    MeshTokenizer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Skips all whitespace, line breaks and comment lines.
+     *
+     * @return True if there are more tokens, false if the end of the input has been reached.
+     */
+    boolean skipBlank() {
+        while (this.position < this.limit) {
+            final byte b = this.buffer.get(this.position);
+            if (b == '#') {
+                this.skipLine();
+            } else if (isWhitespace(b)) {
+                this.position++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips spaces and tabs and checks if the end of the current line (or of the input) has been reached.
+     *
+     * @return True if there are no more tokens on the current line.
+     */
+    boolean endOfLine() {
+        this.skipSpaces();
+        return this.position >= this.limit || isLineBreak(this.buffer.get(this.position));
+    }
+
+    /**
+     * Skips the remainder of the current line including the line break.
+     */
+    void skipLine() {
+        while (this.position < this.limit) {
+            if (isLineBreak(this.buffer.get(this.position++))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips the remainder of the current token, e.g. the texture and normal indices following a vertex index.
+     */
+    void skipToken() {
+        while (this.position < this.limit && !isWhitespace(this.buffer.get(this.position))) {
+            this.position++;
+        }
+    }
+
+    /**
+     * Checks if the next token on the current line is equal to the provided keyword and consumes it if so.
+     * Otherwise, the position remains unchanged.
+     *
+     * @param keyword ASCII bytes of the keyword.
+     * @return True if the keyword was found and consumed.
+     */
+    boolean consume(byte[] keyword) {
+        this.skipSpaces();
+        final int end = this.position + keyword.length;
+        if (end > this.limit || (end < this.limit && !isWhitespace(this.buffer.get(end)))) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length; i++) {
+            if (this.buffer.get(this.position + i) != keyword[i]) {
+                return false;
+            }
+        }
+        this.position = end;
+        return true;
+    }
+
+    /**
+     * Parses the next token on the current line as integer. The token may be followed by a '/' (as used by OBJ faces),
+     * in which case the parser stops there and the remainder can be skipped using {@link #skipToken()}.
+     *
+     * @return Parsed integer.
+     * @throws NumberFormatException If there is no next token or if it is not a valid integer.
+     */
+    int nextInt() {
+        this.skipSpaces();
+        final int start = this.position;
+        boolean negative = false;
+        if (this.position < this.limit && (this.buffer.get(this.position) == '-' || this.buffer.get(this.position) == '+')) {
+            negative = this.buffer.get(this.position++) == '-';
+        }
+        long value = 0;
+        int digits = 0;
+        while (this.position < this.limit) {
+            final int digit = this.buffer.get(this.position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = 10 * value + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw this.invalid(start, "integer");
+            }
+            digits++;
+            this.position++;
+        }
+        if (digits == 0 || (this.position < this.limit && this.buffer.get(this.position) != '/' && !isWhitespace(this.buffer.get(this.position)))) {
+            throw this.invalid(start, "integer");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw this.invalid(start, "integer");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses the next token on the current line as float. The result is identical to {@link Float#parseFloat(String)}:
+     * Plain decimal numbers whose value can be calculated exactly are parsed from the bytes directly, everything else
+     * (e.g. very long mantissas, large exponents or special values) is handed over to {@link Float#parseFloat(String)}.
+     *
+     * @return Parsed float.
+     * @throws NumberFormatException If there is no next token or if it is not a valid float.
+     */
+    float nextFloat() {
+        this.skipSpaces();
+        final int start = this.position;
+        boolean negative = false;
+        if (this.position < this.limit && (this.buffer.get(this.position) == '-' || this.buffer.get(this.position) == '+')) {
+            negative = this.buffer.get(this.position++) == '-';
+        }
+
+        /* Mantissa: Integer and fractional digits. */
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        while (this.position < this.limit) {
+            final byte b = this.buffer.get(this.position);
+            if (b == '.' && !fraction) {
+                fraction = true;
+            } else if (b >= '0' && b <= '9') {
+                if (mantissa != 0 || b != '0') {
+                    significant++;
+                }
+                mantissa = 10 * mantissa + (b - '0');
+                if (fraction) {
+                    exponent--;
+                }
+                digits++;
+            } else {
+                break;
+            }
+            if (significant > 18) {
+                return this.parseToken(start);
+            }
+            this.position++;
+        }
+
+        /* Optional exponent. */
+        if (digits > 0 && this.position < this.limit && (this.buffer.get(this.position) == 'e' || this.buffer.get(this.position) == 'E')) {
+            this.position++;
+            boolean negativeExponent = false;
+            if (this.position < this.limit && (this.buffer.get(this.position) == '-' || this.buffer.get(this.position) == '+')) {
+                negativeExponent = this.buffer.get(this.position++) == '-';
+            }
+            int value = 0;
+            int exponentDigits = 0;
+            while (this.position < this.limit && this.buffer.get(this.position) >= '0' && this.buffer.get(this.position) <= '9') {
+                value = 10 * value + (this.buffer.get(this.position++) - '0');
+                if (++exponentDigits > 4) {
+                    return this.parseToken(start);
+                }
+            }
+            if (exponentDigits == 0) {
+                return this.parseToken(start);
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        /* Anything unusual (special values, suffixes, hex notation, invalid tokens) is handled by Float.parseFloat(). */
+        if (digits == 0 || (this.position < this.limit && !isWhitespace(this.buffer.get(this.position)))) {
+            return this.parseToken(start);
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0f : 0.0f;
+        }
+        if (mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            return this.parseToken(start);
+        }
+
+        /*
+         * Mantissa and power of ten are exact, hence the division / multiplication yields the correctly rounded double.
+         * Rounding that double to float is correct unless it lies exactly in the middle of two floats.
+         */
+        final double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        if ((Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L) {
+            return this.parseToken(start);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    /**
+     * Parses the token starting at the provided position using {@link Float#parseFloat(String)}.
+     */
+    private float parseToken(int start) {
+        this.position = start;
+        this.skipToken();
+        final byte[] token = new byte[this.position - start];
+        for (int i = 0; i < token.length; i++) {
+            token[i] = this.buffer.get(start + i);
+        }
+        return Float.parseFloat(new String(token, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Creates a NumberFormatException for the token starting at the provided position.
+     */
+    private NumberFormatException invalid(int start, String type) {
+        this.position = start;
+        if (this.position >= this.limit || isWhitespace(this.buffer.get(this.position))) {
+            return new NumberFormatException(String.format("Expected %s but reached the end of the line.", type));
+        }
+        this.skipToken();
+        final byte[] token = new byte[this.position - start];
+        for (int i = 0; i < token.length; i++) {
+            token[i] = this.buffer.get(start + i);
+        }
+        return new NumberFormatException(String.format("Invalid %s '%s'.", type, new String(token, StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Skips spaces and tabs but not line breaks.
+     */
+    private void skipSpaces() {
+        while (this.position < this.limit) {
+            final byte b = this.buffer.get(this.position);
+            if (!isWhitespace(b) || isLineBreak(b)) {
+                return;
+            }
+            this.position++;
+        }
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+}
@@ -14,6 +14,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.vitrivr.cineast.core.config.DecoderConfig;
 import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.data.query.containers.ModelQueryContainer;
 import org.vitrivr.cineast.core.data.query.containers.QueryContainer;
 import org.vitrivr.cineast.core.decode.general.Converter;
@@ -35,7 +36,7 @@ public class ModularMeshDecoder implements MeshDecoder, Converter {
 
     /** HashSet containing all the mime-types supported by this ImageDecoder instance.
      *
-     * <b>Important:</b> The decoderForContenttype() method must return a Decoder<Mesh> instance
+     * <b>Important:</b> The decoderForContenttype() method must return a Decoder<ReadableMesh> instance
      * for all mime-types contained in this set! */
     private final static Set<String> supportedFiles;
     static {
@@ -47,7 +48,7 @@ public class ModularMeshDecoder implements MeshDecoder, Converter {
     }
 
     /** HashMap containing cached decoder instances */
-    private HashMap<String, Decoder<Mesh>> cachedDecoders = new HashMap<>();
+    private HashMap<String, Decoder<ReadableMesh>> cachedDecoders = new HashMap<>();
 
     /** Path to the input file. */
     private Path inputFile;
@@ -85,13 +86,13 @@ public class ModularMeshDecoder implements MeshDecoder, Converter {
      * @return Content of type T.
      */
     @Override
-    public Mesh getNext() {
+    public ReadableMesh getNext() {
         try {
             MimetypesFileTypeMap filetypes = new MimetypesFileTypeMap("mime.types");
             String contenttype = filetypes.getContentType(this.inputFile.toFile());
 
             /* Try to detach decoder from the list of cached decoders. */
-            Decoder<Mesh> decoder = this.cachedDecoders.get(contenttype);
+            Decoder<ReadableMesh> decoder = this.cachedDecoders.get(contenttype);
 
             /* If decoder is null, create a new one. */
             if (decoder == null) {
@@ -108,7 +109,7 @@ public class ModularMeshDecoder implements MeshDecoder, Converter {
 
             /* Initialize the decoder and return the decoded mesh. */
             decoder.init(this.inputFile, null);
-            Mesh mesh = decoder.getNext();
+            ReadableMesh mesh = decoder.getNext();
             this.complete.set(true);
             return mesh;
         } catch (IOException e) {
@@ -131,7 +132,7 @@ public class ModularMeshDecoder implements MeshDecoder, Converter {
             String contenttype = filetypes.getContentType(path.toFile());
 
             /* Try to detach decoder from the list of cached decoders. */
-            Decoder<Mesh> decoder = this.cachedDecoders.get(contenttype);
+            Decoder<ReadableMesh> decoder = this.cachedDecoders.get(contenttype);
 
             /* If decoder is null, create a new one. */
             if (decoder == null) {
@@ -148,7 +149,7 @@ public class ModularMeshDecoder implements MeshDecoder, Converter {
 
             /* Initialize the decoder and return the decoded mesh. */
             decoder.init(path, null);
-            Mesh mesh = decoder.getNext();
+            ReadableMesh mesh = decoder.getNext();
             return new ModelQueryContainer(mesh);
         } catch (IOException e) {
             LOGGER.error("Could not decode mesh file {} due to an IO exception ({})", path.toString(), LogHelper.getStackTrace(e));
@@ -201,12 +202,12 @@ public class ModularMeshDecoder implements MeshDecoder, Converter {
     }
 
     /**
-     * Selects a Decoder<Mesh> implementation based on the provided content type.
+     * Selects a Decoder<ReadableMesh> implementation based on the provided content type.
      *
      * @param contenttype Mime-type for which to select a decoder.
-     * @return Decoder<Mesh> or null if the mime-type is not supported.
+     * @return Decoder<ReadableMesh> or null if the mime-type is not supported.
      */
-    private Decoder<Mesh> decoderForContenttype(String contenttype) {
+    private Decoder<ReadableMesh> decoderForContenttype(String contenttype) {
         switch (contenttype) {
             case "application/3d-obj":
                 return new OBJMeshDecoder();
@@ -1,10 +1,6 @@
 package org.vitrivr.cineast.core.decode.m3d;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashSet;
@@ -13,11 +9,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.joml.Vector3f;
-import org.joml.Vector3i;
-import org.joml.Vector4i;
 import org.vitrivr.cineast.core.config.DecoderConfig;
-import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.decode.general.Decoder;
 import org.vitrivr.cineast.core.util.LogHelper;
 
@@ -27,14 +20,29 @@ import org.vitrivr.cineast.core.util.LogHelper;
  *
  * Texture information is currently discarded!
  *
+ * The file is memory-mapped and tokenized by a {@link MeshTokenizer}, which parses the numbers directly from
+ * the bytes. The result is an {@link org.vitrivr.cineast.core.data.m3d.ArrayMesh}.
+ *
  * @author rgasser
  * @version 1.0
  * @created 29.12.16
  */
-public class OBJMeshDecoder implements Decoder<Mesh> {
+public class OBJMeshDecoder implements Decoder<ReadableMesh> {
     /** Default logging facility. */
     private static final Logger LOGGER = LogManager.getLogger();
 
+    /** Token used to denote a vertex. */
+    private static final byte[] TOKEN_VERTEX = {'v'};
+
+    /** Token used to denote a face. */
+    private static final byte[] TOKEN_FACE = {'f'};
+
+    /**
+     * Expected number of bytes per vertex, assuming twice as many faces as vertices (as in closed triangle meshes).
+     * Used to pre-size the mesh.
+     */
+    private static final int BYTES_PER_VERTEX = 80;
+
     /** HashSet containing all the mime-types supported by this ImageDecoder instance. */
     private static final Set<String> supportedFiles;
     static {
@@ -71,51 +79,48 @@ public class OBJMeshDecoder implements Decoder<Mesh> {
      * @return Content of type T.
      */
     @Override
-    public Mesh getNext() {
-        Mesh mesh = new Mesh(100,100);
+    public ReadableMesh getNext() {
+        ReadableMesh mesh = null;
         try {
-            InputStream is = Files.newInputStream(this.inputFile);
-            BufferedReader br = new BufferedReader(new InputStreamReader(is));
-            String line = null;
-            while ((line = br.readLine()) != null) {
-                String[] tokens = line.split("\\s+");
-                switch (tokens[0]) {
-                    case "v":
-                        mesh.addVertex(new Vector3f(Float.parseFloat(tokens[1]),Float.parseFloat(tokens[2]),Float.parseFloat(tokens[3])));
-                        break;
-                    case "f":
-                        boolean quad = (tokens.length == 5);
-                        String[] p1 = tokens[1].split("/");
-                        String[] p2 = tokens[2].split("/");
-                        String[] p3 = tokens[3].split("/");
+            MeshTokenizer tokenizer = new MeshTokenizer(MeshTokenizer.map(this.inputFile));
+            int expected = (int)(this.inputFile.toFile().length() / BYTES_PER_VERTEX);
+            MeshBuilder builder = new MeshBuilder(expected, 2 * expected);
+            int[] vertexIndex = new int[4];
+            while (tokenizer.skipBlank()) {
+                if (tokenizer.consume(TOKEN_VERTEX)) {
+                    builder.addVertex(tokenizer.nextFloat(), tokenizer.nextFloat(), tokenizer.nextFloat());
+                } else if (tokenizer.consume(TOKEN_FACE)) {
+                    /* Only the vertex index (before the first '/') is used. Faces with more than four vertices are truncated to a triangle. */
+                    int count = 0;
+                    while (count < 5 && !tokenizer.endOfLine()) {
+                        int index = tokenizer.nextInt() - 1;
+                        tokenizer.skipToken();
+                        if (count < 4) {
+                            vertexIndex[count] = index;
+                        }
+                        count++;
+                    }
+                    if (count < 3) {
+                        throw new ArrayIndexOutOfBoundsException(count);
+                    }
+                    boolean quad = (count == 4);
+                    if (!builder.addFace(vertexIndex[0], vertexIndex[1], vertexIndex[2], quad ? vertexIndex[3] : -1)) {
                         if (quad) {
-                            String[] p4 = tokens[4].split("/");
-                            Vector4i vertexIndex = new Vector4i(Integer.parseInt(p1[0])-1,Integer.parseInt(p2[0])-1,Integer.parseInt(p3[0])-1,Integer.parseInt(p4[0])-1);
-                            if (!mesh.addFace(vertexIndex)) {
-                                LOGGER.warn("Could not add face {}/{}/{}/{} because index points to non-existing vertex.",vertexIndex.x, vertexIndex.y, vertexIndex.z, vertexIndex.w);
-                            }
+                            LOGGER.warn("Could not add face {}/{}/{}/{} because index points to non-existing vertex.", vertexIndex[0], vertexIndex[1], vertexIndex[2], vertexIndex[3]);
                         } else {
-                            Vector3i vertexIndex = new Vector3i(Integer.parseInt(p1[0])-1,Integer.parseInt(p2[0])-1,Integer.parseInt(p3[0])-1);
-                            if (!mesh.addFace(vertexIndex)) {
-                                LOGGER.warn("Could not add face {}/{}/{} because index points to non-existing vertex.",vertexIndex.x, vertexIndex.y, vertexIndex.z);
-                            }
+                            LOGGER.warn("Could not add face {}/{}/{} because index points to non-existing vertex.", vertexIndex[0], vertexIndex[1], vertexIndex[2]);
                         }
-                        break;
-                    default:
-                        break;
+                    }
                 }
+                tokenizer.skipLine();
             }
-
-            br.close(); /* Closes the input stream. */
+            mesh = builder.build();
         } catch (IOException e) {
             LOGGER.error("Could not decode OBJ file {} due to an IO exception ({})", this.inputFile.toString(), LogHelper.getStackTrace(e));
-            mesh = null;
         } catch (NumberFormatException e) {
             LOGGER.error("Could not decode OBJ file {} because one of the tokens could not be converted to a valid number.", this.inputFile.toString(), LogHelper.getStackTrace(e));
-            mesh = null;
         } catch (ArrayIndexOutOfBoundsException e) {
             LOGGER.error("Could not decode OBJ file {} because one of the faces points to invalid vertex indices.", this.inputFile.toString(), LogHelper.getStackTrace(e));
-            mesh = null;
         } finally {
             this.complete.set(true);
         }
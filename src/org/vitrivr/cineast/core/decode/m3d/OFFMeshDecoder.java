@@ -1,10 +1,6 @@
 package org.vitrivr.cineast.core.decode.m3d;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashSet;
@@ -13,11 +9,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.joml.Vector3f;
-import org.joml.Vector3i;
-import org.joml.Vector4i;
 import org.vitrivr.cineast.core.config.DecoderConfig;
-import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.decode.general.Decoder;
 import org.vitrivr.cineast.core.util.LogHelper;
 
@@ -27,6 +20,10 @@ import org.vitrivr.cineast.core.util.LogHelper;
  *
  * The OFF format is used by the princeton shape benchmark (PSB) [2]
  *
+ * The file is memory-mapped and tokenized by a {@link MeshTokenizer}, which parses the numbers directly from
+ * the bytes. The result is an {@link org.vitrivr.cineast.core.data.m3d.ArrayMesh} that is pre-sized using the
+ * counts in the header.
+ *
  * [1] http://shape.cs.princeton.edu/benchmark/documentation/off_format.html
  *
  * [2] Philip Shilane, Patrick Min, Michael Kazhdan, and Thomas Funkhouser The Princeton Shape Benchmark
@@ -36,15 +33,12 @@ import org.vitrivr.cineast.core.util.LogHelper;
  * @version 1.0
  * @created 29.12.16
  */
-public class OFFMeshDecoder implements Decoder<Mesh> {
+public class OFFMeshDecoder implements Decoder<ReadableMesh> {
         /** Default logging facility. */
         private static final Logger LOGGER = LogManager.getLogger();
 
-        /** Delimiter used to separate two entries. */
-        private static final String DELIMITER = " ";
-
         /** Token used to denote the beginning of the OFF file. */
-        private static final String TOKEN_BOF = "OFF";
+        private static final byte[] TOKEN_BOF = {'O', 'F', 'F'};
 
         /** HashSet containing all the mime-types supported by this ImageDecoder instance. */
         private static final Set<String> supportedFiles;
@@ -82,78 +76,67 @@ public class OFFMeshDecoder implements Decoder<Mesh> {
          * @return Content of type T.
          */
         @Override
-        public Mesh getNext() {
+        public ReadableMesh getNext() {
             try {
-                InputStream is = Files.newInputStream(this.inputFile);
-                BufferedReader br = new BufferedReader(new InputStreamReader(is));
+                MeshTokenizer tokenizer = new MeshTokenizer(MeshTokenizer.map(this.inputFile));
 
-                /* First line must start with OFF. */
-                String line = br.readLine();
-                String[] tokens = null;
-                if (line == null || !line.startsWith(TOKEN_BOF)) {
+                /* File must start with OFF. */
+                if (!tokenizer.skipBlank() || !tokenizer.consume(TOKEN_BOF)) {
                   return null;
                 }
 
-                /* Now read second line which should contain the number of vertices and faces. */
-                line = br.readLine();
-                if (line == null) {
+                /* Now read the number of vertices and faces. */
+                if (!tokenizer.skipBlank()) {
                   return null;
                 }
-                tokens = line.split(DELIMITER);
-
-                int vertices = Integer.parseInt(tokens[0]);
-                int faces = Integer.parseInt(tokens[1]);
+                int vertices = tokenizer.nextInt();
+                int faces = tokenizer.nextInt();
+                tokenizer.skipLine();
 
                 /* Prepare empty mesh. */
-                Mesh mesh = new Mesh(faces, vertices);
+                MeshBuilder builder = new MeshBuilder(vertices, faces);
 
                 /* Now read all the vertices. */
                 for (int v=0; v<vertices; v++) {
-                    line = br.readLine();
-                    if (line == null) {
+                    if (!tokenizer.skipBlank()) {
                         LOGGER.error("Could not decode OFF file {} because file seems to be missing some vertices ({}/{}).", this.inputFile.toString(), v, vertices);
                         return null;
                     }
-                    tokens = line.split(DELIMITER);
-                    mesh.addVertex(new Vector3f(Float.parseFloat(tokens[0]),Float.parseFloat(tokens[1]),Float.parseFloat(tokens[2])));
+                    builder.addVertex(tokenizer.nextFloat(), tokenizer.nextFloat(), tokenizer.nextFloat());
+                    tokenizer.skipLine();
                 }
 
                  /* Now read all the faces. */
                 for (int f=0; f<faces; f++) {
-                    line = br.readLine();
-                    if (line == null) {
-                        LOGGER.error("Could not decode OFF file {} because file seems to be missing some faces ({}/{}).", this.inputFile.toString(), f, vertices);
+                    if (!tokenizer.skipBlank()) {
+                        LOGGER.error("Could not decode OFF file {} because file seems to be missing some faces ({}/{}).", this.inputFile.toString(), f, faces);
                         return null;
                     }
-                    tokens = line.split(DELIMITER);
-                    if (Integer.parseInt(tokens[0]) == 4) {
-                        Vector4i vertexIndex = new Vector4i(Integer.parseInt(tokens[1]),Integer.parseInt(tokens[2]),Integer.parseInt(tokens[3]),Integer.parseInt(tokens[4]));
-                        if (!mesh.addFace(vertexIndex)) {
-                            LOGGER.warn("Could not add face {}/{}/{}/{} because index points to non-existing vertex.",vertexIndex.x, vertexIndex.y, vertexIndex.z, vertexIndex.w);
+                    int size = tokenizer.nextInt();
+                    if (size == 4) {
+                        int v1 = tokenizer.nextInt(), v2 = tokenizer.nextInt(), v3 = tokenizer.nextInt(), v4 = tokenizer.nextInt();
+                        if (!builder.addFace(v1, v2, v3, v4)) {
+                            LOGGER.warn("Could not add face {}/{}/{}/{} because index points to non-existing vertex.", v1, v2, v3, v4);
                         }
-                    } else if (Integer.parseInt(tokens[0]) == 3) {
-                        Vector3i vertexIndex = new Vector3i(Integer.parseInt(tokens[1]),Integer.parseInt(tokens[2]),Integer.parseInt(tokens[3]));
-                        if (!mesh.addFace(vertexIndex)) {
-                            LOGGER.warn("Could not add face {}/{}/{}/{} because index points to non-existing vertex.",vertexIndex.x, vertexIndex.y, vertexIndex.z);
+                    } else if (size == 3) {
+                        int v1 = tokenizer.nextInt(), v2 = tokenizer.nextInt(), v3 = tokenizer.nextInt();
+                        if (!builder.addFace(v1, v2, v3, -1)) {
+                            LOGGER.warn("Could not add face {}/{}/{} because index points to non-existing vertex.", v1, v2, v3);
                         }
                     } else {
-                        LOGGER.error("Could not decode OFF file {} because this implementation of Mesh only supports triangular and quadrilateral faces. The provided number of faces is {}.", this.inputFile.toString(), Integer.parseInt(tokens[0]));
+                        LOGGER.error("Could not decode OFF file {} because this implementation of Mesh only supports triangular and quadrilateral faces. The provided number of faces is {}.", this.inputFile.toString(), size);
                         return null;
                     }
+                    tokenizer.skipLine();
                 }
 
-                br.close(); /* Closes the input stream. */
-
-                return mesh;
+                return builder.build();
             } catch (IOException e) {
                 LOGGER.error("Could not decode OFF file {} due to an IO exception ({})", this.inputFile.toString(), LogHelper.getStackTrace(e));
                 return null;
             } catch (NumberFormatException e) {
                 LOGGER.error("Could not decode OFF file {} because one of the tokens could not be converted to a valid number.", this.inputFile.toString(), LogHelper.getStackTrace(e));
                 return null;
-            } catch (ArrayIndexOutOfBoundsException e) {
-                LOGGER.error("Could not decode OFF file {} because one of the faces points to invalid vertex indices.", this.inputFile.toString(), LogHelper.getStackTrace(e));
-                return null;
             } finally {
                 this.complete.set(true);
             }
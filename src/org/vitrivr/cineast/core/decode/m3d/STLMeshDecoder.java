@@ -1,12 +1,8 @@
 package org.vitrivr.cineast.core.decode.m3d;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashSet;
@@ -15,30 +11,51 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.joml.Vector3f;
-import org.joml.Vector3i;
 import org.vitrivr.cineast.core.config.DecoderConfig;
-import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.decode.general.Decoder;
 import org.vitrivr.cineast.core.util.LogHelper;
 
-import gnu.trove.map.hash.TObjectIntHashMap;
-
 /**
  * Decodes STereoLithography (.stl) files and returns a Mesh representation. Requires
  * JOML to work properly.
  *
+ * The file is memory-mapped. ASCII files are tokenized by a {@link MeshTokenizer}, binary files are read
+ * directly from the little-endian view of the mapped buffer. Vertices shared by multiple facets are merged.
+ * The result is an {@link org.vitrivr.cineast.core.data.m3d.ArrayMesh}.
+ *
  * @author rgasser
  * @version 1.0
  * @created 29.12.16
  */
-public class STLMeshDecoder implements Decoder<Mesh> {
+public class STLMeshDecoder implements Decoder<ReadableMesh> {
     /** Default logging facility. */
     private static final Logger LOGGER = LogManager.getLogger();
 
     /** Maximum number of triangles in a STL file. Larger files are discarded. */
     private static final int MAX_TRIANGLES = 5000000;
 
+    /** Size of the header of binary STL files (in bytes). */
+    private static final int BINARY_HEADER_SIZE = 80;
+
+    /** Size of a single triangle in binary STL files (in bytes): normal, three vertices and attribute byte count. */
+    private static final int BINARY_TRIANGLE_SIZE = 50;
+
+    /** Token used to denote the beginning of an ASCII STL file (including the trailing space). */
+    private static final byte[] TOKEN_SOLID = {'s', 'o', 'l', 'i', 'd', ' '};
+
+    /** Token used to denote the end of an ASCII STL file. */
+    private static final byte[] TOKEN_ENDSOLID = {'e', 'n', 'd', 's', 'o', 'l', 'i', 'd'};
+
+    /** Token used to denote the beginning of a facet. */
+    private static final byte[] TOKEN_FACET = {'f', 'a', 'c', 'e', 't'};
+
+    /** Token used to denote the end of a facet. */
+    private static final byte[] TOKEN_ENDFACET = {'e', 'n', 'd', 'f', 'a', 'c', 'e', 't'};
+
+    /** Token used to denote a vertex. */
+    private static final byte[] TOKEN_VERTEX = {'v', 'e', 'r', 't', 'e', 'x'};
+
     /** HashSet containing all the mime-types supported by this ImageDecoder instance. */
     private static final Set<String> supportedFiles;
     static {
@@ -75,124 +92,114 @@ public class STLMeshDecoder implements Decoder<Mesh> {
      * @return Content of type T.
      */
     @Override
-    public Mesh getNext() {
+    public ReadableMesh getNext() {
         try {
-            InputStream is = Files.newInputStream(this.inputFile);
-            byte[] header = new byte[6];
-            if (is.read(header) == 6) {
-                if ((new String(header)).contains("solid ")) {
-                    LOGGER.info("Found term 'solid' in header. Treating the STL file as ASCII STL file!");
-                    return this.readAscii(is);
-                } else {
-                    LOGGER.info("Did not find term 'solid' in header. Treating the STL file as binary STL file!");
-                    return this.readBinary(is, 74);
-                }
+            ByteBuffer buffer = MeshTokenizer.map(this.inputFile);
+            if (this.isAscii(buffer)) {
+                LOGGER.info("Found term 'solid' in header. Treating the STL file as ASCII STL file!");
+                return this.readAscii(buffer);
+            } else if (buffer.limit() >= TOKEN_SOLID.length) {
+                LOGGER.info("Did not find term 'solid' in header. Treating the STL file as binary STL file!");
+                return this.readBinary(buffer);
             } else {
-                LOGGER.warn("Could not read the first 10 bytes of the file {}. This is not a valid STL file.", this.inputFile.toString());
+                LOGGER.warn("Could not read the first 6 bytes of the file {}. This is not a valid STL file.", this.inputFile.toString());
                 return null;
             }
         } catch (IOException e) {
             LOGGER.error("Could not decode STL file {} due to an IO exception ({})", this.inputFile.toString(), LogHelper.getStackTrace(e));
-            this.complete.set(true);
+            return null;
+        } catch (NumberFormatException e) {
+            LOGGER.error("Could not decode STL file {} because one of the tokens could not be converted to a valid number.", this.inputFile.toString(), LogHelper.getStackTrace(e));
             return null;
         } finally {
             this.complete.set(true);
         }
     }
 
+    /**
+     * Checks if the provided STL file starts with 'solid ' and is therefore supposedly an ASCII STL file.
+     *
+     * @param buffer Buffer holding the STL file.
+     * @return True if the file starts with 'solid ', false otherwise.
+     */
+    private boolean isAscii(ByteBuffer buffer) {
+        if (buffer.limit() < TOKEN_SOLID.length) {
+            return false;
+        }
+        for (int i = 0; i < TOKEN_SOLID.length; i++) {
+            if (buffer.get(i) != TOKEN_SOLID[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Reads an ASCII STL file.
      *
-     * @param is InputStream to read from.
+     * @param buffer Buffer holding the STL file.
      * @return Mesh
-     * @throws IOException If an error occurs during reading.
      */
-    private Mesh readAscii(InputStream is)  throws IOException {
-        BufferedReader br = new BufferedReader(new InputStreamReader(is));
-        String line = null;
+    private ReadableMesh readAscii(ByteBuffer buffer) {
+        MeshTokenizer tokenizer = new MeshTokenizer(buffer);
 
-        /* Prepare empty mesh. */
-        Mesh mesh = new Mesh(100,100);
+        /* Prepare empty mesh; skip the first line, which contains the name of the solid. */
+        MeshBuilder builder = new MeshBuilder(100, 100);
+        tokenizer.skipLine();
 
-        /* Prepare helper structures. */
-        TObjectIntHashMap<Vector3f> vertexBuffer = new TObjectIntHashMap<>();
-        int index = 0;
         int[] vertexindices = new int[3];
-
-        while ((line = br.readLine()) != null && !line.startsWith("endsolid")) {
-            line = line.trim();
-
+        int vidx = -1;
+        while (tokenizer.skipBlank()) {
             /* Detect end of STL file. */
-            if (line.startsWith("endsolid")) {
-              break;
+            if (tokenizer.consume(TOKEN_ENDSOLID)) {
+                break;
             }
 
-            /* Detect begin of facet. */
-            if (line.startsWith("facet normal ")) {
-                int vidx = 0;
-
-                while ((line = br.readLine()) != null) {
-
-                    line = line.trim(); /* Trim line. */
-
-                    /* Detect end of facet. */
-                    if (line.equals("endfacet")) {
-                      break;
-                    }
-
-                    /* Detect vertex. */
-                    if (line.startsWith("vertex")) {
-                        String[] splitVertex = line.split("\\s+");
-                        Vector3f vertex = new Vector3f(Float.parseFloat(splitVertex[1]),Float.parseFloat(splitVertex[2]), Float.parseFloat(splitVertex[3]));
-                        if (!vertexBuffer.containsKey(vertex)) {
-                            mesh.addVertex(vertex);
-                            vertexBuffer.put(vertex, index);
-                            index++;
-                        }
-                        vertexindices[vidx] = vertexBuffer.get(vertex);
-                        vidx++;
-                    }
+            if (tokenizer.consume(TOKEN_FACET)) {
+                /* Detect begin of facet. */
+                vidx = 0;
+            } else if (vidx >= 0 && tokenizer.consume(TOKEN_VERTEX)) {
+                /* Detect vertex. */
+                int index = builder.addUniqueVertex(tokenizer.nextFloat(), tokenizer.nextFloat(), tokenizer.nextFloat());
+                if (vidx < 3) {
+                    vertexindices[vidx] = index;
                 }
-
-                 /* Add a new face to the Mesh. */
-                mesh.addFace(new Vector3i(vertexindices[0], vertexindices[1], vertexindices[2]));
+                vidx++;
+            } else if (vidx >= 0 && tokenizer.consume(TOKEN_ENDFACET)) {
+                /* Detect end of facet and add a new face to the Mesh. */
+                if (vidx >= 3) {
+                    builder.addFace(vertexindices[0], vertexindices[1], vertexindices[2], -1);
+                }
+                vidx = -1;
             }
+            tokenizer.skipLine();
         }
 
-        /* Close the buffered reader. */
-        br.close();
-
         /* This covers the case, where the file starts with 'solid ' but is not an ASCII file. Unfortunately, such files do exist. */
-        if (mesh.numberOfVertices() == 0) {
+        if (builder.numberOfVertices() == 0) {
             LOGGER.warn("The provided ASCII STL file does not seem to contain any normals or vertices. Trying to decode it as binary STL even though it was marked as being ASCII.");
-            InputStream newIs = Files.newInputStream(this.inputFile);
-            return this.readBinary(newIs, 80);
+            return this.readBinary(buffer);
         } else {
-            return mesh;
+            return builder.build();
         }
     }
 
     /**
-     * Reads a binary STL file.
+     * Reads a binary STL file: A header of 80 bytes, the number of triangles (unsigned 32 bit int) and 50 bytes
+     * per triangle. All values are little-endian.
      *
-     * @param is InputStream to read from.
-     * @param skip Number of bytes to skip before reading the STL file.
+     * @param buffer Buffer holding the STL file.
      * @return Mesh
-     * @throws IOException If an error occurs during reading.
      */
-    private Mesh readBinary(InputStream is, int skip) throws IOException {
-        /* Prepare a ByteBuffer to read the rest of the STL file. */
-        byte[] bytes = new byte[50];
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    private ReadableMesh readBinary(ByteBuffer buffer) {
         buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < BINARY_HEADER_SIZE + 4) {
+            LOGGER.error("The STL file is too short to contain a header. This STL file is probably corrupt!");
+            return null;
+        }
 
-        /* Skip the STL header! */
-        is.skip(skip);
-
-        /* Read the bytes for the size (unsigned 32 bit int, little-endian). */
-        byte[] sizeBytes = new byte[4];
-        is.read(sizeBytes, 0, 4);
-        long triangles = ((sizeBytes[0] & 0xFF)) | ((sizeBytes[1] & 0xFF) << 8) | ((sizeBytes[2] & 0xFF) << 16) | ((sizeBytes[3] & 0xFF) << 24);
+        /* Read the size (unsigned 32 bit int). */
+        long triangles = buffer.getInt(BINARY_HEADER_SIZE) & 0xFFFFFFFFL;
 
         /* TODO: Properly handle models whose triangles > MAX_TRIANGLES. */
         if (triangles <= 0) {
@@ -201,47 +208,23 @@ public class STLMeshDecoder implements Decoder<Mesh> {
         } else if (triangles > MAX_TRIANGLES) {
             LOGGER.error("The number of triangles in the Mesh exceeds the limit that can currently be processed by STLMeshDecoder. The Mesh will be downsampled!");
             return null;
+        } else if (buffer.limit() < BINARY_HEADER_SIZE + 4 + triangles * BINARY_TRIANGLE_SIZE) {
+            LOGGER.error("The STL file is shorter than required for {} triangles. This STL file is probably corrupt!", triangles);
+            return null;
         }
 
         /* Prepare Mesh. */
-        Mesh mesh = new Mesh((int)triangles, (int)triangles);
-
-        /* Prepare helper structures. */
-        TObjectIntHashMap<Vector3f> vertexBuffer = new TObjectIntHashMap<>();
-        int index = 0;
-        int[] vertexindices = new int[3];
-
-        /* Now add all triangles. */
-        for (int i=0; i<triangles; i++) {
-            /* Ready 48 bytes from the stream. */
-            buffer.rewind();
-            is.read(bytes);
-
-            /* Read and ignore three floats. */
-            buffer.getFloat();
-            buffer.getFloat();
-            buffer.getFloat();
-
-            /* Add the vertices and the vertex-normal to the mesh. */
-            for (int vidx = 0; vidx < 3; vidx++) {
-                Vector3f vertex = new Vector3f(buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
-                if (!vertexBuffer.containsKey(vertex)) {
-                    mesh.addVertex(vertex);
-                    vertexBuffer.put(vertex, index);
-                    index++;
-                }
-                vertexindices[vidx] = vertexBuffer.get(vertex);
-            }
-
-            /* Add a new face to the Mesh. */
-            if (!mesh.addFace(new Vector3i(vertexindices[0], vertexindices[1], vertexindices[2]))) {
-                LOGGER.warn("Could not add face {}/{}/{} because index points to non-existing vertex.", vertexindices[0], vertexindices[1], vertexindices[2]);
-            }
+        MeshBuilder builder = new MeshBuilder((int)triangles, (int)triangles);
+
+        /* Now add all triangles; the normal (first three floats) and the attribute byte count are ignored. */
+        int offset = BINARY_HEADER_SIZE + 4;
+        for (int i=0; i<triangles; i++, offset += BINARY_TRIANGLE_SIZE) {
+            int v1 = builder.addUniqueVertex(buffer.getFloat(offset + 12), buffer.getFloat(offset + 16), buffer.getFloat(offset + 20));
+            int v2 = builder.addUniqueVertex(buffer.getFloat(offset + 24), buffer.getFloat(offset + 28), buffer.getFloat(offset + 32));
+            int v3 = builder.addUniqueVertex(buffer.getFloat(offset + 36), buffer.getFloat(offset + 40), buffer.getFloat(offset + 44));
+            builder.addFace(v1, v2, v3, -1);
         }
-
-        /* Closes the InputStream. */
-        is.close();
-        return mesh;
+        return builder.build();
     }
 
     /**
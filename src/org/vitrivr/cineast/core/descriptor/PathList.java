@@ -5,10 +5,13 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.ddogleg.fitting.modelset.ModelMatcher;
 import org.vitrivr.cineast.core.data.Pair;
 import org.vitrivr.cineast.core.data.frames.VideoFrame;
+import org.vitrivr.cineast.core.util.images.GrayImageHelper;
 
 import boofcv.abst.filter.derivative.ImageGradient;
 import boofcv.alg.misc.PixelMath;
@@ -46,6 +49,12 @@ public class PathList {
 	public static double ransacInlierRatioThreshold = 0.65;
 	public static double successFrameSRatioThreshold = 0.70;
 	
+	/** Number of consecutive frame pairs tracked by the same thread in {@link #getDensePaths(List)}. */
+	public static int windowSize = 8;
+	
+	/** Pyramids and trackers of the threads tracking the frame windows. */
+	private static final ThreadLocal<WindowTracker> TRACKERS = ThreadLocal.withInitial(WindowTracker::new);
+	
 	public static void showBineryImage(GrayU8 image){
 		PixelMath.multiply(image,255,image);
 		BufferedImage out = ConvertBufferedImage.convertTo(image,null);
@@ -124,53 +133,97 @@ public class PathList {
 		return;
 	}
 	
+	/**
+	 * Tracks a regular grid of points from each processed frame to the next one. Frames are processed in groups of
+	 * {@link #frameInterval}, with one frame skipped in between. Since the points are sampled anew on every processed
+	 * frame, each pair of consecutive processed frames can be tracked independently: The frames are split into windows
+	 * of {@link #windowSize} pairs which are tracked in parallel, each by a thread using its own KLT pyramids.
+	 *
+	 * @param videoFrames Frames of the segment.
+	 * @return List of the tracked points per processed frame (the first processed frame has none) or null if there are less than two frames.
+	 */
 	public static LinkedList<Pair<Integer,ArrayList<AssociatedPair>>> getDensePaths(List<VideoFrame> videoFrames){
 		if(videoFrames.size() < 2){
 			return null;
 		}
 
-		PkltConfig configKlt = new PkltConfig(3, new int[] { 1, 2, 4 });
-		configKlt.config.maxPerPixelError = 45;
-		ImageGradient<GrayU8, GrayS16> gradient = FactoryDerivative.sobel(GrayU8.class, GrayS16.class);
-		PyramidDiscrete<GrayU8> pyramidForeward = FactoryPyramid.discreteGaussian(configKlt.pyramidScaling,-1,2,true,GrayU8.class);
-		PyramidDiscrete<GrayU8> pyramidBackward = FactoryPyramid.discreteGaussian(configKlt.pyramidScaling,-1,2,true,GrayU8.class);
-		PyramidKltTracker<GrayU8, GrayS16> trackerForeward = FactoryTrackerAlg.kltPyramid(configKlt.config, GrayU8.class, null);
-		PyramidKltTracker<GrayU8, GrayS16> trackerBackward = FactoryTrackerAlg.kltPyramid(configKlt.config, GrayU8.class, null);
-		
-		GrayS16[] derivX = null;
-		GrayS16[] derivY = null;
-		
-		LinkedList<PyramidKltFeature> tracks = new LinkedList<PyramidKltFeature>();
-		LinkedList<Pair<Integer,ArrayList<AssociatedPair>>> paths = new LinkedList<Pair<Integer,ArrayList<AssociatedPair>>>();
-		
-		GrayU8 gray = null;
+		/* Determine the frames that are processed and their (1-based) indices. */
+		final List<VideoFrame> frames = new ArrayList<VideoFrame>();
+		final List<Integer> frameIndices = new ArrayList<Integer>();
 		int frameIdx = 0;
 		int cnt = 0;
 		for (VideoFrame videoFrame : videoFrames){
 			++frameIdx;
-			
 			if(cnt >= frameInterval){
 				cnt = 0;
 				continue;
 			}
 			cnt += 1;
-			
-			gray = ConvertBufferedImage.convertFrom(videoFrame.getImage().getBufferedImage(), gray);
-			ArrayList<AssociatedPair> tracksPairs = new ArrayList<AssociatedPair>();
-			
-			if (frameIdx == 0){
-				tracks = denseSampling(gray, derivX, derivY, samplingInterval, configKlt, gradient, pyramidBackward, trackerBackward);
-			}
-			else{
-				tracking(gray, derivX, derivY, tracks, tracksPairs, gradient, pyramidForeward, pyramidBackward, trackerForeward, trackerBackward);
-				tracks = denseSampling(gray, derivX, derivY, samplingInterval, configKlt, gradient, pyramidBackward, trackerBackward);
+			frames.add(videoFrame);
+			frameIndices.add(frameIdx);
+		}
+
+		final int pairs = frames.size() - 1;
+		final int window = Math.max(windowSize, 1);
+		final List<ArrayList<ArrayList<AssociatedPair>>> windows = IntStream.range(0, (pairs + window - 1) / window).parallel()
+				.mapToObj(w -> TRACKERS.get().track(frames, w * window, Math.min((w + 1) * window, pairs)))
+				.collect(Collectors.toList());
+
+		LinkedList<Pair<Integer,ArrayList<AssociatedPair>>> paths = new LinkedList<Pair<Integer,ArrayList<AssociatedPair>>>();
+		paths.add(new Pair<Integer,ArrayList<AssociatedPair>>(frameIndices.get(0), new ArrayList<AssociatedPair>()));
+		int i = 1;
+		for (ArrayList<ArrayList<AssociatedPair>> tracksPairs : windows){
+			for (ArrayList<AssociatedPair> pairsOfFrame : tracksPairs){
+				paths.add(new Pair<Integer,ArrayList<AssociatedPair>>(frameIndices.get(i++), pairsOfFrame));
 			}
-			
-			paths.add(new Pair<Integer,ArrayList<AssociatedPair>>(frameIdx,tracksPairs));
 		}
 		return paths;
 	}
-	
+
+	/**
+	 * KLT pyramids and trackers used to track the points of a window of frames. Used by one thread at a time.
+	 */
+	private static final class WindowTracker {
+		private final PkltConfig configKlt = new PkltConfig(3, new int[] { 1, 2, 4 });
+		private final ImageGradient<GrayU8, GrayS16> gradient = FactoryDerivative.sobel(GrayU8.class, GrayS16.class);
+		private final PyramidDiscrete<GrayU8> pyramidForeward;
+		private final PyramidDiscrete<GrayU8> pyramidBackward;
+		private final PyramidKltTracker<GrayU8, GrayS16> trackerForeward;
+		private final PyramidKltTracker<GrayU8, GrayS16> trackerBackward;
+		private GrayU8 gray = null;
+
+		WindowTracker(){
+			this.configKlt.config.maxPerPixelError = 45;
+			this.pyramidForeward = FactoryPyramid.discreteGaussian(this.configKlt.pyramidScaling,-1,2,true,GrayU8.class);
+			this.pyramidBackward = FactoryPyramid.discreteGaussian(this.configKlt.pyramidScaling,-1,2,true,GrayU8.class);
+			this.trackerForeward = FactoryTrackerAlg.kltPyramid(this.configKlt.config, GrayU8.class, null);
+			this.trackerBackward = FactoryTrackerAlg.kltPyramid(this.configKlt.config, GrayU8.class, null);
+		}
+
+		/**
+		 * Samples points on the first frame of the window and tracks them to each following frame, resampling on each of them.
+		 * The same gray image is reused for all frames, so the base layer of the backward pyramid refers to the current
+		 * frame during tracking; this reproduces the results of tracking all frames in sequence.
+		 *
+		 * @return Tracked points for the frames first + 1 to last (inclusive).
+		 */
+		ArrayList<ArrayList<AssociatedPair>> track(List<VideoFrame> frames, int first, int last){
+			ArrayList<ArrayList<AssociatedPair>> result = new ArrayList<ArrayList<AssociatedPair>>(last - first);
+			this.gray = GrayImageHelper.toGrayU8(frames.get(first).getImage(), this.gray);
+			LinkedList<PyramidKltFeature> tracks = denseSampling(this.gray, null, null, samplingInterval, this.configKlt, this.gradient, this.pyramidBackward, this.trackerBackward);
+			for (int i = first + 1; i <= last; ++i){
+				this.gray = GrayImageHelper.toGrayU8(frames.get(i).getImage(), this.gray);
+				ArrayList<AssociatedPair> tracksPairs = new ArrayList<AssociatedPair>();
+				tracking(this.gray, null, null, tracks, tracksPairs, this.gradient, this.pyramidForeward, this.pyramidBackward, this.trackerForeward, this.trackerBackward);
+				if (i < last){
+					tracks = denseSampling(this.gray, null, null, samplingInterval, this.configKlt, this.gradient, this.pyramidBackward, this.trackerBackward);
+				}
+				result.add(tracksPairs);
+			}
+			return result;
+		}
+	}
+
 	public static LinkedList<PyramidKltFeature> denseSampling( GrayU8 image, GrayS16[] derivX, GrayS16[] derivY,
 															int samplingInterval,
 															PkltConfig configKlt,
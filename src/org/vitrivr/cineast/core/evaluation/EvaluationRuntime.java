@@ -148,6 +148,7 @@ EvaluationRuntime implements Callable {
                 EvaluationResult result = this.performEvaluation(scores, path, gt);
                 this.writeToFile(category, result);
             }
+            container.release();
 
             this.processed += 1;
         }
@@ -1,5 +1,7 @@
 package org.vitrivr.cineast.core.features;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -13,15 +15,21 @@ import org.vitrivr.cineast.core.data.Pair;
 import org.vitrivr.cineast.core.data.distance.DistanceElement;
 import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
+import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
+import org.vitrivr.cineast.core.db.DBSelectorSupplier;
+import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
 import org.vitrivr.cineast.core.db.PersistentTuple;
 import org.vitrivr.cineast.core.features.abstracts.StagedFeatureModule;
+import org.vitrivr.cineast.core.util.LogHelper;
+import org.vitrivr.cineast.core.util.audio.FingerprintIndex;
 import org.vitrivr.cineast.core.util.dsp.fft.FFTUtil;
 import org.vitrivr.cineast.core.util.dsp.fft.STFT;
 import org.vitrivr.cineast.core.util.dsp.fft.Spectrum;
 import org.vitrivr.cineast.core.util.dsp.fft.windows.HanningWindow;
 
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
 
 /**
  * @author rgasser
@@ -38,6 +46,15 @@ public class AudioFingerprint extends StagedFeatureModule {
     /** Size of the window during STFT in seconds (as proposed in [2]). */
     private static final float WINDOW_SIZE = 0.2f;
 
+    /** Number of subsequent spectra each peak is paired with when hashing the fingerprint for the index. */
+    private static final int FAN_OUT = 3;
+
+    /** Minimum number of aligned hashes a segment must share with the query to be returned by the index. */
+    private static final int MIN_VOTES = 2;
+
+    /** Inverted index of the hashed fingerprints; complements the fingerprint vectors stored in the database. */
+    private FingerprintIndex index;
+
     /**
      * Default constructor;
      */
@@ -45,6 +62,18 @@ public class AudioFingerprint extends StagedFeatureModule {
         super("features_audiofingerprint", 4000.0f);
     }
 
+    @Override
+    public void init(PersistencyWriterSupplier phandlerSupply) {
+        super.init(phandlerSupply);
+        this.index = FingerprintIndex.forFile(indexFile());
+    }
+
+    @Override
+    public void init(DBSelectorSupplier selectorSupply) {
+        super.init(selectorSupply);
+        this.index = FingerprintIndex.forFile(indexFile());
+    }
+
     /**
      *
      * @param segment
@@ -62,6 +91,63 @@ public class AudioFingerprint extends StagedFeatureModule {
             tuples.add(this.phandler.generateTuple(segment.getId(), feature));
         }
         this.phandler.persist(tuples);
+
+        if (this.index != null) {
+            Pair<int[], int[]> hashes = this.hash(filteredSpectrum);
+            this.index.add(segment.getId(), hashes.first, hashes.second, vectors);
+        }
+    }
+
+    /**
+     * Writes the fingerprints collected during extraction to the index before releasing the other resources.
+     */
+    @Override
+    public void finish() {
+        if (this.index != null) {
+            try {
+                this.index.flush();
+            } catch (IOException e) {
+                LOGGER.error("Could not write the audio fingerprint index: {}", LogHelper.getStackTrace(e));
+            }
+        }
+        super.finish();
+    }
+
+    /**
+     * Executes a query-by-example. If the fingerprint index covers the entity (i.e. holds the fingerprints of all
+     * segments with rows in the entity), the hashed fingerprint of the query is looked up in the index and segments
+     * are ranked by the share of query hashes they contain at a consistent time offset. Otherwise, the fingerprint
+     * vectors are looked up in the database.
+     *
+     * @param sc SegmentContainer to base the query on.
+     * @param qc QueryConfiguration
+     * @return List of results
+     */
+    @Override
+    public List<ScoreElement> getSimilar(SegmentContainer sc, ReadableQueryConfig qc) {
+        if (this.index == null || !this.index.covers(this.tableName, this.selector::count)) {
+            return super.getSimilar(sc, qc);
+        }
+        Pair<int[], int[]> hashes = this.hash(this.filterSpectrum(sc));
+        if (hashes.first.length == 0) {
+            LOGGER.warn("No fingerprint could be generated from the provided query. Aborting query execution...");
+            this.setRemainingScoreBound(-1d);
+            return new ArrayList<>(0);
+        }
+
+        TObjectIntHashMap<String> votes = this.index.query(hashes.first, hashes.second, MIN_VOTES);
+        List<ScoreElement> results = new ArrayList<>(votes.size());
+        votes.forEachEntry((segmentId, count) -> {
+            results.add(new SegmentScoreElement(segmentId, Math.min(1.0, (double) count / hashes.first.length)));
+            return true;
+        });
+        results.sort(ScoreElement.SCORE_COMPARATOR.reversed());
+
+        /* Only return the ranks beyond the requested offset; the first rank that is cut bounds the remaining results. */
+        int max = qc.getMaxResultsPerModule();
+        this.setRemainingScoreBound(results.size() <= max ? -1d : results.get(max).getScore());
+        int offset = Math.min(qc.getResultsOffset(), Math.min(max, results.size()));
+        return new ArrayList<>(results.subList(offset, Math.min(max, results.size())));
     }
 
     /**
@@ -105,7 +191,7 @@ public class AudioFingerprint extends StagedFeatureModule {
      */
     @Override
     protected List<SegmentDistanceElement> lookup(List<float[]> features, List<ReadableQueryConfig> configs) {
-        final int numberOfPartialResults = Config.sharedConfig().getRetriever().getMaxResultsPerModule();
+        final int numberOfPartialResults = configs.isEmpty() ? Config.sharedConfig().getRetriever().getMaxResultsPerModule() : configs.get(0).getMaxResultsPerModule();
         List<SegmentDistanceElement> partialResults;
         if (features.size() == 1) {
             partialResults = this.selector.getNearestNeighbours(numberOfPartialResults, features.get(0), "feature", SegmentDistanceElement.class, configs.get(0));
@@ -179,6 +265,39 @@ public class AudioFingerprint extends StagedFeatureModule {
         return configs;
     }
 
+    /**
+     * Hashes the spectral peaks returned by {@link #filterSpectrum(SegmentContainer)} for the fingerprint index. Every
+     * peak is paired with the peak in the same frequency range of each of the next FAN_OUT spectra; the hash combines
+     * the frequency range, the distance between the spectra and the two (quantised) peak frequencies.
+     *
+     * @param peaks Peak frequencies, RANGES.length-1 per spectrum.
+     * @return Pair of hashes and the index of the spectrum each hash starts at.
+     */
+    private Pair<int[], int[]> hash(TIntArrayList peaks) {
+        final int bands = RANGES.length - 1;
+        final int spectra = peaks.size() / bands;
+        final TIntArrayList hashes = new TIntArrayList(spectra * bands * FAN_OUT);
+        final TIntArrayList offsets = new TIntArrayList(spectra * bands * FAN_OUT);
+        for (int i = 0; i < spectra; i++) {
+            for (int d = 1; d <= FAN_OUT && i + d < spectra; d++) {
+                for (int j = 0; j < bands; j++) {
+                    int anchor = Math.min(255, Math.max(0, peaks.get(i * bands + j) / 2));
+                    int target = Math.min(255, Math.max(0, peaks.get((i + d) * bands + j) / 2));
+                    hashes.add(((j * FAN_OUT + d - 1) << 16) | (anchor << 8) | target);
+                    offsets.add(i);
+                }
+            }
+        }
+        return new Pair<>(hashes.toArray(), offsets.toArray());
+    }
+
+    /**
+     * Returns the file the fingerprint index is stored in.
+     */
+    private static File indexFile() {
+        return new File(Config.sharedConfig().indexLocation(), "features_audiofingerprint.idx");
+    }
+
     /**
      *
      * @param segment
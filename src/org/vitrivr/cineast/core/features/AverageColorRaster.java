@@ -257,7 +257,7 @@ public class AverageColorRaster extends AbstractFeatureModule {
   }
 
   private List<ScoreElement> getSimilar(float[] raster, float[] hist, ReadableQueryConfig rqc) {
-    int limit = Config.sharedConfig().getRetriever().getMaxResultsPerModule();
+    int limit = rqc.getMaxResultsPerModule();
 
     QueryConfig qc = new QueryConfig(rqc).setDistanceIfEmpty(Distance.chisquared);
 
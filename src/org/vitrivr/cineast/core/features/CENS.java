@@ -14,7 +14,7 @@ import org.vitrivr.cineast.core.data.distance.DistanceElement;
 import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
-import org.vitrivr.cineast.core.features.abstracts.StagedFeatureModule;
+import org.vitrivr.cineast.core.features.abstracts.LSHIndexedFeatureModule;
 import org.vitrivr.cineast.core.util.MathHelper;
 import org.vitrivr.cineast.core.util.audio.HPCP;
 import org.vitrivr.cineast.core.util.dsp.fft.FFTUtil;
@@ -36,7 +36,7 @@ import org.vitrivr.cineast.core.util.dsp.fft.windows.HanningWindow;
  * @version 1.0
  * @created 16.02.17
  */
-public abstract class CENS extends StagedFeatureModule {
+public abstract class CENS extends LSHIndexedFeatureModule {
 
     /** Size of the window during STFT in seconds (as proposed in [2]). */
     private final static float WINDOW_SIZE = 0.1f;
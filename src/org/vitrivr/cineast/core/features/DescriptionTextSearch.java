@@ -1,12 +1,24 @@
 package org.vitrivr.cineast.core.features;
 
-import org.vitrivr.cineast.core.features.abstracts.SolrTextRetriever;
+import java.util.Collections;
+import java.util.List;
 
-public class DescriptionTextSearch extends SolrTextRetriever {
+import org.vitrivr.cineast.core.data.segments.SegmentContainer;
+import org.vitrivr.cineast.core.features.abstracts.TextIndexRetriever;
+
+public class DescriptionTextSearch extends TextIndexRetriever {
 
   @Override
   protected String getEntityName() {
     return "features_densecap";
   }
 
+  /**
+   * The descriptions are imported into Solr rather than extracted from the segments, hence no texts are indexed and
+   * queries are answered by Solr.
+   */
+  @Override
+  protected List<String> getTexts(SegmentContainer shot) {
+    return Collections.emptyList();
+  }
 }
@@ -16,13 +16,14 @@ import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
 import org.vitrivr.cineast.core.db.PersistentTuple;
 import org.vitrivr.cineast.core.features.abstracts.AbstractFeatureModule;
+import org.vitrivr.cineast.core.features.extractor.MotionExtractor;
 import org.vitrivr.cineast.core.setup.AttributeDefinition;
 import org.vitrivr.cineast.core.setup.AttributeDefinition.AttributeType;
 import org.vitrivr.cineast.core.setup.EntityCreator;
 import org.vitrivr.cineast.core.util.MaskGenerator;
 import org.vitrivr.cineast.core.util.TimeHelper;
 
-public class ForegroundBoundingBox extends AbstractFeatureModule {
+public class ForegroundBoundingBox extends AbstractFeatureModule implements MotionExtractor {
 
   public ForegroundBoundingBox() {
     super("features_ForegroundBoundingBox", 0.5f);
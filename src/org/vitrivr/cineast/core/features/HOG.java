@@ -1,6 +1,5 @@
 package org.vitrivr.cineast.core.features;
 
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -10,15 +9,14 @@ import org.vitrivr.cineast.core.config.QueryConfig;
 import org.vitrivr.cineast.core.config.ReadableQueryConfig;
 import org.vitrivr.cineast.core.data.CorrespondenceFunction;
 import org.vitrivr.cineast.core.data.FloatVectorImpl;
+import org.vitrivr.cineast.core.data.MultiImage;
 import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.features.abstracts.AbstractCodebookFeatureModule;
 import org.vitrivr.cineast.core.util.images.HOGHelper;
 
-import boofcv.abst.feature.dense.DescribeImageDense;
 import boofcv.struct.feature.TupleDesc_F64;
-import boofcv.struct.image.GrayU8;
 
 /**
  * @author rgasser
@@ -46,11 +44,11 @@ public abstract class HOG extends AbstractCodebookFeatureModule {
         long start = System.currentTimeMillis();
         LOGGER.traceEntry();
 
-        BufferedImage image = shot.getMostRepresentativeFrame().getImage().getBufferedImage();
+        MultiImage image = shot.getMostRepresentativeFrame().getImage();
         if (image != null) {
-            DescribeImageDense<GrayU8, TupleDesc_F64> hog = HOGHelper.getHOGDescriptors(image);
-            if (hog != null && hog.getDescriptions().size() > 0) {
-                float[] histogram_f = this.histogram(true, hog.getDescriptions());
+            List<TupleDesc_F64> hog = shot.getHOGDescriptors(image, HOGHelper.DEFAULT_CONFIG);
+            if (hog != null && hog.size() > 0) {
+                float[] histogram_f = this.histogram(true, hog);
                 this.persist(shot.getId(), new FloatVectorImpl(histogram_f));
             } else {
                 LOGGER.warn("No HOG feature could be extracted for segment {}. This is not necessarily an error!", shot.getId());
@@ -79,10 +77,9 @@ public abstract class HOG extends AbstractCodebookFeatureModule {
         List<float[]> features = new ArrayList<>(1);
 
         /* Extract features. */
-        BufferedImage image = sc.getMostRepresentativeFrame().getImage().getBufferedImage();
-        DescribeImageDense<GrayU8, TupleDesc_F64> hog = HOGHelper.getHOGDescriptors(image);
-        if (hog != null && hog.getDescriptions().size() > 0) {
-            features.add(this.histogram(true, hog.getDescriptions()));
+        List<TupleDesc_F64> hog = sc.getHOGDescriptors(sc.getMostRepresentativeFrame().getImage(), HOGHelper.DEFAULT_CONFIG);
+        if (hog != null && hog.size() > 0) {
+            features.add(this.histogram(true, hog));
         }
 
         return features;
@@ -15,7 +15,7 @@ import org.vitrivr.cineast.core.data.distance.DistanceElement;
 import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
-import org.vitrivr.cineast.core.features.abstracts.StagedFeatureModule;
+import org.vitrivr.cineast.core.features.abstracts.LSHIndexedFeatureModule;
 import org.vitrivr.cineast.core.util.MathHelper;
 import org.vitrivr.cineast.core.util.audio.HPCP;
 import org.vitrivr.cineast.core.util.dsp.fft.FFTUtil;
@@ -33,7 +33,7 @@ import org.vitrivr.cineast.core.util.dsp.fft.windows.HanningWindow;
  * @version 1.0
  * @created 26.02.17
  */
-public abstract class HPCPShingle extends StagedFeatureModule {
+public abstract class HPCPShingle extends LSHIndexedFeatureModule {
 
     /** Duration of the window during STFT in seconds. */
     private final static float WINDOW_SIZE = 0.200f;
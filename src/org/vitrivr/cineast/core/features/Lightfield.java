@@ -16,9 +16,6 @@ import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.features.abstracts.StagedFeatureModule;
-import org.vitrivr.cineast.core.render.JOGLOffscreenRenderer;
-import org.vitrivr.cineast.core.render.Renderer;
-import org.vitrivr.cineast.core.util.LogHelper;
 
 import com.twelvemonkeys.image.ImageUtil;
 
@@ -50,9 +47,6 @@ public abstract class Lightfield extends StagedFeatureModule {
      */
     private final double[][] camerapositions;
 
-    /** Offscreen rendering environment used to create Lightfield images. */
-    private final Renderer renderer;
-
     /**
      *
      * @param tableName
@@ -70,19 +64,6 @@ public abstract class Lightfield extends StagedFeatureModule {
             }
         }
         this.camerapositions = camerapositions;
-
-        /*
-         * Instantiate JOGLOffscreenRenderer.
-         * Handle the case where it cannot be created due to missing OpenGL support.
-         */
-        JOGLOffscreenRenderer renderer = null;
-        try {
-            renderer = new JOGLOffscreenRenderer(RENDERING_SIZE, RENDERING_SIZE);
-        } catch (Exception exception) {
-            LOGGER.error("Could not instantiate JOGLOffscreenRenderer! This instance of {} will not create any results or features!", this.getClass().getSimpleName());
-        } finally {
-            this.renderer = renderer;
-        }
     }
 
 
@@ -99,12 +80,6 @@ public abstract class Lightfield extends StagedFeatureModule {
      */
     @Override
     protected List<float[]> preprocessQuery(SegmentContainer sc, ReadableQueryConfig qc) {
-        /* Check if renderer could be initialised. */
-        if (this.renderer == null) {
-            LOGGER.error("No renderer found. {} does not return any results.", this.getClass().getSimpleName());
-            return new ArrayList<>(0);
-        }
-
         /* Extract features from either the provided Mesh (1) or image (2). */
         ReadableMesh mesh = sc.getNormalizedMesh();
         List<float[]> features;
@@ -112,7 +87,7 @@ public abstract class Lightfield extends StagedFeatureModule {
             BufferedImage image = ImageUtil.createResampled(sc.getAvgImg().getBufferedImage(), RENDERING_SIZE, RENDERING_SIZE, Image.SCALE_SMOOTH);
             features = this.featureVectorsFromImage(image,POSEIDX_UNKNOWN);
         } else {
-            features = this.featureVectorsFromMesh(mesh);
+            features = this.featureVectorsFromSegment(sc);
         }
 
         return features;
@@ -168,12 +143,6 @@ public abstract class Lightfield extends StagedFeatureModule {
      */
     @Override
     public void processSegment(SegmentContainer sc) {
-        /* Check for renderer. */
-        if (this.renderer == null) {
-            LOGGER.error("No renderer found! {} does not create any features.", this.getClass().getSimpleName());
-            return;
-        }
-
         /* If Mesh is empty, no feature is persisted. */
         ReadableMesh mesh = sc.getNormalizedMesh();
         if (mesh == null || mesh.isEmpty()) {
@@ -181,55 +150,34 @@ public abstract class Lightfield extends StagedFeatureModule {
         }
 
         /* Extract and persist all features. */
-        List<float[]> features = this.featureVectorsFromMesh(mesh);
+        List<float[]> features = this.featureVectorsFromSegment(sc);
         for (float[] feature : features) {
             this.persist(sc.getId(), new FloatVectorImpl(feature));
         }
     }
 
     /**
-     * Extracts the Lightfield Fourier descriptors from a provided Mesh. The returned list contains
+     * Extracts the Lightfield descriptors from the normalized Mesh of a segment. The returned list contains
      * elements of which each holds a pose-index (relative to the camera-positions used by the feature module)
      * and the associated feature-vector (s).
      *
-     * @param mesh Mesh for which to extract the Lightfield Fourier descriptors.
+     * The renderings of the Mesh are obtained from the segment, which may share them with other feature modules
+     * that use the same camera-positions.
+     *
+     * @param sc SegmentContainer with a non-empty mesh.
      * @return List of descriptors for mesh.
      */
-    protected List<float[]> featureVectorsFromMesh(ReadableMesh mesh) {
+    protected List<float[]> featureVectorsFromSegment(SegmentContainer sc) {
         /* Prepare empty list of features. */
         List<float[]> features = new ArrayList<>(20);
 
-        /* Retains the renderer and returns if retention fails. */
-        if (!this.renderer.retain()) {
-          return features;
+        /* Obtains the rendered images from the configured perspectives. */
+        List<BufferedImage> images = sc.getNormalizedRenderings(this.camerapositions, RENDERING_SIZE);
+        if (images.size() < this.camerapositions.length) {
+            LOGGER.error("Could not generate all features for {} because only {} of {} images could be obtained from the renderer.", this.getClass().getSimpleName(), images.size(), this.camerapositions.length);
         }
-
-        /* Everything happens in the try-catch block so as to make sure, that if any exception occurs,
-         * the renderer is released again.
-         */
-        try {
-            /* Clears the renderer and assembles a new Mesh. */
-            this.renderer.clear();
-            this.renderer.assemble(mesh);
-
-            /* Obtains rendered image from configured perspective. */
-            for (int i = 0; i < this.camerapositions.length; i++) {
-                /* Adjust the camera and render the image. */
-                this.renderer.positionCamera((float) this.camerapositions[i][0], (float) this.camerapositions[i][1], (float) this.camerapositions[i][2]);
-                this.renderer.render();
-                BufferedImage image = this.renderer.obtain();
-                if (image == null) {
-                    LOGGER.error("Could not generate feature for {} because no image could be obtained from JOGOffscreenRenderer.", this.getClass().getSimpleName());
-                    return features;
-                }
-                features.addAll(this.featureVectorsFromImage(image, i));
-            }
-
-        } catch (Exception exception) {
-            LOGGER.error("Could not generate feature for {} because an unknown exception occurred ({}).", this.getClass().getSimpleName(), LogHelper.getStackTrace(exception));
-        } finally {
-            /* Release the rendering context. */
-            this.renderer.release();
+        for (int i = 0; i < images.size(); i++) {
+            features.addAll(this.featureVectorsFromImage(images.get(i), i));
         }
 
         /* Extract and persist the feature descriptors. */
@@ -14,7 +14,7 @@ import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
-import org.vitrivr.cineast.core.features.abstracts.StagedFeatureModule;
+import org.vitrivr.cineast.core.features.abstracts.LSHIndexedFeatureModule;
 import org.vitrivr.cineast.core.util.MathHelper;
 import org.vitrivr.cineast.core.util.audio.MFCC;
 import org.vitrivr.cineast.core.util.dsp.fft.FFTUtil;
@@ -28,7 +28,7 @@ import gnu.trove.map.hash.TObjectIntHashMap;
  * @version 1.0
  * @created 28.02.17
  */
-public class MFCCShingle extends StagedFeatureModule {
+public class MFCCShingle extends LSHIndexedFeatureModule {
 
     /** Size of the window during STFT in # samples. */
     private final static float WINDOW_SIZE = 0.2f;
@@ -125,6 +125,18 @@ public class MFCCShingle extends StagedFeatureModule {
                 .forEach((feature) -> this.persist(segment.getId(), new FloatVectorImpl(feature)));
     }
 
+    /**
+     * The score counts the matches of a segment instead of measuring the distance of the best match. Hence, it cannot
+     * be bounded by the distances of the last partial results.
+     *
+     * @return Upper bound for the score of the results not returned yet or a negative value if all results were returned.
+     */
+    @Override
+    public double getRemainingScoreBound() {
+        double bound = super.getRemainingScoreBound();
+        return bound < 0 ? bound : 1d;
+    }
+
     /**
      * Derives and returns a list of MFCC features for a SegmentContainer.
      *
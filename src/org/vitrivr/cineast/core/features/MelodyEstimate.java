@@ -153,7 +153,7 @@ public class MelodyEstimate extends StagedFeatureModule {
     private Melody transcribe(SegmentContainer sc) {
         /* Calculate STFT and apply spectral whitening. */
         Pair<Integer, Integer> parameters = FFTUtil.parametersForDuration(sc.getSamplingrate(), WINDOW_SIZE);
-        STFT stft = sc.getSTFT(parameters.first, 0, parameters.second, new HanningWindow());
+        STFT stft = sc.getSTFT(parameters.first, 0, parameters.second, new HanningWindow()).copy();
         stft.applyFilter(new SpectralWhiteningFilter(stft.getWindowsize(), stft.getSamplingrate(), 0.33f, 30));
 
         float time = stft.timeStepsize();
@@ -13,11 +13,8 @@ import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.features.abstracts.AbstractCodebookFeatureModule;
-import org.vitrivr.cineast.core.util.images.SURFHelper;
 
-import boofcv.abst.feature.detdesc.DetectDescribePoint;
 import boofcv.struct.feature.BrightFeature;
-import boofcv.struct.image.GrayF32;
 
 /**
  * @author rgasser
@@ -42,8 +39,8 @@ public abstract class SURF extends AbstractCodebookFeatureModule {
         long start = System.currentTimeMillis();
         LOGGER.traceEntry();
 
-        DetectDescribePoint<GrayF32, BrightFeature> descriptors = SURFHelper.getStableSurf(shot.getMostRepresentativeFrame().getImage().getBufferedImage());
-        if (descriptors != null && descriptors.getNumberOfFeatures() > 0) {
+        List<BrightFeature> descriptors = shot.getStableSurf(shot.getMostRepresentativeFrame().getImage());
+        if (descriptors != null && descriptors.size() > 0) {
           float[] histogram_f = this.histogram(true, descriptors);
           this.persist(shot.getId(), new FloatVectorImpl(histogram_f));
         } else {
@@ -71,8 +68,8 @@ public abstract class SURF extends AbstractCodebookFeatureModule {
         List<float[]> features = new ArrayList<>(1);
 
         /* Extract features. */
-        DetectDescribePoint<GrayF32, BrightFeature> descriptors = SURFHelper.getStableSurf(sc.getAvgImg().getBufferedImage());
-        if (descriptors != null && descriptors.getNumberOfFeatures() > 0) {
+        List<BrightFeature> descriptors = sc.getStableSurf(sc.getAvgImg());
+        if (descriptors != null && descriptors.size() > 0) {
             features.add(this.histogram(true, descriptors));
         }
 
@@ -2,6 +2,8 @@ package org.vitrivr.cineast.core.features;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.util.FastMath;
@@ -11,7 +13,6 @@ import org.vitrivr.cineast.core.data.FloatVectorImpl;
 import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
 import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.data.m3d.VoxelGrid;
-import org.vitrivr.cineast.core.data.m3d.Voxelizer;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.features.abstracts.StagedFeatureModule;
@@ -29,8 +30,17 @@ import org.vitrivr.cineast.core.util.math.functions.SphericalHarmonicsFunction;
  * @created 16.02.17
  */
 public abstract class SphericalHarmonics extends StagedFeatureModule {
-    /** Voxelizer instance used with thes feature module. */
-    private final Voxelizer voxelizer;
+    /** Increment of the angles during calculation of the descriptors. */
+    private static final float INCREMENT = 0.1f;
+
+    /** Cap on R (i.e. radii up to R-cap are considered). */
+    private static final int CAP = 10;
+
+    /** Pre-calculated SamplingTables by grid size, min_l and max_l; shared by all instances. */
+    private static final ConcurrentHashMap<Long, SamplingTable> TABLES = new ConcurrentHashMap<>();
+
+    /** Resolution (size of a single voxel) of the VoxelGrid used with this feature module. */
+    private final float resolution;
 
     /* Size of the Voxel Grid in each of the three dimensions. */
     private final int grid_size;
@@ -53,7 +63,7 @@ public abstract class SphericalHarmonics extends StagedFeatureModule {
         this.grid_size = grid_size;
         this.min_l = min_l;
         this.max_l = max_l;
-        this.voxelizer = new Voxelizer(2.0f/grid_size);
+        this.resolution = 2.0f/grid_size;
     }
 
     /**
@@ -69,7 +79,7 @@ public abstract class SphericalHarmonics extends StagedFeatureModule {
         }
 
         /* Extract feature and persist it. */
-        float[] feature = this.featureVectorFromMesh(mesh);
+        float[] feature = this.featureVectorFromSegment(shot);
         this.persist(shot.getId(), new FloatVectorImpl(feature));
     }
 
@@ -96,7 +106,7 @@ public abstract class SphericalHarmonics extends StagedFeatureModule {
         }
 
         /* Extract feature and persist it. */
-        features.add(this.featureVectorFromMesh(mesh));
+        features.add(this.featureVectorFromSegment(sc));
         return features;
     }
 
@@ -116,8 +126,9 @@ public abstract class SphericalHarmonics extends StagedFeatureModule {
     }
 
     /**
-     * Obtains the SphericalHarmonic descriptor of the Mesh. To do so, the Mesh is rasterized into a VoxelGrid of 65 x 65 x 65
-     * Voxels (one *safety-voxel* per dimension to prevent ArrayIndexOutOfBounds exceptions)
+     * Obtains the SphericalHarmonic descriptor of the normalized Mesh of the segment. To do so, the Mesh is rasterized into a
+     * VoxelGrid of 65 x 65 x 65 Voxels (one *safety-voxel* per dimension to prevent ArrayIndexOutOfBounds exceptions). That
+     * grid is obtained from the segment, which may share it with other feature modules that use the same resolution.
      *
      * This VoxelGrid is treated as a function f(x,y,z) = 1.0 if Voxel is visible and 0.0 otherwise. The grid is
      * sampled at 7 different radii r ranging from 0.25 to 1.0, where 0.0 lies at the center of the grid and 1.0 touches
@@ -134,77 +145,139 @@ public abstract class SphericalHarmonics extends StagedFeatureModule {
      * Depending on the model, the first components may be 0.0 because the surface of the sphere defined by the radius only
      * touches empty space (i.e the hollow interior of the model).
      *
-     * @param mesh
+     * @param sc SegmentContainer with a non-empty mesh.
      * @return
      */
-    private float[] featureVectorFromMesh(ReadableMesh mesh) {
-        final float increment = 0.1f; /* Increment of the angles during calculation of the descriptors. */
-        final int cap = 10; /* Cap on R (i.e. radii up to R-cap are considered). */
-        final int R = this.grid_size/2;
-        final int numberOfCoefficients = SphericalHarmonicsFunction.numberOfCoefficients(this.max_l, true) - SphericalHarmonicsFunction.numberOfCoefficients(this.min_l-1, true);
+    private float[] featureVectorFromSegment(SegmentContainer sc) {
+        return SphericalHarmonics.descriptor(sc.getNormalizedVoxelgrid(this.resolution, this.grid_size + 1), this.grid_size, this.min_l, this.max_l);
+    }
+
+    /**
+     * Calculates the SphericalHarmonic descriptor of a VoxelGrid as described in {@link #featureVectorFromSegment(SegmentContainer)},
+     * using the pre-calculated SamplingTable for the grid size and range of harmonics.
+     *
+     * @param grid VoxelGrid of (grid_size + 1) voxels in each dimension.
+     * @param grid_size Size of the Voxel-Grid without the safety-voxel.
+     * @param min_l Minimum harmonic l to consider.
+     * @param max_l Maximum harmonic l to consider.
+     * @return Normalized feature vector; all zero if the grid is invisible.
+     */
+    public static float[] descriptor(VoxelGrid grid, int grid_size, int min_l, int max_l) {
+        final SamplingTable table = TABLES.computeIfAbsent(((long) grid_size << 32) | ((long) min_l << 16) | max_l, k -> new SamplingTable(grid_size, min_l, max_l));
 
         /* Prepares an empty array for the feature vector. */
-        float[] feature = new float[(R-cap)*numberOfCoefficients];
+        final float[] feature = new float[table.radii * table.coefficients];
 
-        /* Voxelizes the grid from the mesh. If the resulting grid is invisible, the method returns immediately. */
-        VoxelGrid grid = this.voxelizer.voxelize(mesh, this.grid_size + 1, this.grid_size + 1, this.grid_size + 1);
+        /* If the grid is invisible, the method returns immediately. */
         if (!grid.isVisible()) {
           return feature;
         }
 
-        List<List<Complex>> descriptors = new ArrayList<>();
-
         /*
-         * Outer-loops; iterate from l=0 to 5 and m=-l to +l. For each combination, a new SphericalHarmonicsFunction is
-         * created.
+         * Calculates the projections at radius r for all l and m (i.e. the integral ∫f(ϑ,ϼ)Zlm(ϑ,ϼ)dϴdϑ) as sums over
+         * the samples that hit a visible voxel. The radii are independent of one another and processed in parallel.
          */
-        for (int l = this.min_l; l<=this.max_l; l++) {
-            for (int m = 0; m <= l; m++) {
-
-                final SphericalHarmonicsFunction fkt = new SphericalHarmonicsFunction(l,m);
-
-                /*
-                 * Middle-loop; Iterate over the 7 radii.
-                 */
-                for (int r=0;r<R-cap;r++) {
-                    /* Allocate array list for radius. */
-                    if (descriptors.size() <= r) {
-                      descriptors.add(new ArrayList<>());
-                    }
-                    List<Complex> list = descriptors.get(r);
-
-                    Complex result = new Complex(0.0);
-
-                    /*
-                     * Used to calculate the projections at radius r for l and m (i.e. the integral ∫f(ϑ,ϼ)Zlm(ϑ,ϼ)dϴdϑ)
-                     */
-                    for (float theta=0.0f; theta<=2*Math.PI;theta+=increment) {
-                        for (float phi=0.0f; phi<=Math.PI;phi+=increment) {
-                            int x = (int)((r+1) * FastMath.sin(theta) * FastMath.cos(phi)) + R;
-                            int y = (int)((r+1) * FastMath.cos(theta)) + R;
-                            int z = (int)((r+1) * FastMath.sin(theta) * FastMath.sin(phi)) + R;
-
-                            if (grid.isVisible(x,y,z)) {
-                                result = result.add(fkt.value(theta, phi).conjugate().multiply(increment*increment));
-                            }
-                        }
+        IntStream.range(0, table.radii).parallel().forEach(r -> {
+            final int[] x = table.x[r];
+            final int[] y = table.y[r];
+            final int[] z = table.z[r];
+            final boolean[] visible = new boolean[table.samples];
+            for (int s = 0; s < table.samples; s++) {
+                visible[s] = grid.isVisible(x[s], y[s], z[s]);
+            }
+            for (int c = 0; c < table.coefficients; c++) {
+                final double[] real = table.real[c];
+                final double[] imaginary = table.imaginary[c];
+                double re = 0.0;
+                double im = 0.0;
+                for (int s = 0; s < table.samples; s++) {
+                    if (visible[s]) {
+                        re += real[s];
+                        im += imaginary[s];
                     }
+                }
+                feature[r * table.coefficients + c] = (float) new Complex(re, im).abs();
+            }
+        });
+
+        /* Returns the normalized vector. */
+        return MathHelper.normalizeL2(feature);
+    }
+
+    /**
+     * Pre-calculated values required to obtain the SphericalHarmonic descriptor for a specific grid size and range of
+     * harmonics: The conjugated values of all SphericalHarmonicsFunctions (scaled by the area of a sample) at each
+     * sampled angle (ϑ, ϼ) and the voxel each sample hits at each radius.
+     */
+    private static final class SamplingTable {
+        /** Number of radii the grid is sampled at. */
+        private final int radii;
+
+        /** Number of coefficients per radius, i.e. the number of (l,m) pairs. */
+        private final int coefficients;
+
+        /** Number of sampled angles (ϑ, ϼ). */
+        private final int samples;
+
+        /** Real parts of the weighted, conjugated function values by coefficient and sample. */
+        private final double[][] real;
+
+        /** Imaginary parts of the weighted, conjugated function values by coefficient and sample. */
+        private final double[][] imaginary;
+
+        /** Voxel coordinates by radius and sample. */
+        private final int[][] x, y, z;
+
+        /**
+         * Constructor for SamplingTable. The angles are enumerated in float steps of INCREMENT, so that the table
+         * contains exactly the samples of a direct evaluation.
+         *
+         * @param grid_size Size of the Voxel-Grid.
+         * @param min_l Minimum harmonic l to consider.
+         * @param max_l Maximum harmonic l to consider.
+         */
+        private SamplingTable(int grid_size, int min_l, int max_l) {
+            final int R = grid_size/2;
+            this.radii = Math.max(0, R - CAP);
+            this.coefficients = SphericalHarmonicsFunction.numberOfCoefficients(max_l, true) - SphericalHarmonicsFunction.numberOfCoefficients(min_l-1, true);
 
-                    list.add(result);
+            /* Enumerate the sampled angles. */
+            final List<float[]> angles = new ArrayList<>();
+            for (float theta=0.0f; theta<=2*Math.PI;theta+=INCREMENT) {
+                for (float phi=0.0f; phi<=Math.PI;phi+=INCREMENT) {
+                    angles.add(new float[]{theta, phi});
                 }
             }
-        }
+            this.samples = angles.size();
 
-        /* Assembles the actual feature vector. */
-        int i = 0;
-        for (List<Complex> radius : descriptors) {
-            for (Complex descriptor : radius) {
-                feature[i] = (float)descriptor.abs();
-                i++;
+            /* Values of the SphericalHarmonicsFunctions. */
+            this.real = new double[this.coefficients][this.samples];
+            this.imaginary = new double[this.coefficients][this.samples];
+            int c = 0;
+            for (int l = min_l; l<=max_l; l++) {
+                for (int m = 0; m <= l; m++, c++) {
+                    final SphericalHarmonicsFunction fkt = new SphericalHarmonicsFunction(l,m);
+                    for (int s = 0; s < this.samples; s++) {
+                        final Complex value = fkt.value(angles.get(s)[0], angles.get(s)[1]).conjugate().multiply(INCREMENT*INCREMENT);
+                        this.real[c][s] = value.getReal();
+                        this.imaginary[c][s] = value.getImaginary();
+                    }
+                }
             }
-        }
 
-        /* Returns the normalized vector. */
-        return MathHelper.normalizeL2(feature);
+            /* Voxel coordinates. */
+            this.x = new int[this.radii][this.samples];
+            this.y = new int[this.radii][this.samples];
+            this.z = new int[this.radii][this.samples];
+            for (int r = 0; r < this.radii; r++) {
+                for (int s = 0; s < this.samples; s++) {
+                    final float theta = angles.get(s)[0];
+                    final float phi = angles.get(s)[1];
+                    this.x[r][s] = (int)((r+1) * FastMath.sin(theta) * FastMath.cos(phi)) + R;
+                    this.y[r][s] = (int)((r+1) * FastMath.cos(theta)) + R;
+                    this.z[r][s] = (int)((r+1) * FastMath.sin(theta) * FastMath.sin(phi)) + R;
+                }
+            }
+        }
     }
 }
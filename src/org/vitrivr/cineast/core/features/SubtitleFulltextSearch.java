@@ -1,12 +1,30 @@
 package org.vitrivr.cineast.core.features;
 
-import org.vitrivr.cineast.core.features.abstracts.SolrTextRetriever;
+import java.util.ArrayList;
+import java.util.List;
 
-public class SubtitleFulltextSearch extends SolrTextRetriever {
+import org.vitrivr.cineast.core.data.segments.SegmentContainer;
+import org.vitrivr.cineast.core.decode.subtitle.SubtitleItem;
+import org.vitrivr.cineast.core.features.abstracts.TextIndexRetriever;
+
+public class SubtitleFulltextSearch extends TextIndexRetriever {
 
   @Override
   protected String getEntityName() {
     return "features_asr";
   }
 
+  /**
+   * The texts of a segment are its subtitle items.
+   */
+  @Override
+  protected List<String> getTexts(SegmentContainer shot) {
+    List<SubtitleItem> subItems = shot.getSubtitleItems();
+    List<String> texts = new ArrayList<>(subItems.size());
+    for (SubtitleItem subItem : subItems) {
+      texts.add(subItem.getText());
+    }
+    return texts;
+  }
+
 }
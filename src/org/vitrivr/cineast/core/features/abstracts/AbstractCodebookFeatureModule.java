@@ -1,5 +1,6 @@
 package org.vitrivr.cineast.core.features.abstracts;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.ddogleg.clustering.AssignCluster;
@@ -7,6 +8,7 @@ import org.vitrivr.cineast.core.config.QueryConfig;
 import org.vitrivr.cineast.core.config.ReadableQueryConfig;
 import org.vitrivr.cineast.core.db.DBSelectorSupplier;
 import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
+import org.vitrivr.cineast.core.features.codebook.CodebookTree;
 
 import boofcv.abst.feature.detdesc.DetectDescribePoint;
 import boofcv.alg.scene.FeatureToWordHistogram_F64;
@@ -34,6 +36,9 @@ public abstract class AbstractCodebookFeatureModule extends StagedFeatureModule
     /** The Assignment used for the codebook. */
     private AssignCluster<double[]> assignment;
 
+    /** k-d tree over the words of the codebook used for the assignment; null if the codebook is not supported. */
+    private CodebookTree tree;
+
     /** The folder that contains the Codebook(s). */
     private static String CODEBOOK_FOLDER = "./resources/codebooks/";
 
@@ -57,6 +62,7 @@ public abstract class AbstractCodebookFeatureModule extends StagedFeatureModule
 
         /* Load the Codebook. */
         this.assignment = UtilIO.load(CODEBOOK_FOLDER + this.codebook());
+        this.tree = CodebookTree.from(this.assignment);
     }
 
     /**
@@ -70,6 +76,7 @@ public abstract class AbstractCodebookFeatureModule extends StagedFeatureModule
 
         /* Load the Codebook. */
         this.assignment = UtilIO.load(CODEBOOK_FOLDER + this.codebook());
+        this.tree = CodebookTree.from(this.assignment);
     }
 
     /**
@@ -81,6 +88,14 @@ public abstract class AbstractCodebookFeatureModule extends StagedFeatureModule
      * @return float[] array with codebook
      */
     protected final float[] histogram(boolean hard, DetectDescribePoint<GrayF32, BrightFeature> descriptors) {
+        if (this.tree != null) {
+            List<BrightFeature> list = new ArrayList<>(descriptors.getNumberOfFeatures());
+            for (int i=0;i<descriptors.getNumberOfFeatures();i++) {
+                list.add(descriptors.getDescription(i));
+            }
+            return this.floatToDoubleArray(this.tree.histogram(hard, list));
+        }
+
         /* Create new  Histogram-Calculator. */
         FeatureToWordHistogram_F64 histogram = new FeatureToWordHistogram_F64(this.assignment, hard);
 
@@ -102,7 +117,12 @@ public abstract class AbstractCodebookFeatureModule extends StagedFeatureModule
      * @param descriptors Feature descriptors as List of TupleDesc_F64
      * @return float[] array with codebook
      */
-    protected final float[] histogram(boolean hard, List<TupleDesc_F64> descriptors) {
+    protected final float[] histogram(boolean hard, List<? extends TupleDesc_F64> descriptors) {
+        /* Assign all descriptors in one batch using the k-d tree, if available. */
+        if (this.tree != null) {
+            return this.floatToDoubleArray(this.tree.histogram(hard, descriptors));
+        }
+
         /* Create new  Histogram-Calculator. */
         FeatureToWordHistogram_F64 histogram = new FeatureToWordHistogram_F64(this.assignment, hard);
 
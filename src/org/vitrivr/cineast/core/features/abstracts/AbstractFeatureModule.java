@@ -87,8 +87,9 @@ public abstract class AbstractFeatureModule implements Extractor, Retriever {
    */
   protected List<ScoreElement> getSimilar(float[] vector, ReadableQueryConfig qc) {
     ReadableQueryConfig qcc = setQueryConfig(qc);
+    int offset = qcc.getResultsOffset();
     List<SegmentDistanceElement> distances = this.selector
-        .getNearestNeighbours(Config.sharedConfig().getRetriever().getMaxResultsPerModule(), vector,
+        .getNearestNeighbourPage(offset, qcc.getMaxResultsPerModule() - offset, vector,
             "feature", SegmentDistanceElement.class, qcc);
     CorrespondenceFunction function = qcc.getCorrespondenceFunction().orElse(linearCorrespondence);
     return DistanceElement.toScore(distances, function);
@@ -0,0 +1,146 @@
+package org.vitrivr.cineast.core.features.abstracts;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.vitrivr.cineast.core.config.Config;
+import org.vitrivr.cineast.core.config.QueryConfig;
+import org.vitrivr.cineast.core.config.ReadableQueryConfig;
+import org.vitrivr.cineast.core.data.CorrespondenceFunction;
+import org.vitrivr.cineast.core.data.ReadableFloatVector;
+import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
+import org.vitrivr.cineast.core.db.DBSelectorSupplier;
+import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
+import org.vitrivr.cineast.core.util.LSHIndex;
+import org.vitrivr.cineast.core.util.LogHelper;
+
+/**
+ * A {@link StagedFeatureModule} that maintains an {@link LSHIndex} of its feature vectors in addition to the
+ * entity in the storage layer. This is meant for modules that persist and query many vectors per segment
+ * (e.g. audio shingles), for which an exhaustive kNN lookup per query vector is expensive.
+ *
+ * During extraction, every persisted vector is added to the index, which is written in {@link #finish()}.
+ * During retrieval, the lookup stage uses the index for candidate generation and exact re-ranking as long as
+ * the index covers the entity (i.e. holds at least as many vectors as the entity has rows) and the query uses the
+ * unweighted euclidean distance. Otherwise, e.g. while the entity contains vectors extracted before the index
+ * existed, the lookup is delegated to the storage layer as before.
+ */
+public abstract class LSHIndexedFeatureModule extends StagedFeatureModule {
+
+    /** The LSHIndex of the feature vectors of this module. */
+    private LSHIndex index;
+
+    /**
+     * Constructor
+     *
+     * @param tableName Name of the entity / table to persist data with and read data from.
+     * @param maxDist Maximum distance value (for normalization).
+     */
+    protected LSHIndexedFeatureModule(String tableName, float maxDist) {
+        super(tableName, maxDist);
+    }
+
+    @Override
+    public void init(PersistencyWriterSupplier phandlerSupply) {
+        super.init(phandlerSupply);
+        this.index = LSHIndex.forFile(this.indexFile());
+    }
+
+    @Override
+    public void init(DBSelectorSupplier selectorSupply) {
+        super.init(selectorSupply);
+        this.index = LSHIndex.forFile(this.indexFile());
+    }
+
+    @Override
+    protected void persist(String shotId, ReadableFloatVector fv) {
+        super.persist(shotId, fv);
+        if (this.index != null) {
+            this.index.add(shotId, ReadableFloatVector.toArray(fv));
+        }
+    }
+
+    @Override
+    protected void persist(String shotId, List<ReadableFloatVector> fvs) {
+        super.persist(shotId, fvs);
+        if (this.index != null) {
+            for (ReadableFloatVector fv : fvs) {
+                this.index.add(shotId, ReadableFloatVector.toArray(fv));
+            }
+        }
+    }
+
+    /**
+     * Writes the vectors collected during extraction to the index before releasing the other resources.
+     */
+    @Override
+    public void finish() {
+        if (this.index != null) {
+            try {
+                this.index.flush();
+            } catch (IOException e) {
+                LOGGER.error("Could not write the LSH index of {}: {}", this.tableName, LogHelper.getStackTrace(e));
+            }
+        }
+        super.finish();
+    }
+
+    /**
+     * Looks up the nearest neighbours of every feature in the LSHIndex, if it can be used for the query. Otherwise,
+     * the lookup is executed by the storage layer. Like the lookup of the storage layer, only the ranks beyond the
+     * offset requested by the query config are returned for every feature and the bound for the score of the remaining
+     * results is computed from the last result of every feature.
+     *
+     * @param features A list of feature-vectors (usually generated in the first stage). For each feature, a lookup is executed. May be empty!
+     * @param configs A ReadableQueryConfig object that contains query-related configuration parameters.
+     * @return Unfiltered list of partial results. May exceed the number of results a module is supposed to return and entries may occur multiple times.
+     */
+    @Override
+    protected List<SegmentDistanceElement> lookup(List<float[]> features, List<ReadableQueryConfig> configs) {
+        if (this.index == null || !this.indexable(configs) || !this.index.covers(this.tableName, this.selector::count)) {
+            return super.lookup(features, configs);
+        }
+        final int numberOfPartialResults = configs.isEmpty() ? Config.sharedConfig().getRetriever().getMaxResultsPerModule() : configs.get(0).getMaxResultsPerModule();
+        final int offset = configs.isEmpty() ? 0 : configs.get(0).getResultsOffset();
+        final List<SegmentDistanceElement> partialResults = new ArrayList<>(features.size() * numberOfPartialResults);
+
+        /* As in the storage layer, the remaining results are bounded by the best of the per-vector bounds. */
+        double bound = -1d;
+        boolean exhausted = false;
+        for (int i = 0; i < features.size(); i++) {
+            final List<SegmentDistanceElement> list = this.index.query(features.get(i), numberOfPartialResults);
+            if (list.size() >= numberOfPartialResults && !list.isEmpty()) {
+                final CorrespondenceFunction function = configs.get(i).getCorrespondenceFunction().orElse(this.linearCorrespondence);
+                bound = Math.max(bound, function.applyAsDouble(list.get(list.size() - 1).getDistance()));
+            } else {
+                exhausted = true;
+            }
+            if (offset < list.size()) {
+                partialResults.addAll(list.subList(offset, list.size()));
+            }
+        }
+        this.setRemainingScoreBound(exhausted ? -1d : bound);
+        return partialResults;
+    }
+
+    /**
+     * Checks if all configs use the unweighted euclidean distance, which is the one the LSHIndex is built for.
+     */
+    private boolean indexable(List<ReadableQueryConfig> configs) {
+        for (ReadableQueryConfig config : configs) {
+            if (config.getDistance().orElse(QueryConfig.Distance.euclidean) != QueryConfig.Distance.euclidean || config.getDistanceWeights().isPresent()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the file the LSHIndex of this module is stored in.
+     */
+    private File indexFile() {
+        return new File(Config.sharedConfig().indexLocation(), this.tableName + ".lsh");
+    }
+}
@@ -159,7 +159,7 @@ public abstract class MetadataFeatureModule<T extends ReadableFloatVector>
 
   private List<ScoreElement> getSimilar(float[] feature, ReadableQueryConfig rqc) {
     QueryConfig qc = QueryConfig.clone(rqc).setDistanceIfEmpty(this.defaultDistance());
-    int maxResultsPerModule = Config.sharedConfig().getRetriever().getMaxResultsPerModule();
+    int maxResultsPerModule = qc.getMaxResultsPerModule();
 
     List<ObjectDistanceElement> distances = this.dbSelector.getNearestNeighbours(
         maxResultsPerModule,
@@ -112,8 +112,9 @@ public abstract class MotionHistogramCalculator implements Retriever {
 
   protected List<ScoreElement> getSimilar(float[] vector, ReadableQueryConfig qc) {
     ReadableQueryConfig qcc = setQueryConfig(qc);
+    int offset = qcc.getResultsOffset();
     List<SegmentDistanceElement> distances = this.selector
-        .getNearestNeighbours(Config.sharedConfig().getRetriever().getMaxResultsPerModule(), vector,
+        .getNearestNeighbourPage(offset, qcc.getMaxResultsPerModule() - offset, vector,
             this.fieldName, SegmentDistanceElement.class, qcc);
     return DistanceElement.toScore(distances, qcc.getCorrespondenceFunction().get());
   }
@@ -15,6 +15,7 @@ import org.vitrivr.cineast.core.data.providers.primitive.PrimitiveTypeProvider;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
+import org.vitrivr.cineast.core.db.BatchingDBSelector;
 import org.vitrivr.cineast.core.db.DBSelector;
 import org.vitrivr.cineast.core.db.DBSelectorSupplier;
 import org.vitrivr.cineast.core.db.adampro.ADAMproSelector;
@@ -49,6 +50,10 @@ public abstract class SolrTextRetriever implements Retriever {
   @Override
   public void init(DBSelectorSupplier selectorSupply) {
     DBSelector s = selectorSupply.get();
+    if (s instanceof BatchingDBSelector) {
+      /* Solr queries are not batched; use the ADAMpro selector directly. */
+      s = ((BatchingDBSelector) s).unwrap();
+    }
     if (s instanceof ADAMproSelector) {
       this.selector = (ADAMproSelector) s;
       this.selector.open(getEntityName());
@@ -59,6 +64,15 @@ public abstract class SolrTextRetriever implements Retriever {
     }
   }
 
+  /**
+   * Returns the number of rows of the entity, which is the number of segments Solr can retrieve.
+   *
+   * @return Number of rows or -1, if they cannot be counted (e.g. without an ADAMpro selector).
+   */
+  protected long count() {
+    return this.selector == null ? -1 : this.selector.count();
+  }
+
   @Override
   public List<ScoreElement> getSimilar(String shotId, ReadableQueryConfig qc) {
     return new ArrayList<>(0); // currently not supported
@@ -71,7 +85,7 @@ public abstract class SolrTextRetriever implements Retriever {
     }
 
     HashMap<String, String> parameters = new HashMap<>();
-    parameters.put("rows", Integer.toString(Config.sharedConfig().getRetriever().getMaxResultsPerModule()));
+    parameters.put("rows", Integer.toString(qc.getMaxResultsPerModule()));
 
     List<SubtitleItem> subItems = sc.getSubtitleItems();
     
@@ -10,9 +10,11 @@ import org.vitrivr.cineast.core.benchmark.model.Benchmark;
 import org.vitrivr.cineast.core.config.Config;
 import org.vitrivr.cineast.core.config.QueryConfig;
 import org.vitrivr.cineast.core.config.ReadableQueryConfig;
+import org.vitrivr.cineast.core.data.CorrespondenceFunction;
 import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
+import org.vitrivr.cineast.core.features.retriever.BoundedRetriever;
 
 /**
  * This implementation of the AbstractFeatureModule executes every query, either based on a SegmentContainer
@@ -26,7 +28,7 @@ import org.vitrivr.cineast.core.data.segments.SegmentContainer;
  * @version 1.0
  * @created 25.04.17
  */
-public abstract class StagedFeatureModule extends AbstractFeatureModule {
+public abstract class StagedFeatureModule extends AbstractFeatureModule implements BoundedRetriever {
 
     protected static final org.apache.logging.log4j.Logger LOGGER = LogManager.getLogger();
 
@@ -41,6 +43,15 @@ public abstract class StagedFeatureModule extends AbstractFeatureModule {
     /** Instance of the BenchmarkEngine that is used to benchmark queries. */
     private final BenchmarkEngine benchmark_engine;
 
+    /** The query (SegmentContainer or segment ID) the cached features belong to. */
+    private Object cachedQuery;
+
+    /** Features of the last query; re-used when the same query is executed again with a larger depth. */
+    private List<float[]> cachedFeatures;
+
+    /** Upper bound for the score of the results the last query did not return; 1.0 if unknown. */
+    private double remainingScoreBound = 1d;
+
     /**
      *
      * @param tableName
@@ -80,12 +91,21 @@ public abstract class StagedFeatureModule extends AbstractFeatureModule {
 
         /* Load default query-config. */
         QueryConfig qcc = this.defaultQueryConfig(qc);
+        this.remainingScoreBound = 1d;
 
-        /* Extract features. */
-        List<float[]> features = this.preprocessQuery(sc, qcc);
+        /* Extract features; a query executed again with a larger depth re-uses the features of the last execution. */
+        List<float[]> features;
+        if (sc == this.cachedQuery) {
+            features = this.cachedFeatures;
+        } else {
+            features = this.preprocessQuery(sc, qcc);
+            this.cachedQuery = sc;
+            this.cachedFeatures = features;
+        }
 
         if (features.size() == 0) {
             LOGGER.warn("No features could be generated from the provided query. Aborting query execution...");
+            this.remainingScoreBound = -1d;
             benchmark.abort();
             return new ArrayList<>(0);
         }
@@ -135,11 +155,20 @@ public abstract class StagedFeatureModule extends AbstractFeatureModule {
 
         /* Load default query-config. */
         QueryConfig qcc = this.defaultQueryConfig(qc);
+        this.remainingScoreBound = 1d;
 
         /* Lookup features. */
-        List<float[]> features = this.selector.getFeatureVectors("id", segmentId, "feature");
+        List<float[]> features;
+        if (segmentId.equals(this.cachedQuery)) {
+            features = this.cachedFeatures;
+        } else {
+            features = this.selector.getFeatureVectors("id", segmentId, "feature");
+            this.cachedQuery = segmentId;
+            this.cachedFeatures = features;
+        }
         if (features.size() == 0) {
             LOGGER.warn("No features could be fetched for the provided segmentId '{}'. Aborting query execution...", segmentId);
+            this.remainingScoreBound = -1d;
             benchmark.end();
             return new ArrayList<>(0);
         }
@@ -178,6 +207,10 @@ public abstract class StagedFeatureModule extends AbstractFeatureModule {
      * returned by the first stage and a lookup is executed for each. Partial-results are accumulated in a list, which is returned
      * by the method at the end.
      *
+     * If the query config requests an offset, only the ranks beyond the offset are returned for every vector. Since every
+     * result that has not been returned is farther away from each vector than the last result of that vector, the best score
+     * of the last results of all vectors bounds the score of the remaining results (see {@link #getRemainingScoreBound()}).
+     *
      * <strong>Important: </strong> The weight-vector must have the same size as the feature-vectors returned by the method.
      *
      * @param features A list of feature-vectors (usually generated in the first stage). For each feature, a lookup is executed. May be empty!
@@ -185,13 +218,35 @@ public abstract class StagedFeatureModule extends AbstractFeatureModule {
      * @return Unfiltered list of partial results. May exceed the number of results a module is supposed to return and entries may occur multiple times.
      */
     protected List<SegmentDistanceElement> lookup(List<float[]> features, List<ReadableQueryConfig> configs) {
-        final int numberOfPartialResults = Config.sharedConfig().getRetriever().getMaxResultsPerModule();
-        List<SegmentDistanceElement> partialResults;
+        final int numberOfPartialResults = configs.isEmpty() ? Config.sharedConfig().getRetriever().getMaxResultsPerModule() : configs.get(0).getMaxResultsPerModule();
+        final int offset = configs.isEmpty() ? 0 : configs.get(0).getResultsOffset();
+        List<List<SegmentDistanceElement>> lists;
         if (features.size() == 1) {
-            partialResults = this.selector.getNearestNeighbours(numberOfPartialResults, features.get(0), "feature", SegmentDistanceElement.class, configs.get(0));
+            lists = new ArrayList<>(1);
+            lists.add(this.selector.getNearestNeighbours(numberOfPartialResults, features.get(0), "feature", SegmentDistanceElement.class, configs.get(0)));
         } else {
-            partialResults = this.selector.getBatchedNearestNeighbours(numberOfPartialResults, features, "feature", SegmentDistanceElement.class, configs);
+            lists = this.selector.getBatchedNearestNeighbourLists(numberOfPartialResults, features, "feature", SegmentDistanceElement.class, configs);
+        }
+
+        /* The remaining results are bounded by the best of the per-vector bounds; a short list means there are none. */
+        double bound = -1d;
+        List<SegmentDistanceElement> partialResults = new ArrayList<>();
+        for (int i = 0; i < lists.size(); ++i) {
+            List<SegmentDistanceElement> list = lists.get(i);
+            if (list.size() >= numberOfPartialResults && !list.isEmpty()) {
+                CorrespondenceFunction function = configs.get(i).getCorrespondenceFunction().orElse(this.linearCorrespondence);
+                bound = Math.max(bound, function.applyAsDouble(list.get(list.size() - 1).getDistance()));
+            } else {
+                bound = -1d;
+                break;
+            }
+        }
+        for (List<SegmentDistanceElement> list : lists) {
+            if (offset < list.size()) {
+                partialResults.addAll(offset > 0 ? list.subList(offset, list.size()) : list);
+            }
         }
+        this.remainingScoreBound = bound;
         return partialResults;
     }
 
@@ -205,6 +260,25 @@ public abstract class StagedFeatureModule extends AbstractFeatureModule {
      */
     protected abstract List<ScoreElement> postprocessQuery(List<SegmentDistanceElement> partialResults, ReadableQueryConfig qcc);
 
+    /**
+     * Returns the bound computed by the last lookup. Lookups which do not compute a bound leave it at 1.0.
+     *
+     * @return Upper bound for the score of the results not returned yet or a negative value if all results were returned.
+     */
+    @Override
+    public double getRemainingScoreBound() {
+        return this.remainingScoreBound;
+    }
+
+    /**
+     * Sets the bound returned by {@link #getRemainingScoreBound()}; meant for lookups that do not use the storage layer.
+     *
+     * @param remainingScoreBound Upper bound for the score of the results not returned yet or a negative value if all results were returned.
+     */
+    protected void setRemainingScoreBound(double remainingScoreBound) {
+        this.remainingScoreBound = remainingScoreBound;
+    }
+
     /**
      * Returns a list of QueryConfigs for the given list of features. By default, this method simply returns a list of the
      * same the provided config. However, this method can be re-implemented to e.g. add a static or dynamic weight vectors.
@@ -11,9 +11,9 @@ import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.db.PersistencyWriter;
 import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
 import org.vitrivr.cineast.core.db.PersistentTuple;
-import org.vitrivr.cineast.core.features.extractor.Extractor;
+import org.vitrivr.cineast.core.features.extractor.MotionExtractor;
 
-public abstract class SubDivMotionHistogram extends MotionHistogramCalculator implements Extractor {
+public abstract class SubDivMotionHistogram extends MotionHistogramCalculator implements MotionExtractor {
   protected PersistencyWriter<?> phandler;
   
   protected SubDivMotionHistogram(String tableName, String fieldName, double maxDist) {
@@ -35,8 +35,9 @@ public abstract class SubDivMotionHistogram extends MotionHistogramCalculator im
   @Override
   protected List<ScoreElement> getSimilar(float[] vector, ReadableQueryConfig qc) {
     ReadableQueryConfig rqc = setQueryConfig(qc);
+    int offset = rqc.getResultsOffset();
     List<SegmentDistanceElement> distances = this.selector
-        .getNearestNeighbours(Config.sharedConfig().getRetriever().getMaxResultsPerModule(), vector,
+        .getNearestNeighbourPage(offset, rqc.getMaxResultsPerModule() - offset, vector,
             "hist", SegmentDistanceElement.class, qc);
     return DistanceElement.toScore(distances, rqc.getCorrespondenceFunction().get());
   }
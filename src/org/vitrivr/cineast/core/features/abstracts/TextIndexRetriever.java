@@ -0,0 +1,113 @@
+package org.vitrivr.cineast.core.features.abstracts;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.vitrivr.cineast.core.config.Config;
+import org.vitrivr.cineast.core.config.ReadableQueryConfig;
+import org.vitrivr.cineast.core.data.score.ScoreElement;
+import org.vitrivr.cineast.core.data.segments.SegmentContainer;
+import org.vitrivr.cineast.core.db.DBSelectorSupplier;
+import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
+import org.vitrivr.cineast.core.decode.subtitle.SubtitleItem;
+import org.vitrivr.cineast.core.features.extractor.Extractor;
+import org.vitrivr.cineast.core.util.LogHelper;
+import org.vitrivr.cineast.core.util.TextIndex;
+
+/**
+ * Full-text retriever backed by an embedded {@link TextIndex}. During extraction, the texts of every segment are added
+ * to the index, which is written to disk when the extraction finishes. At query time, the index is queried directly as
+ * long as it covers the entity (i.e. holds at least as many segments as the entity has rows), in which case no Solr
+ * instance is required. Otherwise, e.g. while the entity contains texts imported before the index existed, the results
+ * of the Solr provider of ADAMpro are merged with the ones of the index.
+ *
+ * Subclasses provide the texts of a segment. Queries consist of the subtitle items and the text of the query container
+ * and may contain prefix terms ending with '*' and phrases in double quotes.
+ */
+public abstract class TextIndexRetriever extends SolrTextRetriever implements Extractor {
+
+  private static final Logger LOGGER = LogManager.getLogger();
+
+  private TextIndex index = null;
+
+  @Override
+  public void init(PersistencyWriterSupplier phandlerSupply) {
+    this.index = TextIndex.forFile(indexFile());
+  }
+
+  @Override
+  public void init(DBSelectorSupplier selectorSupply) {
+    this.index = TextIndex.forFile(indexFile());
+    super.init(selectorSupply);
+  }
+
+  @Override
+  public void processSegment(SegmentContainer shot) {
+    if (this.index == null) {
+      return;
+    }
+    for (String text : getTexts(shot)) {
+      this.index.add(shot.getId(), text);
+    }
+  }
+
+  /**
+   * Returns the texts of a segment that are added to the index during extraction.
+   *
+   * @param shot The segment.
+   * @return Texts of the segment; may be empty.
+   */
+  protected abstract List<String> getTexts(SegmentContainer shot);
+
+  @Override
+  public List<ScoreElement> getSimilar(SegmentContainer sc, ReadableQueryConfig qc) {
+    if (this.index == null || !this.index.available()) {
+      return super.getSimilar(sc, qc);
+    }
+
+    StringBuilder sb = new StringBuilder(sc.getText());
+    for (SubtitleItem subItem : sc.getSubtitleItems()) {
+      sb.append(' ');
+      sb.append(subItem.getText());
+    }
+    List<ScoreElement> results = new ArrayList<>(this.index.query(sb.toString(), qc.getMaxResultsPerModule()));
+    if (!this.index.covers(getEntityName(), this::count)) {
+      results.addAll(super.getSimilar(sc, qc));
+      results = new ArrayList<>(ScoreElement.filterMaximumScores(results.stream()));
+      results.sort(ScoreElement.SCORE_COMPARATOR.reversed());
+      if (results.size() > qc.getMaxResultsPerModule()) {
+        results = new ArrayList<>(results.subList(0, qc.getMaxResultsPerModule()));
+      }
+    }
+
+    /* Results are ranked by score; only return the ranks beyond the requested offset. */
+    int offset = Math.min(qc.getResultsOffset(), results.size());
+    return new ArrayList<>(results.subList(offset, results.size()));
+  }
+
+  /**
+   * Writes the texts collected during extraction to the index before releasing the other resources.
+   */
+  @Override
+  public void finish() {
+    if (this.index != null) {
+      try {
+        this.index.flush();
+      } catch (IOException e) {
+        LOGGER.error("Could not write the text index of {}: {}", getEntityName(), LogHelper.getStackTrace(e));
+      }
+    }
+    super.finish();
+  }
+
+  /**
+   * Returns the file the text index of the entity is stored in.
+   */
+  private File indexFile() {
+    return new File(Config.sharedConfig().indexLocation(), getEntityName() + ".idx");
+  }
+}
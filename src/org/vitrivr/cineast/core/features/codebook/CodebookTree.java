@@ -0,0 +1,539 @@
+package org.vitrivr.cineast.core.features.codebook;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.math3.linear.EigenDecomposition;
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.ddogleg.clustering.AssignCluster;
+import org.ddogleg.clustering.kmeans.AssignKMeans_F64;
+
+import boofcv.struct.feature.TupleDesc_F64;
+
+/**
+ * Assigns feature descriptors to the words of a k-means codebook and calculates bag-of-words histograms. The results are
+ * identical to those of BoofCV's FeatureToWordHistogram_F64 with an {@link AssignKMeans_F64}:
+ *
+ * - Hard assignment: Each descriptor is assigned to the word with the smallest squared euclidean distance (the word with
+ *   the lowest index, if there are several). Since a k-d tree over the raw descriptors hardly prunes anything in 64 or
+ *   128 dimensions, every word is embedded in a low-dimensional space when the codebook is loaded: Its coordinates along
+ *   the leading principal components of the codebook plus the norm of the remainder. The distance between two embeddings
+ *   is a lower bound for the distance between the original vectors, hence a k-d tree over the embeddings can skip all
+ *   words that cannot be closer than the closest word found so far. The distance to the remaining candidates is calculated
+ *   in the same order of operations as by BoofCV (and aborted as soon as it exceeds that of the closest word), so the
+ *   pruning never changes the result. A small tolerance covers the rounding errors of the embedding. If the tree turns
+ *   out to prune too little for the descriptors of a batch, they are compared to all words instead.
+ *
+ * - Soft assignment: Each descriptor contributes to all words relative to their distance. This requires the distance to
+ *   every word, hence the words are only scanned in a single primitive array.
+ *
+ * All descriptors of an image are processed in one batch, without intermediate objects.
+ */
+public final class CodebookTree {
+
+    /** Maximum number of principal components used for the embedding of the words. */
+    private static final int COMPONENTS = 8;
+
+    /** Maximum number of words in a leaf of the k-d tree. */
+    private static final int LEAF_SIZE = 8;
+
+    /** Number of dimensions after which the calculation of a distance is aborted if the word cannot be the closest. */
+    private static final int BLOCK_SIZE = 16;
+
+    /** Number of descriptors of a batch after which the efficiency of the k-d tree is checked. */
+    private static final int PROBE_SIZE = 16;
+
+    /**
+     * Maximum fraction of words the k-d tree may have to compare a descriptor to. If more words are compared, the tree
+     * hardly prunes anything for the descriptors at hand and the remaining descriptors of the batch are assigned by a
+     * linear scan instead, which avoids the overhead of the tree.
+     */
+    private static final double MAX_CANDIDATES = 0.4;
+
+    /** Tolerance of the lower bounds relative to the squared norms involved; well above their rounding error. */
+    private static final double TOLERANCE = 1e-9;
+
+    /** Number of words in the codebook. */
+    private final int words;
+
+    /** Dimensionality of the words. */
+    private final int dimensions;
+
+    /** Dimensionality of the embedding (principal components plus the norm of the remainder). */
+    private final int embedding;
+
+    /** The words (one after the other), sorted by the leaf of the k-d tree they belong to. */
+    private final double[] codebook;
+
+    /** Embeddings of the words (one after the other), in the same order as {@link #codebook}. */
+    private final double[] embedded;
+
+    /** Index of the words in {@link #codebook} in the original codebook. */
+    private final int[] indices;
+
+    /** Mean of the words. */
+    private final double[] mean;
+
+    /** Principal components of the words (one after the other). */
+    private final double[] components;
+
+    /** Largest squared distance between a word and the mean of the words. */
+    private double scale;
+
+    /** First word of each node of the k-d tree; all words of a node are stored consecutively. */
+    private final int[] start;
+
+    /** End (exclusive) of the words of each node of the k-d tree. */
+    private final int[] end;
+
+    /** Left child of each node of the k-d tree or -1 for leafs. The right child is stored in {@link #right}. */
+    private final int[] left;
+
+    /** Right child of each node of the k-d tree or -1 for leafs. */
+    private final int[] right;
+
+    /** Dimension of the embedding along which each inner node of the k-d tree is split. */
+    private final int[] split;
+
+    /** Lower corner of the bounding box of each node in the embedding. */
+    private final double[] lower;
+
+    /** Upper corner of the bounding box of each node in the embedding. */
+    private final double[] upper;
+
+    /** Number of nodes of the k-d tree. */
+    private int nodes;
+
+    /**
+     * Creates a CodebookTree for the provided codebook if it is a k-means codebook.
+     *
+     * @param assignment Codebook as loaded from disk.
+     * @return CodebookTree or null, if the codebook is not supported.
+     */
+    public static CodebookTree from(AssignCluster<double[]> assignment) {
+        if (!(assignment instanceof AssignKMeans_F64)) {
+            return null;
+        }
+        List<double[]> clusters = ((AssignKMeans_F64) assignment).getClusters();
+        if (clusters.isEmpty()) {
+            return null;
+        }
+        return new CodebookTree(clusters);
+    }
+
+    /**
+     * Constructor for CodebookTree.
+     *
+     * @param clusters The words of the codebook, all of the same size.
+     */
+    public CodebookTree(List<double[]> clusters) {
+        this.words = clusters.size();
+        this.dimensions = clusters.get(0).length;
+        this.indices = new int[this.words];
+        for (int i = 0; i < this.words; i++) {
+            if (clusters.get(i).length != this.dimensions) {
+                throw new IllegalArgumentException("All words of the codebook must have the same dimensionality.");
+            }
+            this.indices[i] = i;
+        }
+
+        /* Principal components and embeddings of the words. */
+        this.mean = new double[this.dimensions];
+        for (double[] cluster : clusters) {
+            for (int d = 0; d < this.dimensions; d++) {
+                this.mean[d] += cluster[d];
+            }
+        }
+        for (int d = 0; d < this.dimensions; d++) {
+            this.mean[d] /= this.words;
+        }
+        this.components = principalComponents(clusters, this.mean, Math.min(COMPONENTS, this.dimensions));
+        this.embedding = this.components.length / this.dimensions + 1;
+        final double[] embeddings = new double[this.words * this.embedding];
+        for (int i = 0; i < this.words; i++) {
+            this.scale = Math.max(this.scale, this.embed(clusters.get(i), embeddings, i * this.embedding));
+        }
+
+        /* k-d tree over the embeddings. */
+        final int capacity = 2 * this.words;
+        this.start = new int[capacity];
+        this.end = new int[capacity];
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.split = new int[capacity];
+        this.lower = new double[capacity * this.embedding];
+        this.upper = new double[capacity * this.embedding];
+        this.build(embeddings, 0, this.words);
+
+        this.codebook = new double[this.words * this.dimensions];
+        this.embedded = new double[this.words * this.embedding];
+        for (int i = 0; i < this.words; i++) {
+            System.arraycopy(clusters.get(this.indices[i]), 0, this.codebook, i * this.dimensions, this.dimensions);
+            System.arraycopy(embeddings, this.indices[i] * this.embedding, this.embedded, i * this.embedding, this.embedding);
+        }
+    }
+
+    /**
+     * Returns the number of words in the codebook.
+     *
+     * @return Number of words.
+     */
+    public int getNumberOfWords() {
+        return this.words;
+    }
+
+    /**
+     * Calculates the histogram of words for the provided descriptors (normalised by the number of descriptors).
+     *
+     * @param hard Indicates whether to use hard or soft assignment.
+     * @param descriptors Feature descriptors.
+     * @return Histogram with one entry per word.
+     */
+    public double[] histogram(boolean hard, List<? extends TupleDesc_F64> descriptors) {
+        final double[] histogram = new double[this.words];
+        if (hard) {
+            final Search search = new Search(this.embedding);
+            boolean scan = false;
+            int count = 0;
+            for (TupleDesc_F64 descriptor : descriptors) {
+                histogram[scan ? this.scan(descriptor.getValue()) : this.assign(descriptor.getValue(), search)] += 1;
+                if (++count == PROBE_SIZE) {
+                    scan = search.candidates > MAX_CANDIDATES * PROBE_SIZE * this.words;
+                }
+            }
+        } else {
+            final double[] weights = new double[this.words];
+            for (TupleDesc_F64 descriptor : descriptors) {
+                this.assign(descriptor.getValue(), weights);
+                for (int i = 0; i < this.words; i++) {
+                    histogram[i] += weights[i];
+                }
+            }
+        }
+        for (int i = 0; i < this.words; i++) {
+            histogram[i] /= descriptors.size();
+        }
+        return histogram;
+    }
+
+    /**
+     * Hard assignment: Returns the index of the word closest to the provided descriptor.
+     *
+     * @param descriptor Feature descriptor.
+     * @return Index of the closest word or -1 if no distance could be calculated (e.g. because of NaN values).
+     */
+    public int assign(double[] descriptor) {
+        return this.assign(descriptor, new Search(this.embedding));
+    }
+
+    /**
+     * Soft assignment: Calculates the weight of each word for the provided descriptor.
+     *
+     * @param descriptor Feature descriptor.
+     * @param weights Array the weights are written to (one per word). The weights sum up to one.
+     */
+    public void assign(double[] descriptor, double[] weights) {
+        double max = 0.0;
+        for (int i = 0; i < this.words; i++) {
+            final double distance = this.distance(descriptor, i);
+            weights[this.indices[i]] = distance;
+            if (distance > max) {
+                max = distance;
+            }
+        }
+        double sum = 0.0;
+        for (int i = 0; i < this.words; i++) {
+            sum += (weights[i] /= max);
+        }
+        double total = 0.0;
+        for (int i = 0; i < this.words; i++) {
+            total += (weights[i] = sum - weights[i]);
+        }
+        for (int i = 0; i < this.words; i++) {
+            weights[i] /= total;
+        }
+    }
+
+    /**
+     * Hard assignment using the provided (reusable) search state.
+     */
+    private int assign(double[] descriptor, Search search) {
+        final double norm = this.embed(descriptor, search.embedding, 0);
+        search.descriptor = descriptor;
+        search.tolerance = TOLERANCE * (norm + this.scale + 1.0);
+        search.distance = Double.MAX_VALUE;
+        search.index = -1;
+        this.search(0, search);
+        return search.index;
+    }
+
+    /**
+     * Hard assignment by comparing the descriptor to all words.
+     */
+    private int scan(double[] descriptor) {
+        double best = Double.MAX_VALUE;
+        int index = -1;
+        for (int i = 0; i < this.words; i++) {
+            final int candidate = this.indices[i];
+            final double distance = this.distance(descriptor, i);
+            if (distance < best || (distance == best && index >= 0 && candidate < index)) {
+                best = distance;
+                index = candidate;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Searches the closest word in the provided node and its children.
+     */
+    private void search(int node, Search search) {
+        if (this.left[node] < 0) {
+            for (int i = this.start[node]; i < this.end[node]; i++) {
+                if (this.embeddedDistance(i, search.embedding) - search.tolerance > search.distance) {
+                    continue;
+                }
+                search.candidates++;
+                final int index = this.indices[i];
+                final double distance = this.distance(search.descriptor, i, search.distance, index < search.index);
+                if (distance < search.distance || (distance == search.distance && search.index >= 0 && index < search.index)) {
+                    search.distance = distance;
+                    search.index = index;
+                }
+            }
+            return;
+        }
+
+        /* The child on the side of the descriptor is searched first, the other one only if its box is close enough. */
+        final int dimension = this.split[node];
+        final double value = search.embedding[dimension];
+        final boolean leftFirst = value - this.upper[this.left[node] * this.embedding + dimension]
+                <= this.lower[this.right[node] * this.embedding + dimension] - value;
+        this.search(leftFirst ? this.left[node] : this.right[node], search);
+        final int far = leftFirst ? this.right[node] : this.left[node];
+        if (this.boxDistance(far, search.embedding) - search.tolerance <= search.distance) {
+            this.search(far, search);
+        }
+    }
+
+    /**
+     * Returns the squared euclidean distance between the descriptor and the word at the provided position, in the same
+     * order of operations as BoofCV.
+     */
+    private double distance(double[] descriptor, int position) {
+        final double[] codebook = this.codebook;
+        final int offset = position * this.dimensions;
+        double distance = 0.0;
+        for (int d = 0; d < this.dimensions; d++) {
+            final double diff = descriptor[d] - codebook[offset + d];
+            distance += diff * diff;
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the squared euclidean distance between the descriptor and the word at the provided position (in the same
+     * order of operations as BoofCV) or any value larger than the limit, if the word cannot be closer than that (or as
+     * close, unless it may win a tie).
+     */
+    private double distance(double[] descriptor, int position, double limit, boolean winsTie) {
+        final double[] codebook = this.codebook;
+        final int dimensions = this.dimensions;
+        final int offset = position * dimensions;
+        double distance = 0.0;
+        for (int from = 0; from < dimensions; from += BLOCK_SIZE) {
+            final int to = Math.min(from + BLOCK_SIZE, dimensions);
+            for (int d = from; d < to; d++) {
+                final double diff = descriptor[d] - codebook[offset + d];
+                distance += diff * diff;
+            }
+            if (distance > limit || (distance == limit && !winsTie)) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the squared distance between the embedding of a descriptor and that of the word at the provided position.
+     */
+    private double embeddedDistance(int position, double[] embedding) {
+        final int offset = position * this.embedding;
+        double distance = 0.0;
+        for (int d = 0; d < this.embedding; d++) {
+            final double diff = embedding[d] - this.embedded[offset + d];
+            distance += diff * diff;
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the squared distance between the embedding of a descriptor and the bounding box of a node.
+     */
+    private double boxDistance(int node, double[] embedding) {
+        final int offset = node * this.embedding;
+        double distance = 0.0;
+        for (int d = 0; d < this.embedding; d++) {
+            final double value = embedding[d];
+            double diff = 0.0;
+            if (value < this.lower[offset + d]) {
+                diff = value - this.lower[offset + d];
+            } else if (value > this.upper[offset + d]) {
+                diff = value - this.upper[offset + d];
+            }
+            distance += diff * diff;
+        }
+        return distance;
+    }
+
+    /**
+     * Calculates the embedding of a vector, i.e. its coordinates along the principal components (relative to the mean)
+     * followed by the norm of the remainder.
+     *
+     * @return Squared distance between the vector and the mean.
+     */
+    private double embed(double[] vector, double[] embedding, int offset) {
+        final int count = this.embedding - 1;
+        for (int c = 0; c < count; c++) {
+            embedding[offset + c] = 0.0;
+        }
+        double norm = 0.0;
+        for (int d = 0; d < this.dimensions; d++) {
+            final double value = vector[d] - this.mean[d];
+            norm += value * value;
+            for (int c = 0; c < count; c++) {
+                embedding[offset + c] += value * this.components[c * this.dimensions + d];
+            }
+        }
+        double remainder = 0.0;
+        for (int d = 0; d < this.dimensions; d++) {
+            double value = vector[d] - this.mean[d];
+            for (int c = 0; c < count; c++) {
+                value -= embedding[offset + c] * this.components[c * this.dimensions + d];
+            }
+            remainder += value * value;
+        }
+        embedding[offset + count] = Math.sqrt(remainder);
+        return norm;
+    }
+
+    /**
+     * Recursively builds the k-d tree for the words in the range [from, to) of {@link #indices}. Nodes are split at the
+     * median of the dimension with the largest extent.
+     *
+     * @param embeddings Embeddings of the words in their original order.
+     * @return Index of the new node.
+     */
+    private int build(double[] embeddings, int from, int to) {
+        final int node = this.nodes++;
+        this.start[node] = from;
+        this.end[node] = to;
+        this.left[node] = -1;
+        this.right[node] = -1;
+
+        /* Bounding box. */
+        final int offset = node * this.embedding;
+        for (int d = 0; d < this.embedding; d++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                final double value = embeddings[this.indices[i] * this.embedding + d];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            this.lower[offset + d] = min;
+            this.upper[offset + d] = max;
+        }
+        if (to - from <= LEAF_SIZE) {
+            return node;
+        }
+
+        /* Split dimension. */
+        int split = 0;
+        for (int d = 1; d < this.embedding; d++) {
+            if (this.upper[offset + d] - this.lower[offset + d] > this.upper[offset + split] - this.lower[offset + split]) {
+                split = d;
+            }
+        }
+        if (!(this.upper[offset + split] > this.lower[offset + split])) {
+            return node;
+        }
+
+        /* Partition the words at the median. */
+        final int dimension = split;
+        final Integer[] sorted = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            sorted[i - from] = this.indices[i];
+        }
+        Arrays.sort(sorted, Comparator.comparingDouble(index -> embeddings[index * this.embedding + dimension]));
+        for (int i = from; i < to; i++) {
+            this.indices[i] = sorted[i - from];
+        }
+        final int median = (from + to) >>> 1;
+        this.split[node] = split;
+        this.left[node] = this.build(embeddings, from, median);
+        this.right[node] = this.build(embeddings, median, to);
+        return node;
+    }
+
+    /**
+     * Calculates the principal components of the provided vectors, i.e. the eigenvectors of their covariance matrix.
+     *
+     * @param count Number of principal components.
+     * @return The orthonormal principal components (one after the other) by decreasing variance.
+     */
+    private static double[] principalComponents(List<double[]> vectors, double[] mean, int count) {
+        final int dimensions = mean.length;
+        final double[][] covariance = new double[dimensions][dimensions];
+        for (double[] vector : vectors) {
+            for (int i = 0; i < dimensions; i++) {
+                final double value = vector[i] - mean[i];
+                for (int j = i; j < dimensions; j++) {
+                    covariance[i][j] += value * (vector[j] - mean[j]);
+                }
+            }
+        }
+        for (int i = 0; i < dimensions; i++) {
+            for (int j = 0; j < i; j++) {
+                covariance[i][j] = covariance[j][i];
+            }
+        }
+
+        final EigenDecomposition decomposition = new EigenDecomposition(MatrixUtils.createRealMatrix(covariance));
+        final double[] eigenvalues = decomposition.getRealEigenvalues();
+        final Integer[] order = new Integer[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(eigenvalues[b], eigenvalues[a]));
+
+        final RealMatrix eigenvectors = decomposition.getV();
+        final double[] components = new double[count * dimensions];
+        for (int c = 0; c < count; c++) {
+            for (int d = 0; d < dimensions; d++) {
+                components[c * dimensions + d] = eigenvectors.getEntry(d, order[c]);
+            }
+        }
+        return components;
+    }
+
+    /**
+     * State of the nearest neighbour search for a single descriptor; reused for all descriptors of a batch.
+     */
+    private static final class Search {
+        final double[] embedding;
+        double[] descriptor;
+        double tolerance;
+        double distance;
+        int index;
+
+        /** Number of words the descriptors were compared to. */
+        int candidates;
+
+        Search(int embedding) {
+            this.embedding = new double[embedding];
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.vitrivr.cineast.core.features.codebook;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import boofcv.struct.feature.TupleDesc_F64;
+
+/**
+ * Uniform random sample of a stream of feature descriptors with a fixed maximum size (reservoir sampling), which is kept
+ * in a temporary file rather than on the heap. This allows codebooks to be generated from an arbitrary number of images:
+ * Neither the memory nor the disk space required depend on the number of descriptors added.
+ *
+ * Descriptors are stored as single precision floats. Once all descriptors have been added, {@link #finish()} maps the
+ * file to memory so that the clustering can access random descriptors concurrently. {@link #close()} deletes the file.
+ */
+public final class DescriptorReservoir implements AutoCloseable {
+
+    /** Number of bytes used per component of a descriptor. */
+    private static final int BYTES = Float.BYTES;
+
+    /** Dimensionality of the descriptors. */
+    private final int dimensions;
+
+    /** Maximum number of descriptors kept in the reservoir. */
+    private final int capacity;
+
+    /** Temporary file that holds the descriptors. */
+    private final Path file;
+
+    /** Channel used to write the descriptors to the file. */
+    private final FileChannel channel;
+
+    /** Buffer used to write a single descriptor. */
+    private final ByteBuffer buffer;
+
+    /** Random number generator that decides which descriptors to keep. */
+    private final Random random;
+
+    /** Number of descriptors added so far (including those that were not kept). */
+    private long seen;
+
+    /** Read-only view on the descriptors; available after {@link #finish()}. */
+    private volatile FloatBuffer view;
+
+    /**
+     * Constructor for DescriptorReservoir.
+     *
+     * @param dimensions Dimensionality of the descriptors.
+     * @param capacity Maximum number of descriptors to keep. Limited to what fits into a single memory mapped file.
+     * @param seed Seed for the random sampling.
+     * @throws IOException If the temporary file could not be created.
+     */
+    public DescriptorReservoir(int dimensions, int capacity, long seed) throws IOException {
+        if (dimensions <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("The dimensionality and capacity of a DescriptorReservoir must be positive.");
+        }
+        this.dimensions = dimensions;
+        this.capacity = Math.min(capacity, Integer.MAX_VALUE / (dimensions * BYTES));
+        this.file = Files.createTempFile("cineast-codebook-", ".bin");
+        this.file.toFile().deleteOnExit();
+        this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(dimensions * BYTES);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Offers the provided descriptors to the reservoir. Every descriptor added so far has the same probability of being
+     * kept. Can be called concurrently.
+     *
+     * @param descriptors Descriptors to add.
+     * @throws IOException If writing to the temporary file fails.
+     */
+    public synchronized void add(List<? extends TupleDesc_F64> descriptors) throws IOException {
+        if (this.view != null) {
+            throw new IllegalStateException("Descriptors cannot be added to a DescriptorReservoir after it has been finished.");
+        }
+        for (TupleDesc_F64 descriptor : descriptors) {
+            final long slot = this.seen < this.capacity ? this.seen : (long) (this.random.nextDouble() * (this.seen + 1));
+            this.seen++;
+            if (slot < this.capacity) {
+                this.write((int) slot, descriptor.getValue());
+            }
+        }
+    }
+
+    /**
+     * Maps the descriptors to memory. Must be invoked after all descriptors have been added and before they are read.
+     *
+     * @throws IOException If the temporary file could not be mapped.
+     */
+    public synchronized void finish() throws IOException {
+        if (this.view == null) {
+            this.view = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) this.size() * this.dimensions * BYTES).asFloatBuffer();
+        }
+    }
+
+    /**
+     * Copies the descriptor at the provided index to the provided array. Can be called concurrently after {@link #finish()}.
+     *
+     * @param index Index of the descriptor (0 to {@link #size()} - 1).
+     * @param descriptor Array the descriptor is written to.
+     */
+    public void get(int index, double[] descriptor) {
+        final FloatBuffer view = this.view;
+        if (view == null) {
+            throw new IllegalStateException("Descriptors cannot be read from a DescriptorReservoir before it has been finished.");
+        }
+        final int offset = index * this.dimensions;
+        for (int d = 0; d < this.dimensions; d++) {
+            descriptor[d] = view.get(offset + d);
+        }
+    }
+
+    /**
+     * Returns the dimensionality of the descriptors.
+     *
+     * @return Dimensionality of the descriptors.
+     */
+    public int getDimensions() {
+        return this.dimensions;
+    }
+
+    /**
+     * Returns the number of descriptors kept in the reservoir.
+     *
+     * @return Number of descriptors.
+     */
+    public synchronized int size() {
+        return (int) Math.min(this.seen, this.capacity);
+    }
+
+    /**
+     * Returns the number of descriptors added to the reservoir so far, including those that were not kept.
+     *
+     * @return Number of descriptors.
+     */
+    public synchronized long seen() {
+        return this.seen;
+    }
+
+    /**
+     * Closes and deletes the temporary file.
+     *
+     * @throws IOException If the file could not be deleted.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.view = null;
+        this.channel.close();
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * Writes a single descriptor to the provided slot of the file.
+     */
+    private void write(int slot, double[] descriptor) throws IOException {
+        if (descriptor.length != this.dimensions) {
+            throw new IllegalArgumentException(String.format("Expected descriptor of size %d but got %d.", this.dimensions, descriptor.length));
+        }
+        this.buffer.clear();
+        for (double value : descriptor) {
+            this.buffer.putFloat((float) value);
+        }
+        this.buffer.flip();
+        long position = (long) slot * this.dimensions * BYTES;
+        while (this.buffer.hasRemaining()) {
+            position += this.channel.write(this.buffer, position);
+        }
+    }
+}
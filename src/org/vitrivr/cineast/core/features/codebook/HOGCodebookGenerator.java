@@ -1,8 +1,8 @@
 package org.vitrivr.cineast.core.features.codebook;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
 
-import org.ddogleg.clustering.FactoryClustering;
 import org.vitrivr.cineast.core.util.images.HOGHelper;
 
 import boofcv.abst.feature.dense.DescribeImageDense;
@@ -23,24 +23,14 @@ public class HOGCodebookGenerator extends ImageCodebookGenerator {
     }
 
     /**
-     * Initializes the codebook generator (i.e. setup the clusterer etc.)
-     */
-    @Override
-    protected void init() {
-        this.clusterer = FactoryClustering.kMeans_F64(null, 200, 20, 1e-7);
-    }
-
-    /**
-     * Processes the content (i.e. creates descriptors) and add the generated
-     * descriptors to the cluster.
+     * Processes the content (i.e. creates descriptors).
      *
      * @param content The image to process.
+     * @return The descriptors generated for the image.
      */
     @Override
-    protected void process(BufferedImage content) {
+    protected List<TupleDesc_F64> describe(BufferedImage content) {
         DescribeImageDense<GrayU8, TupleDesc_F64> hog = HOGHelper.getHOGDescriptors(content);
-        for (TupleDesc_F64 desc : hog.getDescriptions()) {
-            this.cluster.addReference(desc);
-        }
+        return hog.getDescriptions();
     }
 }
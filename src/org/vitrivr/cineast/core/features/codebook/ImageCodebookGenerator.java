@@ -4,34 +4,75 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.activation.MimetypesFileTypeMap;
 
+import org.ddogleg.clustering.AssignCluster;
 import org.ddogleg.clustering.ComputeClusters;
+import org.ddogleg.clustering.FactoryClustering;
 import org.vitrivr.cineast.core.decode.general.Decoder;
 import org.vitrivr.cineast.core.decode.image.DefaultImageDecoder;
 
 import boofcv.alg.bow.ClusterVisualWords;
 import boofcv.io.UtilIO;
+import boofcv.struct.feature.TupleDesc_F64;
 
 /**
  * Default implementation of a Codebook generator for images. Extend and add the details like
  * the images to use.
  *
+ * The descriptors are extracted from the images in parallel and streamed into a {@link DescriptorReservoir}, i.e. a
+ * uniform random sample of bounded size that is kept on disk. The codebook is then created from that sample using
+ * {@link MiniBatchKMeans}. Hence, neither the memory required nor the time spent clustering grows with the size of
+ * the corpus. If {@link #exact} is set, the sample is clustered with the k-means implementation of BoofCV instead,
+ * which keeps all sampled descriptors on the heap; with a sample size that covers the corpus, this yields the codebook
+ * of a clustering of all descriptors.
+ *
+ * The images are described in parallel in batches, but their descriptors are offered to the reservoir in the order of
+ * the files. Hence, the same corpus always yields the same sample and, thanks to the fixed seed, the same codebook.
+ *
  * @author rgasser
  * @version 1.0
  * @created 19.01.17
  */
 public abstract class ImageCodebookGenerator implements CodebookGenerator {
-    /** K-Means clusterer used for the clustering step in the Codebook generation. */
-    protected ComputeClusters<double[]> clusterer;
+    /** Seed used for sampling the descriptors and for the clustering. */
+    private static final long SEED = 0xA1CF3B12;
+
+    /** Default maximum number of descriptors sampled from the images. */
+    public static final int DEFAULT_SAMPLE_SIZE = 1000000;
+
+    /** Default number of descriptors per mini-batch. */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /** Default number of mini-batch iterations. */
+    public static final int DEFAULT_ITERATIONS = 500;
+
+    /** Number of images described in parallel before their descriptors are added to the reservoir. */
+    private static final int IMAGES_PER_BATCH = 4 * Runtime.getRuntime().availableProcessors();
+
+    /** Size of the input vectors (that are getting clustered). */
+    private final int vectorsize;
+
+    /** true if the clusterer should print output about its progress. */
+    private final boolean verbose;
+
+    /** Maximum number of descriptors sampled from the images. */
+    protected int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+    /** Number of descriptors per mini-batch. */
+    protected int batchSize = DEFAULT_BATCH_SIZE;
 
-    /** The visual words cluster. */
-    protected ClusterVisualWords cluster;
+    /** Number of mini-batch iterations. */
+    protected int iterations = DEFAULT_ITERATIONS;
+
+    /** true if the sample should be clustered with the exact k-means of BoofCV instead of {@link MiniBatchKMeans}. */
+    protected boolean exact = false;
 
     /**
      * Default constructor.
@@ -40,9 +81,17 @@ public abstract class ImageCodebookGenerator implements CodebookGenerator {
      * @param verbose true if the clusterer should print output about its progress.
      */
     public ImageCodebookGenerator(int vectorsize, boolean verbose) {
-        this.init();
-        this.clusterer.setVerbose(verbose);
-        this.cluster = new ClusterVisualWords(clusterer, vectorsize,0xA1CF3B12);
+        this.vectorsize = vectorsize;
+        this.verbose = verbose;
+    }
+
+    /**
+     * Selects the clustering algorithm.
+     *
+     * @param exact true to cluster with the exact k-means of BoofCV, false to use {@link MiniBatchKMeans}.
+     */
+    public void setExact(boolean exact) {
+        this.exact = exact;
     }
 
     /**
@@ -67,60 +116,85 @@ public abstract class ImageCodebookGenerator implements CodebookGenerator {
                 }
             }).collect(Collectors.toList());
 
-
-        /* Prepare array dequeue. */
-        ArrayDeque<Path> files = new ArrayDeque<>(paths);
-
         /* Prepare data-structures to track progress. */
-        int max = files.size();
-        int counter = 0;
-        int skipped = 0;
-        char[] progressBar = new char[15];
-        int update = max/progressBar.length;
+        final int max = paths.size();
+        final AtomicInteger counter = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final char[] progressBar = new char[15];
 
         /* */
-        System.out.println(String.format("Creating codebook of %d words from %d files.", words, files.size()));
-
-        /*
-         * Iterates over the files Dequeue. Every element that has been processed in removed from
-         * that Dequeue.
-         */
-        Path path = null;
-        while ((path = files.poll()) != null) {
-            if (decoder.init(path, null)) {
-                BufferedImage image = decoder.getNext();
-                if (image != null) {
-                    this.process(image);
-                } else {
-                    skipped++;
+        System.out.println(String.format("Creating codebook of %d words from %d files.", words, max));
+
+        try (DescriptorReservoir reservoir = new DescriptorReservoir(this.vectorsize, this.sampleSize, SEED)) {
+            /*
+             * Describes the files in parallel, one batch at a time; every worker uses its own decoder. The descriptors
+             * of a batch are offered to the reservoir in the order of the files and discarded afterwards.
+             */
+            for (int from = 0; from < max; from += IMAGES_PER_BATCH) {
+                List<List<? extends TupleDesc_F64>> batch = paths.subList(from, Math.min(max, from + IMAGES_PER_BATCH)).parallelStream().map(path -> {
+                    final Decoder<BufferedImage> worker = new DefaultImageDecoder();
+                    BufferedImage image = worker.init(path, null) ? worker.getNext() : null;
+                    worker.close();
+                    if (image == null) {
+                        skipped.incrementAndGet();
+                        return new ArrayList<TupleDesc_F64>(0);
+                    }
+                    return this.describe(image);
+                }).collect(Collectors.toList());
+                for (List<? extends TupleDesc_F64> descriptors : batch) {
+                    reservoir.add(descriptors);
+                    this.printProgress(progressBar, max, counter.incrementAndGet(), skipped.get(), reservoir);
                 }
-            } else {
-                skipped++;
-            }
-            if (counter % update == 0) {
-              this.updateProgressBar(progressBar, max, counter);
             }
-            System.out.print(String.format("\rAdding vectors to codebook: %d/%d files processed (%d skipped) |%s| (Memory left: %.2f/%.2f GB)", counter,max,skipped, String.valueOf(progressBar), Runtime.getRuntime().freeMemory()/1000000.0f, Runtime.getRuntime().totalMemory()/1000000.0f));
-            counter++;
-        }
+            reservoir.finish();
 
-        /* Dispose of unnecessary elements. */
-        files = null;
-        progressBar = null;
+            if (reservoir.size() < words) {
+                throw new IllegalArgumentException(String.format("Cannot create a codebook of %d words from only %d descriptors.", words, reservoir.size()));
+            }
 
-        /* Start clustering.*/
-        System.out.println(String.format("\nClustering... this could take a while."));
-        this.cluster.process(words);
+            /* Start clustering.*/
+            System.out.println(String.format("\nClustering %d of %d descriptors...", reservoir.size(), reservoir.seen()));
+            AssignCluster<double[]> assignment;
+            if (this.exact) {
+                assignment = this.clusterExactly(reservoir, words);
+            } else {
+                assignment = new MiniBatchKMeans(words, this.batchSize, this.iterations, SEED, this.verbose).process(reservoir);
+            }
 
-        /* Save file...*/
-        System.out.println(String.format("Saving vocabulary with %d entries.", words));
-        UtilIO.save(this.cluster.getAssignment(), destination.toString());
+            /* Save file...*/
+            System.out.println(String.format("Saving vocabulary with %d entries.", words));
+            UtilIO.save(assignment, destination.toString());
+        }
 
         long duration = System.currentTimeMillis()-start;
         System.out.println(String.format("Done! Took me %dhours %dmin %dsec", TimeUnit.MILLISECONDS.toHours(duration), TimeUnit.MILLISECONDS.toMinutes(duration), TimeUnit.MILLISECONDS.toSeconds(duration)));
 
     }
 
+    /**
+     * Clusters all descriptors of the reservoir with the k-means implementation of BoofCV.
+     */
+    private AssignCluster<double[]> clusterExactly(DescriptorReservoir reservoir, int words) {
+        ComputeClusters<double[]> clusterer = FactoryClustering.kMeans_F64(null, 200, 20, 1e-7);
+        clusterer.setVerbose(this.verbose);
+        ClusterVisualWords cluster = new ClusterVisualWords(clusterer, this.vectorsize, SEED);
+        for (int i = 0; i < reservoir.size(); i++) {
+            TupleDesc_F64 descriptor = new TupleDesc_F64(this.vectorsize);
+            reservoir.get(i, descriptor.getValue());
+            cluster.addReference(descriptor);
+        }
+        cluster.process(words);
+        return cluster.getAssignment();
+    }
+
+    /**
+     * Prints the progress of the descriptor extraction.
+     */
+    private synchronized void printProgress(char[] progressBar, int max, int counter, int skipped, DescriptorReservoir reservoir) {
+        this.updateProgressBar(progressBar, max, counter);
+        System.out.print(String.format("\rAdding vectors to codebook: %d/%d files processed (%d skipped) |%s| (%d descriptors sampled of %d)", counter, max, skipped, String.valueOf(progressBar), reservoir.size(), reservoir.seen()));
+    }
+
     /**
      * Updates the char-array of the progress-bar.
      */
@@ -138,15 +212,10 @@ public abstract class ImageCodebookGenerator implements CodebookGenerator {
     }
 
     /**
-     * Processes the content (i.e. creates descriptors) and add the generated
-     * descriptors to the cluster.
+     * Processes the content (i.e. creates descriptors). Invoked concurrently for different images.
      *
      * @param content The image to process.
+     * @return The descriptors generated for the image.
      */
-    protected abstract void process(BufferedImage content);
-
-    /**
-     * Initializes the codebook generator (i.e. setup the clusterer etc.)
-     */
-    protected abstract void init();
+    protected abstract List<? extends TupleDesc_F64> describe(BufferedImage content);
 }
@@ -0,0 +1,177 @@
+package org.vitrivr.cineast.core.features.codebook;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.ddogleg.clustering.kmeans.AssignKMeans_F64;
+import org.ddogleg.clustering.kmeans.InitializePlusPlus;
+
+/**
+ * Mini-batch k-means as proposed by Sculley (Web-scale k-means clustering, 2010). Instead of assigning all descriptors to
+ * their closest center in every iteration, each iteration draws a small random batch from a {@link DescriptorReservoir},
+ * assigns it (in parallel) and moves every center towards the descriptors assigned to it with a per-center learning rate
+ * that decreases with the number of descriptors it has seen. This requires only a fraction of the work of standard k-means
+ * and never holds more than a single batch in memory.
+ *
+ * The centers are seeded with k-means++ on a random sample of the reservoir. The result is an {@link AssignKMeans_F64},
+ * i.e. the same type of codebook as produced by BoofCV's ClusterVisualWords.
+ */
+public final class MiniBatchKMeans {
+
+    /** Number of descriptors per center that are sampled for the k-means++ seeding. */
+    private static final int SEED_SAMPLES_PER_WORD = 16;
+
+    /** Number of words (centers) to create. */
+    private final int words;
+
+    /** Number of descriptors per batch. */
+    private final int batchSize;
+
+    /** Number of iterations (batches). */
+    private final int iterations;
+
+    /** Seed for the random sampling. */
+    private final long seed;
+
+    /** True if progress should be printed. */
+    private final boolean verbose;
+
+    /**
+     * Constructor for MiniBatchKMeans.
+     *
+     * @param words Number of words (centers) to create.
+     * @param batchSize Number of descriptors per batch.
+     * @param iterations Number of iterations (batches).
+     * @param seed Seed for the random sampling.
+     * @param verbose True if progress should be printed.
+     */
+    public MiniBatchKMeans(int words, int batchSize, int iterations, long seed, boolean verbose) {
+        if (words <= 0 || batchSize <= 0 || iterations <= 0) {
+            throw new IllegalArgumentException("The number of words, the batch size and the number of iterations must be positive.");
+        }
+        this.words = words;
+        this.batchSize = batchSize;
+        this.iterations = iterations;
+        this.seed = seed;
+        this.verbose = verbose;
+    }
+
+    /**
+     * Clusters the descriptors in the provided reservoir.
+     *
+     * @param reservoir Finished DescriptorReservoir that contains at least as many descriptors as words are requested.
+     * @return Assignment for the resulting codebook.
+     */
+    public AssignKMeans_F64 process(DescriptorReservoir reservoir) {
+        final int size = reservoir.size();
+        final int dimensions = reservoir.getDimensions();
+        if (size < this.words) {
+            throw new IllegalArgumentException(String.format("Cannot create %d words from %d descriptors.", this.words, size));
+        }
+        final Random random = new Random(this.seed);
+
+        /* Seed the centers using k-means++ on a sample of the reservoir. */
+        final List<double[]> sample = new ArrayList<>();
+        for (int index : sample(random, size, Math.min(size, SEED_SAMPLES_PER_WORD * this.words))) {
+            final double[] descriptor = new double[dimensions];
+            reservoir.get(index, descriptor);
+            sample.add(descriptor);
+        }
+        final List<double[]> seeds = new ArrayList<>(this.words);
+        for (int i = 0; i < this.words; i++) {
+            seeds.add(new double[dimensions]);
+        }
+        final InitializePlusPlus initializer = new InitializePlusPlus();
+        initializer.init(dimensions, random.nextLong());
+        initializer.selectSeeds(sample, seeds);
+
+        final double[] centers = new double[this.words * dimensions];
+        for (int i = 0; i < this.words; i++) {
+            System.arraycopy(seeds.get(i), 0, centers, i * dimensions, dimensions);
+        }
+
+        /* Mini-batch iterations. */
+        final int batchSize = Math.min(this.batchSize, size);
+        final double[][] batch = new double[batchSize][dimensions];
+        final int[] assignments = new int[batchSize];
+        final double[] distances = new double[batchSize];
+        final long[] counts = new long[this.words];
+        for (int iteration = 0; iteration < this.iterations; iteration++) {
+            for (int i = 0; i < batchSize; i++) {
+                reservoir.get(random.nextInt(size), batch[i]);
+            }
+
+            /* Assign the batch to the current centers. */
+            IntStream.range(0, batchSize).parallel().forEach(i -> {
+                double best = Double.MAX_VALUE;
+                int index = 0;
+                for (int c = 0; c < this.words; c++) {
+                    final double distance = distance(batch[i], centers, c * dimensions);
+                    if (distance < best) {
+                        best = distance;
+                        index = c;
+                    }
+                }
+                assignments[i] = index;
+                distances[i] = best;
+            });
+
+            /* Move each center towards the descriptors assigned to it. */
+            double error = 0.0;
+            for (int i = 0; i < batchSize; i++) {
+                final int center = assignments[i];
+                final double rate = 1.0 / ++counts[center];
+                final int offset = center * dimensions;
+                for (int d = 0; d < dimensions; d++) {
+                    centers[offset + d] += rate * (batch[i][d] - centers[offset + d]);
+                }
+                error += distances[i];
+            }
+
+            if (this.verbose && (iteration % 10 == 0 || iteration == this.iterations - 1)) {
+                System.out.print(String.format("\rClustering: iteration %d/%d (mean squared error of batch: %.6f)", iteration + 1, this.iterations, error / batchSize));
+            }
+        }
+        if (this.verbose) {
+            System.out.println();
+        }
+
+        final List<double[]> clusters = new ArrayList<>(this.words);
+        for (int i = 0; i < this.words; i++) {
+            final double[] cluster = new double[dimensions];
+            System.arraycopy(centers, i * dimensions, cluster, 0, dimensions);
+            clusters.add(cluster);
+        }
+        return new AssignKMeans_F64(clusters);
+    }
+
+    /**
+     * Returns the squared euclidean distance between a descriptor and a center.
+     */
+    private static double distance(double[] descriptor, double[] centers, int offset) {
+        double distance = 0.0;
+        for (int d = 0; d < descriptor.length; d++) {
+            final double diff = descriptor[d] - centers[offset + d];
+            distance += diff * diff;
+        }
+        return distance;
+    }
+
+    /**
+     * Draws count distinct indices from [0, size) (Floyd's algorithm).
+     */
+    private static int[] sample(Random random, int size, int count) {
+        final Set<Integer> selected = new LinkedHashSet<>(2 * count);
+        for (int j = size - count; j < size; j++) {
+            final int index = random.nextInt(j + 1);
+            if (!selected.add(index)) {
+                selected.add(j);
+            }
+        }
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -1,8 +1,9 @@
 package org.vitrivr.cineast.core.features.codebook;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.ddogleg.clustering.FactoryClustering;
 import org.vitrivr.cineast.core.util.images.SURFHelper;
 
 import boofcv.abst.feature.detdesc.DetectDescribePoint;
@@ -23,24 +24,18 @@ public class SURFCodebookGenerator extends ImageCodebookGenerator {
     }
 
     /**
-     * Initializes the codebook generator (i.e. setup the clusterer etc.)
-     */
-    @Override
-    protected void init() {
-        this.clusterer = FactoryClustering.kMeans_F64(null, 200, 20, 1e-7);
-    }
-
-    /**
-     * Processes the content (i.e. creates descriptors) and add the generated
-     * descriptors to the cluster.
+     * Processes the content (i.e. creates descriptors).
      *
      * @param content The image to process.
+     * @return The descriptors generated for the image.
      */
     @Override
-    protected void process(BufferedImage content) {
+    protected List<BrightFeature> describe(BufferedImage content) {
         DetectDescribePoint<GrayF32, BrightFeature> surf = SURFHelper.getFastSurf(content);
+        List<BrightFeature> descriptors = new ArrayList<>(surf.getNumberOfFeatures());
         for (int i=0;i<surf.getNumberOfFeatures();i++) {
-            this.cluster.addReference(surf.getDescription(i));
+            descriptors.add(surf.getDescription(i));
         }
+        return descriptors;
     }
 }
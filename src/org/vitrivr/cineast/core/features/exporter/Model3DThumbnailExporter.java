@@ -19,7 +19,8 @@ import org.vitrivr.cineast.core.data.m3d.WritableMesh;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
 import org.vitrivr.cineast.core.features.extractor.Extractor;
-import org.vitrivr.cineast.core.render.JOGLOffscreenRenderer;
+import org.vitrivr.cineast.core.render.Renderer;
+import org.vitrivr.cineast.core.render.SoftwareRenderer;
 import org.vitrivr.cineast.core.setup.EntityCreator;
 import org.vitrivr.cineast.core.util.LogHelper;
 import org.vitrivr.cineast.core.util.mesh.MeshColoringUtil;
@@ -55,8 +56,11 @@ public class Model3DThumbnailExporter implements Extractor {
     /** Size of the resulting image in pixels (image will have dimension size x size). */
     private final int size;
 
-    /** Offscreen rendering context. */
-    private final JOGLOffscreenRenderer renderer;
+    /**
+     * Offscreen rendering environments. Every thread uses its own SoftwareRenderer, so that thumbnails can be rendered
+     * concurrently and without OpenGL support.
+     */
+    private final ThreadLocal<Renderer> renderers;
 
     /** Background color of the resulting image. */
     private Color backgroundColor = Color.lightGray;
@@ -88,7 +92,8 @@ public class Model3DThumbnailExporter implements Extractor {
             this.size = DEFAULT_SIZE;
         }
 
-        this.renderer = new JOGLOffscreenRenderer(this.size/2, this.size/2);
+        final int sz = this.size/2;
+        this.renderers = ThreadLocal.withInitial(() -> new SoftwareRenderer(sz, sz));
     }
 
     /**
@@ -107,25 +112,29 @@ public class Model3DThumbnailExporter implements Extractor {
                 /* Colors the mesh. */
                 MeshColoringUtil.normalColoring(mesh);
 
-                BufferedImage buffer = null;
                 BufferedImage image = new BufferedImage(this.size, this.size, BufferedImage.TYPE_INT_RGB);
                 Graphics graphics = image.getGraphics();
 
-
-                if (this.renderer.retain()) {
-                    this.renderer.clear(this.backgroundColor);
-                    this.renderer.assemble(mesh);
-
-                    for (int i=0; i<4; i++) {
-                        this.renderer.positionCameraPolar( DISTANCE, PERSPECTIVES[i][0], PERSPECTIVES[i][1], 0.0, 0.0, 0.0);
-                        this.renderer.render();
-                        buffer = this.renderer.obtain();
-
-                        int idx = i % 2;
-                        int idy = i < 2 ? 0 : 1;
-                        int sz = this.size/2;
-
-                        graphics.drawImage(buffer, idx * sz, idy*sz, null);
+                /* Retains the renderer of the current thread. */
+                final Renderer renderer = this.renderers.get();
+                if (renderer.retain()) {
+                    try {
+                        renderer.clear(this.backgroundColor);
+                        renderer.assemble(mesh);
+
+                        for (int i=0; i<4; i++) {
+                            renderer.positionCameraPolar( DISTANCE, PERSPECTIVES[i][0], PERSPECTIVES[i][1], 0.0, 0.0, 0.0);
+                            renderer.render();
+                            BufferedImage buffer = renderer.obtain();
+
+                            int idx = i % 2;
+                            int idy = i < 2 ? 0 : 1;
+                            int sz = this.size/2;
+
+                            graphics.drawImage(buffer, idx * sz, idy*sz, null);
+                        }
+                    } finally {
+                        renderer.release();
                     }
                 } else {
                     LOGGER.error("Could not export thumbnail image for model {} because renderer could not be retained by current thread.", shot.getId());
@@ -136,8 +145,6 @@ public class Model3DThumbnailExporter implements Extractor {
             LOGGER.fatal("Could not export thumbnail image for model {} due to a serious IO error ({}).", shot.getId(), LogHelper.getStackTrace(exception));
         } catch (Exception exception) {
             LOGGER.error("Could not export thumbnail image for model {} because an unknown exception occurred ({}).", shot.getId(), LogHelper.getStackTrace(exception));
-        } finally {
-            this.renderer.release();
         }
     }
 
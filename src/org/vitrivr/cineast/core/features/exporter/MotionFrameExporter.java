@@ -17,12 +17,12 @@ import org.vitrivr.cineast.core.data.Pair;
 import org.vitrivr.cineast.core.data.frames.VideoFrame;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
-import org.vitrivr.cineast.core.features.extractor.Extractor;
+import org.vitrivr.cineast.core.features.extractor.MotionExtractor;
 import org.vitrivr.cineast.core.setup.EntityCreator;
 
 import georegression.struct.point.Point2D_F32;
 
-public class MotionFrameExporter implements Extractor {
+public class MotionFrameExporter implements MotionExtractor {
 
 private static File folder = new File(Config.sharedConfig().getExtractor().getOutputLocation(), "motionframes");
 	
@@ -0,0 +1,11 @@
+package org.vitrivr.cineast.core.features.extractor;
+
+/**
+ * Marker interface for Extractors that use the motion paths of a segment (i.e. getPaths() and getBgPaths()).
+ *
+ * The ExtractionPipeline computes these paths in a separate stage before it schedules such extractors, so they
+ * do not occupy the extraction threads while waiting for the paths to be tracked.
+ */
+public interface MotionExtractor extends Extractor {
+
+}
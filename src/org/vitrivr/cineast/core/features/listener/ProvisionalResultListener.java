@@ -0,0 +1,26 @@
+package org.vitrivr.cineast.core.features.listener;
+
+import java.util.List;
+
+import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
+import org.vitrivr.cineast.core.runtime.ContinuousQueryDispatcher;
+
+/**
+ * Listener which can be passed to a single query of the {@link ContinuousQueryDispatcher} to get
+ * notified on the provisional, fused top-k results whenever one of the retrievers finishes.
+ */
+@FunctionalInterface
+public interface ProvisionalResultListener {
+
+  /**
+   * gets called whenever a retriever has finished, but not for the last one. The provisional scores
+   * are normalised by the weight of all retrievers and can therefore only increase until the final
+   * result is known.
+   *
+   * @param provisional the fused, sorted and truncated results of the retrievers finished so far
+   * @param completed number of retrievers which have finished
+   * @param total number of retrievers involved in the query
+   */
+  public void notify(List<SegmentScoreElement> provisional, int completed, int total);
+
+}
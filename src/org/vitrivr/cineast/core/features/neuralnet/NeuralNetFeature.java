@@ -1,21 +1,26 @@
 package org.vitrivr.cineast.core.features.neuralnet;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.vitrivr.cineast.core.config.Config;
 import org.vitrivr.cineast.core.config.ReadableQueryConfig;
 import org.vitrivr.cineast.core.data.providers.primitive.PrimitiveTypeProvider;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
+import org.vitrivr.cineast.core.data.tag.Tag;
 import org.vitrivr.cineast.core.db.DBSelector;
 import org.vitrivr.cineast.core.db.DBSelectorSupplier;
 import org.vitrivr.cineast.core.db.PersistencyWriter;
@@ -27,6 +32,8 @@ import org.vitrivr.cineast.core.features.neuralnet.label.ConceptReader;
 import org.vitrivr.cineast.core.setup.AttributeDefinition;
 import org.vitrivr.cineast.core.setup.AttributeDefinition.AttributeType;
 import org.vitrivr.cineast.core.setup.EntityCreator;
+import org.vitrivr.cineast.core.util.LabelIndex;
+import org.vitrivr.cineast.core.util.LogHelper;
 import org.vitrivr.cineast.core.util.TimeHelper;
 
 /**
@@ -41,6 +48,27 @@ public abstract class NeuralNetFeature extends AbstractFeatureModule {
     private PersistencyWriter<?> classWriter;
     private DBSelector classSelector;
 
+    /**
+     * Inverted index from WordNet labels to the classified segments; complements the classification table
+     */
+    private LabelIndex labelIndex;
+
+    /**
+     * WordNet labels by concept, as read from the label table
+     */
+    private final Map<String, Set<String>> concepts = new ConcurrentHashMap<>();
+
+    /**
+     * Last query and its WordNet labels
+     */
+    private SegmentContainer cachedQuery;
+    private Set<String> cachedLabels;
+
+    /**
+     * All hits of the last query in the classification table
+     */
+    private List<ScoreElement> cachedRows;
+
     /**
      * Table-name where the labels are stored
      */
@@ -72,24 +100,62 @@ public abstract class NeuralNetFeature extends AbstractFeatureModule {
      * Checks if labels have been specified. If no labels have been specified, takes the query image.
      * Might perform knn on the 1k-vector in the future.
      * It's also not clear yet if we could combine labels and input image
+     * <p>
+     * The WordNet labels are looked up in the {@link LabelIndex} of the classification table if it covers the table,
+     * which returns the best segments without scanning all classifications. Otherwise, e.g. while the table contains
+     * classifications made before the index existed, the classification table is queried.
      */
     public List<ScoreElement> getSimilar(SegmentContainer sc, ReadableQueryConfig qc, DBSelector classificationSelector, float defaultCutoff) {
         LOGGER.traceEntry();
         TimeHelper.tic();
-        List<ScoreElement> _return = new ArrayList<>();
-        if (!sc.getTags().isEmpty()) {
-            Set<String> wnLabels = new HashSet<>();
-            wnLabels.addAll(getClassSelector().getRows(getHumanLabelColName(), sc.getTags().toArray(new String[sc.getTags().size()])).stream().map(row -> row.get(getWnLabelColName()).getString()).collect(Collectors.toList()));
+        Set<String> wnLabels;
+        if (sc == this.cachedQuery) {
+            /* The same query executed again with a larger depth; re-use the labels instead of classifying again. */
+            wnLabels = this.cachedLabels;
+        } else {
+            wnLabels = getQueryLabels(sc, defaultCutoff);
+            this.cachedQuery = sc;
+            this.cachedLabels = wnLabels;
+            this.cachedRows = null;
+        }
 
-            LOGGER.debug("Looking for labels: {}", String.join(", ",wnLabels.toArray(new String[wnLabels.size()])));
-            for (Map<String, PrimitiveTypeProvider> row :
-                    classificationSelector.getRows(getWnLabelColName(), wnLabels.toArray(new String[wnLabels.size()]))) {
+        List<ScoreElement> _return = new ArrayList<>();
+        if (this.labelIndex != null && this.labelIndex.covers(getClassificationTable(), classificationSelector::count)) {
+            _return.addAll(this.labelIndex.query(wnLabels, qc.getMaxResultsPerModule()));
+        } else if (this.cachedRows != null) {
+            _return.addAll(this.cachedRows);
+        } else if (!wnLabels.isEmpty()) {
+            for (Map<String, PrimitiveTypeProvider> row : classificationSelector.getRows(getWnLabelColName(), wnLabels)) {
                 String segmentId = row.get("segmentid").getString();
                 float probability = row.get("probability").getFloat();
                 LOGGER.debug("Found hit for query {}: {} {} ",
                     segmentId, probability, row.get(getWnLabelColName()).toString());
                 _return.add(new SegmentScoreElement(segmentId, probability));
             }
+            _return = new ArrayList<>(ScoreElement.filterMaximumScores(_return.stream()));
+            this.cachedRows = new ArrayList<>(_return);
+        }
+
+        /* Only return the ranks beyond the requested offset. */
+        _return.sort(ScoreElement.SCORE_COMPARATOR.reversed());
+        int offset = Math.min(qc.getResultsOffset(), _return.size());
+        _return = new ArrayList<>(_return.subList(offset, Math.max(offset, Math.min(_return.size(), qc.getMaxResultsPerModule()))));
+        LOGGER.trace("NeuralNetFeature.getSimilar() done in {}",
+                TimeHelper.toc());
+        return LOGGER.traceExit(_return);
+    }
+
+    /**
+     * Returns the WordNet labels of a query, either those of its tags or those the net assigns to its most
+     * representative frame.
+     */
+    private Set<String> getQueryLabels(SegmentContainer sc, float defaultCutoff) {
+        Set<String> wnLabels = new HashSet<>();
+        if (!sc.getTags().isEmpty()) {
+            for (Tag tag : sc.getTags()) {
+                wnLabels.addAll(getWnLabels(tag.getName()));
+            }
+            LOGGER.debug("Looking for labels: {}", String.join(", ", wnLabels));
         } else {
             LOGGER.debug("Starting Sketch-based lookup");
             NeuralNet _net = null;
@@ -101,24 +167,51 @@ public abstract class NeuralNetFeature extends AbstractFeatureModule {
             }
 
             float[] classified = _net.classify(sc.getMostRepresentativeFrame().getImage().getBufferedImage());
-            List<String> hits = new ArrayList<>();
             for (int i = 0; i < classified.length; i++) {
                 if (classified[i] > /*qc.getCutoff().orElse(*/defaultCutoff/*)*/) {
-                    hits.add(_net.getSynSetLabels()[i]);
+                    wnLabels.add(_net.getSynSetLabels()[i]);
                 }
             }
-            for (Map<String, PrimitiveTypeProvider> row : classificationSelector.getRows(getWnLabelColName(), hits.toArray(new String[hits.size()]))) {
-                String segmentId = row.get("segmentid").getString();
-                float probability = row.get("probability").getFloat();
-                LOGGER.debug("Found hit for query {}: {} {} ",
-                    segmentId, probability, row.get(getWnLabelColName()).toString());
-                _return.add(new SegmentScoreElement(segmentId, probability));
+        }
+        return wnLabels;
+    }
+
+    /**
+     * Returns the WordNet labels associated with a concept (human label). The labels are read from the label table
+     * upon the first request for a concept and cached afterwards, unless there are none (e.g. because the labels have
+     * not been filled in yet).
+     */
+    private Set<String> getWnLabels(String concept) {
+        Set<String> labels = this.concepts.get(concept);
+        if (labels == null) {
+            labels = getClassSelector().getRows(getHumanLabelColName(), concept).stream()
+                    .map(row -> row.get(getWnLabelColName()).getString()).collect(Collectors.toSet());
+            if (!labels.isEmpty()) {
+                this.concepts.put(concept, labels);
             }
         }
-        _return = ScoreElement.filterMaximumScores(_return.stream());
-        LOGGER.trace("NeuralNetFeature.getSimilar() done in {}",
-                TimeHelper.toc());
-        return LOGGER.traceExit(_return);
+        return labels;
+    }
+
+    /**
+     * Adds a classification of a segment to the {@link LabelIndex}. Feature modules should invoke this method for every
+     * entry they persist in the classification table; the index is written upon {@link #finish()}.
+     *
+     * @param segmentId ID of the segment.
+     * @param wnLabel WordNet label assigned to the segment.
+     * @param probability Probability of the label.
+     */
+    protected void index(String segmentId, String wnLabel, float probability) {
+        if (this.labelIndex != null) {
+            this.labelIndex.add(segmentId, wnLabel, probability);
+        }
+    }
+
+    /**
+     * Returns the file the label index of the classification table is stored in.
+     */
+    private File labelIndexFile() {
+        return new File(Config.sharedConfig().indexLocation(), getClassificationTable() + ".idx");
     }
 
     protected abstract NeuralNet getNet();
@@ -128,6 +221,7 @@ public abstract class NeuralNetFeature extends AbstractFeatureModule {
         super.init(selectorSupplier);
         this.classSelector = selectorSupplier.get();
         this.classSelector.open(classTableName);
+        this.labelIndex = LabelIndex.forFile(labelIndexFile());
     }
 
 
@@ -166,10 +260,21 @@ public abstract class NeuralNetFeature extends AbstractFeatureModule {
         classWriter = phandlerSupply.get();
         classWriter.open(classTableName);
         classWriter.setFieldNames("id", wnLabel, getHumanLabelColName());
+        this.labelIndex = LabelIndex.forFile(labelIndexFile());
     }
 
+    /**
+     * Writes the classifications collected during extraction to the label index before releasing the other resources.
+     */
     @Override
     public void finish() {
+        if (this.labelIndex != null) {
+            try {
+                this.labelIndex.flush();
+            } catch (IOException e) {
+                LOGGER.error("Could not write the label index of {}: {}", getClassificationTable(), LogHelper.getStackTrace(e));
+            }
+        }
         super.finish();
         if (this.classWriter != null) {
             this.classWriter.close();
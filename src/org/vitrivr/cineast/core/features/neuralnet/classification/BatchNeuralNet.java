@@ -0,0 +1,34 @@
+package org.vitrivr.cineast.core.features.neuralnet.classification;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Interface for Neural Nets that can classify several images in a single pass. The conversion of an image to the input of
+ * the net is separated from the classification itself, so that it can be performed by the thread that requests the
+ * classification while the classification is performed in batches (see {@link NeuralNetInferenceService}).
+ */
+public interface BatchNeuralNet extends NeuralNet {
+
+    /**
+     * Returns the number of values of the input of the net for a single image.
+     *
+     * @return Size of the input per image.
+     */
+    int inputSize();
+
+    /**
+     * Converts an image to the input of the net (e.g. scales, crops and normalises it). Must be thread-safe.
+     *
+     * @param img Image to convert. No constraints are placed on the BufferedImage.
+     * @param input Array of size {@link #inputSize()} the input is written to.
+     */
+    void prepare(BufferedImage img, float[] input);
+
+    /**
+     * Classifies a batch of inputs prepared by {@link #prepare(BufferedImage, float[])}.
+     *
+     * @param inputs Inputs, one per image.
+     * @return a vector of probabilities per input. Labels for indicies should be provided by the LabelProvider
+     */
+    float[][] classify(float[][] inputs);
+}
@@ -0,0 +1,236 @@
+package org.vitrivr.cineast.core.features.neuralnet.classification;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.vitrivr.cineast.core.util.LogHelper;
+
+/**
+ * Shares a single {@link BatchNeuralNet} between all threads and classifies the images they submit in batches.
+ * <p>
+ * Every classification request is converted to the input of the net by the submitting thread and then queued. A single
+ * worker thread, which owns the net, collects up to batchSize requests (waiting at most batchTimeout milliseconds for a
+ * batch to fill up after the first request arrived), classifies them in one pass and completes the futures of the
+ * requests. Since the service implements {@link NeuralNet} itself, it can be used in place of the net.
+ */
+public class NeuralNetInferenceService implements NeuralNet {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Services shared by all feature modules, by the factory of their net. */
+    private static final Map<NeuralNetFactory, NeuralNetInferenceService> SHARED = new ConcurrentHashMap<>();
+
+    /** The net used for the classification; only invoked by the worker thread. */
+    private final BatchNeuralNet net;
+
+    /** Maximum number of images classified in a single pass. */
+    private final int batchSize;
+
+    /** Maximum time (in nanoseconds) to wait for a batch to fill up. */
+    private final long batchTimeout;
+
+    /** Pending classification requests. */
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+    /** The worker thread that classifies the batches. */
+    private final Thread worker;
+
+    /** Set by the worker thread before it fails the remaining requests; requests queued afterwards fail immediately. */
+    private volatile boolean stopped;
+
+    /**
+     * Returns the NeuralNetInferenceService shared by all callers that use the same factory, which is created upon first
+     * access with the batch size and timeout of that call; later calls with a different configuration share it as well,
+     * which is logged. If the factory creates a net that does not support batches, that net is returned instead.
+     *
+     * @param factory Factory that creates the net.
+     * @param batchSize Maximum number of images classified in a single pass.
+     * @param batchTimeout Maximum time (in milliseconds) to wait for a batch to fill up.
+     * @return The shared NeuralNet.
+     */
+    public static NeuralNet shared(NeuralNetFactory factory, int batchSize, long batchTimeout) {
+        NeuralNetInferenceService service = SHARED.get(factory);
+        if (service != null) {
+            return service.checkConfiguration(batchSize, batchTimeout);
+        }
+        synchronized (SHARED) {
+            service = SHARED.get(factory);
+            if (service != null) {
+                return service.checkConfiguration(batchSize, batchTimeout);
+            }
+            final NeuralNet net = factory.get();
+            if (!(net instanceof BatchNeuralNet)) {
+                LOGGER.warn("Neural net {} does not support batches; images will be classified one by one.", net.getClass().getSimpleName());
+                return net;
+            }
+            final NeuralNetInferenceService created = new NeuralNetInferenceService((BatchNeuralNet) net, batchSize, batchTimeout);
+            SHARED.put(factory, created);
+            return created;
+        }
+    }
+
+    /**
+     * Logs if the provided configuration differs from the one of this service, which is used regardless.
+     *
+     * @return This service.
+     */
+    private NeuralNetInferenceService checkConfiguration(int batchSize, long batchTimeout) {
+        if (batchSize != this.batchSize || TimeUnit.MILLISECONDS.toNanos(batchTimeout) != this.batchTimeout) {
+            LOGGER.warn("Neural net {} is shared with batch size {} and batch timeout {}ms; ignoring batch size {} and batch timeout {}ms.",
+                    this.net.getClass().getSimpleName(), this.batchSize, TimeUnit.NANOSECONDS.toMillis(this.batchTimeout), batchSize, batchTimeout);
+        }
+        return this;
+    }
+
+    /**
+     * Constructor for NeuralNetInferenceService. Starts the worker thread.
+     *
+     * @param net The net used for the classification.
+     * @param batchSize Maximum number of images classified in a single pass.
+     * @param batchTimeout Maximum time (in milliseconds) to wait for a batch to fill up.
+     */
+    public NeuralNetInferenceService(BatchNeuralNet net, int batchSize, long batchTimeout) {
+        if (batchSize <= 0 || batchTimeout < 0) {
+            throw new IllegalArgumentException("The batch size must be positive and the batch timeout must not be negative.");
+        }
+        this.net = net;
+        this.batchSize = batchSize;
+        this.batchTimeout = TimeUnit.MILLISECONDS.toNanos(batchTimeout);
+        this.worker = new Thread(this::run, "NeuralNetInferenceService-" + net.getClass().getSimpleName());
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Classifies the given image. Blocks until the batch containing the image has been classified.
+     *
+     * @return a vector of probabilities. Labels for indicies are provided by the LabelProvider
+     */
+    @Override
+    public float[] classify(BufferedImage img) {
+        return this.classifyAsync(img).join();
+    }
+
+    /**
+     * Converts the given image to the input of the net and queues it for classification.
+     *
+     * @return Future that completes with the vector of probabilities once the batch containing the image has been classified.
+     */
+    public CompletableFuture<float[]> classifyAsync(BufferedImage img) {
+        final CompletableFuture<float[]> future = new CompletableFuture<>();
+        try {
+            final float[] input = new float[this.net.inputSize()];
+            this.net.prepare(img, input);
+            final Request request = new Request(input, future);
+            this.queue.add(request);
+
+            /* If the worker stopped in the meantime, it may have drained the queue before the request was added. */
+            if (this.stopped && this.queue.remove(request)) {
+                throw new IllegalStateException("The NeuralNetInferenceService has been shut down.");
+            }
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Stops the worker thread and removes the service from the shared services. Requests that have not been classified
+     * yet fail.
+     */
+    public void shutdown() {
+        SHARED.values().remove(this);
+        this.worker.interrupt();
+    }
+
+    @Override
+    public List<List<String>> getAllLabels() {
+        return this.net.getAllLabels();
+    }
+
+    @Override
+    public String[] getSynSetLabels() {
+        return this.net.getSynSetLabels();
+    }
+
+    @Override
+    public String[] getLabels(String i) {
+        return this.net.getLabels(i);
+    }
+
+    /**
+     * Main loop of the worker thread: Collects batches of requests and classifies them.
+     */
+    private void run() {
+        final List<Request> batch = new ArrayList<>(this.batchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(this.queue.take());
+                final long deadline = System.nanoTime() + this.batchTimeout;
+                while (batch.size() < this.batchSize) {
+                    final Request next = this.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                this.process(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.stopped = true;
+            for (Request request = this.queue.poll(); request != null; request = this.queue.poll()) {
+                batch.add(request);
+            }
+            for (Request request : batch) {
+                request.future.completeExceptionally(new IllegalStateException("The NeuralNetInferenceService has been shut down."));
+            }
+        }
+    }
+
+    /**
+     * Classifies a batch of requests and completes their futures.
+     */
+    private void process(List<Request> batch) {
+        final float[][] inputs = new float[batch.size()][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = batch.get(i).input;
+        }
+        try {
+            final float[][] outputs = this.net.classify(inputs);
+            for (int i = 0; i < inputs.length; i++) {
+                batch.get(i).future.complete(outputs[i]);
+            }
+            LOGGER.trace("Classified batch of {} images.", inputs.length);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to classify batch of {} images: {}", inputs.length, LogHelper.getStackTrace(e));
+            for (Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * A single classification request.
+     */
+    private static final class Request {
+        final float[] input;
+        final CompletableFuture<float[]> future;
+
+        Request(float[] input, CompletableFuture<float[]> future) {
+            this.input = input;
+            this.future = future;
+        }
+    }
+}
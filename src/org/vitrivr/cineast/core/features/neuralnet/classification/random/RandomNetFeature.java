@@ -78,6 +78,7 @@ public class RandomNetFeature extends NeuralNetFeature {
 
             String id = UUID.randomUUID().toString();
             persistTuple(classificationWriter.generateTuple(id, shot.getId(), net.getSynSetLabels()[maxIdx], probabilities[maxIdx]));
+            index(shot.getId(), net.getSynSetLabels()[maxIdx], probabilities[maxIdx]);
 
             persist(shot.getId(), new FloatVectorImpl(probabilities));
             LOGGER.trace("NeuralNetFeature.processShot() done in {}",
@@ -7,6 +7,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
 import org.apache.logging.log4j.LogManager;
@@ -25,6 +26,7 @@ import org.vitrivr.cineast.core.db.PersistentTuple;
 import org.vitrivr.cineast.core.features.neuralnet.NeuralNetFeature;
 import org.vitrivr.cineast.core.features.neuralnet.classification.NeuralNet;
 import org.vitrivr.cineast.core.features.neuralnet.classification.NeuralNetFactory;
+import org.vitrivr.cineast.core.features.neuralnet.classification.NeuralNetInferenceService;
 import org.vitrivr.cineast.core.setup.EntityCreator;
 import org.vitrivr.cineast.core.util.NeuralNetUtil;
 import org.vitrivr.cineast.core.util.TimeHelper;
@@ -44,9 +46,11 @@ public class NeuralNetVGG16Feature extends NeuralNetFeature {
     private static final String fullVectorTableName = "features_neuralnet_vgg16_fullvector";
     private static final String generatedLabelsTableName = "features_neuralnet_vgg16_classifiedlabels";
 
-    private VGG16Net cachedNet = null;
+    private NeuralNet cachedNet = null;
     private NeuralNetFactory factory;
     private float cutoff = 0.2f;
+    private int batchSize;
+    private long batchTimeout;
 
     private DBSelector classificationSelector;
     private PersistencyWriter<?> classificationWriter;
@@ -71,6 +75,8 @@ public class NeuralNetVGG16Feature extends NeuralNetFeature {
         super(fullVectorTableName);
         this.cutoff = neuralNetConfig.getCutoff();
         this.factory = neuralNetConfig.getNeuralNetFactory();
+        this.batchSize = neuralNetConfig.getBatchSize();
+        this.batchTimeout = neuralNetConfig.getBatchTimeout();
     }
 
     /**
@@ -118,6 +124,7 @@ public class NeuralNetVGG16Feature extends NeuralNetFeature {
                 LOGGER.info("Actually persisting result");
                 String id = UUID.randomUUID().toString();
                 persistTuple(classificationWriter.generateTuple(id, shot.getId(), getNet().getSynSetLabels()[maxIdx], probabilities[maxIdx]));
+                index(shot.getId(), getNet().getSynSetLabels()[maxIdx], probabilities[maxIdx]);
             }
 
             persist(shot.getId(), new FloatVectorImpl(probabilities));
@@ -143,7 +150,8 @@ public class NeuralNetVGG16Feature extends NeuralNetFeature {
 
     /**
      * Classifies an Image with the given neural net.
-     * Performs 3 Classifications with different croppings, maxpools the vectors on each dimension to get hits
+     * Performs 3 Classifications with different croppings, maxpools the vectors on each dimension to get hits.
+     * If the net is shared by an inference service, all croppings are submitted before waiting for the results.
      */
     private float[] classifyImage(BufferedImage img) {
         float[] probs = new float[1000];
@@ -158,22 +166,33 @@ public class NeuralNetVGG16Feature extends NeuralNetFeature {
             positions[2] = Positions.CENTER_LEFT;
         }
 
-        float[] curr;
+        NeuralNet net = getNet();
+        List<CompletableFuture<float[]>> results = new ArrayList<>(positions.length);
         for (Position pos : positions) {
             try {
-                curr = getNet().classify(Thumbnails.of(img).size(224, 224).crop(pos).asBufferedImage());
-                probs = NeuralNetUtil.maxpool(curr, probs);
+                BufferedImage cropped = Thumbnails.of(img).size(224, 224).crop(pos).asBufferedImage();
+                if (net instanceof NeuralNetInferenceService) {
+                    results.add(((NeuralNetInferenceService) net).classifyAsync(cropped));
+                } else {
+                    results.add(CompletableFuture.completedFuture(net.classify(cropped)));
+                }
             } catch (IOException e) {
                 LOGGER.error(e);
             }
         }
+        for (CompletableFuture<float[]> result : results) {
+            probs = NeuralNetUtil.maxpool(result.join(), probs);
+        }
         return probs;
     }
 
+    /**
+     * Returns the net shared by all VGG16 feature modules (and extraction threads) which use the same factory.
+     */
     @Override
-    protected NeuralNet getNet() {
+    protected synchronized NeuralNet getNet() {
         if(cachedNet == null){
-            cachedNet = (VGG16Net) factory.get();
+            cachedNet = NeuralNetInferenceService.shared(factory, batchSize, batchTimeout);
         }
         return cachedNet;
     }
@@ -1,6 +1,5 @@
 package org.vitrivr.cineast.core.features.neuralnet.classification.tf;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
@@ -13,6 +12,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bytedeco.javacpp.tensorflow;
 import org.vitrivr.cineast.core.features.neuralnet.ImageCropper;
+import org.vitrivr.cineast.core.features.neuralnet.classification.BatchNeuralNet;
 import org.vitrivr.cineast.core.features.neuralnet.label.SynLabelProvider;
 import org.vitrivr.cineast.core.util.TimeHelper;
 
@@ -23,10 +23,19 @@ import org.vitrivr.cineast.core.util.TimeHelper;
  * <p>
  * Models & Labels are loaded using the classLoader of this class.
  * <p>
+ * Supports the classification of several images in a single session run; use a
+ * {@link org.vitrivr.cineast.core.features.neuralnet.classification.NeuralNetInferenceService} to share an instance between threads.
+ * <p>
  * Created by silvan on 23.08.16.
  */
 @Deprecated
-public class VGG16Net implements TensorFlowNet {
+public class VGG16Net implements TensorFlowNet, BatchNeuralNet {
+
+    /** Width and height of the input images. */
+    private static final int SIZE = 224;
+
+    //Magic Number because VGG=1k labels
+    private static final int LABELS = 1000;
 
     //we satisfy the label-providing part of the NeuralNet-interface with our own label provider
     private SynLabelProvider labelProvider;
@@ -78,23 +87,42 @@ public class VGG16Net implements TensorFlowNet {
     public float[] classify(BufferedImage img) {
         LOGGER.traceEntry();
         TimeHelper.tic();
-        BufferedImage cropped = ImageCropper.scaleAndCropImage(img, 224, 224);
+        float[] data = new float[inputSize()];
+        prepare(img, data);
+        float[] _return = classify(new float[][]{data})[0];
+        LOGGER.debug("Image classified by VGG16 in {} msec", TimeHelper.toc());
+        return LOGGER.traceExit(_return);
+    }
 
-        tensorflow.Tensor inputs = new tensorflow.Tensor(
-                tensorflow.DT_FLOAT, new tensorflow.TensorShape(1, 224, 224, 3));
+    @Override
+    public int inputSize() {
+        return SIZE * SIZE * 3;
+    }
+
+    @Override
+    public void prepare(BufferedImage img, float[] data) {
+        BufferedImage cropped = ImageCropper.scaleAndCropImage(img, SIZE, SIZE);
 
         //For some weird reason the nn wants to have height*width and not width*height
+        int[] rgb = cropped.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+        for (int i = 0; i < rgb.length; i++) {
+            data[i * 3] = ((rgb[i] >> 16) & 0xFF) / 255f;
+            data[i * 3 + 1] = ((rgb[i] >> 8) & 0xFF) / 255f;
+            data[i * 3 + 2] = (rgb[i] & 0xFF) / 255f;
+        }
+    }
+
+    /**
+     * Classifies all inputs in a single session run.
+     */
+    @Override
+    public float[][] classify(float[][] data) {
+        tensorflow.Tensor inputs = new tensorflow.Tensor(
+                tensorflow.DT_FLOAT, new tensorflow.TensorShape(data.length, SIZE, SIZE, 3));
         FloatBuffer fb = inputs.createBuffer();
-        float[] data = new float[224 * 224 * 3];
-        for (int y = 0; y < 224; y++) {
-            for (int x = 0; x < 224; x++) {
-                Color c = new Color(cropped.getRGB(x, y));
-                data[y * (224 * 3) + x * 3] = c.getRed() / 255f;
-                data[y * (224 * 3) + x * 3 + 1] = c.getGreen() / 255f;
-                data[y * (224 * 3) + x * 3 + 2] = c.getBlue() / 255f;
-            }
+        for (float[] input : data) {
+            fb.put(input);
         }
-        fb.put(data);
 
         //prepare outputs & run session
         tensorflow.TensorVector outputs = new tensorflow.TensorVector();
@@ -105,14 +133,15 @@ public class VGG16Net implements TensorFlowNet {
             throw new RuntimeException(s.error_message().getString());
         }
         FloatBuffer res = outputs.get(0).createBuffer();
-        //Magic Number because VGG=1k labels
-        float[] _return = new float[1000];
-        for (int i = 0; i < res.limit(); i++) {
-            _return[i] = res.get(i);
+        if (res.limit() != data.length * LABELS) {
+            throw new IllegalStateException("Expected " + LABELS + " probabilities for each of the " + data.length
+                    + " images but the net returned " + res.limit() + " values.");
         }
-
-        LOGGER.debug("Image classified by VGG16 in {} msec", TimeHelper.toc());
-        return LOGGER.traceExit(_return);
+        float[][] _return = new float[data.length][LABELS];
+        for (int i = 0; i < data.length; i++) {
+            res.get(_return[i], 0, LABELS);
+        }
+        return _return;
     }
 
     @Override
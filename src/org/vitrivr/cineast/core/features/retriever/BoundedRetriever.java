@@ -0,0 +1,17 @@
+package org.vitrivr.cineast.core.features.retriever;
+
+/**
+ * A {@link Retriever} which can bound the score of the results it has not returned yet. Incremental retrieval uses
+ * the bound to decide whether a deeper query could still change the top results, which is not possible from the
+ * returned scores alone if a retriever merges several rankings (e.g. one per query vector) into its results.
+ */
+public interface BoundedRetriever extends Retriever {
+
+	/**
+	 * Returns an upper bound for the score of every result which neither the last call to getSimilar() nor an earlier
+	 * call with the same query and a smaller depth has returned, or a negative value if no such result exists.
+	 *
+	 * @return Upper bound in [0,1] or a negative value if the retriever has returned all of its results.
+	 */
+	double getRemainingScoreBound();
+}
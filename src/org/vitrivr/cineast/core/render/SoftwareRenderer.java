@@ -0,0 +1,540 @@
+package org.vitrivr.cineast.core.render;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.vitrivr.cineast.core.data.m3d.ArrayMesh;
+import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
+import org.vitrivr.cineast.core.data.m3d.VoxelGrid;
+
+/**
+ * A pure Java implementation of the {@link Renderer} interface that rasterizes Meshes and VoxelGrids
+ * without any OpenGL support. It uses the same projection and camera model as the {@link JOGLOffscreenRenderer}
+ * (45° perspective, near plane at 0.01, far plane at 100) and supports:
+ *
+ * - Depth buffering (the nearest fragment wins, like GL_LESS).
+ * - Per-vertex colours that are interpolated across a face, i.e. flat shading for uniformly coloured faces
+ *   and silhouette images for uniformly coloured models.
+ *
+ * Assembled objects are stored as lists of triangles. Upon render(), the triangles are projected and clipped
+ * against the near plane and the frame is then rasterized in tiles, which are processed in parallel. Each
+ * tile owns its part of the colour- and depth-buffer, hence no synchronisation is required during rasterization.
+ *
+ * Unlike the JOGLOffscreenRenderer, the SoftwareRenderer does not depend on a shared context. Instances are cheap
+ * and independent of one another, so that every worker thread can use its own instance. retain() and release() are
+ * nevertheless supported in order to guard instances that are shared between threads.
+ *
+ * @see org.vitrivr.cineast.core.data.m3d.Mesh
+ * @see org.vitrivr.cineast.core.data.m3d.VoxelGrid
+ */
+public class SoftwareRenderer implements Renderer {
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Edge length of a square tile in pixels. */
+    private static final int TILE_SIZE = 32;
+
+    /** Vertical field of view in degrees. */
+    private static final float FIELD_OF_VIEW = 45.0f;
+
+    /** Distance of the near plane. */
+    private static final float Z_NEAR = 0.01f;
+
+    /** Distance of the far plane. */
+    private static final float Z_FAR = 100.0f;
+
+    /** Tolerance of the coverage test, so that no gaps appear along the edges shared by two triangles. */
+    private static final float EDGE_TOLERANCE = 1e-5f;
+
+    /** Number of floats per vertex of an assembled triangle: x, y, z, r, g, b. */
+    private static final int VERTEX_STRIDE = 6;
+
+    /** Number of floats per projected triangle: For every vertex screen x, y, depth, 1/w and r/w, g/w, b/w. */
+    private static final int PROJECTED_STRIDE = 21;
+
+    /** Width of the SoftwareRenderer in pixels. */
+    private final int width;
+
+    /** Height of the SoftwareRenderer in pixels. */
+    private final int height;
+
+    /** Aspect-ratio of the SoftwareRenderer. */
+    private final float aspect;
+
+    /** Number of tiles in x direction. */
+    private final int tilesX;
+
+    /** Number of tiles in y direction. */
+    private final int tilesY;
+
+    /** Colour-buffer in ARGB format; row 0 is the top row of the image. */
+    private final int[] colors;
+
+    /** Depth-buffer holding the normalized device z-coordinate of the nearest fragment per pixel. */
+    private final float[] depths;
+
+    /** Combined projection and view matrix. */
+    private final Matrix4f transformation = new Matrix4f();
+
+    /** Lock that makes sure that only a single Thread is using the classes rendering facility at a time. */
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    /** Vertices of all assembled triangles (see VERTEX_STRIDE). */
+    private float[] triangles = new float[1024 * 3 * VERTEX_STRIDE];
+
+    /** Number of floats used in the triangles array. */
+    private int size = 0;
+
+    /** The current background colour. */
+    private int background = Color.BLACK.getRGB();
+
+    /**
+     * Default constructor. Defines the width and the height of this SoftwareRenderer and
+     * allocates the colour- and depth-buffers.
+     *
+     * @param width Width in pixels.
+     * @param height Height in pixels.
+     */
+    public SoftwareRenderer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Width and height of the SoftwareRenderer must be positive.");
+        }
+        this.width = width;
+        this.height = height;
+        this.aspect = (float) width / (float) height;
+        this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.colors = new int[width * height];
+        this.depths = new float[width * height];
+        this.positionCamera(0.0, 0.0, 1.0, 0.0, 0.0, 0.0, 0.0, 1.0, 0.0);
+        this.clearBuffers();
+    }
+
+    /**
+     * Getter for width.
+     *
+     * @return Width of the SoftwareRenderer.
+     */
+    public final int getWidth() {
+        return width;
+    }
+
+    /**
+     * Getter for height.
+     *
+     * @return Height of the SoftwareRenderer.
+     */
+    public final int getHeight() {
+        return height;
+    }
+
+    /**
+     * Getter for aspect.
+     *
+     * @return Aspect ratio of the SoftwareRenderer.
+     */
+    public final float getAspect() {
+        return aspect;
+    }
+
+    /**
+     * Renders the scene using all the assembled objects and the configured camera position.
+     */
+    @Override
+    public void render() {
+        this.clearBuffers();
+
+        /* Vertex stage: Project and clip all triangles. */
+        final float[] projected = this.project();
+        final int count = projected.length / PROJECTED_STRIDE;
+        if (count == 0) {
+            return;
+        }
+
+        /* Binning stage: Assign every triangle to the tiles its bounding box overlaps. */
+        final int[][] bins = new int[this.tilesX * this.tilesY][];
+        final int[] binSizes = new int[bins.length];
+        for (int t = 0; t < count; t++) {
+            final int o = t * PROJECTED_STRIDE;
+            final float minX = Math.min(projected[o], Math.min(projected[o + 7], projected[o + 14]));
+            final float maxX = Math.max(projected[o], Math.max(projected[o + 7], projected[o + 14]));
+            final float minY = Math.min(projected[o + 1], Math.min(projected[o + 8], projected[o + 15]));
+            final float maxY = Math.max(projected[o + 1], Math.max(projected[o + 8], projected[o + 15]));
+            if (maxX < 0.0f || maxY < 0.0f || minX >= this.width || minY >= this.height) {
+                continue;
+            }
+            final int tx0 = Math.max(0, (int) minX / TILE_SIZE);
+            final int tx1 = Math.min(this.tilesX - 1, (int) maxX / TILE_SIZE);
+            final int ty0 = Math.max(0, (int) minY / TILE_SIZE);
+            final int ty1 = Math.min(this.tilesY - 1, (int) maxY / TILE_SIZE);
+            for (int ty = ty0; ty <= ty1; ty++) {
+                for (int tx = tx0; tx <= tx1; tx++) {
+                    final int b = ty * this.tilesX + tx;
+                    if (bins[b] == null) {
+                        bins[b] = new int[16];
+                    } else if (binSizes[b] == bins[b].length) {
+                        bins[b] = Arrays.copyOf(bins[b], 2 * bins[b].length);
+                    }
+                    bins[b][binSizes[b]++] = t;
+                }
+            }
+        }
+
+        /* Rasterization stage: Process the tiles in parallel. */
+        IntStream.range(0, bins.length).parallel().forEach(b -> {
+            if (bins[b] == null) {
+                return;
+            }
+            final int x0 = (b % this.tilesX) * TILE_SIZE;
+            final int y0 = (b / this.tilesX) * TILE_SIZE;
+            final int x1 = Math.min(x0 + TILE_SIZE, this.width);
+            final int y1 = Math.min(y0 + TILE_SIZE, this.height);
+            for (int i = 0; i < binSizes[b]; i++) {
+                this.rasterize(projected, bins[b][i] * PROJECTED_STRIDE, x0, y0, x1, y1);
+            }
+        });
+    }
+
+    /**
+     * Assembles a new Mesh object and thereby adds it to the list of objects that
+     * should be rendered. Quads are split into two triangles.
+     *
+     * @param mesh Mesh that should be rendered
+     */
+    @Override
+    public void assemble(ReadableMesh mesh) {
+        final ArrayMesh array = ArrayMesh.from(mesh);
+        for (int f = 0; f < array.numberOfFaces(); f++) {
+            this.addTriangle(array, array.getFaceVertex(f, 0), array.getFaceVertex(f, 1), array.getFaceVertex(f, 2));
+            if (array.getFaceType(f) == Mesh.FaceType.QUAD) {
+                this.addTriangle(array, array.getFaceVertex(f, 0), array.getFaceVertex(f, 2), array.getFaceVertex(f, 3));
+            }
+        }
+    }
+
+    /**
+     * Assembles a new VoxelGrid object and thereby adds it to the list of objects that
+     * should be rendered. Faces of a voxel that are covered by a neighbouring, visible voxel are omitted.
+     *
+     * @param grid VoxelGrid that should be rendered.
+     */
+    @Override
+    public void assemble(VoxelGrid grid) {
+        final float h = grid.getResolution() / 2.0f;
+        for (int i = 0; i < grid.getSizeX(); i++) {
+            for (int j = 0; j < grid.getSizeY(); j++) {
+                for (int k = 0; k < grid.getSizeZ(); k++) {
+                    /* Skip Voxel if its inactive. */
+                    if (grid.get(i, j, k) == VoxelGrid.Voxel.INVISIBLE) {
+                        continue;
+                    }
+
+                    final Vector3f center = grid.getVoxelCenter(i, j, k);
+                    final float x = center.x;
+                    final float y = center.y;
+                    final float z = center.z;
+
+                    if (i == 0 || !grid.isVisible(i - 1, j, k)) {
+                        this.addQuad(x - h, y - h, z - h, x - h, y - h, z + h, x - h, y + h, z + h, x - h, y + h, z - h);
+                    }
+                    if (i == grid.getSizeX() - 1 || !grid.isVisible(i + 1, j, k)) {
+                        this.addQuad(x + h, y - h, z + h, x + h, y - h, z - h, x + h, y + h, z - h, x + h, y + h, z + h);
+                    }
+                    if (j == 0 || !grid.isVisible(i, j - 1, k)) {
+                        this.addQuad(x - h, y - h, z - h, x + h, y - h, z - h, x + h, y - h, z + h, x - h, y - h, z + h);
+                    }
+                    if (j == grid.getSizeY() - 1 || !grid.isVisible(i, j + 1, k)) {
+                        this.addQuad(x + h, y + h, z - h, x - h, y + h, z - h, x - h, y + h, z + h, x + h, y + h, z + h);
+                    }
+                    if (k == 0 || !grid.isVisible(i, j, k - 1)) {
+                        this.addQuad(x + h, y - h, z - h, x - h, y - h, z - h, x - h, y + h, z - h, x + h, y + h, z - h);
+                    }
+                    if (k == grid.getSizeZ() - 1 || !grid.isVisible(i, j, k + 1)) {
+                        this.addQuad(x - h, y - h, z + h, x + h, y - h, z + h, x + h, y + h, z + h, x - h, y + h, z + h);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the positionCamera of the camera.
+     *
+     * @param ex x Position of the Camera
+     * @param ey y Position of the Camera
+     * @param ez z Position of the Camera
+     * @param cx x Position of the object of interest (i.e. the point at which the camera looks).
+     * @param cy y Position of the object of interest (i.e. the point at which the camera looks).
+     * @param cz z Position of the object of interest (i.e. the point at which the camera looks).
+     * @param upx x-direction of the camera's UP position.
+     * @param upy y-direction of the camera's UP position.
+     * @param upz z-direction of the camera's UP position.
+     */
+    @Override
+    public final void positionCamera(double ex, double ey, double ez, double cx, double cy, double cz, double upx, double upy, double upz) {
+        this.transformation.identity()
+                .perspective((float) Math.toRadians(FIELD_OF_VIEW), this.aspect, Z_NEAR, Z_FAR)
+                .lookAt((float) ex, (float) ey, (float) ez, (float) cx, (float) cy, (float) cz, (float) upx, (float) upy, (float) upz);
+    }
+
+    /**
+     * Clears buffers to preset-values.
+     */
+    @Override
+    public final void clear() {
+        this.clear(Color.BLACK);
+    }
+
+    /**
+     * Clears buffers to preset-values, removes all assembled objects and applies a user-defined background colour.
+     *
+     * @param color The background colour to be used.
+     */
+    @Override
+    public void clear(Color color) {
+        this.background = color.getRGB();
+        this.size = 0;
+        this.clearBuffers();
+    }
+
+    /**
+     * Obtains and returns a BufferedImage in AWT orientation from the current colour-buffer.
+     *
+     * @return BufferedImage containing a snapshot of the current render-buffer.
+     */
+    @Override
+    public final BufferedImage obtain() {
+        final BufferedImage image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, this.width, this.height, this.colors, 0, this.width);
+        return image;
+    }
+
+    /**
+     * Makes the current thread retain this SoftwareRenderer. Blocks until the SoftwareRenderer becomes
+     * available and always returns true.
+     *
+     * <b>Important: </b> Only one thread can retain a SoftwareRenderer at a time. Relinquish it by
+     * calling release().
+     *
+     * @return True.
+     */
+    @Override
+    public final boolean retain() {
+        this.lock.lock();
+        return true;
+    }
+
+    /**
+     * Makes the current thread release its ownership of the current SoftwareRenderer.
+     */
+    @Override
+    public final void release() {
+        if (this.lock.isHeldByCurrentThread()) {
+            this.lock.unlock();
+        } else {
+            LOGGER.warn("Thread '{}' cannot release SoftwareRenderer because it does not own it.", Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * Resets the colour-buffer to the background colour and the depth-buffer to the far plane.
+     */
+    private void clearBuffers() {
+        Arrays.fill(this.colors, this.background);
+        Arrays.fill(this.depths, 1.0f);
+    }
+
+    /**
+     * Adds a triangle made up of the provided vertices to the list of assembled triangles.
+     */
+    private void addTriangle(ArrayMesh mesh, int v1, int v2, int v3) {
+        this.ensureCapacity(3 * VERTEX_STRIDE);
+        final Vector3f vector = new Vector3f();
+        for (int v : new int[]{v1, v2, v3}) {
+            mesh.getPosition(v, vector);
+            this.triangles[this.size++] = vector.x;
+            this.triangles[this.size++] = vector.y;
+            this.triangles[this.size++] = vector.z;
+            mesh.getColor(v, vector);
+            this.triangles[this.size++] = vector.x;
+            this.triangles[this.size++] = vector.y;
+            this.triangles[this.size++] = vector.z;
+        }
+    }
+
+    /**
+     * Adds a white quad made up of the four provided corners as two triangles.
+     */
+    private void addQuad(float x1, float y1, float z1, float x2, float y2, float z2, float x3, float y3, float z3, float x4, float y4, float z4) {
+        this.ensureCapacity(6 * VERTEX_STRIDE);
+        final float[] corners = {x1, y1, z1, x2, y2, z2, x3, y3, z3, x1, y1, z1, x3, y3, z3, x4, y4, z4};
+        for (int c = 0; c < corners.length; c += 3) {
+            this.triangles[this.size++] = corners[c];
+            this.triangles[this.size++] = corners[c + 1];
+            this.triangles[this.size++] = corners[c + 2];
+            this.triangles[this.size++] = 1.0f;
+            this.triangles[this.size++] = 1.0f;
+            this.triangles[this.size++] = 1.0f;
+        }
+    }
+
+    /**
+     * Grows the triangles array so that it can hold the provided number of additional floats.
+     */
+    private void ensureCapacity(int additional) {
+        if (this.size + additional > this.triangles.length) {
+            this.triangles = Arrays.copyOf(this.triangles, Math.max(2 * this.triangles.length, this.size + additional));
+        }
+    }
+
+    /**
+     * Transforms all assembled triangles into clip space, clips them against the near plane and
+     * maps the result to screen space (see PROJECTED_STRIDE).
+     *
+     * @return Array of projected triangles.
+     */
+    private float[] project() {
+        final Matrix4f m = this.transformation;
+        final int vertices = this.size / VERTEX_STRIDE;
+
+        /* Clip-space coordinates (x, y, z, w) of all vertices. */
+        final float[] clip = new float[vertices * 4];
+        for (int v = 0, i = 0, c = 0; v < vertices; v++, i += VERTEX_STRIDE, c += 4) {
+            final float x = this.triangles[i];
+            final float y = this.triangles[i + 1];
+            final float z = this.triangles[i + 2];
+            clip[c] = m.m00() * x + m.m10() * y + m.m20() * z + m.m30();
+            clip[c + 1] = m.m01() * x + m.m11() * y + m.m21() * z + m.m31();
+            clip[c + 2] = m.m02() * x + m.m12() * y + m.m22() * z + m.m32();
+            clip[c + 3] = m.m03() * x + m.m13() * y + m.m23() * z + m.m33();
+        }
+
+        /* Clipping against the near plane can turn a triangle into two. */
+        float[] projected = new float[(vertices / 3) * PROJECTED_STRIDE];
+        int length = 0;
+        final float[] polygon = new float[4 * 7];
+        for (int t = 0; t < vertices; t += 3) {
+            int n = 0;
+            for (int e = 0; e < 3; e++) {
+                final int a = t + e;
+                final int b = t + (e + 1) % 3;
+                final float da = clip[a * 4 + 2] + clip[a * 4 + 3];
+                final float db = clip[b * 4 + 2] + clip[b * 4 + 3];
+                if (da >= 0.0f) {
+                    n = this.emit(polygon, n, clip, a, b, 0.0f);
+                }
+                if ((da >= 0.0f) != (db >= 0.0f)) {
+                    n = this.emit(polygon, n, clip, a, b, da / (da - db));
+                }
+            }
+            for (int k = 1; k + 1 < n; k++) {
+                if (length + PROJECTED_STRIDE > projected.length) {
+                    projected = Arrays.copyOf(projected, 2 * projected.length + PROJECTED_STRIDE);
+                }
+                this.toScreen(polygon, 0, projected, length);
+                this.toScreen(polygon, k, projected, length + 7);
+                this.toScreen(polygon, k + 1, projected, length + 14);
+                length += PROJECTED_STRIDE;
+            }
+        }
+        return Arrays.copyOf(projected, length);
+    }
+
+    /**
+     * Adds a vertex of a clipped polygon, which is interpolated between the vertices a and b, to the polygon array.
+     *
+     * @return New number of vertices in the polygon.
+     */
+    private int emit(float[] polygon, int n, float[] clip, int a, int b, float s) {
+        final int o = n * 7;
+        for (int c = 0; c < 4; c++) {
+            polygon[o + c] = clip[a * 4 + c] + s * (clip[b * 4 + c] - clip[a * 4 + c]);
+        }
+        for (int c = 0; c < 3; c++) {
+            final float ca = this.triangles[a * VERTEX_STRIDE + 3 + c];
+            final float cb = this.triangles[b * VERTEX_STRIDE + 3 + c];
+            polygon[o + 4 + c] = ca + s * (cb - ca);
+        }
+        return n + 1;
+    }
+
+    /**
+     * Performs the perspective division of a polygon vertex and maps it to screen space.
+     */
+    private void toScreen(float[] polygon, int k, float[] projected, int o) {
+        final int p = k * 7;
+        final float w = 1.0f / polygon[p + 3];
+        projected[o] = (polygon[p] * w + 1.0f) * 0.5f * this.width;
+        projected[o + 1] = (1.0f - polygon[p + 1] * w) * 0.5f * this.height;
+        projected[o + 2] = polygon[p + 2] * w;
+        projected[o + 3] = w;
+        projected[o + 4] = polygon[p + 4] * w;
+        projected[o + 5] = polygon[p + 5] * w;
+        projected[o + 6] = polygon[p + 6] * w;
+    }
+
+    /**
+     * Rasterizes a single projected triangle within the bounds of a tile. Depth is interpolated linearly in
+     * screen space whereas colours are interpolated perspective-correctly.
+     */
+    private void rasterize(float[] p, int o, int x0, int y0, int x1, int y1) {
+        final float ax = p[o], ay = p[o + 1];
+        final float bx = p[o + 7], by = p[o + 8];
+        final float cx = p[o + 14], cy = p[o + 15];
+        final float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (area == 0.0f || Float.isNaN(area)) {
+            return;
+        }
+        final float inv = 1.0f / area;
+
+        /* Bounding box of the triangle within the tile. */
+        final int minX = Math.max(x0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+        final int maxX = Math.min(x1 - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+        final int minY = Math.max(y0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+        final int maxY = Math.min(y1 - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+
+        for (int y = minY; y <= maxY; y++) {
+            final float py = y + 0.5f;
+            for (int x = minX; x <= maxX; x++) {
+                final float px = x + 0.5f;
+
+                /* Barycentric coordinates; both windings are accepted as no faces are culled. */
+                final float l1 = ((cx - bx) * (py - by) - (cy - by) * (px - bx)) * inv;
+                final float l2 = ((ax - cx) * (py - cy) - (ay - cy) * (px - cx)) * inv;
+                final float l3 = 1.0f - l1 - l2;
+                if (l1 < -EDGE_TOLERANCE || l2 < -EDGE_TOLERANCE || l3 < -EDGE_TOLERANCE) {
+                    continue;
+                }
+
+                /* Depth test. */
+                final float depth = l1 * p[o + 2] + l2 * p[o + 9] + l3 * p[o + 16];
+                final int idx = y * this.width + x;
+                if (depth < -1.0f || depth >= this.depths[idx]) {
+                    continue;
+                }
+                this.depths[idx] = depth;
+
+                /* Perspective-correct colour. */
+                final float w = 1.0f / (l1 * p[o + 3] + l2 * p[o + 10] + l3 * p[o + 17]);
+                final int r = channel((l1 * p[o + 4] + l2 * p[o + 11] + l3 * p[o + 18]) * w);
+                final int g = channel((l1 * p[o + 5] + l2 * p[o + 12] + l3 * p[o + 19]) * w);
+                final int b = channel((l1 * p[o + 6] + l2 * p[o + 13] + l3 * p[o + 20]) * w);
+                this.colors[idx] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    /**
+     * Converts a colour channel in the range [0,1] to an integer in the range [0,255].
+     */
+    private static int channel(float value) {
+        return Math.max(0, Math.min(255, Math.round(value * 255.0f)));
+    }
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.nio.file.Path;
 import java.util.List;
 
+import org.vitrivr.cineast.core.config.DatabaseConfig;
 import org.vitrivr.cineast.core.config.IdConfig;
 import org.vitrivr.cineast.core.data.MediaType;
 import org.vitrivr.cineast.core.db.DBSelectorSupplier;
@@ -120,6 +121,14 @@ public interface ExtractionContextProvider {
      */
     DBSelectorSupplier persistencyReader();
 
+    /**
+     * Returns the DatabaseConfig the PersistencyWriter and DBSelector instances of the extraction run
+     * are created from.
+     *
+     * @return DatabaseConfig of the extraction run.
+     */
+    DatabaseConfig getDatabase();
+
     /**
      * Returns the default output-location for files generated during extraction
      * (e.g. thumbnails, PROTO files etc.). Unless explicitly stated otherwise
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.activation.MimetypesFileTypeMap;
 
@@ -24,6 +25,7 @@ import org.vitrivr.cineast.core.data.entities.SegmentDescriptor;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.db.DBSelectorSupplier;
 import org.vitrivr.cineast.core.db.PersistencyWriterSupplier;
+import org.vitrivr.cineast.core.db.adampro.ADAMproInsertPipeline;
 import org.vitrivr.cineast.core.db.dao.reader.MultimediaObjectLookup;
 import org.vitrivr.cineast.core.db.dao.reader.SegmentLookup;
 import org.vitrivr.cineast.core.db.dao.writer.MultimediaMetadataWriter;
@@ -100,6 +102,12 @@ public abstract class AbstractExtractionFileHandler<T> implements ExtractionFile
     
     private final MimetypesFileTypeMap filetypes = new MimetypesFileTypeMap("mime.types");
 
+    /** First error reported for tuples that could not be persisted asynchronously; null if there was none. */
+    private final AtomicReference<Throwable> insertFailure = new AtomicReference<>();
+
+    /** Listener that records failed asynchronous inserts, which aborts the extraction run. */
+    private final ADAMproInsertPipeline.InsertFailureListener insertFailureListener = (entity, tuples, cause) -> this.insertFailure.compareAndSet(null, cause);
+
     /**
      * Default constructor used to initialize the class.
      *
@@ -110,6 +118,7 @@ public abstract class AbstractExtractionFileHandler<T> implements ExtractionFile
          this.files = files;
 
         /* Setup the required persistence-writer classes. */
+        context.getDatabase().addInsertFailureListener(this.insertFailureListener);
         PersistencyWriterSupplier writerSupplier = context.persistencyWriter();
         this.objectWriter = new MultimediaObjectWriter(writerSupplier.get(),context.getBatchsize());
         this.segmentWriter = new SegmentWriter(writerSupplier.get(),context.getBatchsize());
@@ -168,6 +177,10 @@ public abstract class AbstractExtractionFileHandler<T> implements ExtractionFile
 
         /* Process every file in the list. */
         while ((path = this.nextPath(decoder)) != null) {
+            if (this.insertFailure.get() != null) {
+                LOGGER.error("Tuples could not be persisted. Aborting extraction before processing file {}.", path);
+                break;
+            }
             LOGGER.info("Processing file {}.", path);
 
             /* Pass file to decoder and decoder to segmenter. */
@@ -278,9 +291,15 @@ public abstract class AbstractExtractionFileHandler<T> implements ExtractionFile
             for (MetadataExtractor extractor : this.metadataExtractors){
               extractor.finish();
             }
-            
+            this.context.getDatabase().removeInsertFailureListener(this.insertFailureListener);
+
             Duration duration = Duration.ofMillis(System.currentTimeMillis()-this.start_timestamp);
-            LOGGER.info("File extraction complete! It took {} to extract {} out files.", duration.toString(), this.count_processed);
+            Throwable failure = this.insertFailure.get();
+            if (failure != null) {
+                LOGGER.error("File extraction failed after {} and {} files: not all tuples could be persisted ({}).", duration.toString(), this.count_processed, failure.getMessage());
+            } else {
+                LOGGER.info("File extraction complete! It took {} to extract {} out files.", duration.toString(), this.count_processed);
+            }
         }
     }
    
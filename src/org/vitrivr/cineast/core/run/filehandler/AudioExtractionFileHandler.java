@@ -50,6 +50,6 @@ public class AudioExtractionFileHandler extends AbstractExtractionFileHandler<Au
      */
     @Override
     public Segmenter<AudioFrame> newSegmenter() {
-        return new ConstantLengthAudioSegmenter(10.0f, 1.0f);
+        return new ConstantLengthAudioSegmenter(10.0f, 1.0f, true);
     }
 }
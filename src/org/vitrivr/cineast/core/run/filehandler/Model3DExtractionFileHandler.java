@@ -4,7 +4,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Iterator;
 
-import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.data.segments.Model3DSegment;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.decode.general.Decoder;
@@ -18,7 +18,7 @@ import org.vitrivr.cineast.core.segmenter.general.Segmenter;
  * @version 1.0
  * @created 11.03.17
  */
-public class Model3DExtractionFileHandler extends AbstractExtractionFileHandler<Mesh> {
+public class Model3DExtractionFileHandler extends AbstractExtractionFileHandler<ReadableMesh> {
     /**
      * Default constructor used to initialize the class.
      *
@@ -36,7 +36,7 @@ public class Model3DExtractionFileHandler extends AbstractExtractionFileHandler<
      * @return Decoder
      */
     @Override
-    public Decoder<Mesh> newDecoder() {
+    public Decoder<ReadableMesh> newDecoder() {
         return new ModularMeshDecoder();
     }
 
@@ -47,10 +47,10 @@ public class Model3DExtractionFileHandler extends AbstractExtractionFileHandler<
      * @return Segmenter<T>
      */
     @Override
-    public Segmenter<Mesh> newSegmenter() {
-        return new PassthroughSegmenter<Mesh>() {
+    public Segmenter<ReadableMesh> newSegmenter() {
+        return new PassthroughSegmenter<ReadableMesh>() {
             @Override
-            protected SegmentContainer getSegmentFromContent(Mesh content) {
+            protected SegmentContainer getSegmentFromContent(ReadableMesh content) {
                 return new Model3DSegment(content);
             }
         };
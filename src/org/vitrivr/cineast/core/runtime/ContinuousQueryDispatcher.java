@@ -1,20 +1,23 @@
 package org.vitrivr.cineast.core.runtime;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.vitrivr.cineast.core.config.Config;
+import org.vitrivr.cineast.core.config.QueryConfig;
 import org.vitrivr.cineast.core.config.ReadableQueryConfig;
 import org.vitrivr.cineast.core.data.LimitedQueue;
 import org.vitrivr.cineast.core.data.Pair;
@@ -22,7 +25,9 @@ import org.vitrivr.cineast.core.data.query.containers.QueryContainer;
 import org.vitrivr.cineast.core.data.score.ObjectScoreElement;
 import org.vitrivr.cineast.core.data.score.ScoreElement;
 import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
+import org.vitrivr.cineast.core.features.listener.ProvisionalResultListener;
 import org.vitrivr.cineast.core.features.listener.RetrievalResultListener;
+import org.vitrivr.cineast.core.features.retriever.BoundedRetriever;
 import org.vitrivr.cineast.core.features.retriever.Retriever;
 import org.vitrivr.cineast.core.features.retriever.RetrieverInitializer;
 import org.vitrivr.cineast.core.util.LogHelper;
@@ -40,6 +45,8 @@ public class ContinuousQueryDispatcher {
       .getTaskQueueSize();
   private static final int THREAD_COUNT = Config.sharedConfig().getRetriever().getThreadPoolSize();
   private static final int MAX_RESULTS = Config.sharedConfig().getRetriever().getMaxResults();
+  private static final boolean THRESHOLD_FUSION = Config.sharedConfig().getRetriever()
+      .getThresholdFusion();
   private static final int KEEP_ALIVE_TIME = 60;
 
   private static final List<RetrievalResultListener> resultListeners = new ArrayList<>();
@@ -48,25 +55,54 @@ public class ContinuousQueryDispatcher {
   private static ExecutorService executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
       KEEP_ALIVE_TIME, TimeUnit.SECONDS, taskQueue);
 
-  private final Function<Retriever, RetrievalTask> taskFactory;
+  private final BiFunction<Retriever, ReadableQueryConfig, RetrievalTask> taskFactory;
+  private final ReadableQueryConfig config;
   private final RetrieverInitializer initializer;
   private final TObjectDoubleMap<Retriever> retrieverWeights;
   private final double retrieverWeightSum;
+  private final ProvisionalResultListener provisionalListener;
 
   public static List<SegmentScoreElement> retrieve(QueryContainer query,
       TObjectDoubleHashMap<Retriever> retrievers,
       RetrieverInitializer initializer,
       ReadableQueryConfig config) {
-    return new ContinuousQueryDispatcher(r -> new RetrievalTask(r, query, config), retrievers,
-        initializer).doRetrieve();
+    return retrieve(query, retrievers, initializer, config, null);
+  }
+
+  /**
+   * Same as {@link #retrieve(QueryContainer, TObjectDoubleHashMap, RetrieverInitializer, ReadableQueryConfig)}
+   * but notifies the provided listener about the provisional top-k results as retrievers finish.
+   *
+   * The query is not released, since callers usually retrieve the same container for several categories; they
+   * release it once it has been retrieved for all of them.
+   */
+  public static List<SegmentScoreElement> retrieve(QueryContainer query,
+      TObjectDoubleHashMap<Retriever> retrievers,
+      RetrieverInitializer initializer,
+      ReadableQueryConfig config,
+      ProvisionalResultListener listener) {
+    return new ContinuousQueryDispatcher((r, qc) -> new RetrievalTask(r, query, qc), config,
+        retrievers, initializer, listener).doRetrieve();
   }
 
   public static List<SegmentScoreElement> retrieve(String segmentId,
       TObjectDoubleHashMap<Retriever> retrievers,
       RetrieverInitializer initializer,
       ReadableQueryConfig config) {
-    return new ContinuousQueryDispatcher(r -> new RetrievalTask(r, segmentId, config), retrievers,
-        initializer).doRetrieve();
+    return retrieve(segmentId, retrievers, initializer, config, null);
+  }
+
+  /**
+   * Same as {@link #retrieve(String, TObjectDoubleHashMap, RetrieverInitializer, ReadableQueryConfig)}
+   * but notifies the provided listener about the provisional top-k results as retrievers finish.
+   */
+  public static List<SegmentScoreElement> retrieve(String segmentId,
+      TObjectDoubleHashMap<Retriever> retrievers,
+      RetrieverInitializer initializer,
+      ReadableQueryConfig config,
+      ProvisionalResultListener listener) {
+    return new ContinuousQueryDispatcher((r, qc) -> new RetrievalTask(r, segmentId, qc), config,
+        retrievers, initializer, listener).doRetrieve();
   }
 
   public static void shutdown() {
@@ -85,12 +121,15 @@ public class ContinuousQueryDispatcher {
     resultListeners.remove(listener);
   }
 
-  private ContinuousQueryDispatcher(Function<Retriever, RetrievalTask> taskFactory,
-      TObjectDoubleMap<Retriever> retrieverWeights,
-      RetrieverInitializer initializer) {
+  private ContinuousQueryDispatcher(
+      BiFunction<Retriever, ReadableQueryConfig, RetrievalTask> taskFactory,
+      ReadableQueryConfig config, TObjectDoubleMap<Retriever> retrieverWeights,
+      RetrieverInitializer initializer, ProvisionalResultListener provisionalListener) {
     this.taskFactory = taskFactory;
+    this.config = config;
     this.initializer = initializer;
     this.retrieverWeights = retrieverWeights;
+    this.provisionalListener = provisionalListener;
 
     double weightSum = 0d;
     TDoubleIterator i = retrieverWeights.valueCollection().iterator();
@@ -102,8 +141,13 @@ public class ContinuousQueryDispatcher {
 
   private List<SegmentScoreElement> doRetrieve() {
     initExecutor();
-    List<Future<Pair<RetrievalTask, List<ScoreElement>>>> futures = this.startTasks();
-    List<SegmentScoreElement> segmentScores = this.extractResults(futures);
+    List<SegmentScoreElement> segmentScores;
+    if (THRESHOLD_FUSION) {
+      segmentScores = this.retrieveIncrementally();
+    } else {
+      List<Future<Pair<RetrievalTask, List<ScoreElement>>>> futures = this.startTasks();
+      segmentScores = this.extractResults(futures);
+    }
     this.finish();
     return segmentScores;
   }
@@ -131,7 +175,7 @@ public class ContinuousQueryDispatcher {
     this.retrieverWeights.forEachEntry((r, weight) -> {
       if (weight > 0) {
         this.initializer.initialize(r);
-        RetrievalTask task = taskFactory.apply(r);
+        RetrievalTask task = taskFactory.apply(r, this.config);
         futures.add(executor.submit(task));
       }
       return true;
@@ -143,6 +187,8 @@ public class ContinuousQueryDispatcher {
       List<Future<Pair<RetrievalTask, List<ScoreElement>>>> futures) {
     TObjectDoubleMap<String> scoreByObjectId = new TObjectDoubleHashMap<>();
     TObjectDoubleMap<String> scoreBySegmentId = new TObjectDoubleHashMap<>();
+    final int total = futures.size();
+    int completed = 0;
     while (!futures.isEmpty()) {
       Iterator<Future<Pair<RetrievalTask, List<ScoreElement>>>> iterator = futures.iterator();
       while (iterator.hasNext()) {
@@ -158,6 +204,10 @@ public class ContinuousQueryDispatcher {
           LOGGER.warn(LogHelper.getStackTrace(e));
         }
         iterator.remove();
+        completed += 1;
+        if (this.provisionalListener != null && completed < total) {
+          this.notifyProvisional(scoreByObjectId, scoreBySegmentId, completed, total);
+        }
       }
       try {
         Thread.sleep(10);
@@ -170,6 +220,188 @@ public class ContinuousQueryDispatcher {
     return this.normalizeSortTruncate(scoreBySegmentId);
   }
 
+  /**
+   * Threshold algorithm style fusion (NRA): all retrievers are queried in rounds of doubling depth,
+   * starting at {@link #MAX_RESULTS}. Each round only asks for the ranks beyond the previous depth.
+   * The score of every result a retriever has not returned yet is bounded either by the retriever
+   * itself (see {@link BoundedRetriever}) or by the lowest score it returned in the last round.
+   * Retrieval stops as soon as the k-th best fused score is at least as large as the best score any
+   * other segment could still reach, or when the configured number of results per module is reached.
+   * The scores of the returned segments are the sums of the best scores the retrievers returned for
+   * them and thus lower bounds of the scores of a full fusion.
+   */
+  private List<SegmentScoreElement> retrieveIncrementally() {
+    TObjectDoubleMap<String> scoreByObjectId = new TObjectDoubleHashMap<>();
+    TObjectDoubleMap<String> scoreBySegmentId = new TObjectDoubleHashMap<>();
+    Map<Retriever, TObjectDoubleMap<String>> seen = new HashMap<>();
+    TObjectDoubleMap<Retriever> thresholds = new TObjectDoubleHashMap<>();
+
+    List<Retriever> active = new ArrayList<>(this.retrieverWeights.size());
+    this.retrieverWeights.forEachEntry((r, weight) -> {
+      if (weight > 0) {
+        this.initializer.initialize(r);
+        active.add(r);
+        seen.put(r, new TObjectDoubleHashMap<>());
+      }
+      return true;
+    });
+
+    final int maxDepth = this.config == null
+        ? Config.sharedConfig().getRetriever().getMaxResultsPerModule()
+        : this.config.getMaxResultsPerModule();
+    int depth = Math.max(1, Math.min(MAX_RESULTS, maxDepth));
+    int offset = 0;
+    int rounds = 1;
+    for (int d = depth; d < maxDepth; d *= 2) {
+      rounds += 1;
+    }
+
+    for (int round = 1; !active.isEmpty(); ++round) {
+      ReadableQueryConfig roundConfig = new QueryConfig(this.config)
+          .setMaxResultsPerModule(depth).setResultsOffset(offset);
+      List<Future<Pair<RetrievalTask, List<ScoreElement>>>> futures = new ArrayList<>(active.size());
+      for (Retriever r : active) {
+        futures.add(executor.submit(this.taskFactory.apply(r, roundConfig)));
+      }
+
+      boolean objectResults = false;
+      for (int i = 0; i < futures.size(); ++i) {
+        Retriever retriever = active.get(i);
+        List<ScoreElement> results;
+        try {
+          Pair<RetrievalTask, List<ScoreElement>> pair = futures.get(i).get();
+          results = pair.second;
+          if (results != null) {
+            this.addFreshResults(scoreByObjectId, scoreBySegmentId, pair.first, results,
+                seen.get(retriever));
+          }
+        } catch (InterruptedException | ExecutionException e) {
+          LOGGER.warn(LogHelper.getStackTrace(e));
+          thresholds.put(retriever, -1d);
+          continue;
+        }
+        if (results == null) {
+          thresholds.put(retriever, -1d);
+          continue;
+        }
+
+        double threshold = 1d;
+        for (ScoreElement element : results) {
+          objectResults |= element instanceof ObjectScoreElement;
+          threshold = Math.min(threshold, element.getScore());
+        }
+        if (retriever instanceof BoundedRetriever) {
+          threshold = ((BoundedRetriever) retriever).getRemainingScoreBound();
+        } else if (results.size() < depth - offset) {
+          threshold = -1d;
+        } else if (results.size() > depth - offset) {
+          /* Several rankings were merged into the results; their lowest score bounds nothing. */
+          threshold = 1d;
+        }
+        thresholds.put(retriever, threshold < 0 ? -1d : Math.min(1d, threshold));
+      }
+
+      /* Exhausted retrievers cannot contribute to unseen segments anymore. */
+      active.removeIf(r -> thresholds.get(r) < 0);
+      if (active.isEmpty() || depth >= maxDepth
+          || (!objectResults && this.isTopKStable(scoreBySegmentId, active, thresholds, seen))) {
+        break;
+      }
+
+      if (this.provisionalListener != null) {
+        this.notifyProvisional(scoreByObjectId, scoreBySegmentId, round, rounds);
+      }
+
+      offset = depth;
+      /* Object scores are spread over all segments of an object and cannot be bounded per segment. */
+      depth = objectResults ? maxDepth : Math.min(maxDepth, depth * 2);
+    }
+
+    ScoreFusion.fuseObjectsIntoSegments(scoreBySegmentId, scoreByObjectId);
+    return this.normalizeSortTruncate(scoreBySegmentId);
+  }
+
+  /**
+   * Adds the results of one round of a retriever. Results the retriever has not returned before are
+   * added like in a regular query; results it returns again with a higher score, e.g. because one of
+   * several query vectors reached them only in a deeper round, raise the fused score by the difference.
+   */
+  private void addFreshResults(TObjectDoubleMap<String> scoreByObjectId,
+      TObjectDoubleMap<String> scoreBySegmentId, RetrievalTask task, List<ScoreElement> results,
+      TObjectDoubleMap<String> known) {
+    double weight = this.retrieverWeights.get(task.getRetriever());
+    List<ScoreElement> fresh = new ArrayList<>();
+    for (ScoreElement element : results) {
+      double score = element.getScore();
+      if (!known.containsKey(element.getId())) {
+        known.put(element.getId(), score);
+        fresh.add(element);
+      } else if (score > known.get(element.getId()) && score <= 1) {
+        double previous = known.put(element.getId(), score);
+        TObjectDoubleMap<String> scoreById =
+            element instanceof ObjectScoreElement ? scoreByObjectId : scoreBySegmentId;
+        scoreById.adjustValue(element.getId(), weight * (score - Math.max(0d, previous)));
+      }
+    }
+    this.addRetrievalResult(scoreByObjectId, scoreBySegmentId, task, fresh);
+  }
+
+  /**
+   * Checks whether the top {@link #MAX_RESULTS} segments are final, i.e. whether no other segment,
+   * seen or not, can reach a score higher than the k-th best score seen so far. An active retriever
+   * may still raise the score of a segment up to its threshold.
+   */
+  private boolean isTopKStable(TObjectDoubleMap<String> scoreBySegmentId, List<Retriever> active,
+      TObjectDoubleMap<Retriever> thresholds, Map<Retriever, TObjectDoubleMap<String>> seen) {
+    double unseenBound = 0d;
+    for (Retriever r : active) {
+      unseenBound += this.retrieverWeights.get(r) * thresholds.get(r);
+    }
+    if (scoreBySegmentId.size() < MAX_RESULTS) {
+      return unseenBound <= 0d;
+    }
+
+    List<SegmentScoreElement> ranked = new ArrayList<>(scoreBySegmentId.size());
+    scoreBySegmentId.forEachEntry((segmentId, score) -> {
+      ranked.add(new SegmentScoreElement(segmentId, score));
+      return true;
+    });
+    ranked.sort(ScoreElement.SCORE_COMPARATOR.reversed());
+    double kth = ranked.get(MAX_RESULTS - 1).getScore();
+    if (kth < unseenBound) {
+      return false;
+    }
+    for (int i = MAX_RESULTS; i < ranked.size(); ++i) {
+      SegmentScoreElement candidate = ranked.get(i);
+      double upperBound = candidate.getScore();
+      for (Retriever r : active) {
+        TObjectDoubleMap<String> known = seen.get(r);
+        double returned = known.containsKey(candidate.getId()) ? known.get(candidate.getId()) : 0d;
+        upperBound += this.retrieverWeights.get(r) * Math.max(0d, thresholds.get(r) - returned);
+      }
+      if (upperBound > kth) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Fuses a copy of the partial results and passes the provisional top-k to the listener.
+   */
+  private void notifyProvisional(TObjectDoubleMap<String> scoreByObjectId,
+      TObjectDoubleMap<String> scoreBySegmentId, int completed, int total) {
+    TObjectDoubleMap<String> segments = new TObjectDoubleHashMap<>(scoreBySegmentId);
+    if (!scoreByObjectId.isEmpty()) {
+      ScoreFusion.fuseObjectsIntoSegments(segments, scoreByObjectId);
+    }
+    try {
+      this.provisionalListener.notify(this.normalizeSortTruncate(segments), completed, total);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Provisional result listener failed: {}", LogHelper.getStackTrace(e));
+    }
+  }
+
   private void addRetrievalResult(TObjectDoubleMap<String> scoreByObjectId,
       TObjectDoubleMap<String> scoreBySegmentId, RetrievalTask task,
       List<ScoreElement> scoreElements) {
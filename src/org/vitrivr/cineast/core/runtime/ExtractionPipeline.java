@@ -1,5 +1,6 @@
 package org.vitrivr.cineast.core.runtime;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -8,6 +9,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.apache.logging.log4j.LogManager;
@@ -17,6 +19,7 @@ import org.vitrivr.cineast.core.data.LimitedQueue;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.features.extractor.Extractor;
 import org.vitrivr.cineast.core.features.extractor.ExtractorInitializer;
+import org.vitrivr.cineast.core.features.extractor.MotionExtractor;
 import org.vitrivr.cineast.core.run.ExtractionContextProvider;
 import org.vitrivr.cineast.core.util.LogHelper;
 
@@ -42,6 +45,9 @@ public class ExtractionPipeline implements Runnable, ExecutionTimeCounter {
     /** ExecutorService used do execute the ExtractionTasks. */
     private final ExecutorService executorService;
 
+    /** ExecutorService used to compute the motion paths of the segments before the MotionExtractors are executed. */
+    private final ExecutorService pathExecutorService;
+
     /** ExtractionContextProvider used to setup the Pipeline. It contains information about the Extractors. */
     private final ExtractionContextProvider context;
 
@@ -85,6 +91,9 @@ public class ExtractionPipeline implements Runnable, ExecutionTimeCounter {
                 super.afterExecute(r, null);
             }
         };
+
+        /* The motion paths are computed by a single thread (which tracks the frames in parallel) ahead of the extraction threads. */
+        this.pathExecutorService = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LimitedQueue<>(taskQueueSize));
     }
 
     /**
@@ -147,16 +156,41 @@ public class ExtractionPipeline implements Runnable, ExecutionTimeCounter {
                 SegmentContainer s = this.segmentQueue.poll(500, TimeUnit.MILLISECONDS);
                 if (s != null) {
                     LOGGER.info("Segment {} is being handed to the extraction pipeline.", s.getId());
+
+                    /* The segment is released by the last of its ExtractionTasks to finish (or here, if none was submitted). */
+                    final AtomicInteger pending = new AtomicInteger(1);
+
+                    /* MotionExtractors are submitted by a MotionPathTask once the motion paths of the segment are available. */
+                    final List<Extractor> motionExtractors = new ArrayList<>();
                     for (Extractor f : extractors) {
+                        if (f instanceof MotionExtractor) {
+                            motionExtractors.add(f);
+                            continue;
+                        }
                         try {
-                            this.executorService.execute(new ExtractionTask(f, s, this));
+                            pending.incrementAndGet();
+                            this.executorService.execute(new ExtractionTask(f, s, this, pending));
                             LOGGER.debug("Submitted segment {} for feature {}", s.getId(), f.getClass().getSimpleName());
                         } catch (RejectedExecutionException e) {
+                            pending.decrementAndGet();
                             this.segmentQueue.clear();
                             LOGGER.fatal("Failed to submit segment {} for feature {}. Aborting...\n{}", s.getId(), f.getClass().getSimpleName(), LogHelper.getStackTrace(e));
                             break;
                         }
                     }
+                    if (!motionExtractors.isEmpty() && !this.executorService.isShutdown()) {
+                        try {
+                            pending.incrementAndGet();
+                            this.pathExecutorService.execute(new MotionPathTask(motionExtractors, s, this.executorService, this, pending));
+                        } catch (RejectedExecutionException e) {
+                            pending.decrementAndGet();
+                            this.segmentQueue.clear();
+                            LOGGER.fatal("Failed to submit segment {} for motion path computation. Aborting...\n{}", s.getId(), LogHelper.getStackTrace(e));
+                        }
+                    }
+                    if (pending.decrementAndGet() == 0) {
+                        s.release();
+                    }
 
                     /* Sort list of extractors by execution time. */
                     (this.extractors).sort((o1,o2) -> Long.compare(getAverageExecutionTime(o2.getClass()), getAverageExecutionTime(o1.getClass())));
@@ -198,6 +232,9 @@ public class ExtractionPipeline implements Runnable, ExecutionTimeCounter {
      */
     private void shutdown() {
         try {
+            /* The path stage submits tasks to the extraction threads, hence it must be shut down first. */
+            this.pathExecutorService.shutdown();
+            this.pathExecutorService.awaitTermination(15, TimeUnit.MINUTES);
             this.executorService.shutdown();
             this.executorService.awaitTermination(15, TimeUnit.MINUTES);
         } catch (InterruptedException e) {
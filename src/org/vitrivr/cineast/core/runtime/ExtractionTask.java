@@ -1,5 +1,7 @@
 package org.vitrivr.cineast.core.runtime;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
@@ -11,12 +13,15 @@ class ExtractionTask implements Runnable {
 	private final Extractor feature;
 	private final SegmentContainer shot;
 	private final ExecutionTimeCounter etc;
+	/** Number of tasks for the segment that have not finished yet; the last one releases the segment. */
+	private final AtomicInteger pending;
 	private static final Logger LOGGER = LogManager.getLogger();
 	
-	ExtractionTask(Extractor feature, SegmentContainer shot, ExecutionTimeCounter etc) {
+	ExtractionTask(Extractor feature, SegmentContainer shot, ExecutionTimeCounter etc, AtomicInteger pending) {
 		this.feature = feature;
 		this.shot = shot;
 		this.etc = etc;
+		this.pending = pending;
 	}
 	
 	@Override
@@ -30,6 +35,10 @@ class ExtractionTask implements Runnable {
 			
 		}catch(Exception e){
 			LOGGER.fatal("EXTRACTION ERROR in {}:\n{}", feature.getClass().getSimpleName(), LogHelper.getStackTrace(e));
+		}finally{
+			if(this.pending.decrementAndGet() == 0){
+				this.shot.release();
+			}
 		}
 		if(this.etc != null){
       this.etc.reportExecutionTime(this.feature.getClass(), (System.currentTimeMillis() - start));
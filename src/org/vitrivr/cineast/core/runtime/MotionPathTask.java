@@ -0,0 +1,68 @@
+package org.vitrivr.cineast.core.runtime;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.vitrivr.cineast.core.data.segments.SegmentContainer;
+import org.vitrivr.cineast.core.features.extractor.Extractor;
+import org.vitrivr.cineast.core.util.LogHelper;
+
+/**
+ * Stage of the ExtractionPipeline that computes the motion paths of a segment and, once they are available,
+ * submits the ExtractionTasks of the extractors that depend on them.
+ */
+class MotionPathTask implements Runnable {
+
+	private final List<Extractor> extractors;
+	private final SegmentContainer shot;
+	private final ExecutorService executor;
+	private final ExecutionTimeCounter etc;
+	/** Number of tasks for the segment that have not finished yet; the last one releases the segment. */
+	private final AtomicInteger pending;
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	MotionPathTask(List<Extractor> extractors, SegmentContainer shot, ExecutorService executor, ExecutionTimeCounter etc, AtomicInteger pending) {
+		this.extractors = extractors;
+		this.shot = shot;
+		this.executor = executor;
+		this.etc = etc;
+		this.pending = pending;
+	}
+
+	@Override
+	public void run() {
+		LOGGER.traceEntry();
+		long start = System.currentTimeMillis();
+		try{
+			this.shot.getPaths();
+			if(this.etc != null){
+				this.etc.reportExecutionTime(this.getClass(), (System.currentTimeMillis() - start));
+			}
+			LOGGER.debug("Computed motion paths of segment {} in {} ms", shot.getId(), System.currentTimeMillis() - start);
+
+			for (Extractor f : this.extractors) {
+				try {
+					this.pending.incrementAndGet();
+					this.executor.execute(new ExtractionTask(f, this.shot, this.etc, this.pending));
+					LOGGER.debug("Submitted segment {} for feature {}", shot.getId(), f.getClass().getSimpleName());
+				} catch (RejectedExecutionException e) {
+					this.pending.decrementAndGet();
+					LOGGER.fatal("Failed to submit segment {} for feature {}. Aborting...\n{}", shot.getId(), f.getClass().getSimpleName(), LogHelper.getStackTrace(e));
+					break;
+				}
+			}
+		}catch(Exception e){
+			LOGGER.fatal("EXTRACTION ERROR while computing motion paths:\n{}", LogHelper.getStackTrace(e));
+		}finally{
+			if(this.pending.decrementAndGet() == 0){
+				this.shot.release();
+			}
+		}
+		LOGGER.traceExit();
+	}
+
+}
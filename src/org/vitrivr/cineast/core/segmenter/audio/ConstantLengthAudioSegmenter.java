@@ -11,12 +11,17 @@ import org.vitrivr.cineast.core.data.segments.AudioSegment;
 import org.vitrivr.cineast.core.data.segments.SegmentContainer;
 import org.vitrivr.cineast.core.decode.general.Decoder;
 import org.vitrivr.cineast.core.segmenter.general.Segmenter;
+import org.vitrivr.cineast.core.util.dsp.fft.STFTStream;
 
 /**
  * Merges multiple AudioFrames into a single AudioSegment using a constant number of frames per AudioSegment. The length
  * of an AudioSegment in frames AND the overlapfactor between two subsequent AudioSegments can be defined upon onstruction of the
  * ConstantLengthAudioSegmenter.
  *
+ * In streaming mode, all AudioSegments of a media object are attached to a common {@link STFTStream}, so that
+ * STFT windows in the overlap between two subsequent AudioSegments are only transformed once. Since the windows of
+ * the stream lie on one grid, this also holds if the AudioSegments do not start a multiple of the window increment apart.
+ *
  * @see AudioSegment
  * @see AudioFrame
  *
@@ -48,6 +53,18 @@ public class ConstantLengthAudioSegmenter implements Segmenter<AudioFrame> {
     /** ArrayDeque holding AudioFrames that have been queued for overlap. */
     private ArrayDeque<AudioFrame> overlapQueue = new ArrayDeque<>();
 
+    /** Positions of the first samples of the AudioFrames in the overlapQueue (same order). */
+    private ArrayDeque<Long> overlapPositions = new ArrayDeque<>();
+
+    /** Whether AudioSegments should share their STFTs through a STFTStream. */
+    private final boolean streaming;
+
+    /** STFTStream shared by the AudioSegments of the current media object; null if not streaming. */
+    private STFTStream stream;
+
+    /** Number of samples decoded so far. */
+    private long position;
+
     /** A flag indicating whether or not the segmenter has completed its work. */
     private AtomicBoolean complete = new AtomicBoolean(false);
 
@@ -58,11 +75,23 @@ public class ConstantLengthAudioSegmenter implements Segmenter<AudioFrame> {
      * @param overlap Overlap between to subsequent AudioSegments
      */
     public ConstantLengthAudioSegmenter(float length, float overlap) {
+        this(length, overlap, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param length Length of an individual segment in seconds.
+     * @param overlap Overlap between to subsequent AudioSegments
+     * @param streaming True if subsequent AudioSegments should share the STFT windows they have in common.
+     */
+    public ConstantLengthAudioSegmenter(float length, float overlap, boolean streaming) {
         if (overlap >= 0.9f * length) {
           throw new IllegalArgumentException("Overlap must be smaller than total segment length.");
         }
         this.length = length;
         this.overlap = overlap;
+        this.streaming = streaming;
     }
 
     /**
@@ -76,6 +105,8 @@ public class ConstantLengthAudioSegmenter implements Segmenter<AudioFrame> {
     public void init(Decoder<AudioFrame> decoder, MultimediaObjectDescriptor object) {
         this.decoder = decoder;
         this.complete.set(false);
+        this.position = 0;
+        this.stream = this.streaming ? new STFTStream(this.length) : null;
     }
 
     /**
@@ -138,9 +169,12 @@ public class ConstantLengthAudioSegmenter implements Segmenter<AudioFrame> {
         while (!this.decoder.complete()) {
             AudioFrame newFrame = this.decoder.getNext();
             if (newFrame != null) {
-                this.currentSegment.addFrame(newFrame);
+                long start = this.position;
+                this.position += newFrame.numberOfSamples();
+                this.addFrame(newFrame, start);
                 if (this.currentSegment.getAudioDuration() >= (this.length - this.overlap)) {
                     this.overlapQueue.offerLast(newFrame);
+                    this.overlapPositions.offerLast(start);
                 }
                 if (this.currentSegment.getAudioDuration() >= this.length) {
                     this.nextCycle(false);
@@ -162,14 +196,30 @@ public class ConstantLengthAudioSegmenter implements Segmenter<AudioFrame> {
                 this.currentSegment = new AudioSegment();
                 AudioFrame frame;
                 while ((frame = this.overlapQueue.poll()) != null) {
-                    this.currentSegment.addFrame(frame);
+                    this.addFrame(frame, this.overlapPositions.poll());
                 }
             } else {
                 this.currentSegment = null;
                 this.overlapQueue.clear();
+                this.overlapPositions.clear();
+                this.stream = null;
             }
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Adds an AudioFrame to the current AudioSegment. If it is the first AudioFrame of the segment and the
+     * segmenter is streaming, the AudioSegment is attached to the STFTStream at the position of that frame.
+     *
+     * @param frame AudioFrame to add.
+     * @param start Position of the first sample of the frame within the media object.
+     */
+    private void addFrame(AudioFrame frame, long start) {
+        if (this.stream != null && this.currentSegment.getNumberOfSamples() == 0) {
+            this.currentSegment.setStream(this.stream, start);
+        }
+        this.currentSegment.addFrame(frame);
+    }
 }
@@ -0,0 +1,485 @@
+package org.vitrivr.cineast.core.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Base class of the embedded indexes (e.g. {@link LabelIndex}) that are built during extraction, stored next to each
+ * other in the index location and memory-mapped for querying without a database.
+ *
+ * New entries are collected in memory by segment ID and written by {@link #flush()} into a new part file, which is
+ * named after the index file followed by a generation number (e.g. "features_ocr.idx.3"); a file without generation,
+ * as written by earlier versions, is the oldest part. The entry of a segment in a newer part replaces the entries of
+ * that segment in all older parts. After every flush, the two newest parts are merged as long as the newer one is at
+ * least half as large as the older one and the merged part stays below {@link #MAX_MERGE_SIZE}; a flush thus writes
+ * the new entries and occasionally a merge instead of rewriting the whole index, and the number of parts grows
+ * logarithmically.
+ *
+ * Every part is mapped as a single buffer and hence limited to 2GB; a flush that would exceed this limit fails. The
+ * parts are listed again at most every {@link #RELIST_INTERVAL} milliseconds, which makes flushes of other processes
+ * visible to queries.
+ *
+ * @param <E> Type of the entry of a segment.
+ * @param <P> Type of the memory-mapped content of a part.
+ */
+public abstract class AbstractFileIndex<E, P extends AbstractFileIndex.Part> {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Maximum size in bytes of a part that is created by merging two parts. */
+    private static final long MAX_MERGE_SIZE = 512L << 20;
+
+    /** Time in milliseconds after which the part files are listed again. */
+    private static final long RELIST_INTERVAL = 1000L;
+
+    /** Time in milliseconds after which the rows an index is compared with are counted again. */
+    private static final long COVERAGE_TTL = 60_000L;
+
+    /** Shared indexes by file. */
+    private static final ConcurrentHashMap<File, AbstractFileIndex<?, ?>> INDEXES = new ConcurrentHashMap<>();
+
+    /** The file the index is stored in; the part files are stored next to it. */
+    protected final File file;
+
+    /** Entries that have been added since the last flush by segment ID. */
+    protected final Map<String, E> pending = new LinkedHashMap<>();
+
+    /** Magic number and version at the beginning of every part file. */
+    private final int magic;
+    private final int version;
+
+    /** Kind of the index, used in messages (e.g. "label index"). */
+    private final String kind;
+
+    /** Currently mapped parts; null if they have to be listed again. */
+    private volatile View<P> view;
+
+    /** Lock for listing and mapping the parts, which must not wait for a flush. */
+    private final Object lock = new Object();
+
+    /** Last coverage check by entity. */
+    private final Map<String, Coverage> coverage = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the shared index stored in the provided file, creating it with the provided factory if necessary.
+     *
+     * @param file File the index is stored in. The file does not need to exist.
+     * @param type Class of the index.
+     * @param factory Creates the index for a file.
+     * @return Shared index for the file.
+     */
+    protected static <I extends AbstractFileIndex<?, ?>> I forFile(File file, Class<I> type, Function<File, I> factory) {
+        final AbstractFileIndex<?, ?> index = INDEXES.computeIfAbsent(file.getAbsoluteFile(), factory);
+        if (!type.isInstance(index)) {
+            throw new IllegalArgumentException("The file " + file + " is already used by a " + index.kind + ".");
+        }
+        return type.cast(index);
+    }
+
+    protected AbstractFileIndex(File file, int magic, int version, String kind) {
+        this.file = file;
+        this.magic = magic;
+        this.version = version;
+        this.kind = kind;
+    }
+
+    /**
+     * Reads the content of a part file.
+     *
+     * @param buffer Buffer holding the whole file, starting with the magic number and the version.
+     * @return Content of the part.
+     * @throws IOException If the content is invalid.
+     */
+    protected abstract P read(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Writes a part file holding the provided entries. The magic number and the version have already been written.
+     *
+     * @param out Stream to write to.
+     * @param entries Entries by segment ID.
+     * @throws IOException If the part could not be written.
+     */
+    protected abstract void write(DataOutputStream out, Map<String, E> entries) throws IOException;
+
+    /**
+     * Reconstructs the entries of the segments of a part that have not been replaced by newer parts.
+     *
+     * @param part Content of the part.
+     * @param replaced Indexes of the segments of the part that have been replaced.
+     * @param entries Map to which the entries are added by segment ID.
+     */
+    protected abstract void entries(P part, BitSet replaced, Map<String, E> entries);
+
+    /**
+     * Checks if the index has been written and can be queried.
+     *
+     * @return True if the index is available.
+     */
+    public boolean available() {
+        return !this.view().parts.isEmpty();
+    }
+
+    /**
+     * Returns the number of segments in the index, not counting pending entries.
+     *
+     * @return Number of indexed segments.
+     */
+    public int size() {
+        return this.view().size;
+    }
+
+    /**
+     * Checks if the index covers an entity that is stored elsewhere (e.g. in the storage layer), i.e. if it holds at
+     * least as many entries as the entity has rows. Callers are expected to query the entity instead, if it does not.
+     * The rows are counted again if the parts have changed or the last count is older than {@link #COVERAGE_TTL}; if
+     * they cannot be counted, the index does not cover the entity.
+     *
+     * @param entity Name of the entity.
+     * @param rows Counts the rows of the entity; returns a negative value if they cannot be counted.
+     * @return True if the index covers the entity.
+     */
+    public boolean covers(String entity, LongSupplier rows) {
+        final View<P> view = this.view();
+        if (view.parts.isEmpty()) {
+            return false;
+        }
+        final long now = System.currentTimeMillis();
+        Coverage coverage = this.coverage.get(entity);
+        if (coverage == null || coverage.view != view || now - coverage.checked > COVERAGE_TTL) {
+            coverage = new Coverage(view, this.covered(view), rows.getAsLong(), now);
+            this.coverage.put(entity, coverage);
+            if (coverage.rows < 0 || coverage.rows > coverage.indexed) {
+                LOGGER.info("The {} {} covers {} of {} rows of {}.", this.kind, this.file, coverage.indexed, coverage.rows < 0 ? "?" : coverage.rows, entity);
+            }
+        }
+        return coverage.rows >= 0 && coverage.rows <= coverage.indexed;
+    }
+
+    /**
+     * Returns the number of entries of the provided view that correspond to a row of the entity the index covers;
+     * by default the number of segments.
+     *
+     * @param view View of the parts.
+     * @return Number of indexed entries.
+     */
+    protected long covered(View<P> view) {
+        return view.size;
+    }
+
+    /**
+     * Writes all pending entries into a new part file and merges the newest parts if they are of similar size.
+     *
+     * @throws IOException If the part could not be written. Pending entries are kept in this case.
+     */
+    public synchronized void flush() throws IOException {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        final List<PartFile> files = this.list();
+        final long generation = files.isEmpty() ? 1 : files.get(files.size() - 1).generation + 1;
+        this.write(new File(this.file.getPath() + "." + generation), this.pending);
+        this.pending.clear();
+        this.view = null;
+
+        View<P> view = this.view();
+        while (view.parts.size() > 1) {
+            final int newest = view.parts.size() - 1;
+            final PartFile older = view.files.get(newest - 1);
+            final PartFile newer = view.files.get(newest);
+            if (2 * newer.length < older.length || older.length + newer.length > MAX_MERGE_SIZE) {
+                break;
+            }
+            final Map<String, E> entries = new LinkedHashMap<>();
+            this.entries(view.parts.get(newest - 1), view.replaced.get(newest - 1), entries);
+            this.entries(view.parts.get(newest), view.replaced.get(newest), entries);
+            this.write(newer.file, entries);
+            this.view = null;
+            try {
+                Files.delete(older.file.toPath());
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete the merged part {} of the {}: {}", older.file, this.kind, LogHelper.getStackTrace(e));
+                break;
+            }
+            view = this.view();
+        }
+    }
+
+    /**
+     * Returns the currently mapped parts, listing and (re-)mapping the part files if they may have changed.
+     *
+     * @return View of the parts; empty if no part has been written or could be read.
+     */
+    protected final View<P> view() {
+        View<P> view = this.view;
+        if (view != null && System.currentTimeMillis() - view.listed < RELIST_INTERVAL) {
+            return view;
+        }
+        synchronized (this.lock) {
+            view = this.view;
+            final long now = System.currentTimeMillis();
+            if (view != null && now - view.listed < RELIST_INTERVAL) {
+                return view;
+            }
+            final List<PartFile> listing = this.list();
+            if (view != null && view.listing.equals(listing)) {
+                view.listed = now;
+                return view;
+            }
+
+            /* Parts that have not changed are not mapped again. */
+            final Map<PartFile, P> mapped = new HashMap<>();
+            if (view != null) {
+                for (int i = 0; i < view.files.size(); i++) {
+                    mapped.put(view.files.get(i), view.parts.get(i));
+                }
+            }
+            final List<PartFile> files = new ArrayList<>(listing.size());
+            final List<P> parts = new ArrayList<>(listing.size());
+            for (PartFile file : listing) {
+                P part = mapped.get(file);
+                if (part == null) {
+                    try {
+                        part = this.map(file.file);
+                    } catch (IOException | RuntimeException e) {
+                        LOGGER.error("Could not read part {} of the {}: {}", file.file, this.kind, LogHelper.getStackTrace(e));
+                        continue;
+                    }
+                }
+                files.add(file);
+                parts.add(part);
+            }
+            view = new View<>(listing, files, parts, now);
+            this.view = view;
+            return view;
+        }
+    }
+
+    /**
+     * Lists the part files of the index, ordered from the oldest to the newest.
+     */
+    private List<PartFile> list() {
+        final File directory = this.file.getAbsoluteFile().getParentFile();
+        final String name = this.file.getName();
+        final File[] candidates = directory == null ? null : directory.listFiles((dir, n) -> n.startsWith(name));
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        final List<PartFile> files = new ArrayList<>(candidates.length);
+        for (File candidate : candidates) {
+            final String suffix = candidate.getName().substring(name.length());
+            if (suffix.isEmpty()) {
+                files.add(new PartFile(candidate, 0));
+            } else if (suffix.length() > 1 && suffix.length() < 19 && suffix.charAt(0) == '.' && suffix.substring(1).chars().allMatch(c -> c >= '0' && c <= '9')) {
+                files.add(new PartFile(candidate, Long.parseLong(suffix.substring(1))));
+            }
+        }
+        files.sort((a, b) -> Long.compare(a.generation, b.generation));
+        return files;
+    }
+
+    private P map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The part " + file + " exceeds 2GB and cannot be mapped.");
+            }
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < 2 * Integer.BYTES || buffer.getInt(0) != this.magic || buffer.getInt(4) != this.version) {
+                throw new IOException("The file " + file + " is not a " + this.kind + " of version " + this.version + ".");
+            }
+            return this.read(buffer);
+        }
+    }
+
+    /**
+     * Writes the provided entries to a temporary file, which then replaces the provided part file.
+     */
+    private void write(File part, Map<String, E> entries) throws IOException {
+        final File parent = part.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        final File tmp = new File(part.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(this.magic);
+            out.writeInt(this.version);
+            this.write(out, entries);
+        }
+        if (tmp.length() > Integer.MAX_VALUE) {
+            Files.delete(tmp.toPath());
+            throw new IOException("The part " + part + " of the " + this.kind + " would exceed 2GB; flush more often.");
+        }
+        try {
+            Files.move(tmp.toPath(), part.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), part.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    protected static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    protected static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a view of length ints of the provided buffer, starting at the provided byte position.
+     */
+    protected static IntBuffer slice(ByteBuffer buffer, int position, int length) {
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.limit(position + length * Integer.BYTES);
+        return duplicate.slice().asIntBuffer();
+    }
+
+    /**
+     * Memory-mapped content of a part file.
+     */
+    protected interface Part {
+        /**
+         * @return IDs of the segments in the part by their index within the part.
+         */
+        String[] segments();
+    }
+
+    /**
+     * Mapped parts of an index together with the segments of every part that have been replaced by newer parts.
+     */
+    protected static final class View<P extends Part> {
+        private final List<PartFile> listing;
+        private final List<PartFile> files;
+        private final List<P> parts;
+        private final List<BitSet> replaced;
+        private final int size;
+        private volatile long listed;
+
+        private View(List<PartFile> listing, List<PartFile> files, List<P> parts, long listed) {
+            this.listing = listing;
+            this.files = files;
+            this.parts = parts;
+            this.listed = listed;
+            final BitSet[] replaced = new BitSet[parts.size()];
+            final Set<String> seen = new HashSet<>();
+            for (int i = parts.size() - 1; i >= 0; i--) {
+                final String[] segments = parts.get(i).segments();
+                replaced[i] = new BitSet(segments.length);
+                for (int s = 0; s < segments.length; s++) {
+                    if (!seen.add(segments[s])) {
+                        replaced[i].set(s);
+                    }
+                }
+            }
+            this.replaced = Arrays.asList(replaced);
+            this.size = seen.size();
+        }
+
+        /**
+         * @return Mapped parts, ordered from the oldest to the newest.
+         */
+        public List<P> parts() {
+            return this.parts;
+        }
+
+        /**
+         * Checks if a segment of a part has been replaced by a newer part and must hence be ignored.
+         *
+         * @param part Index of the part.
+         * @param segment Index of the segment within the part.
+         * @return True if the segment has been replaced.
+         */
+        public boolean replaced(int part, int segment) {
+            return this.replaced.get(part).get(segment);
+        }
+
+        /**
+         * @return Number of segments in all parts that have not been replaced.
+         */
+        public int size() {
+            return this.size;
+        }
+    }
+
+    /**
+     * Result of a coverage check for the view it has been made with.
+     */
+    private static final class Coverage {
+        private final View<?> view;
+        private final long indexed;
+        private final long rows;
+        private final long checked;
+
+        private Coverage(View<?> view, long indexed, long rows, long checked) {
+            this.view = view;
+            this.indexed = indexed;
+            this.rows = rows;
+            this.checked = checked;
+        }
+    }
+
+    /**
+     * A part file as listed, identified by its name, size and modification time.
+     */
+    private static final class PartFile {
+        private final File file;
+        private final long generation;
+        private final long length;
+        private final long modified;
+
+        private PartFile(File file, long generation) {
+            this.file = file;
+            this.generation = generation;
+            this.length = file.length();
+            this.modified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PartFile)) {
+                return false;
+            }
+            final PartFile other = (PartFile) o;
+            return this.file.equals(other.file) && this.length == other.length && this.modified == other.modified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.file, this.length, this.modified);
+        }
+    }
+}
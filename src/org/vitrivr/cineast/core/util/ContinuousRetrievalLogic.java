@@ -8,6 +8,7 @@ import org.vitrivr.cineast.core.config.Config;
 import org.vitrivr.cineast.core.config.ReadableQueryConfig;
 import org.vitrivr.cineast.core.data.query.containers.QueryContainer;
 import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
+import org.vitrivr.cineast.core.features.listener.ProvisionalResultListener;
 import org.vitrivr.cineast.core.features.listener.RetrievalResultListener;
 import org.vitrivr.cineast.core.features.retriever.Retriever;
 import org.vitrivr.cineast.core.runtime.ContinuousQueryDispatcher;
@@ -18,21 +19,31 @@ public class ContinuousRetrievalLogic {
 
   public static List<SegmentScoreElement> retrieve(QueryContainer qc, String category,
       ReadableQueryConfig config) {
+    return retrieve(qc, category, config, null);
+  }
+
+  public static List<SegmentScoreElement> retrieve(QueryContainer qc, String category,
+      ReadableQueryConfig config, ProvisionalResultListener listener) {
     TObjectDoubleHashMap<Retriever> retrievers = Config.sharedConfig().getRetriever()
         .getRetrieversByCategory(category);
     if (retrievers.isEmpty()) {
       return new ArrayList<SegmentScoreElement>(0);
     }
-    return ContinuousQueryDispatcher.retrieve(qc, retrievers, API.getInitializer(), config);
+    return ContinuousQueryDispatcher.retrieve(qc, retrievers, API.getInitializer(), config, listener);
   }
 
   public static List<SegmentScoreElement> retrieve(String id, String category, ReadableQueryConfig config) {
+    return retrieve(id, category, config, null);
+  }
+
+  public static List<SegmentScoreElement> retrieve(String id, String category,
+      ReadableQueryConfig config, ProvisionalResultListener listener) {
     TObjectDoubleHashMap<Retriever> retrievers = Config.sharedConfig().getRetriever()
         .getRetrieversByCategory(category);
     if (retrievers.isEmpty()) {
       return new ArrayList<SegmentScoreElement>(0);
     }
-    return ContinuousQueryDispatcher.retrieve(id, retrievers, API.getInitializer(), config);
+    return ContinuousQueryDispatcher.retrieve(id, retrievers, API.getInitializer(), config, listener);
   }
 
   public static void addRetrievalResultListener(RetrievalResultListener listener) {
@@ -0,0 +1,561 @@
+package org.vitrivr.cineast.core.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Locality-sensitive hashing index for feature vectors under the euclidean distance, using p-stable hash
+ * functions h(v) = floor((a·v + b) / w) with Gaussian a and uniform b in [0, w). Each of the hash tables
+ * combines several hash functions into one bucket key. At query time, the vectors in the query's bucket of
+ * every table are the candidates; they are then ranked by their exact distance to the query.
+ *
+ * The vectors are stored in the index, so that re-ranking does not require further lookups. Each vector
+ * belongs to a segment and a segment can have many vectors (e.g. the shingles of an audio segment).
+ *
+ * New vectors are spooled to a file next to the index during extraction, so that only the positions of the
+ * vectors of every segment are kept in memory, and are written by {@link #flush()}; see {@link AbstractFileIndex}
+ * for how the index is stored. The hash functions are derived from a fixed seed, hence they do not have to be
+ * stored themselves. Parts that have been built with different parameters are not used.
+ */
+public final class LSHIndex extends AbstractFileIndex<LSHIndex.Vectors, LSHIndex.Snapshot> {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Default number of hash tables. */
+    public static final int DEFAULT_TABLES = 16;
+
+    /** Default number of hash functions combined per table. */
+    public static final int DEFAULT_HASHES = 6;
+
+    /** Default bucket width w; suitable for L2-normalised vectors. */
+    public static final float DEFAULT_WIDTH = 1.0f;
+
+    /** Magic number and version at the beginning of an index file. */
+    private static final int MAGIC = 0x434C5348;
+    private static final int VERSION = 1;
+
+    /** Size of the header in bytes (magic, version, parameters, dimension and number of vectors, buckets and segments). */
+    private static final int HEADER = 9 * Integer.BYTES;
+
+    /** Seed of the hash functions. */
+    private static final long SEED = 0x5EED1E55L;
+
+    /** Number of hash tables, hash functions per table and bucket width. */
+    private final int tables;
+    private final int hashes;
+    private final float width;
+
+    /** File the vectors added since the last flush are spooled to. */
+    private final File spoolFile;
+
+    /** Open stream to the spool file; null if no vector has been added since the last flush or the last failed flush. */
+    private DataOutputStream spool;
+
+    /** Number of vectors in the spool file and their dimension (-1 if unknown). */
+    private int spooled;
+    private int dimension = -1;
+
+    /** The spool file mapped for the duration of a flush. */
+    private FloatBuffer spoolBuffer;
+
+    /** Hash functions by dimension; projections[t*hashes+h] and offsets[t*hashes+h] define the h-th function of table t. */
+    private final Map<Integer, float[][]> projections = new ConcurrentHashMap<>();
+    private final Map<Integer, float[]> offsets = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the index stored in the provided file using the default parameters. The file does not need to exist.
+     *
+     * @param file File the index is stored in.
+     * @return Shared LSHIndex for the file.
+     */
+    public static LSHIndex forFile(File file) {
+        return forFile(file, DEFAULT_TABLES, DEFAULT_HASHES, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Returns the index stored in the provided file. The parameters are only used if the index for the file is
+     * created by this call; existing parts with different parameters are not used.
+     *
+     * @param file File the index is stored in.
+     * @param tables Number of hash tables; more tables increase recall and query cost.
+     * @param hashes Number of hash functions per table; more functions increase precision and decrease recall.
+     * @param width Bucket width w of the hash functions.
+     * @return Shared LSHIndex for the file.
+     */
+    public static LSHIndex forFile(File file, int tables, int hashes, float width) {
+        if (tables < 1 || hashes < 1 || width <= 0.0f) {
+            throw new IllegalArgumentException("The number of tables and hashes and the bucket width must be positive.");
+        }
+        return forFile(file, LSHIndex.class, f -> new LSHIndex(f, tables, hashes, width));
+    }
+
+    private LSHIndex(File file, int tables, int hashes, float width) {
+        super(file, MAGIC, VERSION, "LSH index");
+        this.spoolFile = new File(file.getPath() + ".pending");
+        this.tables = tables;
+        this.hashes = hashes;
+        this.width = width;
+    }
+
+    /**
+     * Adds a vector of a segment to the index. If the segment has been indexed before, all its previous vectors
+     * are replaced upon the next flush. Vectors whose dimension differs from the one of the index are not indexed.
+     *
+     * @param segmentId ID of the segment.
+     * @param vector Feature vector; all vectors of an index must have the same dimension.
+     */
+    public synchronized void add(String segmentId, float[] vector) {
+        if (this.dimension < 0) {
+            final List<Snapshot> parts = this.view().parts();
+            this.dimension = parts.isEmpty() ? vector.length : parts.get(parts.size() - 1).dimension;
+        }
+        if (vector.length != this.dimension) {
+            LOGGER.warn("Vector of segment {} has dimension {} instead of {} and is not indexed.", segmentId, vector.length, this.dimension);
+            return;
+        }
+        try {
+            if (this.spool == null) {
+                this.spoolFile.getAbsoluteFile().getParentFile().mkdirs();
+                this.spool = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.spoolFile, this.spooled > 0)));
+            }
+            for (float value : vector) {
+                this.spool.writeFloat(value);
+            }
+            this.pending.computeIfAbsent(segmentId, id -> new Vectors(null)).indexes.add(this.spooled);
+            this.spooled += 1;
+        } catch (IOException e) {
+            /* The spool may end with a partial vector; drop it, the index then covers fewer vectors than the entity. */
+            LOGGER.error("Could not spool vector of segment {} for LSH index {}; discarding {} pending vectors: {}", segmentId, this.file, this.spooled, LogHelper.getStackTrace(e));
+            try {
+                if (this.spool != null) {
+                    this.spool.close();
+                }
+            } catch (IOException ignored) {
+                /* The spool is deleted anyway. */
+            }
+            this.spool = null;
+            this.spoolFile.delete();
+            this.pending.clear();
+            this.spooled = 0;
+        }
+    }
+
+    /**
+     * Returns the number of vectors in the index, not counting the vectors added since the last flush.
+     *
+     * @return Number of indexed vectors.
+     */
+    public long vectors() {
+        return this.covered(this.view());
+    }
+
+    /**
+     * Counts the vectors of the segments that have not been replaced, which correspond to the rows of the entity.
+     */
+    @Override
+    protected long covered(View<Snapshot> view) {
+        long vectors = 0;
+        for (int part = 0; part < view.parts().size(); part++) {
+            final Snapshot snapshot = view.parts().get(part);
+            for (int v = 0; v < snapshot.count; v++) {
+                if (!view.replaced(part, snapshot.owners.get(v))) {
+                    vectors++;
+                }
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * Returns (up to) the k vectors closest to the query among the candidates found in the hash tables, ordered
+     * by ascending distance. Every segment is returned at most once, with the distance of its closest vector.
+     *
+     * @param query Query vector.
+     * @param k Maximum number of results.
+     * @return List of SegmentDistanceElements.
+     */
+    public List<SegmentDistanceElement> query(float[] query, int k) {
+        final View<Snapshot> view = this.view();
+        final List<SegmentDistanceElement> results = new ArrayList<>();
+        final int[] keys = this.keys(query);
+        for (int part = 0; part < view.parts().size(); part++) {
+            final Snapshot snapshot = view.parts().get(part);
+            if (query.length != snapshot.dimension) {
+                continue;
+            }
+
+            /* Collect the candidates from all tables. */
+            final TIntHashSet candidates = new TIntHashSet();
+            for (int t = 0; t < this.tables; t++) {
+                final int bucket = snapshot.find(t, keys[t]);
+                if (bucket < 0) {
+                    continue;
+                }
+                for (int p = snapshot.starts.get(t * (snapshot.buckets + 1) + bucket); p < snapshot.starts.get(t * (snapshot.buckets + 1) + bucket + 1); p++) {
+                    candidates.add(snapshot.entries.get(t * snapshot.count + p));
+                }
+            }
+
+            /* Exact re-ranking; keep the closest vector per segment. Every segment occurs in one part only. */
+            final TIntDoubleHashMap best = new TIntDoubleHashMap();
+            final int current = part;
+            candidates.forEach(v -> {
+                final int owner = snapshot.owners.get(v);
+                if (view.replaced(current, owner)) {
+                    return true;
+                }
+                double sum = 0.0;
+                final int base = v * snapshot.dimension;
+                for (int i = 0; i < snapshot.dimension; i++) {
+                    final double d = snapshot.vectors.get(base + i) - query[i];
+                    sum += d * d;
+                }
+                final double distance = Math.sqrt(sum);
+                if (!best.containsKey(owner) || best.get(owner) > distance) {
+                    best.put(owner, distance);
+                }
+                return true;
+            });
+            best.forEachEntry((segment, distance) -> results.add(new SegmentDistanceElement(snapshot.segments[segment], distance)));
+        }
+        results.sort((a, b) -> Double.compare(a.getDistance(), b.getDistance()));
+        return results.size() > k ? new ArrayList<>(results.subList(0, k)) : results;
+    }
+
+    /**
+     * Writes the spooled vectors into a new part and merges the newest parts if they are of similar size. The spool
+     * file is mapped for the duration of the flush and deleted once its vectors have been written.
+     *
+     * @throws IOException If the part could not be written. Pending vectors are kept in this case.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        if (this.spool != null) {
+            this.spool.close();
+            this.spool = null;
+        }
+        final long length = (long) this.spooled * this.dimension * Float.BYTES;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("The vectors spooled for the LSH index " + this.file + " exceed 2GB; flush more often.");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(this.spoolFile, "r"); FileChannel channel = raf.getChannel()) {
+            this.spoolBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).asFloatBuffer();
+        }
+        try {
+            super.flush();
+        } finally {
+            this.spoolBuffer = null;
+            if (this.pending.isEmpty()) {
+                Files.deleteIfExists(this.spoolFile.toPath());
+                this.spooled = 0;
+            }
+        }
+    }
+
+    @Override
+    protected void write(DataOutputStream out, Map<String, Vectors> entries) throws IOException {
+        int dimension = -1;
+        int count = 0;
+        for (Vectors entry : entries.values()) {
+            final int d = entry.part != null ? entry.part.dimension : this.dimension;
+            if (dimension >= 0 && d != dimension) {
+                throw new IOException("The vectors of the LSH index " + this.file + " have dimensions " + dimension + " and " + d + ".");
+            }
+            dimension = d;
+            count += entry.indexes.size();
+        }
+        final long size = HEADER + (long) count * (dimension + 1 + 3 * this.tables) * Integer.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("A part of the LSH index " + this.file + " would exceed 2GB; flush more often.");
+        }
+
+        /* Hash every vector; the entries of every table pack the bucket key and the vector index into a long. */
+        final long[][] sorted = new long[this.tables][count];
+        final float[] vector = new float[dimension];
+        int v = 0;
+        for (Vectors entry : entries.values()) {
+            for (int i = 0; i < entry.indexes.size(); i++) {
+                this.vector(entry, i, vector);
+                final int[] keys = this.keys(vector);
+                for (int t = 0; t < this.tables; t++) {
+                    sorted[t][v] = ((long) keys[t] << 32) | v;
+                }
+                v += 1;
+            }
+        }
+        final int buckets = this.buckets(sorted);
+
+        out.writeInt(this.tables);
+        out.writeInt(this.hashes);
+        out.writeFloat(this.width);
+        out.writeInt(dimension);
+        out.writeInt(count);
+        out.writeInt(buckets);
+        out.writeInt(entries.size());
+        for (Vectors entry : entries.values()) {
+            for (int i = 0; i < entry.indexes.size(); i++) {
+                this.vector(entry, i, vector);
+                for (float value : vector) {
+                    out.writeFloat(value);
+                }
+            }
+        }
+        int owner = 0;
+        for (Vectors entry : entries.values()) {
+            for (int i = 0; i < entry.indexes.size(); i++) {
+                out.writeInt(owner);
+            }
+            owner += 1;
+        }
+
+        /* Per table: bucket keys and bucket starts, padded to the maximum number of buckets, then the entries. */
+        for (long[] table : sorted) {
+            final int[] keys = new int[buckets];
+            final int[] starts = new int[buckets + 1];
+            int bucket = -1;
+            for (int i = 0; i < count; i++) {
+                final int key = (int) (table[i] >> 32);
+                if (bucket < 0 || key != keys[bucket]) {
+                    bucket += 1;
+                    keys[bucket] = key;
+                    starts[bucket] = i;
+                }
+            }
+            for (int b = bucket + 1; b <= buckets; b++) {
+                starts[b] = count;
+                if (b < buckets) {
+                    keys[b] = Integer.MAX_VALUE;
+                }
+            }
+            for (int key : keys) {
+                out.writeInt(key);
+            }
+            for (int start : starts) {
+                out.writeInt(start);
+            }
+        }
+        for (long[] table : sorted) {
+            for (long entry : table) {
+                out.writeInt((int) entry);
+            }
+        }
+        for (String id : entries.keySet()) {
+            writeString(out, id);
+        }
+    }
+
+    @Override
+    protected Snapshot read(ByteBuffer buffer) throws IOException {
+        final Snapshot snapshot = new Snapshot(buffer);
+        if (snapshot.tables != this.tables || snapshot.hashes != this.hashes || snapshot.width != this.width) {
+            throw new IOException("The part has been built with different parameters and is not used until the index is rebuilt.");
+        }
+        return snapshot;
+    }
+
+    @Override
+    protected void entries(Snapshot part, BitSet replaced, Map<String, Vectors> entries) {
+        for (int v = 0; v < part.count; v++) {
+            final int owner = part.owners.get(v);
+            if (!replaced.get(owner)) {
+                entries.computeIfAbsent(part.segments[owner], id -> new Vectors(part)).indexes.add(v);
+            }
+        }
+    }
+
+    /**
+     * Copies the i-th vector of the provided entry, either from its part or from the spool file.
+     */
+    private void vector(Vectors entry, int i, float[] vector) {
+        final FloatBuffer source = entry.part != null ? entry.part.vectors : this.spoolBuffer;
+        final int base = entry.indexes.get(i) * vector.length;
+        for (int c = 0; c < vector.length; c++) {
+            vector[c] = source.get(base + c);
+        }
+    }
+
+    /**
+     * Sorts the entries of every table by bucket key and returns the maximum number of buckets of a table.
+     */
+    private int buckets(long[][] sorted) {
+        int buckets = 0;
+        for (long[] table : sorted) {
+            Arrays.sort(table);
+            int distinct = 0;
+            for (int i = 0; i < table.length; i++) {
+                if (i == 0 || (int) (table[i] >> 32) != (int) (table[i - 1] >> 32)) {
+                    distinct += 1;
+                }
+            }
+            buckets = Math.max(buckets, distinct);
+        }
+        return buckets;
+    }
+
+    /**
+     * Calculates the bucket key of the provided vector for every table.
+     */
+    private int[] keys(float[] vector) {
+        final float[][] projections = this.projections.computeIfAbsent(vector.length, this::createProjections);
+        final float[] offsets = this.offsets.get(vector.length);
+        final int[] keys = new int[this.tables];
+        for (int t = 0; t < this.tables; t++) {
+            int key = 17;
+            for (int h = 0; h < this.hashes; h++) {
+                final float[] a = projections[t * this.hashes + h];
+                double dot = 0.0;
+                for (int i = 0; i < vector.length; i++) {
+                    dot += a[i] * vector[i];
+                }
+                key = 31 * key + (int) Math.floor((dot + offsets[t * this.hashes + h]) / this.width);
+            }
+            keys[t] = key;
+        }
+        return keys;
+    }
+
+    /**
+     * Creates the hash functions for vectors of the provided dimension from the fixed seed.
+     */
+    private float[][] createProjections(int dimension) {
+        final Random random = new Random(SEED + dimension);
+        final float[][] projections = new float[this.tables * this.hashes][dimension];
+        final float[] offsets = new float[this.tables * this.hashes];
+        for (int f = 0; f < projections.length; f++) {
+            for (int i = 0; i < dimension; i++) {
+                projections[f][i] = (float) random.nextGaussian();
+            }
+            offsets[f] = random.nextFloat() * this.width;
+        }
+        this.offsets.put(dimension, offsets);
+        return projections;
+    }
+
+    /**
+     * Vectors of a segment, given by their indexes within a part or, for pending vectors, within the spool file.
+     */
+    static final class Vectors {
+        private final Snapshot part;
+        private final TIntArrayList indexes = new TIntArrayList();
+
+        private Vectors(Snapshot part) {
+            this.part = part;
+        }
+    }
+
+    /**
+     * Memory-mapped content of an index file. The file consists of the header, the vectors, the segment of every
+     * vector, the bucket keys and starts of every table, the vector indexes of every table ordered by bucket and
+     * finally the segment IDs.
+     */
+    static final class Snapshot implements AbstractFileIndex.Part {
+        private final int tables;
+        private final int hashes;
+        private final float width;
+        private final int dimension;
+        private final int count;
+        private final int buckets;
+        private final FloatBuffer vectors;
+        private final IntBuffer owners;
+        private final IntBuffer keys;
+        private final IntBuffer starts;
+        private final IntBuffer entries;
+        private final String[] segments;
+
+        private Snapshot(ByteBuffer buffer) {
+            this.tables = buffer.getInt(8);
+            this.hashes = buffer.getInt(12);
+            this.width = buffer.getFloat(16);
+            this.dimension = buffer.getInt(20);
+            this.count = buffer.getInt(24);
+            this.buckets = buffer.getInt(28);
+            final int segments = buffer.getInt(32);
+
+            int position = HEADER;
+            final ByteBuffer vectors = buffer.duplicate();
+            vectors.position(position);
+            vectors.limit(position + this.count * this.dimension * Float.BYTES);
+            this.vectors = vectors.slice().asFloatBuffer();
+            position += this.count * this.dimension * Float.BYTES;
+            this.owners = slice(buffer, position, this.count);
+            position += this.count * Integer.BYTES;
+
+            /* Keys and starts are interleaved per table; copy them into two contiguous buffers. */
+            final IntBuffer keys = IntBuffer.allocate(this.tables * this.buckets);
+            final IntBuffer starts = IntBuffer.allocate(this.tables * (this.buckets + 1));
+            for (int t = 0; t < this.tables; t++) {
+                keys.put(slice(buffer, position, this.buckets));
+                position += this.buckets * Integer.BYTES;
+                starts.put(slice(buffer, position, this.buckets + 1));
+                position += (this.buckets + 1) * Integer.BYTES;
+            }
+            this.keys = (IntBuffer) keys.flip();
+            this.starts = (IntBuffer) starts.flip();
+            this.entries = slice(buffer, position, this.tables * this.count);
+            position += this.tables * this.count * Integer.BYTES;
+
+            this.segments = new String[segments];
+            final ByteBuffer ids = buffer.duplicate();
+            ids.position(position);
+            for (int i = 0; i < segments; i++) {
+                this.segments[i] = readString(ids);
+            }
+        }
+
+        @Override
+        public String[] segments() {
+            return this.segments;
+        }
+
+        /**
+         * Binary search for the provided bucket key in table t. Unused bucket slots hold Integer.MAX_VALUE and
+         * have empty ranges, hence they never produce candidates.
+         *
+         * @return Index of the bucket or -1, if the key does not occur.
+         */
+        private int find(int t, int key) {
+            final int base = t * this.buckets;
+            int low = 0;
+            int high = this.buckets - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int value = this.keys.get(base + mid);
+                if (value < key) {
+                    low = mid + 1;
+                } else if (value > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package org.vitrivr.cineast.core.util;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Inverted index from labels (e.g. the WordNet labels assigned by a neural net) to the segments they have been assigned
+ * to. The posting list of every label holds the segments together with the probability of the label and is sorted by
+ * decreasing probability.
+ *
+ * A query for several labels scores every segment with the highest probability of any of the labels, which is what a
+ * lookup of the labels in the classification table followed by keeping the maximum score per segment yields. The posting
+ * lists are merged in the order of decreasing probability, hence the merge stops as soon as the requested number of
+ * segments has been found; its cost depends on that number rather than on the number of classified segments.
+ *
+ * New entries are collected in memory during extraction and written to disk by {@link #flush()}; see
+ * {@link AbstractFileIndex} for how the index is stored.
+ */
+public final class LabelIndex extends AbstractFileIndex<Map<String, Float>, LabelIndex.Snapshot> {
+
+    /** Magic number and version at the beginning of an index file. */
+    private static final int MAGIC = 0x434C4258;
+    private static final int VERSION = 1;
+
+    /** Size of the header in bytes (magic, version, number of segments, labels and postings). */
+    private static final int HEADER = 5 * Integer.BYTES;
+
+    /**
+     * Returns the index stored in the provided file. The file does not need to exist.
+     *
+     * @param file File the index is stored in.
+     * @return Shared LabelIndex for the file.
+     */
+    public static LabelIndex forFile(File file) {
+        return forFile(file, LabelIndex.class, LabelIndex::new);
+    }
+
+    private LabelIndex(File file) {
+        super(file, MAGIC, VERSION, "label index");
+    }
+
+    /**
+     * Adds a label of a segment to the index. All labels added for a segment since the last flush replace the labels
+     * the segment had before; if the same label is added twice, the higher probability is kept.
+     *
+     * @param segmentId ID of the segment.
+     * @param label The label.
+     * @param probability Probability of the label.
+     */
+    public synchronized void add(String segmentId, String label, float probability) {
+        this.pending.computeIfAbsent(segmentId, id -> new HashMap<>()).merge(label, probability, Math::max);
+    }
+
+    /**
+     * Returns the number of labels assigned to the indexed segments, not counting pending entries. This equals the
+     * number of rows of a classification table that holds the same classifications.
+     *
+     * @return Number of postings of the indexed segments.
+     */
+    public long postings() {
+        return this.covered(this.view());
+    }
+
+    /**
+     * Counts the postings of the segments that have not been replaced, which correspond to the rows of the
+     * classification table.
+     */
+    @Override
+    protected long covered(View<Snapshot> view) {
+        long postings = 0;
+        for (int i = 0; i < view.parts().size(); i++) {
+            final Snapshot snapshot = view.parts().get(i);
+            final int total = snapshot.postings.limit() / 2;
+            for (int p = 0; p < total; p++) {
+                if (!view.replaced(i, snapshot.segment(p))) {
+                    postings++;
+                }
+            }
+        }
+        return postings;
+    }
+
+    /**
+     * Returns the k segments with the highest probability for any of the provided labels, sorted by decreasing probability.
+     *
+     * @param labels Labels to look up.
+     * @param k Maximum number of segments to return.
+     * @return Segments and the highest probability of any of the labels.
+     */
+    public List<SegmentScoreElement> query(Collection<String> labels, int k) {
+        final List<SegmentScoreElement> results = new ArrayList<>(Math.max(0, Math.min(k, 1024)));
+        if (k <= 0) {
+            return results;
+        }
+
+        /* Every segment occurs in one part only, hence the best k segments are among the best k of every part. */
+        final View<Snapshot> view = this.view();
+        for (int i = 0; i < view.parts().size(); i++) {
+            this.query(view, i, labels, k, results);
+        }
+        if (view.parts().size() > 1) {
+            results.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+            if (results.size() > k) {
+                results.subList(k, results.size()).clear();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Adds the k segments of a part with the highest probability for any of the provided labels to the results.
+     */
+    private void query(View<Snapshot> view, int part, Collection<String> labels, int k, List<SegmentScoreElement> results) {
+        final Snapshot snapshot = view.parts().get(part);
+
+        /* One cursor per posting list, ordered by the probability of its current posting. */
+        final PriorityQueue<int[]> cursors = new PriorityQueue<>(Math.max(1, labels.size()),
+                (a, b) -> Float.compare(snapshot.probability(b[0]), snapshot.probability(a[0])));
+        final TIntHashSet used = new TIntHashSet();
+        for (String label : labels) {
+            final Integer index = snapshot.labels.get(label);
+            if (index != null && used.add(index)) {
+                final int from = snapshot.starts.get(index);
+                final int to = snapshot.starts.get(index + 1);
+                if (from < to) {
+                    cursors.add(new int[]{from, to});
+                }
+            }
+        }
+
+        /* The first posting of a segment carries its highest probability. */
+        final TIntHashSet seen = new TIntHashSet();
+        int found = 0;
+        while (!cursors.isEmpty() && found < k) {
+            final int[] cursor = cursors.poll();
+            final int segment = snapshot.segment(cursor[0]);
+            if (seen.add(segment) && !view.replaced(part, segment)) {
+                results.add(new SegmentScoreElement(snapshot.segments[segment], snapshot.probability(cursor[0])));
+                found++;
+            }
+            if (++cursor[0] < cursor[1]) {
+                cursors.add(cursor);
+            }
+        }
+    }
+
+    @Override
+    protected void write(DataOutputStream out, Map<String, Map<String, Float>> entries) throws IOException {
+        /* Collect the postings by label. */
+        final TreeMap<String, List<long[]>> postings = new TreeMap<>();
+        int segment = 0;
+        for (Map<String, Float> entry : entries.values()) {
+            for (Map.Entry<String, Float> label : entry.entrySet()) {
+                postings.computeIfAbsent(label.getKey(), l -> new ArrayList<>()).add(new long[]{segment, Float.floatToIntBits(label.getValue())});
+            }
+            segment++;
+        }
+        int total = 0;
+        for (List<long[]> list : postings.values()) {
+            list.sort((a, b) -> {
+                final int c = Float.compare(Float.intBitsToFloat((int) b[1]), Float.intBitsToFloat((int) a[1]));
+                return c != 0 ? c : Long.compare(a[0], b[0]);
+            });
+            total += list.size();
+        }
+
+        out.writeInt(entries.size());
+        out.writeInt(postings.size());
+        out.writeInt(total);
+        int start = 0;
+        for (List<long[]> list : postings.values()) {
+            out.writeInt(start);
+            start += list.size();
+        }
+        out.writeInt(total);
+        for (List<long[]> list : postings.values()) {
+            for (long[] posting : list) {
+                out.writeInt((int) posting[0]);
+                out.writeInt((int) posting[1]);
+            }
+        }
+        for (String label : postings.keySet()) {
+            writeString(out, label);
+        }
+        for (String id : entries.keySet()) {
+            writeString(out, id);
+        }
+    }
+
+    @Override
+    protected Snapshot read(ByteBuffer buffer) {
+        return new Snapshot(buffer);
+    }
+
+    @Override
+    protected void entries(Snapshot part, BitSet replaced, Map<String, Map<String, Float>> entries) {
+        for (Map.Entry<String, Integer> label : part.labels.entrySet()) {
+            for (int p = part.starts.get(label.getValue()); p < part.starts.get(label.getValue() + 1); p++) {
+                final int segment = part.segment(p);
+                if (!replaced.get(segment)) {
+                    entries.computeIfAbsent(part.segments[segment], id -> new HashMap<>()).put(label.getKey(), part.probability(p));
+                }
+            }
+        }
+    }
+
+    /**
+     * Memory-mapped content of an index file. The file consists of the header, the start of the postings of every label
+     * (followed by the total number of postings), the postings as pairs of segment index and probability, the labels in
+     * lexicographic order and finally the segment IDs.
+     */
+    static final class Snapshot implements AbstractFileIndex.Part {
+        private final IntBuffer starts;
+        private final IntBuffer postings;
+        private final Map<String, Integer> labels;
+        private final String[] segments;
+
+        private Snapshot(ByteBuffer buffer) {
+            final int segments = buffer.getInt(8);
+            final int labels = buffer.getInt(12);
+            final int total = buffer.getInt(16);
+
+            int position = HEADER;
+            this.starts = slice(buffer, position, labels + 1);
+            position += (labels + 1) * Integer.BYTES;
+            this.postings = slice(buffer, position, 2 * total);
+            position += 2 * total * Integer.BYTES;
+
+            final ByteBuffer strings = buffer.duplicate();
+            strings.position(position);
+            this.labels = new HashMap<>(2 * labels);
+            for (int i = 0; i < labels; i++) {
+                this.labels.put(readString(strings), i);
+            }
+            this.segments = new String[segments];
+            for (int i = 0; i < segments; i++) {
+                this.segments[i] = readString(strings);
+            }
+        }
+
+        @Override
+        public String[] segments() {
+            return this.segments;
+        }
+
+        private int segment(int posting) {
+            return this.postings.get(2 * posting);
+        }
+
+        private float probability(int posting) {
+            return Float.intBitsToFloat(this.postings.get(2 * posting + 1));
+        }
+    }
+}
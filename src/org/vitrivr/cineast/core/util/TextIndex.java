@@ -0,0 +1,632 @@
+package org.vitrivr.cineast.core.util;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+
+/**
+ * Embedded full-text index over the texts of segments (e.g. subtitles, OCR results or descriptions). Texts are split
+ * into lower-case tokens of letters and digits; the index keeps, for every token, the segments it occurs in together
+ * with the term frequency and the positions of its occurrences, as well as the length of every segment's text.
+ *
+ * Queries are scored with Okapi BM25. A query consists of terms, prefix terms ending with '*' (e.g. "explo*") and phrases
+ * in double quotes (e.g. "\"the end\""); every segment matching any of them is scored with the sum of the scores of the
+ * parts it matches. The score is divided by the highest score the query could reach and hence lies within [0, 1]. The
+ * statistics BM25 relies on (number of segments, document frequencies and average length) are those of all parts of
+ * the index, hence the scores do not depend on how the index has been flushed.
+ *
+ * New texts are collected in memory during extraction and written to disk by {@link #flush()}; see
+ * {@link AbstractFileIndex} for how the index is stored.
+ */
+public final class TextIndex extends AbstractFileIndex<List<String>, TextIndex.Snapshot> {
+
+    /** Magic number and version at the beginning of an index file. */
+    private static final int MAGIC = 0x43545858;
+    private static final int VERSION = 1;
+
+    /** Size of the header in bytes (magic, version, number of segments, terms, postings and positions). */
+    private static final int HEADER = 6 * Integer.BYTES;
+
+    /** BM25 parameters: saturation of the term frequency and influence of the length of a text. */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** Maximum number of terms a prefix term is expanded to; the most frequent ones are kept. */
+    private static final int MAX_EXPANSIONS = 64;
+
+    /** BM25 statistics of the current view; null if they have not been calculated yet. */
+    private volatile Statistics statistics;
+
+    /**
+     * Returns the index stored in the provided file. The file does not need to exist.
+     *
+     * @param file File the index is stored in.
+     * @return Shared TextIndex for the file.
+     */
+    public static TextIndex forFile(File file) {
+        return forFile(file, TextIndex.class, TextIndex::new);
+    }
+
+    private TextIndex(File file) {
+        super(file, MAGIC, VERSION, "text index");
+    }
+
+    /**
+     * Splits a text into lower-case tokens consisting of letters and digits.
+     *
+     * @param text Text to split.
+     * @return List of tokens in the order they appear in the text.
+     */
+    public static List<String> tokenize(String text) {
+        final List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        final StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            final int c = text.codePointAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.appendCodePoint(c);
+            } else if (token.length() > 0) {
+                tokens.add(token.toString().toLowerCase(Locale.ROOT));
+                token.setLength(0);
+            }
+            i += Character.charCount(c);
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString().toLowerCase(Locale.ROOT));
+        }
+        return tokens;
+    }
+
+    /**
+     * Adds a text of a segment to the index. All texts added for a segment since the last flush replace the texts the
+     * segment had before. Phrases do not match across the boundary of two texts.
+     *
+     * @param segmentId ID of the segment.
+     * @param text The text.
+     */
+    public void add(String segmentId, String text) {
+        final List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            final List<String> list = this.pending.computeIfAbsent(segmentId, id -> new ArrayList<>());
+            if (!list.isEmpty()) {
+                list.add(null);
+            }
+            list.addAll(tokens);
+        }
+    }
+
+    /**
+     * Returns the k segments that match the provided query best, sorted by decreasing score.
+     *
+     * @param query Query consisting of terms, prefix terms ending with '*' and phrases in double quotes.
+     * @param k Maximum number of segments to return.
+     * @return Segments and their normalized BM25 score.
+     */
+    public List<SegmentScoreElement> query(String query, int k) {
+        final List<SegmentScoreElement> results = new ArrayList<>();
+        final View<Snapshot> view = this.view();
+        if (k <= 0 || view.size() == 0) {
+            return results;
+        }
+        Statistics statistics = this.statistics;
+        if (statistics == null || statistics.view != view) {
+            statistics = new Statistics(view);
+            this.statistics = statistics;
+        }
+
+        /* Scores by part (upper 32 bits) and segment within the part (lower 32 bits). */
+        final TLongDoubleHashMap scores = new TLongDoubleHashMap();
+        double maximum = 0.0;
+        for (Clause clause : parse(query)) {
+            if (clause.phrase.length > 1) {
+                maximum += statistics.phrase(clause.phrase, scores);
+            } else if (clause.prefix) {
+                maximum += statistics.prefix(clause.phrase[0], scores);
+            } else {
+                maximum += statistics.term(clause.phrase[0], scores);
+            }
+        }
+        if (scores.isEmpty() || maximum <= 0.0) {
+            return results;
+        }
+
+        /* Select the k best segments. */
+        final PriorityQueue<SegmentScoreElement> best = new PriorityQueue<>(Math.min(k, scores.size()) + 1,
+                (a, b) -> Double.compare(a.getScore(), b.getScore()));
+        final double normalization = maximum;
+        scores.forEachEntry((key, score) -> {
+            if (best.size() < k || score / normalization > best.peek().getScore()) {
+                final String segment = view.parts().get((int) (key >>> 32)).segments[(int) key];
+                best.add(new SegmentScoreElement(segment, Math.min(1.0, score / normalization)));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+            return true;
+        });
+        while (!best.isEmpty()) {
+            results.add(best.poll());
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    /**
+     * Splits a query into terms, prefix terms and phrases.
+     */
+    private static List<Clause> parse(String query) {
+        final List<Clause> clauses = new ArrayList<>();
+        if (query == null) {
+            return clauses;
+        }
+        final String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 1 && i < parts.length - 1) {
+                final List<String> tokens = tokenize(parts[i]);
+                if (!tokens.isEmpty()) {
+                    clauses.add(new Clause(tokens.toArray(new String[tokens.size()]), false));
+                }
+                continue;
+            }
+            for (String word : parts[i].split("\\s+")) {
+                final List<String> tokens = tokenize(word);
+                for (int t = 0; t < tokens.size(); t++) {
+                    final boolean prefix = t == tokens.size() - 1 && word.endsWith("*");
+                    clauses.add(new Clause(new String[]{tokens.get(t)}, prefix));
+                }
+            }
+        }
+        return clauses;
+    }
+
+    @Override
+    protected void write(DataOutputStream out, Map<String, List<String>> entries) throws IOException {
+        /* Collect the postings by term; every posting holds the segment index followed by the positions. */
+        final TIntArrayList lengths = new TIntArrayList(entries.size());
+        final TreeMap<String, List<int[]>> postings = new TreeMap<>();
+        int segment = 0;
+        long bytes = HEADER + (long) entries.size() * Integer.BYTES;
+        for (Map.Entry<String, List<String>> entry : entries.entrySet()) {
+            final Map<String, TIntArrayList> occurrences = new LinkedHashMap<>();
+            int length = 0;
+            int position = 0;
+            for (String token : entry.getValue()) {
+                if (token != null) {
+                    occurrences.computeIfAbsent(token, t -> new TIntArrayList()).add(position);
+                    length++;
+                }
+                position++;
+            }
+            lengths.add(length);
+            for (Map.Entry<String, TIntArrayList> occurrence : occurrences.entrySet()) {
+                final int[] posting = new int[1 + occurrence.getValue().size()];
+                posting[0] = segment;
+                occurrence.getValue().toArray(posting, 0, 1, occurrence.getValue().size());
+                postings.computeIfAbsent(occurrence.getKey(), t -> new ArrayList<>()).add(posting);
+                bytes += (3L + occurrence.getValue().size()) * Integer.BYTES;
+            }
+            bytes += 2 + entry.getKey().length() * 3L;
+            segment++;
+        }
+        int total = 0;
+        int positions = 0;
+        for (Map.Entry<String, List<int[]>> term : postings.entrySet()) {
+            total += term.getValue().size();
+            for (int[] posting : term.getValue()) {
+                positions += posting.length - 1;
+            }
+            bytes += Integer.BYTES + 2 + term.getKey().length() * 3L;
+        }
+
+        /* The part must be mapped as a whole; fail before writing it if it may not fit. */
+        if (bytes + Integer.BYTES > Integer.MAX_VALUE) {
+            throw new IOException("A part of the text index " + this.file + " would exceed 2GB; flush more often.");
+        }
+
+        out.writeInt(entries.size());
+        out.writeInt(postings.size());
+        out.writeInt(total);
+        out.writeInt(positions);
+        for (int i = 0; i < lengths.size(); i++) {
+            out.writeInt(lengths.get(i));
+        }
+        int start = 0;
+        for (List<int[]> list : postings.values()) {
+            out.writeInt(start);
+            start += list.size();
+        }
+        out.writeInt(total);
+        int offset = 0;
+        for (List<int[]> list : postings.values()) {
+            for (int[] posting : list) {
+                out.writeInt(posting[0]);
+                out.writeInt(posting.length - 1);
+                out.writeInt(offset);
+                offset += posting.length - 1;
+            }
+        }
+        for (List<int[]> list : postings.values()) {
+            for (int[] posting : list) {
+                for (int j = 1; j < posting.length; j++) {
+                    out.writeInt(posting[j]);
+                }
+            }
+        }
+        for (String term : postings.keySet()) {
+            writeString(out, term);
+        }
+        for (String id : entries.keySet()) {
+            writeString(out, id);
+        }
+    }
+
+    @Override
+    protected Snapshot read(ByteBuffer buffer) {
+        return new Snapshot(buffer);
+    }
+
+    @Override
+    protected void entries(Snapshot part, BitSet replaced, Map<String, List<String>> entries) {
+        /* Restore the tokens of every segment at their positions; the gaps between two texts become null. */
+        final String[][] tokens = new String[part.segments.length][];
+        final int[] sizes = new int[part.segments.length];
+        for (int p = 0; p < part.postings.limit() / 3; p++) {
+            final int segment = part.segment(p);
+            sizes[segment] = Math.max(sizes[segment], part.positions.get(part.offset(p) + part.tf(p) - 1) + 1);
+        }
+        for (int term = 0; term < part.terms.length; term++) {
+            for (int p = part.starts.get(term); p < part.starts.get(term + 1); p++) {
+                final int segment = part.segment(p);
+                if (replaced.get(segment)) {
+                    continue;
+                }
+                if (tokens[segment] == null) {
+                    tokens[segment] = new String[sizes[segment]];
+                }
+                for (int j = 0; j < part.tf(p); j++) {
+                    tokens[segment][part.positions.get(part.offset(p) + j)] = part.terms[term];
+                }
+            }
+        }
+        for (int segment = 0; segment < part.segments.length; segment++) {
+            if (tokens[segment] != null) {
+                entries.put(part.segments[segment], Arrays.asList(tokens[segment]));
+            }
+        }
+    }
+
+    /**
+     * Part of a query: a single (prefix) term or a phrase of several terms.
+     */
+    private static final class Clause {
+        private final String[] phrase;
+        private final boolean prefix;
+
+        private Clause(String[] phrase, boolean prefix) {
+            this.phrase = phrase;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * BM25 statistics of all segments of a view that have not been replaced, which score the postings of all parts.
+     */
+    private static final class Statistics {
+        private final View<Snapshot> view;
+        private final int segments;
+        private final double averageLength;
+
+        private Statistics(View<Snapshot> view) {
+            this.view = view;
+            this.segments = view.size();
+            long sum = 0;
+            for (int i = 0; i < view.parts().size(); i++) {
+                final Snapshot part = view.parts().get(i);
+                for (int segment = 0; segment < part.segments.length; segment++) {
+                    if (!view.replaced(i, segment)) {
+                        sum += part.lengths.get(segment);
+                    }
+                }
+            }
+            this.averageLength = this.segments == 0 ? 0.0 : Math.max(1.0, (double) sum / this.segments);
+        }
+
+        /**
+         * Returns the number of segments a term occurs in.
+         */
+        private int df(String term) {
+            int df = 0;
+            for (int i = 0; i < this.view.parts().size(); i++) {
+                final Snapshot part = this.view.parts().get(i);
+                final int index = part.term(term);
+                if (index < 0) {
+                    continue;
+                }
+                for (int p = part.starts.get(index); p < part.starts.get(index + 1); p++) {
+                    if (!this.view.replaced(i, part.segment(p))) {
+                        df++;
+                    }
+                }
+            }
+            return df;
+        }
+
+        private double idf(int df) {
+            return Math.log(1.0 + (this.segments - df + 0.5) / (df + 0.5));
+        }
+
+        private double bm25(double idf, int tf, int length) {
+            final double norm = K1 * (1.0 - B + B * length / this.averageLength);
+            return idf * tf * (K1 + 1.0) / (tf + norm);
+        }
+
+        /**
+         * Adds the scores of a term to the provided scores.
+         *
+         * @return Highest possible score of the term.
+         */
+        private double term(String term, TLongDoubleHashMap scores) {
+            final double idf = this.idf(this.df(term));
+            for (int i = 0; i < this.view.parts().size(); i++) {
+                final Snapshot part = this.view.parts().get(i);
+                final int index = part.term(term);
+                if (index < 0) {
+                    continue;
+                }
+                for (int p = part.starts.get(index); p < part.starts.get(index + 1); p++) {
+                    final int segment = part.segment(p);
+                    if (!this.view.replaced(i, segment)) {
+                        final double score = this.bm25(idf, part.tf(p), part.lengths.get(segment));
+                        scores.adjustOrPutValue(key(i, segment), score, score);
+                    }
+                }
+            }
+            return idf * (K1 + 1.0);
+        }
+
+        /**
+         * Adds the scores of the most frequent terms starting with the provided prefix to the provided scores.
+         *
+         * @return Highest possible score of the prefix term.
+         */
+        private double prefix(String prefix, TLongDoubleHashMap scores) {
+            /* Terms with the prefix in lexicographic order, then sorted by decreasing document frequency. */
+            final TreeMap<String, Integer> terms = new TreeMap<>();
+            for (Snapshot part : this.view.parts()) {
+                int from = Arrays.binarySearch(part.terms, prefix);
+                if (from < 0) {
+                    from = -from - 1;
+                }
+                for (int t = from; t < part.terms.length && part.terms[t].startsWith(prefix); t++) {
+                    terms.put(part.terms[t], 0);
+                }
+            }
+            terms.replaceAll((term, df) -> this.df(term));
+            final List<Map.Entry<String, Integer>> expansions = new ArrayList<>(terms.entrySet());
+            expansions.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+
+            /* Every segment is scored with the best matching expansion. */
+            final TLongDoubleHashMap best = new TLongDoubleHashMap();
+            for (Map.Entry<String, Integer> expansion : expansions.subList(0, Math.min(expansions.size(), MAX_EXPANSIONS))) {
+                final double idf = this.idf(expansion.getValue());
+                for (int i = 0; i < this.view.parts().size(); i++) {
+                    final Snapshot part = this.view.parts().get(i);
+                    final int index = part.term(expansion.getKey());
+                    if (index < 0) {
+                        continue;
+                    }
+                    for (int p = part.starts.get(index); p < part.starts.get(index + 1); p++) {
+                        final int segment = part.segment(p);
+                        if (this.view.replaced(i, segment)) {
+                            continue;
+                        }
+                        final double score = this.bm25(idf, part.tf(p), part.lengths.get(segment));
+                        if (score > best.get(key(i, segment))) {
+                            best.put(key(i, segment), score);
+                        }
+                    }
+                }
+            }
+            best.forEachEntry((key, score) -> {
+                scores.adjustOrPutValue(key, score, score);
+                return true;
+            });
+            return this.idf(0) * (K1 + 1.0);
+        }
+
+        /**
+         * Adds the scores of a phrase to the provided scores. The frequency of a phrase in a segment is the number of
+         * positions at which all its terms occur in sequence; its idf is the sum of the idf of its terms.
+         *
+         * @return Highest possible score of the phrase.
+         */
+        private double phrase(String[] phrase, TLongDoubleHashMap scores) {
+            double idf = 0.0;
+            boolean missing = false;
+            for (String term : phrase) {
+                final int df = this.df(term);
+                idf += this.idf(df);
+                missing |= df == 0;
+            }
+            final double maximum = idf * (K1 + 1.0);
+            if (!missing) {
+                for (int i = 0; i < this.view.parts().size(); i++) {
+                    this.phrase(i, phrase, idf, scores);
+                }
+            }
+            return maximum;
+        }
+
+        /**
+         * Adds the scores of the segments of a part that contain a phrase to the provided scores.
+         */
+        private void phrase(int index, String[] phrase, double idf, TLongDoubleHashMap scores) {
+            final Snapshot part = this.view.parts().get(index);
+            final int[] terms = new int[phrase.length];
+            for (int i = 0; i < phrase.length; i++) {
+                terms[i] = part.term(phrase[i]);
+                if (terms[i] < 0) {
+                    return;
+                }
+            }
+
+            /* Walk the posting lists (sorted by segment) in parallel, driven by the first term. */
+            final int[] cursors = new int[phrase.length];
+            for (int i = 0; i < phrase.length; i++) {
+                cursors[i] = part.starts.get(terms[i]);
+            }
+            final int end = part.starts.get(terms[0] + 1);
+            outer:
+            for (; cursors[0] < end; cursors[0]++) {
+                final int segment = part.segment(cursors[0]);
+                for (int i = 1; i < phrase.length; i++) {
+                    final int to = part.starts.get(terms[i] + 1);
+                    while (cursors[i] < to && part.segment(cursors[i]) < segment) {
+                        cursors[i]++;
+                    }
+                    if (cursors[i] >= to) {
+                        break outer;
+                    }
+                    if (part.segment(cursors[i]) != segment) {
+                        continue outer;
+                    }
+                }
+                if (this.view.replaced(index, segment)) {
+                    continue;
+                }
+
+                /* Count the positions of the first term followed by all other terms. */
+                int tf = 0;
+                final int first = part.offset(cursors[0]);
+                for (int j = 0; j < part.tf(cursors[0]); j++) {
+                    final int start = part.positions.get(first + j);
+                    boolean match = true;
+                    for (int i = 1; i < phrase.length && match; i++) {
+                        match = part.contains(cursors[i], start + i);
+                    }
+                    if (match) {
+                        tf++;
+                    }
+                }
+                if (tf > 0) {
+                    final double score = this.bm25(idf, tf, part.lengths.get(segment));
+                    scores.adjustOrPutValue(key(index, segment), score, score);
+                }
+            }
+        }
+
+        private static long key(int part, int segment) {
+            return ((long) part << 32) | segment;
+        }
+    }
+
+    /**
+     * Memory-mapped content of an index file. The file consists of the header, the length of the text of every segment,
+     * the start of the postings of every term (followed by the total number of postings), the postings as triples of
+     * segment index, term frequency and offset of the positions, the positions, the terms in lexicographic order and
+     * finally the segment IDs. The postings of a term are sorted by segment index.
+     */
+    static final class Snapshot implements AbstractFileIndex.Part {
+        private final IntBuffer lengths;
+        private final IntBuffer starts;
+        private final IntBuffer postings;
+        private final IntBuffer positions;
+        private final String[] terms;
+        private final String[] segments;
+
+        private Snapshot(ByteBuffer buffer) {
+            final int segments = buffer.getInt(8);
+            final int terms = buffer.getInt(12);
+            final int total = buffer.getInt(16);
+            final int positions = buffer.getInt(20);
+
+            int position = HEADER;
+            this.lengths = slice(buffer, position, segments);
+            position += segments * Integer.BYTES;
+            this.starts = slice(buffer, position, terms + 1);
+            position += (terms + 1) * Integer.BYTES;
+            this.postings = slice(buffer, position, 3 * total);
+            position += 3 * total * Integer.BYTES;
+            this.positions = slice(buffer, position, positions);
+            position += positions * Integer.BYTES;
+
+            final ByteBuffer strings = buffer.duplicate();
+            strings.position(position);
+            this.terms = new String[terms];
+            for (int i = 0; i < terms; i++) {
+                this.terms[i] = readString(strings);
+            }
+            this.segments = new String[segments];
+            for (int i = 0; i < segments; i++) {
+                this.segments[i] = readString(strings);
+            }
+        }
+
+        @Override
+        public String[] segments() {
+            return this.segments;
+        }
+
+        private int segment(int posting) {
+            return this.postings.get(3 * posting);
+        }
+
+        private int tf(int posting) {
+            return this.postings.get(3 * posting + 1);
+        }
+
+        private int offset(int posting) {
+            return this.postings.get(3 * posting + 2);
+        }
+
+        /**
+         * Returns the index of a term or -1, if the term does not occur in any segment.
+         */
+        private int term(String term) {
+            final int index = Arrays.binarySearch(this.terms, term);
+            return index < 0 ? -1 : index;
+        }
+
+        /**
+         * Checks if the positions of a posting (which are sorted) contain the provided position.
+         */
+        private boolean contains(int posting, int position) {
+            int low = this.offset(posting);
+            int high = low + this.tf(posting) - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int value = this.positions.get(mid);
+                if (value < position) {
+                    low = mid + 1;
+                } else if (value > position) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
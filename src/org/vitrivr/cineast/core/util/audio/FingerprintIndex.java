@@ -0,0 +1,327 @@
+package org.vitrivr.cineast.core.util.audio;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.vitrivr.cineast.core.util.AbstractFileIndex;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Inverted index for audio fingerprints. Every segment is described by a list of hashes, each of which
+ * occurs at a certain time offset (e.g. the index of the spectrum it was derived from). The index maps
+ * every hash to the list of segments and offsets it occurs at.
+ *
+ * At query time, every hash of the query is looked up and a vote is cast for every occurrence, grouped by
+ * segment and by the difference between the offset of the occurrence and the offset of the hash within
+ * the query. A segment that contains the query produces many votes for the same difference, whereas random
+ * collisions are scattered across differences. The cost of a query thus depends on the number of matching
+ * occurrences only and not on the size of the catalogue.
+ *
+ * New entries are collected in memory during extraction and written to disk by {@link #flush()}; see
+ * {@link AbstractFileIndex} for how the index is stored. Every entry records the number of rows its segment has
+ * in the entity the index complements (e.g. the fingerprint vectors), which the coverage check compares with
+ * the rows of the entity.
+ */
+public final class FingerprintIndex extends AbstractFileIndex<int[][], FingerprintIndex.Snapshot> {
+
+    /** Number of bits a hash may use. Hashes must lie within [0, 2^HASH_BITS). */
+    public static final int HASH_BITS = 21;
+
+    /** Hashes with more occurrences than this are considered uninformative and skipped at query time. */
+    private static final int MAX_POSTINGS_PER_HASH = 4096;
+
+    /** Magic number and version at the beginning of an index file. */
+    private static final int MAGIC = 0x43464958;
+    private static final int VERSION = 2;
+
+    /** Size of the header in bytes (magic, version, number of segments, hashes and postings). */
+    private static final int HEADER = 5 * Integer.BYTES;
+
+    /**
+     * Returns the index stored in the provided file. The file does not need to exist.
+     *
+     * @param file File the index is stored in.
+     * @return Shared FingerprintIndex for the file.
+     */
+    public static FingerprintIndex forFile(File file) {
+        return forFile(file, FingerprintIndex.class, FingerprintIndex::new);
+    }
+
+    private FingerprintIndex(File file) {
+        super(file, MAGIC, VERSION, "fingerprint index");
+    }
+
+    /**
+     * Adds the fingerprint of a segment, which has one row in the entity the index complements, to the index.
+     *
+     * @param segmentId ID of the segment.
+     * @param hashes Hashes of the fingerprint.
+     * @param offsets Time offset of every hash; must have the same length as hashes.
+     */
+    public void add(String segmentId, int[] hashes, int[] offsets) {
+        this.add(segmentId, hashes, offsets, 1);
+    }
+
+    /**
+     * Adds the fingerprint of a segment to the index. If the segment has been indexed before, its previous
+     * entry is replaced upon the next flush.
+     *
+     * @param segmentId ID of the segment.
+     * @param hashes Hashes of the fingerprint.
+     * @param offsets Time offset of every hash; must have the same length as hashes.
+     * @param rows Number of rows of the segment in the entity the index complements; see {@link #covers}.
+     */
+    public synchronized void add(String segmentId, int[] hashes, int[] offsets, int rows) {
+        if (hashes.length != offsets.length) {
+            throw new IllegalArgumentException("The number of hashes and offsets must be equal.");
+        }
+        for (int hash : hashes) {
+            if (hash < 0 || hash >= (1 << HASH_BITS)) {
+                throw new IllegalArgumentException("The hash " + hash + " does not fit into " + HASH_BITS + " bits.");
+            }
+        }
+        this.pending.put(segmentId, new int[][]{hashes.clone(), offsets.clone(), {rows}});
+    }
+
+    /**
+     * Looks up the provided query hashes and returns, for every segment that contains at least minVotes of them
+     * at consistent time offsets, the number of hashes at the best aligned offset.
+     *
+     * @param hashes Hashes of the query.
+     * @param offsets Time offset of every hash within the query.
+     * @param minVotes Minimum number of aligned hashes a segment must have to be returned.
+     * @return Number of aligned hashes by segment ID.
+     */
+    public TObjectIntHashMap<String> query(int[] hashes, int[] offsets, int minVotes) {
+        final TObjectIntHashMap<String> results = new TObjectIntHashMap<>();
+        final View<Snapshot> view = this.view();
+        final int parts = view.parts().size();
+        if (parts == 0) {
+            return results;
+        }
+
+        /* Votes by part, segment and difference of the offsets; every segment occurs in one part only. */
+        final TLongIntHashMap[] votes = new TLongIntHashMap[parts];
+        final TIntIntHashMap[] best = new TIntIntHashMap[parts];
+        for (int part = 0; part < parts; part++) {
+            votes[part] = new TLongIntHashMap();
+            best[part] = new TIntIntHashMap();
+        }
+        final int[] keys = new int[parts];
+        for (int i = 0; i < hashes.length; i++) {
+            int occurrences = 0;
+            for (int part = 0; part < parts; part++) {
+                final Snapshot snapshot = view.parts().get(part);
+                keys[part] = snapshot.find(hashes[i]);
+                if (keys[part] >= 0) {
+                    occurrences += snapshot.starts.get(keys[part] + 1) - snapshot.starts.get(keys[part]);
+                }
+            }
+            if (occurrences == 0 || occurrences > MAX_POSTINGS_PER_HASH) {
+                continue;
+            }
+            for (int part = 0; part < parts; part++) {
+                if (keys[part] < 0) {
+                    continue;
+                }
+                final Snapshot snapshot = view.parts().get(part);
+                for (int p = snapshot.starts.get(keys[part]); p < snapshot.starts.get(keys[part] + 1); p++) {
+                    final int segment = snapshot.postings.get(2 * p);
+                    if (view.replaced(part, segment)) {
+                        continue;
+                    }
+                    final int delta = snapshot.postings.get(2 * p + 1) - offsets[i];
+                    final int count = votes[part].adjustOrPutValue(((long) segment << 32) | (delta & 0xFFFFFFFFL), 1, 1);
+                    if (count > best[part].get(segment)) {
+                        best[part].put(segment, count);
+                    }
+                }
+            }
+        }
+
+        for (int part = 0; part < parts; part++) {
+            final String[] segments = view.parts().get(part).segments;
+            best[part].forEachEntry((segment, count) -> {
+                if (count >= minVotes) {
+                    results.put(segments[segment], count);
+                }
+                return true;
+            });
+        }
+        return results;
+    }
+
+    @Override
+    protected void write(DataOutputStream out, Map<String, int[][]> entries) throws IOException {
+        /* Counting sort of all postings by hash: count, accumulate and fill. */
+        final int[] starts = new int[(1 << HASH_BITS) + 1];
+        for (int[][] entry : entries.values()) {
+            for (int hash : entry[0]) {
+                starts[hash + 1] += 1;
+            }
+        }
+        int keys = 0;
+        for (int h = 0; h < (1 << HASH_BITS); h++) {
+            if (starts[h + 1] > 0) {
+                keys += 1;
+            }
+            starts[h + 1] += starts[h];
+        }
+        final int total = starts[1 << HASH_BITS];
+        final int[] positions = new int[1 << HASH_BITS];
+        System.arraycopy(starts, 0, positions, 0, positions.length);
+        final int[] postings = new int[2 * total];
+        int segment = 0;
+        for (int[][] entry : entries.values()) {
+            for (int i = 0; i < entry[0].length; i++) {
+                final int position = positions[entry[0][i]]++;
+                postings[2 * position] = segment;
+                postings[2 * position + 1] = entry[1][i];
+            }
+            segment += 1;
+        }
+
+        out.writeInt(entries.size());
+        out.writeInt(keys);
+        out.writeInt(total);
+        for (int h = 0; h < (1 << HASH_BITS); h++) {
+            if (starts[h + 1] > starts[h]) {
+                out.writeInt(h);
+            }
+        }
+        for (int h = 0; h < (1 << HASH_BITS); h++) {
+            if (starts[h + 1] > starts[h]) {
+                out.writeInt(starts[h]);
+            }
+        }
+        out.writeInt(total);
+        for (int value : postings) {
+            out.writeInt(value);
+        }
+        for (int[][] entry : entries.values()) {
+            out.writeInt(entry[2][0]);
+        }
+        for (String id : entries.keySet()) {
+            writeString(out, id);
+        }
+    }
+
+    /**
+     * Sums the rows of the segments that have not been replaced.
+     */
+    @Override
+    protected long covered(View<Snapshot> view) {
+        long rows = 0;
+        for (int part = 0; part < view.parts().size(); part++) {
+            final Snapshot snapshot = view.parts().get(part);
+            for (int s = 0; s < snapshot.segments.length; s++) {
+                if (!view.replaced(part, s)) {
+                    rows += snapshot.rows.get(s);
+                }
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    protected Snapshot read(ByteBuffer buffer) {
+        return new Snapshot(buffer);
+    }
+
+    @Override
+    protected void entries(Snapshot part, BitSet replaced, Map<String, int[][]> entries) {
+        /* Hashes and offsets of every segment, in the order of the segments. */
+        final Map<Integer, TIntArrayList[]> fingerprints = new LinkedHashMap<>();
+        for (int s = 0; s < part.segments.length; s++) {
+            if (!replaced.get(s)) {
+                fingerprints.put(s, new TIntArrayList[]{new TIntArrayList(), new TIntArrayList()});
+            }
+        }
+        for (int k = 0; k < part.keys.limit(); k++) {
+            final int hash = part.keys.get(k);
+            for (int p = part.starts.get(k); p < part.starts.get(k + 1); p++) {
+                final TIntArrayList[] fingerprint = fingerprints.get(part.postings.get(2 * p));
+                if (fingerprint != null) {
+                    fingerprint[0].add(hash);
+                    fingerprint[1].add(part.postings.get(2 * p + 1));
+                }
+            }
+        }
+        for (Map.Entry<Integer, TIntArrayList[]> fingerprint : fingerprints.entrySet()) {
+            entries.put(part.segments[fingerprint.getKey()], new int[][]{fingerprint.getValue()[0].toArray(), fingerprint.getValue()[1].toArray(), {part.rows.get(fingerprint.getKey())}});
+        }
+    }
+
+    /**
+     * Memory-mapped content of an index file. The file consists of the header, the sorted hashes, the start of the
+     * postings of every hash (followed by the total number of postings), the postings as pairs of segment index
+     * and offset, the number of rows of every segment and finally the segment IDs.
+     */
+    static final class Snapshot implements AbstractFileIndex.Part {
+        private final IntBuffer keys;
+        private final IntBuffer starts;
+        private final IntBuffer postings;
+        private final IntBuffer rows;
+        private final String[] segments;
+
+        private Snapshot(ByteBuffer buffer) {
+            final int segments = buffer.getInt(8);
+            final int keys = buffer.getInt(12);
+            final int total = buffer.getInt(16);
+
+            int position = HEADER;
+            this.keys = slice(buffer, position, keys);
+            position += keys * Integer.BYTES;
+            this.starts = slice(buffer, position, keys + 1);
+            position += (keys + 1) * Integer.BYTES;
+            this.postings = slice(buffer, position, 2 * total);
+            position += 2 * total * Integer.BYTES;
+            this.rows = slice(buffer, position, segments);
+            position += segments * Integer.BYTES;
+
+            this.segments = new String[segments];
+            final ByteBuffer ids = buffer.duplicate();
+            ids.position(position);
+            for (int i = 0; i < segments; i++) {
+                this.segments[i] = readString(ids);
+            }
+        }
+
+        @Override
+        public String[] segments() {
+            return this.segments;
+        }
+
+        /**
+         * Binary search for the provided hash.
+         *
+         * @return Index of the hash or -1, if the hash does not occur.
+         */
+        private int find(int hash) {
+            int low = 0;
+            int high = this.keys.limit() - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int value = this.keys.get(mid);
+                if (value < hash) {
+                    low = mid + 1;
+                } else if (value > hash) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -4,13 +4,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.vitrivr.cineast.core.util.audio.pitch.Pitch;
 import org.vitrivr.cineast.core.util.dsp.fft.FFT;
 import org.vitrivr.cineast.core.util.dsp.fft.STFT;
-import org.vitrivr.cineast.core.util.dsp.fft.Spectrum;
 import org.vitrivr.cineast.core.util.dsp.midi.MidiUtil;
 
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
 /**
  * This class can be used to estimate the most salient pitch(es) from a provided FFT or STFT by applying the method
  * described in [1].
@@ -51,6 +56,9 @@ public class KLF0PitchEstimator {
     /** Maximum pitch to consider (MIDI index of the pitch). */
     private final float beta;
 
+    /** Pre-calculated HarmonicTables by sampling rate and window size. */
+    private final ConcurrentHashMap<Long, HarmonicTable> tables = new ConcurrentHashMap<>();
+
     /**
      * Default constructor for KLF0PitchEstimator. Uses parameter described in [1].
      */
@@ -72,18 +80,21 @@ public class KLF0PitchEstimator {
 
     /**
      * Estimates the pitches in the provided STFT and returns a List of PitchCandidate lists (one
-     * list per FFT).
+     * list per FFT). The FFTs are processed in parallel.
      *
      * @param stft STFT for which to estimate the pitches.
      * @return List of PitchCandidate lists.
      */
     public List<List<Pitch>> estimatePitch(STFT stft) {
-        List<List<Pitch>> results = new ArrayList<>(stft.getStft().size());
-        for (FFT fft : stft.getStft()) {
-            if (fft.isZero()) {
-              continue;
+        final List<FFT> ffts = stft.getStft();
+        final List<List<Pitch>> estimates = IntStream.range(0, ffts.size()).parallel()
+                .mapToObj(i -> ffts.get(i).isZero() ? null : this.estimatePitch(ffts.get(i)))
+                .collect(Collectors.toList());
+        List<List<Pitch>> results = new ArrayList<>(estimates.size());
+        for (List<Pitch> estimate : estimates) {
+            if (estimate != null) {
+                results.add(estimate);
             }
-            results.add(this.estimatePitch(fft));
         }
         return results;
     }
@@ -91,16 +102,15 @@ public class KLF0PitchEstimator {
 
     /**
      * Estimates the pitches from the provided FFT and returns them as a list
-     * of PitchCandidates.
+     * of PitchCandidates. The power spectrum of the FFT is not modified.
      *
      * @param fft FFT to estimate the pitches from.
      * @return List of pitch candidates.
      */
     public List<Pitch> estimatePitch(FFT fft) {
         /* Prepare required helper variables. */
-        final float samplingrate = fft.getSamplingrate();
-        final int windowsize = fft.getWindowsize();
-        final Spectrum spectrum = fft.getPowerSpectrum();
+        final HarmonicTable table = this.table(fft.getSamplingrate(), fft.getWindowsize());
+        final double[] spectrum = fft.getPowerSpectrum().array().clone();
 
         /* Prepare empty array of booleans holding the estimates. */
         List<Pitch> candidates = new ArrayList<>();
@@ -109,13 +119,15 @@ public class KLF0PitchEstimator {
         int loopcount = 1;
         while (true) {
             /* Detect new candidate. */
-            Pitch candidate = this.detect(spectrum, samplingrate, windowsize);
+            final int c = this.detect(spectrum, table);
+            Pitch candidate = new Pitch(table.f0[c]);
+            candidate.setSalience(table.salience(c, spectrum));
 
             /* Test if that candidate already exists. */
             boolean exists = false;
-            for (Pitch c : candidates) {
-                if (c.getFrequency() == candidate.getFrequency()) {
-                    c.setSalience(candidate.getSalience() + c.getSalience());
+            for (Pitch p : candidates) {
+                if (p.getFrequency() == candidate.getFrequency()) {
+                    p.setSalience(candidate.getSalience() + p.getSalience());
                     exists = true;
                     break;
                 }
@@ -136,21 +148,12 @@ public class KLF0PitchEstimator {
             /* Add candidate to list. */
             candidates.add(candidate);
 
-            final float f0 = candidate.getFrequency();
-            final float tau = samplingrate/f0; /* Fundamental period, i.e. f0=fs/τ. */
-            final float dtau = 0.25f; /* Δτ/2, which is 0.25 according to [1]. */
-
             /* Subtract the information of the found pitch from the current spectrum. */
-            for (int m = 1; m * candidate.getFrequency() < samplingrate / 2; m++) {
-                int max = Math.round((m*windowsize)/(tau - dtau));
-                int min = Math.round((m*windowsize)/(tau + dtau));
-                int max_bin = min;
-                for (int offset = min; offset <= max && offset < windowsize/2; offset++) {
-                    if (spectrum.getValue(offset) > spectrum.getValue(max_bin)) {
-                        max_bin = offset;
-                    }
+            for (int h = table.start[c]; h < table.start[c + 1]; h++) {
+                final int bin = table.peak(h, spectrum);
+                if (bin >= 0) {
+                    spectrum[bin] = spectrum[bin] - spectrum[bin] * table.weight[h];
                 }
-                spectrum.setValue(max_bin, spectrum.getValue(max_bin) - spectrum.getValue(max_bin) * this.g(f0, m));
             }
         }
 
@@ -166,52 +169,30 @@ public class KLF0PitchEstimator {
      * Detects the most salient F0 candidate in the provided spectrum.
      *
      * @param spectrum Power spectrum to search for the candidate.
-     * @param samplingrate Samplingrate at which the original signal has been sampled.
-     * @param windowsize Windowsize used in the FFT.
+     * @param table HarmonicTable for the spectrum.
+     * @return Index of the most salient candidate in the table.
      */
-    private Pitch detect(Spectrum spectrum, final float samplingrate, final int windowsize) {
-        Pitch candidate = null;
-        for (int n = this.min; n<= this.max; n++) {
-            final float f0 = MidiUtil.midiToFrequency(n);
-            final double salience = this.salience(f0, spectrum, samplingrate, windowsize);
-            if (candidate == null || candidate.getSalience() < salience) {
-                candidate = new Pitch(f0);
-                candidate.setSalience(salience);
+    private int detect(final double[] spectrum, final HarmonicTable table) {
+        int best = 0;
+        double max = table.salience(0, spectrum);
+        for (int c = 1; c < table.f0.length; c++) {
+            final double salience = table.salience(c, spectrum);
+            if (max < salience) {
+                best = c;
+                max = salience;
             }
         }
-        return candidate;
+        return best;
     }
 
     /**
-     * Calculates and returns the salience of a f0 in a spectrum according to [1].
-     *
-     * @param f0 The f0 to calculate the salience for.
-     * @param spectrum The spectrum to check.
-     * @param samplingrate The rate at which the original audio has been sampled.
-     * @param samplingrate The windowsize used during creation of the spectrum.
-     * @return Salience of f0 in the spectrum.
+     * Returns the HarmonicTable for the provided sampling rate and window size.
      */
-    private final double salience(float f0, Spectrum spectrum, final float samplingrate, final int windowsize) {
-        final float tau = samplingrate/f0; /* Fundamental period, i.e. f0=fs/τ. */
-        final float dtau = 0.25f; /* Δτ/2, which is 0.25 according to [1]. */
-        float salience = 0; /* Salience of the candidate pitch. */
-
-        for (int m = 1; m * f0 < samplingrate/2; m++) {
-            int max = Math.round((m*windowsize)/(tau - dtau));
-            int min = Math.round((m*windowsize)/(tau + dtau));
-            int max_bin = min;
-            for (int offset = min; offset <= max && offset < windowsize/2; offset++) {
-                if (spectrum.getValue(offset) > spectrum.getValue(max_bin)) {
-                    max_bin = offset;
-                }
-            }
-            salience += spectrum.getValue(max_bin) * this.g(f0, m);
-        }
-
-        return salience;
+    private HarmonicTable table(float samplingrate, int windowsize) {
+        final long key = ((long) Float.floatToIntBits(samplingrate) << 32) | windowsize;
+        return this.tables.computeIfAbsent(key, k -> new HarmonicTable(samplingrate, windowsize));
     }
 
-
     /**
      * Returns the value of the weight-function for pitch-salience calculation
      * according to [1].
@@ -223,4 +204,83 @@ public class KLF0PitchEstimator {
     private double g(float f0, int m) {
         return (f0 + this.alpha)/(m*f0 + this.beta);
     }
+
+    /**
+     * Pre-calculated harmonic partials of all pitch-candidates for a sampling rate and window size. For
+     * every candidate c, the partials start[c] to start[c+1]-1 hold the range of spectrum bins the
+     * partial is searched in ([lo, hi]) and the weight of the partial according to [1].
+     */
+    private final class HarmonicTable {
+        /** Frequencies of the pitch candidates. */
+        private final float[] f0;
+
+        /** Index of the first partial of every candidate (followed by the total number of partials). */
+        private final int[] start;
+
+        /** Lowest and highest bin of every partial; a partial whose lowest bin lies outside the spectrum has lo = -1. */
+        private final int[] lo;
+        private final int[] hi;
+
+        /** Weight of every partial. */
+        private final double[] weight;
+
+        private HarmonicTable(final float samplingrate, final int windowsize) {
+            final float dtau = 0.25f; /* Δτ/2, which is 0.25 according to [1]. */
+            final int candidates = KLF0PitchEstimator.this.max - KLF0PitchEstimator.this.min + 1;
+            this.f0 = new float[candidates];
+            this.start = new int[candidates + 1];
+            final TIntArrayList lo = new TIntArrayList();
+            final TIntArrayList hi = new TIntArrayList();
+            final TDoubleArrayList weight = new TDoubleArrayList();
+            for (int c = 0; c < candidates; c++) {
+                final float f0 = MidiUtil.midiToFrequency(KLF0PitchEstimator.this.min + c);
+                final float tau = samplingrate/f0; /* Fundamental period, i.e. f0=fs/τ. */
+                this.f0[c] = f0;
+                this.start[c] = lo.size();
+                for (int m = 1; m * f0 < samplingrate/2; m++) {
+                    int max = Math.round((m*windowsize)/(tau - dtau));
+                    int min = Math.round((m*windowsize)/(tau + dtau));
+                    lo.add(min < windowsize/2 ? min : -1);
+                    hi.add(Math.min(max, windowsize/2 - 1));
+                    weight.add(KLF0PitchEstimator.this.g(f0, m));
+                }
+            }
+            this.start[candidates] = lo.size();
+            this.lo = lo.toArray();
+            this.hi = hi.toArray();
+            this.weight = weight.toArray();
+        }
+
+        /**
+         * Returns the bin with the maximum value within the range of the provided partial or -1, if the partial lies
+         * outside the spectrum.
+         */
+        private int peak(final int h, final double[] spectrum) {
+            final int lo = this.lo[h];
+            if (lo < 0) {
+                return -1;
+            }
+            int max = lo;
+            for (int offset = lo + 1; offset <= this.hi[h]; offset++) {
+                if (spectrum[offset] > spectrum[max]) {
+                    max = offset;
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Calculates and returns the salience of candidate c in a spectrum according to [1].
+         */
+        private double salience(final int c, final double[] spectrum) {
+            float salience = 0; /* Salience of the candidate pitch. */
+            for (int h = this.start[c]; h < this.start[c + 1]; h++) {
+                final int bin = this.peak(h, spectrum);
+                if (bin >= 0) {
+                    salience += spectrum[bin] * this.weight[h];
+                }
+            }
+            return salience;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package org.vitrivr.cineast.core.util.audio.pitch.tracking;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -29,6 +30,12 @@ public class PitchTracker {
     /** Active pitch-candidates. */
     private Pitch[][] s1;
 
+    /** Index of the most salient pitch per frame in S1 (-1 if empty, DIRTY if it must be re-calculated). */
+    private int[] s1max;
+
+    /** Marker for frames in S1 whose most salient pitch must be re-calculated. */
+    private static final int DIRTY = -2;
+
     /** Number of ms that passes between two adjacent bins. */
     private float t_stepsize;
 
@@ -88,6 +95,8 @@ public class PitchTracker {
         /* Initialize S1 and S0 with new pitch-candidates */
         this.s1 = new Pitch[candidates.size()][];
         this.s0 = new Pitch[candidates.size()][];
+        this.s1max = new int[candidates.size()];
+        Arrays.fill(this.s1max, DIRTY);
         this.t_stepsize = t_stepsize;
         for (int i=0; i<candidates.size();i++) {
             int size = candidates.get(i).size();
@@ -257,6 +266,7 @@ public class PitchTracker {
         Pitch pitch = this.s1[t][i];
         if (pitch != null) {
             this.s1[t][i] = null;
+            this.s1max[t] = DIRTY;
             return pitch;
         } else {
             return null;
@@ -290,6 +300,7 @@ public class PitchTracker {
         if (this.s1[t][i] != null) {
             this.s0[t][i] = this.s1[t][i];
             this.s1[t][i] = null;
+            this.s1max[t] = DIRTY;
             return true;
         } else {
             return false;
@@ -301,12 +312,18 @@ public class PitchTracker {
      * Seeks the pitch with maximum salience in S1 and returns an int array that contains the
      * indexes which point to that maximum. If no maximum was found, {-1, -1} is returned.
      *
+     * The maximum per frame is cached and only re-calculated for frames that have changed since
+     * the last call.
+     *
      * @return Indexes {t,i} pointing to maximum is S1.
      */
     private int[] seekMostSalientInS1() {
         int[] max = {-1, -1};
         for (int t = 0; t<this.s1.length; t++) {
-            int max_i = this.seekMostSalientInFrameS1(t);
+            if (this.s1max[t] == DIRTY) {
+                this.s1max[t] = this.seekMostSalientInFrameS1(t);
+            }
+            int max_i = this.s1max[t];
             if (max_i == -1) {
               continue;
             }
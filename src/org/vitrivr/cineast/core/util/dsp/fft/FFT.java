@@ -1,15 +1,15 @@
 package org.vitrivr.cineast.core.util.dsp.fft;
 
+import java.util.Arrays;
+
 import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 import org.vitrivr.cineast.core.util.dsp.fft.windows.RectangularWindow;
 import org.vitrivr.cineast.core.util.dsp.fft.windows.WindowFunction;
 import org.vitrivr.cineast.core.util.dsp.filter.frequency.FrequencyDomainFilterInterface;
 
 /**
- * This class wraps the Apache Commons FastFourierTransformer and extends it with some additional functionality.
+ * This class holds the result of a forward FFT of real valued data (calculated by {@link RealFFT}) and extends it with
+ * some additional functionality.
  *
  * <ol>
  *     <li>It allows to apply WindowFunctions for forward-transformation. See WindowFunction interface!</li>
@@ -20,6 +20,9 @@ import org.vitrivr.cineast.core.util.dsp.filter.frequency.FrequencyDomainFilterI
  * The same instance of the FFT class can be re-used to process multiple samples. Every call to forward() will replace
  * all the existing data in the instance.
  *
+ * Internally, the N/2+1 non-redundant bins of the transformation are kept as interleaved real and imaginary parts in
+ * a primitive buffer, which may be a region of a larger buffer shared with other FFTs (see {@link STFT}).
+ *
  * The inspiration for this class comes from the FFT class found in the jAudio framework (see
  * https://github.com/dmcennis/jaudioGIT)
  *
@@ -30,8 +33,17 @@ import org.vitrivr.cineast.core.util.dsp.filter.frequency.FrequencyDomainFilterI
  * @created 02.02.17
  */
 public class FFT {
-    /** Data obtained by forward FFT. */
-    private Complex[] data;
+    /** Buffer holding the interleaved FFT bins 0 to N/2. May be shared with other FFT instances. */
+    private double[] data;
+
+    /** Position of bin 0 in the data buffer. */
+    private int offset;
+
+    /** Size N of the FFT. */
+    private int windowsize;
+
+    /** Frequency labels of the bins; may be null, in which case they are calculated on demand. */
+    private float[] frequencies;
 
     /** Magnitude spectrum of the FFT data. May be null if it has not been obtained yet. */
     private Spectrum magnitudeSpectrum;
@@ -45,6 +57,30 @@ public class FFT {
     /** Samplingrate of the last chunk of data that was processed by FFT. */
     private float samplingrate;
 
+    /**
+     * Default constructor; the FFT contains no data until forward() is called.
+     */
+    public FFT() {}
+
+    /**
+     * Creates a FFT for data that has already been transformed by {@link RealFFT} into the provided buffer.
+     *
+     * @param data Buffer holding the interleaved bins.
+     * @param offset Position of bin 0 in the buffer.
+     * @param windowsize Size of the FFT.
+     * @param samplingrate Rate at which the original signal has been sampled.
+     * @param window WindowFunction that was applied before the transformation.
+     * @param frequencies Frequency labels of the bins (shared, not copied) or null.
+     */
+    FFT(double[] data, int offset, int windowsize, float samplingrate, WindowFunction window, float[] frequencies) {
+        this.data = data;
+        this.offset = offset;
+        this.windowsize = windowsize;
+        this.samplingrate = samplingrate;
+        this.windowFunction = window;
+        this.frequencies = frequencies;
+    }
+
     /**
      * Performs a forward fourier transformation on the provided, real valued data. The method makes sure,
      * that the size of the array is a power of two (for which the FFT class has been optimized) and pads
@@ -61,26 +97,48 @@ public class FFT {
         this.windowFunction = window;
         this.samplingrate = samplingrate;
 
-        int actual_length = data.length;
-        int valid_length = FFTUtil.nextPowerOf2(actual_length);
-        double[] reshaped = new double[valid_length];
-        for (int i = 0; i<reshaped.length; i++) {
-            if (i < actual_length) {
-                reshaped[i] = data[i] * this.windowFunction.value(i, valid_length);
-            } else {
-                reshaped[i] = 0;
-            }
+        final int actual_length = data.length;
+        final int valid_length = Math.max(2, FFTUtil.nextPowerOf2(actual_length));
+        if (this.data == null || this.offset != 0 || this.data.length != valid_length + 2) {
+            this.data = new double[valid_length + 2];
+        }
+        if (this.windowsize != valid_length) {
+            this.frequencies = null;
         }
+        this.offset = 0;
+        this.windowsize = valid_length;
 
-        /* Perform FFT using FastFourierTransformer library. */
-        FastFourierTransformer transformer = new FastFourierTransformer(DftNormalization.STANDARD);
-        this.data = transformer.transform(reshaped, TransformType.FORWARD);
+        final double[] values = RealFFT.window(window, valid_length);
+        final int length = Math.min(actual_length, valid_length);
+        for (int i = 0; i < length; i++) {
+            this.data[i] = data[i] * values[i];
+        }
+        Arrays.fill(this.data, length, this.data.length, 0.0);
+
+        RealFFT.forSize(valid_length).forward(this.data, 0);
 
         /* Reset the calculated properties. */
         this.powerSpectrum = null;
         this.magnitudeSpectrum = null;
     }
 
+    /**
+     * Creates a copy of this FFT. The derived spectra are not copied but re-calculated on access.
+     *
+     * @return Copy of this FFT.
+     */
+    public FFT copy() {
+        FFT copy = new FFT();
+        copy.windowFunction = this.windowFunction;
+        copy.samplingrate = this.samplingrate;
+        copy.windowsize = this.windowsize;
+        copy.frequencies = this.frequencies;
+        if (this.data != null) {
+            copy.data = Arrays.copyOfRange(this.data, this.offset, this.offset + this.windowsize + 2);
+        }
+        return copy;
+    }
+
     /**
      * Returns the magnitude spectrum of the transformed data. If that spectrum has not been
      * calculated yet it will be upon invocation of the method.
@@ -89,7 +147,7 @@ public class FFT {
      */
     public Spectrum getMagnitudeSpectrum() {
         if (this.magnitudeSpectrum == null) {
-            this.magnitudeSpectrum = Spectrum.createMagnitudeSpectrum(this.data, this.samplingrate, this.windowFunction);
+            this.magnitudeSpectrum = Spectrum.createMagnitudeSpectrum(this.data, this.offset, this.windowsize, this.frequencies(), this.windowFunction);
         }
 
         return this.magnitudeSpectrum;
@@ -103,18 +161,23 @@ public class FFT {
      */
     public Spectrum getPowerSpectrum() {
         if (this.powerSpectrum == null) {
-            this.powerSpectrum = Spectrum.createPowerSpectrum(this.data, this.samplingrate, this.windowFunction);
+            this.powerSpectrum = Spectrum.createPowerSpectrum(this.data, this.offset, this.windowsize, this.frequencies(), this.windowFunction);
         }
         return this.powerSpectrum;
     }
 
     /**
-     * Getter for the transformed data.
+     * Getter for the transformed data. The bins above N/2 are restored from the conjugate
+     * symmetry of the transformation of real data.
      *
      * @return Array containing the raw FFT data.
      */
     public final Complex[] getValues() {
-        return this.data;
+        Complex[] values = new Complex[this.windowsize];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.get(i);
+        }
+        return values;
     }
 
     /**
@@ -125,7 +188,34 @@ public class FFT {
      * @return Fourier coefficient.
      */
     public final Complex get(int index) {
-        return this.data[index];
+        if (index < 0 || index >= this.windowsize) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        if (index <= this.windowsize / 2) {
+            return new Complex(this.getReal(index), this.getImaginary(index));
+        } else {
+            return new Complex(this.getReal(this.windowsize - index), -this.getImaginary(this.windowsize - index));
+        }
+    }
+
+    /**
+     * Returns the real part of the FFT coefficient at the specified index without creating an object.
+     *
+     * @param index Index of the coefficient; must be between 0 and N/2.
+     * @return Real part of the coefficient.
+     */
+    public final double getReal(int index) {
+        return this.data[this.offset + 2 * index];
+    }
+
+    /**
+     * Returns the imaginary part of the FFT coefficient at the specified index without creating an object.
+     *
+     * @param index Index of the coefficient; must be between 0 and N/2.
+     * @return Imaginary part of the coefficient.
+     */
+    public final double getImaginary(int index) {
+        return this.data[this.offset + 2 * index + 1];
     }
 
     /**
@@ -143,7 +233,7 @@ public class FFT {
      * @return Rate at which the original signal has been sampled.
      */
     public final int getWindowsize() {
-        return this.data.length;
+        return this.windowsize;
     }
 
     /**
@@ -151,8 +241,9 @@ public class FFT {
      * otherwise
      */
     public final boolean isZero() {
-        for (Complex coefficient : this.data) {
-            if (coefficient.abs() > 0) {
+        final int end = this.offset + this.windowsize + 2;
+        for (int i = this.offset; i < end; i++) {
+            if (this.data[i] != 0.0) {
               return false;
             }
         }
@@ -165,6 +256,22 @@ public class FFT {
      * @param filter FrequencyDomainFilter that should be applied.
      */
     public final void applyFilter(FrequencyDomainFilterInterface filter) {
-        filter.filterInPlace(this.data);
+        Complex[] values = filter.filterInPlace(this.getValues());
+        for (int i = 0; i <= this.windowsize / 2; i++) {
+            this.data[this.offset + 2 * i] = values[i].getReal();
+            this.data[this.offset + 2 * i + 1] = values[i].getImaginary();
+        }
+        this.powerSpectrum = null;
+        this.magnitudeSpectrum = null;
+    }
+
+    /**
+     * Returns the frequency labels of the bins, calculating them if necessary.
+     */
+    private float[] frequencies() {
+        if (this.frequencies == null) {
+            this.frequencies = FFTUtil.binCenterFrequencies(this.windowsize, this.samplingrate);
+        }
+        return this.frequencies;
     }
 }
@@ -0,0 +1,209 @@
+package org.vitrivr.cineast.core.util.dsp.fft;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.vitrivr.cineast.core.util.dsp.fft.windows.WindowFunction;
+
+/**
+ * Forward FFT for real valued input of a fixed size that works in place on primitive buffers.
+ *
+ * A real signal of size N is transformed by treating it as a complex signal of size N/2 (even
+ * samples as real parts, odd samples as imaginary parts), transforming that with an iterative
+ * radix-2 FFT and separating the result into the N/2+1 non-redundant bins of the real signal.
+ * The bit-reversal permutation and all twiddle factors are calculated once per size and shared
+ * by all users of that size, see {@link #forSize(int)}.
+ *
+ * The transformed data is stored interleaved, i.e. the real and imaginary part of bin k are
+ * found at positions 2k and 2k+1. A buffer for a transformation of size N must therefore provide
+ * N+2 slots.
+ */
+public final class RealFFT {
+
+    /** Plans by size. */
+    private static final ConcurrentHashMap<Integer, RealFFT> PLANS = new ConcurrentHashMap<>();
+
+    /** Tabulated window functions and their normalisation by window function and size. */
+    private static final ConcurrentHashMap<String, double[]> WINDOWS = new ConcurrentHashMap<>();
+
+    /** Size N of the real signal. */
+    private final int size;
+
+    /** Size N/2 of the complex transformation. */
+    private final int half;
+
+    /** Bit-reversal permutation of the indices of the complex transformation. */
+    private final int[] reversal;
+
+    /** Twiddle factors exp(-2*pi*i*k/(N/2)) for k < N/4 used by the butterflies. */
+    private final double[] cos;
+    private final double[] sin;
+
+    /** Twiddle factors exp(-2*pi*i*k/N) for k <= N/4 used to separate the real spectrum. */
+    private final double[] splitCos;
+    private final double[] splitSin;
+
+    /**
+     * Returns the (shared) plan for the given size.
+     *
+     * @param size Size of the real signal. Must be a power of two and at least 2.
+     * @return RealFFT for the size.
+     */
+    public static RealFFT forSize(int size) {
+        if (size < 2 || !FFTUtil.isPowerOf2(size)) {
+            throw new IllegalArgumentException("The FFT size must be a power of two and at least 2, but was " + size + ".");
+        }
+        return PLANS.computeIfAbsent(size, RealFFT::new);
+    }
+
+    /**
+     * Returns the values of the window function for a window of the given size. Window functions are
+     * expected to be stateless, the tables are therefore shared by all instances of a window function class.
+     *
+     * @param function The window function.
+     * @param size Size of the window.
+     * @return Array of length size+1, holding the window values followed by the normalisation factor. Must not be modified.
+     */
+    static double[] window(WindowFunction function, int size) {
+        return WINDOWS.computeIfAbsent(function.getClass().getName() + '/' + size, k -> {
+            double[] table = new double[size + 1];
+            for (int i = 0; i < size; i++) {
+                table[i] = function.value(i, size);
+            }
+            table[size] = function.normalization(size);
+            return table;
+        });
+    }
+
+    private RealFFT(int size) {
+        this.size = size;
+        this.half = size / 2;
+
+        int bits = Integer.numberOfTrailingZeros(this.half);
+        this.reversal = new int[this.half];
+        for (int i = 0; i < this.half; i++) {
+            this.reversal[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+
+        this.cos = new double[Math.max(1, this.half / 2)];
+        this.sin = new double[this.cos.length];
+        for (int k = 0; k < this.cos.length; k++) {
+            double angle = -2.0 * Math.PI * k / this.half;
+            this.cos[k] = Math.cos(angle);
+            this.sin[k] = Math.sin(angle);
+        }
+
+        this.splitCos = new double[this.half / 2 + 1];
+        this.splitSin = new double[this.splitCos.length];
+        for (int k = 0; k < this.splitCos.length; k++) {
+            double angle = -2.0 * Math.PI * k / this.size;
+            this.splitCos[k] = Math.cos(angle);
+            this.splitSin[k] = Math.sin(angle);
+        }
+    }
+
+    /**
+     * Getter for the size of the real signal.
+     *
+     * @return Size of the transformation.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Transforms the real signal stored in buffer[offset] to buffer[offset+N-1] in place. Afterwards, the slots
+     * buffer[offset] to buffer[offset+N+1] hold the N/2+1 complex bins of the spectrum in interleaved form.
+     *
+     * @param buffer Buffer holding the signal; must provide N+2 slots starting at offset.
+     * @param offset Position of the first sample in the buffer.
+     */
+    public void forward(double[] buffer, int offset) {
+        this.complexForward(buffer, offset);
+        this.split(buffer, offset);
+    }
+
+    /**
+     * Iterative radix-2 FFT of the N/2 interleaved complex values starting at offset.
+     */
+    private void complexForward(double[] buffer, int offset) {
+        final int n = this.half;
+
+        /* Bit-reversal permutation. */
+        for (int i = 0; i < n; i++) {
+            int j = this.reversal[i];
+            if (j > i) {
+                int a = offset + 2 * i;
+                int b = offset + 2 * j;
+                double re = buffer[a];
+                double im = buffer[a + 1];
+                buffer[a] = buffer[b];
+                buffer[a + 1] = buffer[b + 1];
+                buffer[b] = re;
+                buffer[b + 1] = im;
+            }
+        }
+
+        /* Butterflies. */
+        for (int length = 2; length <= n; length <<= 1) {
+            final int halfLength = length >> 1;
+            final int step = n / length;
+            for (int start = 0; start < n; start += length) {
+                for (int k = 0; k < halfLength; k++) {
+                    final double wr = this.cos[k * step];
+                    final double wi = this.sin[k * step];
+                    final int a = offset + 2 * (start + k);
+                    final int b = a + 2 * halfLength;
+                    final double br = buffer[b] * wr - buffer[b + 1] * wi;
+                    final double bi = buffer[b] * wi + buffer[b + 1] * wr;
+                    buffer[b] = buffer[a] - br;
+                    buffer[b + 1] = buffer[a + 1] - bi;
+                    buffer[a] += br;
+                    buffer[a + 1] += bi;
+                }
+            }
+        }
+    }
+
+    /**
+     * Separates the transformation Z of the packed signal into the spectrum X of the real signal, using
+     * X[k] = E[k] + W^k * O[k] and X[N/2-k] = conj(E[k] - W^k * O[k]), where E[k] = (Z[k] + conj(Z[N/2-k]))/2,
+     * O[k] = (Z[k] - conj(Z[N/2-k]))/2i and W = exp(-2*pi*i/N).
+     */
+    private void split(double[] buffer, int offset) {
+        final int n = this.half;
+
+        /* Bins 0 and N/2 are real. */
+        final double z0r = buffer[offset];
+        final double z0i = buffer[offset + 1];
+        buffer[offset] = z0r + z0i;
+        buffer[offset + 1] = 0.0;
+        buffer[offset + 2 * n] = z0r - z0i;
+        buffer[offset + 2 * n + 1] = 0.0;
+
+        for (int k = 1; k <= n / 2; k++) {
+            final int a = offset + 2 * k;
+            final int b = offset + 2 * (n - k);
+            final double ar = buffer[a];
+            final double ai = buffer[a + 1];
+            final double br = buffer[b];
+            final double bi = buffer[b + 1];
+
+            final double er = 0.5 * (ar + br);
+            final double ei = 0.5 * (ai - bi);
+            final double or = 0.5 * (ai + bi);
+            final double oi = 0.5 * (br - ar);
+
+            final double wr = this.splitCos[k];
+            final double wi = this.splitSin[k];
+            final double tr = wr * or - wi * oi;
+            final double ti = wr * oi + wi * or;
+
+            buffer[a] = er + tr;
+            buffer[a + 1] = ei + ti;
+            if (b != a) {
+                buffer[b] = er - tr;
+                buffer[b + 1] = -(ei - ti);
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package org.vitrivr.cineast.core.util.dsp.fft;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -90,40 +89,106 @@ public class STFT {
         /* Initialize values for the sliding window. */
         final int increment = this.windowsize - overlap - 2*this.padding;
         final int length = this.windowsize - 2*this.padding;
-        int start = 0;
-        int end = start + length - 1;
-
-        /* Initialize buffer that holds samples for FFT. */
-        final double window[] = new double[windowsize];
+        if (increment <= 0) {
+            throw new IllegalStateException("The overlap must be smaller than the number of samples per window.");
+        }
 
         /*
-         * Outer-loop: Create a sliding window and move it across the samples.
-         * For each iteration, forward the FFT for the samples in the Window and add it to the list.
+         * All windows are transformed into one contiguous buffer, one row of windowsize+2 values (the interleaved
+         * bins 0 to windowsize/2) per window.
          */
+        final int count = (samples.length + increment - 1) / increment;
+        final int stride = this.windowsize + 2;
+        final double[] buffer = new double[count * stride];
+        final double[] window = RealFFT.window(this.windowFunction, this.windowsize);
+        final RealFFT fft = RealFFT.forSize(this.windowsize);
 
-        while (start < samples.length) {
-            /* Copy the samples into the window. */
-            if (end < samples.length) {
-                System.arraycopy(samples, start, window, padding, length);
-            } else {
-                System.arraycopy(samples, start, window, padding, samples.length - start);
-                Arrays.fill(window, samples.length - start + 1, window.length - 1, 0.0);
+        /*
+         * Create a sliding window and move it across the samples. For each position, copy the windowed samples into
+         * the row (leaving the zero-padding untouched) and transform the row in place.
+         */
+        for (int i = 0, start = 0; i < count; i++, start += increment) {
+            final int row = i * stride;
+            final int available = Math.min(length, samples.length - start);
+            for (int j = 0; j < available; j++) {
+                buffer[row + padding + j] = samples[start + j] * window[padding + j];
             }
-
-            /* Create Forward FFT entries for each window. */
-            FFT fft = new FFT();
-            fft.forward(window, this.samplingrate, this.windowFunction);
-            this.stft.add(fft);
-
-            /* Move the window. */
-            start += increment;
-            end += increment;
+            fft.forward(buffer, row);
+            this.stft.add(new FFT(buffer, row, this.windowsize, this.samplingrate, this.windowFunction, this.frequencies));
         }
 
         /* Updates the time-labels. */
         this.time = FFTUtil.time(this.stft.size(), windowsize, overlap, padding, samplingrate);
     }
 
+    /**
+     * Appends an already calculated FFT to this STFT without updating the time labels. The caller must make sure
+     * that the FFT has been calculated with the parameters of this STFT and call {@link #updateTime()} afterwards.
+     *
+     * @param fft FFT to append.
+     */
+    void append(FFT fft) {
+        this.stft.add(fft);
+    }
+
+    /**
+     * Updates the time-labels after FFTs have been appended using {@link #append(FFT)}.
+     */
+    void updateTime() {
+        this.time = FFTUtil.time(this.stft.size(), windowsize, overlap, padding, samplingrate);
+    }
+
+    /**
+     * Derives the STFT whose windows are {@code factor} times further apart than the windows of this STFT,
+     * all other parameters being equal. Since such an STFT consists of every factor-th FFT of this STFT, no
+     * additional transformation is necessary. The FFTs are shared between this and the derived STFT.
+     *
+     * @param factor Ratio between the window increment of the derived STFT and the one of this STFT.
+     * @return Derived STFT.
+     */
+    public STFT decimate(int factor) {
+        return this.decimate(factor, 0);
+    }
+
+    /**
+     * Derives the STFT whose windows are {@code factor} times further apart than the windows of this STFT and
+     * whose first window is the window at index {@code start} of this STFT.
+     *
+     * @param factor Ratio between the window increment of the derived STFT and the one of this STFT.
+     * @param start Index of the first window of this STFT that is part of the derived STFT; must be smaller than factor.
+     * @return Derived STFT.
+     */
+    public STFT decimate(int factor, int start) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("The decimation factor must be positive.");
+        }
+        if (start < 0 || start >= factor) {
+            throw new IllegalArgumentException("The index of the first window must lie between zero and the decimation factor.");
+        }
+        final int increment = this.windowsize - this.overlap - 2*this.padding;
+        final int overlap = this.windowsize - factor*increment - 2*this.padding;
+        STFT derived = new STFT(this.windowsize, overlap, this.padding, this.windowFunction, this.samplingrate);
+        for (int i = start; i < this.stft.size(); i += factor) {
+            derived.stft.add(this.stft.get(i));
+        }
+        derived.time = FFTUtil.time(derived.stft.size(), this.windowsize, overlap, this.padding, this.samplingrate);
+        return derived;
+    }
+
+    /**
+     * Creates a deep copy of this STFT, which can be modified (e.g. filtered) without affecting this instance.
+     *
+     * @return Copy of this STFT.
+     */
+    public STFT copy() {
+        STFT copy = new STFT(this.windowsize, this.overlap, this.padding, this.windowFunction, this.samplingrate);
+        for (FFT fft : this.stft) {
+            copy.stft.add(fft.copy());
+        }
+        copy.time = this.time == null ? null : this.time.clone();
+        return copy;
+    }
+
     /**
      * Assembles a list of power-spectra (one per FFT contained in this STFT)
      * and returns it.
@@ -0,0 +1,186 @@
+package org.vitrivr.cineast.core.util.dsp.fft;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.vitrivr.cineast.core.util.dsp.fft.windows.WindowFunction;
+
+/**
+ * Memoises the STFTs calculated for a single audio signal, so that features which use the same
+ * STFT parameters share one transformation. The mean samples of the signal are obtained once and
+ * kept for all subsequent transformations. If an STFT is requested whose windows are a multiple of
+ * the increment of an already cached STFT apart (same window size, padding and window function),
+ * it is derived from the cached STFT instead of being calculated.
+ *
+ * The STFTs returned by this class are shared and must not be modified by the caller. Callers
+ * that need to modify an STFT (e.g. to filter it) must work on a {@link STFT#copy()}.
+ */
+public class STFTCache {
+
+    /** Cached STFTs by their parameters. */
+    private final Map<Key, STFT> cache = new ConcurrentHashMap<>();
+
+    /** Mean samples of the signal; null if they have not been obtained yet. */
+    private volatile double[] samples;
+
+    /** Stream of the signal this one is a part of; null if the signal is transformed on its own. */
+    private volatile STFTStream stream;
+
+    /** Position of the first sample of the signal within the stream. */
+    private volatile long position;
+
+    /**
+     * Returns the STFT of the signal for the provided parameters, either from the cache, derived
+     * from a finer STFT in the cache or newly calculated.
+     *
+     * @param windowsize Size of the window used during STFT. Must be a power of two.
+     * @param overlap Overlap in samples between two subsequent windows.
+     * @param padding Zero-padding before and after the actual sample data.
+     * @param function WindowFunction to apply before calculating the STFT.
+     * @param samplingrate Sampling rate of the signal.
+     * @param samples Supplier for the mean samples of the signal; invoked at most once until the cache is invalidated.
+     * @return Shared STFT, which must not be modified.
+     */
+    public STFT get(int windowsize, int overlap, int padding, WindowFunction function, float samplingrate, Supplier<double[]> samples) {
+        Key key = new Key(windowsize, overlap, padding, function);
+        STFT stft = this.cache.get(key);
+        if (stft != null) {
+            return stft;
+        }
+        stft = this.derive(key);
+        if (stft == null) {
+            STFTStream stream = this.stream;
+            if (stream != null) {
+                stft = stream.transform(key, this.position, this.samples(samples), samplingrate, function);
+            } else {
+                stft = new STFT(windowsize, overlap, padding, function, samplingrate);
+                stft.forward(this.samples(samples));
+            }
+        }
+        STFT existing = this.cache.putIfAbsent(key, stft);
+        return existing != null ? existing : stft;
+    }
+
+    /**
+     * Declares the signal to be a part of a longer stream, which starts at the given position. Windows that lie
+     * completely within the signal are then obtained from (and shared through) the stream, so that overlapping
+     * signals of the same stream are only transformed once.
+     *
+     * @param stream Stream the signal is a part of or null, to transform the signal on its own.
+     * @param position Position of the first sample of the signal within the stream.
+     */
+    public void attach(STFTStream stream, long position) {
+        this.position = position;
+        this.stream = stream;
+        this.cache.clear();
+    }
+
+    /**
+     * Discards all cached STFTs and samples. Must be called whenever the underlying signal changes.
+     */
+    public void invalidate() {
+        this.samples = null;
+        this.cache.clear();
+    }
+
+    /**
+     * Tries to derive the STFT for the provided key from a cached STFT with a smaller window increment.
+     *
+     * @return Derived STFT or null, if no suitable STFT is cached.
+     */
+    private STFT derive(Key key) {
+        final int increment = key.increment();
+        if (increment <= 0) {
+            return null;
+        }
+        Key best = null;
+        for (Key candidate : this.cache.keySet()) {
+            int candidateIncrement = candidate.increment();
+            if (candidate.windowsize == key.windowsize && candidate.padding == key.padding && candidate.function == key.function
+                    && candidateIncrement > 0 && increment % candidateIncrement == 0
+                    && (best == null || candidateIncrement > best.increment())) {
+                best = candidate;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        STFT finer = this.cache.get(best);
+        if (finer == null) {
+            return null;
+        }
+        final int factor = increment / best.increment();
+        if (this.stream == null) {
+            return finer.decimate(factor);
+        }
+
+        /* Keep the derived STFT on the grid of the stream: its first window must start at a multiple of its increment. */
+        final double[] samples = this.samples;
+        if (samples == null) {
+            return null;
+        }
+        final long start = this.position + STFTStream.first(this.position, best.increment(), samples.length);
+        if (start % best.increment() != 0) {
+            return null;
+        }
+        return finer.decimate(factor, (int) Math.floorMod(-start / best.increment(), (long) factor));
+    }
+
+    private double[] samples(Supplier<double[]> supplier) {
+        double[] samples = this.samples;
+        if (samples == null) {
+            synchronized (this) {
+                samples = this.samples;
+                if (samples == null) {
+                    samples = supplier.get();
+                    this.samples = samples;
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Parameters that identify an STFT of the signal. Window functions are stateless, hence their class identifies them.
+     */
+    static final class Key {
+        final int windowsize;
+        final int overlap;
+        final int padding;
+        final Class<? extends WindowFunction> function;
+
+        Key(int windowsize, int overlap, int padding, WindowFunction function) {
+            this.windowsize = windowsize;
+            this.overlap = overlap;
+            this.padding = padding;
+            this.function = function.getClass();
+        }
+
+        int increment() {
+            return this.windowsize - this.overlap - 2*this.padding;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return this.windowsize == key.windowsize && this.overlap == key.overlap && this.padding == key.padding
+                    && this.function == key.function;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.windowsize;
+            result = 31 * result + this.overlap;
+            result = 31 * result + this.padding;
+            result = 31 * result + this.function.hashCode();
+            return result;
+        }
+    }
+}
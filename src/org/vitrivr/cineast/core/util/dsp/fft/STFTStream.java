@@ -0,0 +1,147 @@
+package org.vitrivr.cineast.core.util.dsp.fft;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.vitrivr.cineast.core.util.dsp.fft.windows.WindowFunction;
+
+/**
+ * Shares the FFTs of a continuous signal (e.g. a long recording) between the overlapping segments it
+ * is split into. All windows of a stream lie on one grid: for a given set of parameters, window k starts
+ * at sample k * increment of the signal, and the STFT of a segment starts at the first grid point within
+ * the segment. Each FFT is identified by its parameters and the position of its first sample; a window
+ * that has been transformed for one segment is reused by all following segments that contain the same
+ * window, regardless of where these segments start, so that overlapping regions are only transformed once.
+ *
+ * Only windows that lie completely within a segment are shared. Windows at the end of a segment, which
+ * extend beyond it and are zero-filled, are transformed for that segment alone. Hence, the STFT of a
+ * segment is exactly the same as if the part of the segment starting at its first grid point had been
+ * transformed on its own.
+ *
+ * FFTs are kept as long as they may be required by a following segment, i.e. for the configured
+ * retention period after the start of the most recent segment.
+ *
+ * @see STFTCache#attach(STFTStream, long)
+ */
+public class STFTStream {
+
+    /** Shared FFTs by their parameters and by the position of their first sample. */
+    private final Map<STFTCache.Key, TreeMap<Long, FFT>> frames = new HashMap<>();
+
+    /** Time in seconds a shared FFT is kept after the start of the most recent segment. */
+    private final float retention;
+
+    /**
+     * Constructor for STFTStream.
+     *
+     * @param retention Time in seconds FFTs are kept for reuse; should at least cover the overlap between two segments.
+     */
+    public STFTStream(float retention) {
+        if (retention < 0.0f) {
+            throw new IllegalArgumentException("The retention period must not be negative.");
+        }
+        this.retention = retention;
+    }
+
+    /**
+     * Returns the offset of the first grid point within a segment, i.e. of the first sample of its first window.
+     *
+     * @param position Position of the first sample of the segment within the stream.
+     * @param increment Number of samples between the first samples of two subsequent windows.
+     * @param length Number of samples in the segment.
+     * @return Offset in samples; 0 if the segment does not contain a grid point.
+     */
+    static int first(long position, int increment, int length) {
+        final int first = (int) Math.floorMod(-position, (long) increment);
+        return first < length ? first : 0;
+    }
+
+    /**
+     * Calculates the STFT of a segment that starts at the provided position, reusing all shared
+     * FFTs that are available and sharing all newly calculated ones. The STFT starts at the first
+     * grid point of the segment (see {@link #first(long, int, int)}).
+     *
+     * @param key Parameters of the STFT.
+     * @param position Position of the first sample of the segment within the stream.
+     * @param samples Mean samples of the segment.
+     * @param samplingrate Sampling rate of the signal.
+     * @param function WindowFunction to apply before calculating the STFT.
+     * @return STFT of the segment.
+     */
+    STFT transform(STFTCache.Key key, long position, double[] samples, float samplingrate, WindowFunction function) {
+        final int windowsize = key.windowsize;
+        final int padding = key.padding;
+        final int increment = key.increment();
+        final int length = windowsize - 2*padding;
+        if (increment <= 0) {
+            throw new IllegalStateException("The overlap must be smaller than the number of samples per window.");
+        }
+
+        final STFT stft = new STFT(windowsize, key.overlap, padding, function, samplingrate);
+        final int first = first(position, increment, samples.length);
+        final boolean aligned = Math.floorMod(position + first, (long) increment) == 0;
+        final int count = (samples.length - first + increment - 1) / increment;
+
+        /* Look up the shared FFTs and drop the ones that can no longer be reused. */
+        final FFT[] ffts = new FFT[count];
+        int missing = 0;
+        synchronized (this) {
+            TreeMap<Long, FFT> shared = this.frames.computeIfAbsent(key, k -> new TreeMap<>());
+            shared.headMap(position - (long) (this.retention * samplingrate)).clear();
+            for (int i = 0, start = first; i < count; i++, start += increment) {
+                if (aligned && start + length <= samples.length) {
+                    ffts[i] = shared.get(position + start);
+                }
+                if (ffts[i] == null) {
+                    missing += 1;
+                }
+            }
+        }
+
+        /* Transform the missing windows into one contiguous buffer (see STFT#forward(double[])). */
+        if (missing > 0) {
+            final int stride = windowsize + 2;
+            final double[] buffer = new double[missing * stride];
+            final double[] window = RealFFT.window(function, windowsize);
+            final RealFFT fft = RealFFT.forSize(windowsize);
+            final Map<Long, FFT> created = new HashMap<>();
+            for (int i = 0, start = first, row = 0; i < count; i++, start += increment) {
+                if (ffts[i] != null) {
+                    continue;
+                }
+                final int available = Math.min(length, samples.length - start);
+                for (int j = 0; j < available; j++) {
+                    buffer[row + padding + j] = samples[start + j] * window[padding + j];
+                }
+                fft.forward(buffer, row);
+                ffts[i] = new FFT(buffer, row, windowsize, samplingrate, function, stft.getFrequencies());
+                if (aligned && available == length) {
+                    created.put(position + start, ffts[i]);
+                }
+                row += stride;
+            }
+            if (!created.isEmpty()) {
+                synchronized (this) {
+                    TreeMap<Long, FFT> shared = this.frames.get(key);
+                    for (Map.Entry<Long, FFT> entry : created.entrySet()) {
+                        shared.putIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+
+        for (FFT fft : ffts) {
+            stft.append(fft);
+        }
+        stft.updateTime();
+        return stft;
+    }
+
+    /**
+     * Discards all shared FFTs.
+     */
+    public synchronized void clear() {
+        this.frames.clear();
+    }
+}
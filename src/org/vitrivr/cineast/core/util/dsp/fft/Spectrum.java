@@ -86,6 +86,54 @@ public class Spectrum implements Iterable<Pair<Float,Double>>{
         return new Spectrum(Type.MAGNITUDE, magnitudeSpectrum, FFTUtil.binCenterFrequencies(data.length, samplingrate));
     }
 
+    /**
+     * Calculates and returns the power spectrum for the FFT bins stored in interleaved form in the provided buffer
+     * (see {@link RealFFT}).
+     *
+     * @param data Buffer holding the interleaved FFT bins.
+     * @param offset Position of bin 0 in the buffer.
+     * @param size Size of the FFT.
+     * @param frequencies Frequency labels of the size/2 bins; the array is shared, not copied.
+     * @param windowFunction Window function that was used when calculating the FFT.
+     * @return A power spectrum.
+     */
+    public static Spectrum createPowerSpectrum(double[] data, int offset, int size, float[] frequencies, WindowFunction windowFunction) {
+        int bins = size / 2;
+        double normalizationFactor = size * RealFFT.window(windowFunction, size)[size];
+
+        double[] powerSpectrum = new double[bins];
+        powerSpectrum[0] = (data[offset] * data[offset] + data[offset + 1] * data[offset + 1]) / normalizationFactor;
+        for (int i = 1, j = offset + 2; i < bins; i++, j += 2) {
+            powerSpectrum[i] = (2 * (data[j] * data[j] + data[j + 1] * data[j + 1])) / normalizationFactor;
+        }
+
+        return new Spectrum(Type.POWER, powerSpectrum, frequencies);
+    }
+
+    /**
+     * Calculates and returns the magnitude spectrum for the FFT bins stored in interleaved form in the provided buffer
+     * (see {@link RealFFT}).
+     *
+     * @param data Buffer holding the interleaved FFT bins.
+     * @param offset Position of bin 0 in the buffer.
+     * @param size Size of the FFT.
+     * @param frequencies Frequency labels of the size/2 bins; the array is shared, not copied.
+     * @param windowFunction Window function that was used when calculating the FFT.
+     * @return A magnitude spectrum.
+     */
+    public static Spectrum createMagnitudeSpectrum(double[] data, int offset, int size, float[] frequencies, WindowFunction windowFunction) {
+        int bins = size / 2;
+        double normalizationFactor = size * RealFFT.window(windowFunction, size)[size];
+
+        double[] magnitudeSpectrum = new double[bins];
+        magnitudeSpectrum[0] = Math.sqrt(data[offset] * data[offset] + data[offset + 1] * data[offset + 1]) / normalizationFactor;
+        for (int i = 1, j = offset + 2; i < bins; i++, j += 2) {
+            magnitudeSpectrum[i] = (2 * Math.sqrt(data[j] * data[j] + data[j + 1] * data[j + 1])) / normalizationFactor;
+        }
+
+        return new Spectrum(Type.MAGNITUDE, magnitudeSpectrum, frequencies);
+    }
+
     /**
      *
      * @param type
@@ -0,0 +1,97 @@
+package org.vitrivr.cineast.core.util.images;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.vitrivr.cineast.core.data.MultiImage;
+
+import boofcv.factory.feature.dense.ConfigDenseHoG;
+import boofcv.struct.feature.BrightFeature;
+import boofcv.struct.feature.TupleDesc_F64;
+
+/**
+ * Memoises the local feature descriptors calculated for the images of a single segment, so that feature modules
+ * which use the same descriptors (e.g. the SURF or HOG modules with codebooks of different size) only have to
+ * perform their own codeword assignment. Descriptors are cached by image, type and parameters.
+ *
+ * Images are identified by reference, i.e. the descriptors of an image are only shared as long as the segment
+ * returns the same MultiImage instance. The lists returned by this class are shared and must not be modified
+ * by the caller.
+ */
+public class DescriptorCache {
+
+    /** Cached descriptors by image, type and parameters. */
+    private final Map<Key, List<? extends TupleDesc_F64>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the SURF descriptors of the provided image (see {@link SURFHelper#getStableSurfDescriptors(MultiImage)}),
+     * either from the cache or newly calculated.
+     *
+     * @param image Image for which to obtain the SURF descriptors.
+     * @return Shared list of SURF descriptors, which must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public List<BrightFeature> getStableSurf(MultiImage image) {
+        Key key = new Key(image, "surf-stable");
+        return (List<BrightFeature>) this.cache.computeIfAbsent(key, k -> SURFHelper.getStableSurfDescriptors(image));
+    }
+
+    /**
+     * Returns the HOG descriptors of the provided image (see {@link HOGHelper#getHOGDescriptorList(MultiImage, ConfigDenseHoG)}),
+     * either from the cache or newly calculated.
+     *
+     * @param image Image for which to obtain the HOG descriptors.
+     * @param config ConfigDenseHoG object that specifies the parameters for the HOG algorithm.
+     * @return Shared list of HOG descriptors, which must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public List<TupleDesc_F64> getHOGDescriptors(MultiImage image, ConfigDenseHoG config) {
+        Key key = new Key(image, "hog", config.orientationBins, config.pixelsPerCell, config.cellsPerBlockX,
+                config.cellsPerBlockY, config.stepBlock, config.fastVariant ? 1 : 0);
+        return (List<TupleDesc_F64>) this.cache.computeIfAbsent(key, k -> HOGHelper.getHOGDescriptorList(image, config));
+    }
+
+    /**
+     * Discards all cached descriptors.
+     */
+    public void release() {
+        this.cache.clear();
+    }
+
+    /**
+     * Identifies the descriptors of an image by the image (reference), the type of the descriptors and their parameters.
+     */
+    private static final class Key {
+        final MultiImage image;
+        final String type;
+        final int[] parameters;
+
+        Key(MultiImage image, String type, int... parameters) {
+            this.image = image;
+            this.type = type;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return this.image == key.image && this.type.equals(key.type) && Arrays.equals(this.parameters, key.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(this.image);
+            result = 31 * result + this.type.hashCode();
+            result = 31 * result + Arrays.hashCode(this.parameters);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.vitrivr.cineast.core.util.images;
+
+import org.vitrivr.cineast.core.data.MultiImage;
+
+import boofcv.struct.image.GrayF32;
+import boofcv.struct.image.GrayU8;
+
+/**
+ * This class provides methods to convert {@link MultiImage}s to BoofCV gray-scale images. The conversion works
+ * directly on the packed RGB values returned by {@link MultiImage#getColors()}, i.e. it does not require a
+ * BufferedImage to be created (which is expensive for cached images).
+ *
+ * The gray value of a pixel is the mean of its red, green and blue components, which is the same value
+ * {@link boofcv.io.image.ConvertBufferedImage} calculates for RGB images.
+ */
+public final class GrayImageHelper {
+
+    /**
+     * Private constructor; do not instantiate!
+     */
+    private GrayImageHelper() {
+
+    }
+
+    /**
+     * Converts a MultiImage to a GrayU8 image.
+     *
+     * @param image MultiImage that should be converted.
+     * @param output GrayU8 image the result should be written to. It is reshaped if necessary. May be null.
+     * @return The GrayU8 image (either output or a new image if output was null).
+     */
+    public static GrayU8 toGrayU8(MultiImage image, GrayU8 output) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        if (output == null) {
+            output = new GrayU8(width, height);
+        } else {
+            output.reshape(width, height);
+        }
+
+        final int[] colors = image.getColors();
+        for (int y = 0; y < height; ++y) {
+            int index = output.startIndex + y * output.stride;
+            int offset = y * width;
+            for (int x = 0; x < width; ++x) {
+                final int rgb = colors[offset++];
+                output.data[index++] = (byte) ((((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Converts a MultiImage to a GrayF32 image.
+     *
+     * @param image MultiImage that should be converted.
+     * @param output GrayF32 image the result should be written to. It is reshaped if necessary. May be null.
+     * @return The GrayF32 image (either output or a new image if output was null).
+     */
+    public static GrayF32 toGrayF32(MultiImage image, GrayF32 output) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        if (output == null) {
+            output = new GrayF32(width, height);
+        } else {
+            output.reshape(width, height);
+        }
+
+        final int[] colors = image.getColors();
+        for (int y = 0; y < height; ++y) {
+            int index = output.startIndex + y * output.stride;
+            int offset = y * width;
+            for (int x = 0; x < width; ++x) {
+                final int rgb = colors[offset++];
+                output.data[index++] = (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3.0f;
+            }
+        }
+        return output;
+    }
+}
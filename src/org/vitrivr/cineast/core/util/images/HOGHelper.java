@@ -1,6 +1,9 @@
 package org.vitrivr.cineast.core.util.images;
 
 import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.vitrivr.cineast.core.data.MultiImage;
 
 import boofcv.abst.feature.dense.DescribeImageDense;
 import boofcv.factory.feature.dense.ConfigDenseHoG;
@@ -64,12 +67,34 @@ public final class HOGHelper {
      * @return DescribeImageDense object containing the HOG descriptor.
      */
     public static DescribeImageDense<GrayU8,TupleDesc_F64> getHOGDescriptors(BufferedImage image, ConfigDenseHoG config) {
-        GrayU8 gray = ConvertBufferedImage.convertFromSingle(image, null, GrayU8.class);
+        return getHOGDescriptors(ConvertBufferedImage.convertFromSingle(image, null, GrayU8.class), config);
+    }
+
+    /**
+     * Returns HOG descriptors for a gray-scale image using the provided settings.
+     *
+     * @param gray Gray-scale image for which to obtain the HOG descriptors.
+     * @param config ConfigDenseHog object that specifies the parameters for the HOG algorithm.
+     * @return DescribeImageDense object containing the HOG descriptor.
+     */
+    public static DescribeImageDense<GrayU8,TupleDesc_F64> getHOGDescriptors(GrayU8 gray, ConfigDenseHoG config) {
         DescribeImageDense<GrayU8,TupleDesc_F64> desc = FactoryDescribeImageDense.hog(config, ImageType.single(GrayU8.class));
         desc.process(gray);
         return desc;
     }
 
+    /**
+     * Returns the HOG descriptors for a MultiImage using the provided settings. The image is converted directly
+     * from its colors, i.e. without creating a BufferedImage.
+     *
+     * @param image Image for which to obtain the HOG descriptors.
+     * @param config ConfigDenseHoG object that specifies the parameters for the HOG algorithm.
+     * @return List of HOG descriptors.
+     */
+    public static List<TupleDesc_F64> getHOGDescriptorList(MultiImage image, ConfigDenseHoG config) {
+        return getHOGDescriptors(GrayImageHelper.toGrayU8(image, null), config).getDescriptions();
+    }
+
     /**
      * Returns the size of a HOG vector given a configuration.
      *
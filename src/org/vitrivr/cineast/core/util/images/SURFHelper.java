@@ -1,6 +1,10 @@
 package org.vitrivr.cineast.core.util.images;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.vitrivr.cineast.core.data.MultiImage;
 
 import boofcv.abst.feature.detdesc.DetectDescribePoint;
 import boofcv.abst.feature.detect.interest.ConfigFastHessian;
@@ -52,14 +56,39 @@ public final class SURFHelper {
      * @return
      */
     public static DetectDescribePoint<GrayF32, BrightFeature> getStableSurf(BufferedImage image) {
+        return getStableSurf(ConvertBufferedImage.convertFromSingle(image, null, GrayF32.class));
+    }
+
+    /**
+     * Returns SURF descriptors for a gray-scale image using the settings above. Uses the BoofCV stable SURF algorithm.
+     *
+     * @param gray Gray-scale image for which to obtain the SURF descriptors.
+     * @return
+     */
+    public static DetectDescribePoint<GrayF32, BrightFeature> getStableSurf(GrayF32 gray) {
          /* Obtain raw SURF descriptors using the configuration above (FH-9 according to [1]). */
-        GrayF32 gray = ConvertBufferedImage.convertFromSingle(image, null, GrayF32.class);
         ConfigFastHessian config = new ConfigFastHessian(0, 2, FH_MAX_FEATURES_PER_SCALE, FH_INITIAL_SAMPLE_SIZE, FH_INITIAL_SIZE, FH_NUMBER_SCALES_PER_OCTAVE, FH_NUMBER_OF_OCTAVES);
         DetectDescribePoint<GrayF32, BrightFeature> surf = FactoryDetectDescribe.surfStable(config, null, null, GrayF32.class);
         surf.detect(gray);
         return surf;
     }
 
+    /**
+     * Returns the SURF descriptors for a MultiImage using the settings above. Uses the BoofCV stable SURF algorithm.
+     * The image is converted directly from its colors, i.e. without creating a BufferedImage.
+     *
+     * @param image Image for which to obtain the SURF descriptors.
+     * @return List of SURF descriptors.
+     */
+    public static List<BrightFeature> getStableSurfDescriptors(MultiImage image) {
+        DetectDescribePoint<GrayF32, BrightFeature> surf = getStableSurf(GrayImageHelper.toGrayF32(image, null));
+        List<BrightFeature> descriptors = new ArrayList<>(surf.getNumberOfFeatures());
+        for (int i = 0; i < surf.getNumberOfFeatures(); i++) {
+            descriptors.add(surf.getDescription(i));
+        }
+        return descriptors;
+    }
+
     /**
      * Returns SURF descriptors for an image using the settings above. Uses the BoofCV fast SURF algorithm,
      * which yields less images but operates a bit faster.
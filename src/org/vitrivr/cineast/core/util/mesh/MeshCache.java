@@ -0,0 +1,277 @@
+package org.vitrivr.cineast.core.util.mesh;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.vitrivr.cineast.core.data.m3d.ArrayMesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
+import org.vitrivr.cineast.core.data.m3d.VoxelGrid;
+import org.vitrivr.cineast.core.data.m3d.Voxelizer;
+import org.vitrivr.cineast.core.render.Renderer;
+import org.vitrivr.cineast.core.render.SoftwareRenderer;
+import org.vitrivr.cineast.core.util.LogHelper;
+
+/**
+ * Memoises the KHL transformed version of a single mesh and the data derived from it, so that feature modules which
+ * voxelize or render the same normalised mesh share the result:
+ *
+ * - The normalised mesh is calculated upon first access.
+ * - VoxelGrids are cached by voxel resolution and grid size.
+ * - Renderings are cached by image size and camera position. They are created by a {@link SoftwareRenderer} looking
+ *   at the origin from the camera position, with the default (black) background.
+ *
+ * The cached VoxelGrids and images are shared and must not be modified by the caller. The memory they occupy is
+ * accounted for across all MeshCaches; once {@link #MAX_CACHED_BYTES} are in use, new results are still returned
+ * but no longer cached. Invoke {@link #release()} as soon as the mesh is no longer needed to free that memory.
+ */
+public class MeshCache {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    /** Maximum number of bytes that may be held by all MeshCaches together (a quarter of the maximum heap size). */
+    public static final long MAX_CACHED_BYTES = Runtime.getRuntime().maxMemory() / 4;
+
+    /** Number of bytes currently held by all MeshCaches. */
+    private static final AtomicLong CACHED_BYTES = new AtomicLong();
+
+    /** Offscreen renderers used to create the renderings; one per thread and image size. */
+    private static final ThreadLocal<Map<Integer, Renderer>> RENDERERS = ThreadLocal.withInitial(HashMap::new);
+
+    /** The original mesh. */
+    private final ArrayMesh mesh;
+
+    /** The KHL transformed version of the original mesh. Calculated lazily. */
+    private volatile ArrayMesh normalizedMesh;
+
+    /** Cached VoxelGrids of the normalised mesh by resolution and size. */
+    private final Map<GridKey, VoxelGrid> grids = new ConcurrentHashMap<>();
+
+    /** Cached renderings of the normalised mesh by size and camera position. */
+    private final Map<ViewKey, BufferedImage> renderings = new ConcurrentHashMap<>();
+
+    /** Number of bytes held by this MeshCache. */
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    /**
+     * Constructor for MeshCache.
+     *
+     * @param mesh The original mesh.
+     */
+    public MeshCache(ReadableMesh mesh) {
+        this.mesh = ArrayMesh.from(mesh);
+    }
+
+    /**
+     * Returns the number of bytes currently held by all MeshCaches.
+     *
+     * @return Number of bytes.
+     */
+    public static long cachedBytes() {
+        return CACHED_BYTES.get();
+    }
+
+    /**
+     * Returns the original mesh.
+     *
+     * @return Original mesh.
+     */
+    public ArrayMesh getMesh() {
+        return this.mesh;
+    }
+
+    /**
+     * Returns the KHL transformed version of the original mesh. Calculates it if needed.
+     *
+     * @return Normalised mesh.
+     */
+    public ArrayMesh getNormalizedMesh() {
+        ArrayMesh normalized = this.normalizedMesh;
+        if (normalized == null) {
+            synchronized (this) {
+                normalized = this.normalizedMesh;
+                if (normalized == null) {
+                    normalized = MeshTransformUtil.khlTransform(this.mesh, 1.0f);
+                    this.normalizedMesh = normalized;
+                }
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Returns a VoxelGrid of the normalised mesh, either from the cache or newly calculated.
+     *
+     * @param resolution Size of a single voxel.
+     * @param size Number of voxels in each dimension.
+     * @return Shared VoxelGrid, which must not be modified.
+     */
+    public VoxelGrid getNormalizedVoxelgrid(float resolution, int size) {
+        final GridKey key = new GridKey(resolution, size);
+        VoxelGrid grid = this.grids.get(key);
+        if (grid != null) {
+            return grid;
+        }
+        synchronized (this.grids) {
+            grid = this.grids.get(key);
+            if (grid == null) {
+                grid = new Voxelizer(resolution).voxelize(this.getNormalizedMesh(), size, size, size);
+                this.cache(this.grids, key, grid, ((long) grid.getLength() + 63) / 64 * 8);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Returns renderings of the normalised mesh from the provided camera positions. Renderings that are not cached
+     * yet are created using a single assembly of the mesh.
+     *
+     * @param camerapositions Camera positions; the first three elements of each entry are used as x, y and z coordinates.
+     * @param size Width and height of the rendered images.
+     * @return List of shared images (one per camera position), which must not be modified. Shorter than the list of camera
+     *         positions, if rendering failed.
+     */
+    public List<BufferedImage> getNormalizedRenderings(double[][] camerapositions, int size) {
+        final List<BufferedImage> images = new ArrayList<>(camerapositions.length);
+        synchronized (this.renderings) {
+            Renderer renderer = null;
+            try {
+                for (double[] position : camerapositions) {
+                    final ViewKey key = new ViewKey(size, (float) position[0], (float) position[1], (float) position[2]);
+                    BufferedImage image = this.renderings.get(key);
+                    if (image == null) {
+                        /* Retains the renderer of the current thread and assembles the mesh upon first cache miss. */
+                        if (renderer == null) {
+                            renderer = RENDERERS.get().computeIfAbsent(size, s -> new SoftwareRenderer(s, s));
+                            if (!renderer.retain()) {
+                                renderer = null;
+                                break;
+                            }
+                            renderer.clear();
+                            renderer.assemble(this.getNormalizedMesh());
+                        }
+                        renderer.positionCamera(key.x, key.y, key.z);
+                        renderer.render();
+                        image = renderer.obtain();
+                        if (image == null) {
+                            LOGGER.error("Could not render mesh because no image could be obtained from the renderer.");
+                            break;
+                        }
+                        this.cache(this.renderings, key, image, 4L * image.getWidth() * image.getHeight());
+                    }
+                    images.add(image);
+                }
+            } catch (Exception exception) {
+                LOGGER.error("Could not render mesh because an unknown exception occurred ({}).", LogHelper.getStackTrace(exception));
+            } finally {
+                if (renderer != null) {
+                    renderer.release();
+                }
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Discards all cached VoxelGrids and renderings as well as the normalised mesh and frees the memory they
+     * occupied in the accounting.
+     */
+    public void release() {
+        synchronized (this.grids) {
+            synchronized (this.renderings) {
+                this.grids.clear();
+                this.renderings.clear();
+                CACHED_BYTES.addAndGet(-this.cachedBytes.getAndSet(0));
+            }
+        }
+        this.normalizedMesh = null;
+    }
+
+    /**
+     * Adds an entry to one of the caches, unless that would exceed {@link #MAX_CACHED_BYTES}.
+     */
+    private <K, V> void cache(Map<K, V> cache, K key, V value, long bytes) {
+        if (CACHED_BYTES.addAndGet(bytes) > MAX_CACHED_BYTES) {
+            CACHED_BYTES.addAndGet(-bytes);
+            LOGGER.debug("Not caching {} bytes because the MeshCaches are full.", bytes);
+            return;
+        }
+        this.cachedBytes.addAndGet(bytes);
+        cache.put(key, value);
+    }
+
+    /**
+     * Parameters that identify a VoxelGrid of the normalised mesh.
+     */
+    private static final class GridKey {
+        final float resolution;
+        final int size;
+
+        GridKey(float resolution, int size) {
+            this.resolution = resolution;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            GridKey key = (GridKey) o;
+            return Float.compare(this.resolution, key.resolution) == 0 && this.size == key.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Float.hashCode(this.resolution) + this.size;
+        }
+    }
+
+    /**
+     * Parameters that identify a rendering of the normalised mesh.
+     */
+    private static final class ViewKey {
+        final int size;
+        final float x;
+        final float y;
+        final float z;
+
+        ViewKey(int size, float x, float y, float z) {
+            this.size = size;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ViewKey key = (ViewKey) o;
+            return this.size == key.size && Float.compare(this.x, key.x) == 0 && Float.compare(this.y, key.y) == 0
+                    && Float.compare(this.z, key.z) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.size;
+            result = 31 * result + Float.hashCode(this.x);
+            result = 31 * result + Float.hashCode(this.y);
+            result = 31 * result + Float.hashCode(this.z);
+            return result;
+        }
+    }
+}
@@ -3,8 +3,10 @@ package org.vitrivr.cineast.core.util.mesh;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.math3.util.FastMath;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
+import org.vitrivr.cineast.core.data.m3d.ArrayMesh;
 import org.vitrivr.cineast.core.data.m3d.Mesh;
 import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 
@@ -12,6 +14,9 @@ import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
  * A collection of utilities surrounding Mesh mathematics. Includes methods to calculate the barycenter or the
  * bounding box of a Mesh.
  *
+ * The methods that operate on arrays expect the layout used by {@link ArrayMesh}: Three floats (x, y, z) per vertex
+ * and four vertex indices per face, the fourth of which is -1 for triangular faces.
+ *
  * [1] Vranić, D. and D. S. (n.d.). 3D Model Retrieval.
  *
  * @author rgasser
@@ -153,4 +158,179 @@ public final class MeshMathUtil {
         /* Return bounding-box. */
         return bounds;
     }
+
+    /**
+     * Calculates and returns the bounds of the vertices that are part of a face.
+     *
+     * @param positions Vertex positions (x, y, z per vertex).
+     * @param indices Vertex indices (four per face).
+     * @return Float-array spanning the bounds: {max_x, min_x, max_y, min_y, max_z, min_z}
+     */
+    public static float[] bounds(float[] positions, int[] indices) {
+        /* If no faces are present, the box is zero. */
+        if (indices.length == 0) {
+            return new float[6];
+        }
+
+        /* Initialize the bounding-box. */
+        float bounds[] = {
+                -Float.MAX_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE, Float.MAX_VALUE,
+                -Float.MAX_VALUE, Float.MAX_VALUE
+        };
+
+        for (int index : indices) {
+            if (index < 0) {
+                continue;
+            }
+            for (int c = 0; c < 3; c++) {
+                final float value = positions[3 * index + c];
+                if (value > bounds[2 * c]) {
+                    bounds[2 * c] = value;
+                }
+                if (value < bounds[2 * c + 1]) {
+                    bounds[2 * c + 1] = value;
+                }
+            }
+        }
+
+        /* Return bounding-box. */
+        return bounds;
+    }
+
+    /**
+     * Calculates the center of mass (barycenter) of a polyhedral mesh by obtaining
+     * the mean of the Mesh's face centroids weighted by the area of the respective face as
+     * described in [1].
+     *
+     * @param positions Vertex positions (x, y, z per vertex).
+     * @param indices Vertex indices (four per face).
+     * @return Coordinates of the barycenter.
+     */
+    public static Vector3f barycenter(float[] positions, int[] indices) {
+        Vector3f barycenter = new Vector3f(0f,0f,0f);
+        Vector3f centroid = new Vector3f();
+        double total = 0.0;
+        for (int face = 0; face < indices.length / 4; face++) {
+            double area = area(positions, indices, face);
+            if (area > 0.0) {
+                barycenter.add(centroid(positions, indices, face, centroid).mul((float)area));
+                total += area;
+            }
+        }
+        barycenter.div((float)total);
+        return barycenter;
+    }
+
+    /**
+     * Calculates and returns the total surface area of a mesh.
+     *
+     * @param positions Vertex positions (x, y, z per vertex).
+     * @param indices Vertex indices (four per face).
+     * @return Surface area of the mesh.
+     */
+    public static double surfaceArea(float[] positions, int[] indices) {
+        double area = 0.0;
+        for (int face = 0; face < indices.length / 4; face++) {
+            area += area(positions, indices, face);
+        }
+        return area;
+    }
+
+    /**
+     * Calculates and returns the area of a single face using Heron's formula for triangles and
+     * Bretschneider's formula for quads.
+     *
+     * @param positions Vertex positions (x, y, z per vertex).
+     * @param indices Vertex indices (four per face).
+     * @param face Index of the face.
+     * @return Area of the face.
+     */
+    public static double area(float[] positions, int[] indices, int face) {
+        final int v1 = 3 * indices[4 * face];
+        final int v2 = 3 * indices[4 * face + 1];
+        final int v3 = 3 * indices[4 * face + 2];
+        if (indices[4 * face + 3] < 0) {
+            /* Generate the edges and sort them in descending order of their length. */
+            float a = length(positions, v1, v2);
+            float b = length(positions, v2, v3);
+            float c = length(positions, v3, v1);
+            if (a < b) {
+                float t = a; a = b; b = t;
+            }
+            if (b < c) {
+                float t = b; b = c; c = t;
+            }
+            if (a < b) {
+                float t = a; a = b; b = t;
+            }
+
+            /* Returns the area of the triangle according to Heron's Formula. */
+            double area = 0.25 * FastMath.sqrt((a+(b+c)) * (c-(a-b)) * (c+(a-b)) * (a+(b-c)));
+            if (Double.isNaN(area)) {
+                return 0.0f;
+            } else {
+                return area;
+            }
+        } else {
+            final int v4 = 3 * indices[4 * face + 3];
+
+            /* Calculates the area of the face using Bretschneider's Formula. */
+            float s1 = length(positions, v1, v2);
+            float s2 = length(positions, v2, v3);
+            float s3 = length(positions, v3, v4);
+            float s4 = length(positions, v4, v1);
+            float d1 = length(positions, v1, v3);
+            float d2 = length(positions, v2, v4);
+            return 0.25 * FastMath.sqrt(4*FastMath.pow(d1,2)*FastMath.pow(d2,2) - FastMath.pow((FastMath.pow(s2,2) + FastMath.pow(s4,2)-FastMath.pow(s1,2)-FastMath.pow(s3,2)),2));
+        }
+    }
+
+    /**
+     * Calculates the centroid of a single face.
+     *
+     * @param positions Vertex positions (x, y, z per vertex).
+     * @param indices Vertex indices (four per face).
+     * @param face Index of the face.
+     * @param dest Vector to store the centroid in.
+     * @return dest
+     */
+    public static Vector3f centroid(float[] positions, int[] indices, int face, Vector3f dest) {
+        dest.set(0f,0f,0f);
+        int corners = 0;
+        for (int i = 4 * face; i < 4 * face + 4; i++) {
+            if (indices[i] >= 0) {
+                dest.add(positions[3 * indices[i]], positions[3 * indices[i] + 1], positions[3 * indices[i] + 2]);
+                corners++;
+            }
+        }
+        return dest.div(corners == 3 ? 3.0f : 4.0f);
+    }
+
+    /**
+     * Calculates the normal of a single face from its first three vertices.
+     *
+     * @param positions Vertex positions (x, y, z per vertex).
+     * @param indices Vertex indices (four per face).
+     * @param face Index of the face.
+     * @param dest Vector to store the normal in.
+     * @return dest
+     */
+    public static Vector3f normal(float[] positions, int[] indices, int face, Vector3f dest) {
+        final int v1 = 3 * indices[4 * face];
+        final int v2 = 3 * indices[4 * face + 1];
+        final int v3 = 3 * indices[4 * face + 2];
+        final Vector3f e2 = new Vector3f(positions[v3] - positions[v1], positions[v3 + 1] - positions[v1 + 1], positions[v3 + 2] - positions[v1 + 2]);
+        return dest.set(positions[v2] - positions[v1], positions[v2 + 1] - positions[v1 + 1], positions[v2 + 2] - positions[v1 + 2]).cross(e2).normalize();
+    }
+
+    /**
+     * Returns the length of the edge between the vertices at the two provided offsets.
+     */
+    private static float length(float[] positions, int a, int b) {
+        final float x = positions[a] - positions[b];
+        final float y = positions[a + 1] - positions[b + 1];
+        final float z = positions[a + 2] - positions[b + 2];
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
 }
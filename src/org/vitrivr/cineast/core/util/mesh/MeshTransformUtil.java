@@ -11,6 +11,7 @@ import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
 import org.vitrivr.cineast.core.data.Pair;
+import org.vitrivr.cineast.core.data.m3d.ArrayMesh;
 import org.vitrivr.cineast.core.data.m3d.Mesh;
 import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
 import org.vitrivr.cineast.core.data.m3d.WritableMesh;
@@ -106,6 +107,75 @@ public final class MeshTransformUtil {
             }
         }
 
+        /* 2a-c) Rotate the mesh. */
+        mesh.transform(MeshTransformUtil.getPCARotation(covariance, vertices));
+
+        /* 3) Center the mesh. */
+        MeshTransformUtil.centerInPlace(mesh);
+    }
+
+    /**
+     * Performs a Karhunen–Loève (KHL) Transformation on the provided ArrayMesh in the same way as
+     * {@link #khlTransformInPlace(WritableMesh, float)}, but on the arrays of the ArrayMesh.
+     *
+     * Since ArrayMeshes are immutable, the result is returned as a new ArrayMesh. The original ArrayMesh is not
+     * affected by the operation.
+     *
+     * @param mesh ArrayMesh that should be transformed.
+     * @param size Length of the longest edge of the mesh's bounding box (for scaling).
+     * @return KHL transformed copy of the original ArrayMesh
+     */
+    public static ArrayMesh khlTransform(ArrayMesh mesh, float size) {
+        /* Check if Mesh is empty. */
+        if (mesh.isEmpty()) {
+          return mesh;
+        }
+
+        /* 1) Scale the mesh. */
+        float[] bounds = mesh.bounds();
+        float max = Math.max(bounds[0]-bounds[1], Math.max(bounds[2]-bounds[3], bounds[4]-bounds[5]));
+        ArrayMesh scaled = mesh.transform(new Matrix4f().scale(size/max));
+
+        /* 2) Rotate the mesh along its PCA axis. */
+        Vector3fc barycenter = scaled.barycenter();
+
+        /* Prepare an empty covariance matrix. */
+        DenseMatrix64F covariance = new DenseMatrix64F(3,3);
+
+        long vertices = 0;
+        Vector3f vm = new Vector3f();
+        for (int f = 0; f < scaled.numberOfFaces(); f++) {
+            for (int c = 0; c < scaled.getFaceSize(f); c++) {
+                scaled.getPosition(scaled.getFaceVertex(f, c), vm).sub(barycenter);
+                covariance.add(0,0, vm.x * vm.x);
+                covariance.add(0,1, vm.y * vm.x);
+                covariance.add(0,2, vm.z * vm.x);
+                covariance.add(1,0, vm.y * vm.x);
+                covariance.add(1,1, vm.y * vm.y);
+                covariance.add(1,2, vm.y * vm.z);
+                covariance.add(2,0, vm.z * vm.x);
+                covariance.add(2,1, vm.z * vm.y);
+                covariance.add(2,2, vm.z * vm.z);
+                vertices++;
+            }
+        }
+
+        /* 2a-c) Rotate the mesh. */
+        ArrayMesh rotated = scaled.transform(MeshTransformUtil.getPCARotation(covariance, vertices));
+
+        /* 3) Center the mesh. */
+        return rotated.transform(new Matrix4f().translation(new Vector3f(rotated.barycenter()).negate()));
+    }
+
+    /**
+     * Calculates the rotation that aligns the PCA axis of a mesh with the axis of the coordinate-system, i.e.
+     * the largest spread with the x-axis and the second largest spread with the y-axis.
+     *
+     * @param covariance Sum of the covariances of all vertices; is normalized by this method.
+     * @param vertices Number of vertices that contributed to the covariance matrix.
+     * @return Rotation matrix.
+     */
+    private static Matrix4f getPCARotation(DenseMatrix64F covariance, long vertices) {
         /* Normalizes the matrix. */
         for (int i=0; i<covariance.data.length; i++) {
             covariance.data[i] /= vertices;
@@ -125,10 +195,7 @@ public final class MeshTransformUtil {
         /* 2c) Apply second rotation: Second largest spread should occur along the y-axis. */
         float angleY = yaxis.angle(eigenvectors.get(1).second);
         rotation.rotate(angleY, yaxis.cross(eigenvectors.get(1).second));
-        mesh.transform(rotation);
-
-        /* 3) Center the mesh. */
-        MeshTransformUtil.centerInPlace(mesh);
+        return rotation;
     }
 
     /**
@@ -0,0 +1,122 @@
+package org.vitrivr.cineast.tests.data.m3d;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.joml.Vector3i;
+import org.joml.Vector4i;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.data.m3d.ArrayMesh;
+import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
+import org.vitrivr.cineast.core.util.mesh.MeshTransformUtil;
+
+/**
+ * Compares the faces, vertex normals, bounding box, barycenter, surface area and transformations of an {@link ArrayMesh}
+ * with the ones of the {@link Mesh} it was created from.
+ */
+public class ArrayMeshTest {
+
+    /** Number of vertices per side of the random height field. */
+    private static final int SIDE = 12;
+
+    @Test
+    @DisplayName("Mesh Math Test")
+    void testMeshMath() {
+        final Mesh mesh = this.mesh(new Random(5));
+        final ArrayMesh array = ArrayMesh.from(mesh);
+        this.assertMesh(mesh, array);
+        assertEquals(mesh.surfaceArea(), array.surfaceArea());
+        assertArrayEquals(mesh.bounds(), array.bounds());
+        this.assertVector(mesh.barycenter(), array.barycenter());
+    }
+
+    @Test
+    @DisplayName("Transformation Test")
+    void testTransformation() {
+        final Mesh mesh = this.mesh(new Random(6));
+        final ArrayMesh array = ArrayMesh.from(mesh);
+        final Matrix4f transformation = new Matrix4f().rotateXYZ(0.3f, -1.2f, 2.0f).scale(1.7f).translate(0.5f, -2.0f, 0.25f);
+
+        /* Mesh.transform() keeps the vertex normals; a copy re-calculates them from the transformed positions. */
+        final Mesh transformed = new Mesh(mesh);
+        transformed.transform(transformation);
+        this.assertMesh(new Mesh(transformed), array.transform(transformation));
+
+        /* The transformation must not change the original ArrayMesh. */
+        this.assertMesh(mesh, array);
+    }
+
+    @Test
+    @DisplayName("KHL Transform Test")
+    void testKhlTransform() {
+        final Mesh mesh = this.mesh(new Random(7));
+        final Mesh expected = new Mesh(MeshTransformUtil.khlTransform(mesh, 1.0f));
+        final ArrayMesh actual = MeshTransformUtil.khlTransform(ArrayMesh.from(mesh), 1.0f);
+        this.assertMesh(expected, actual);
+        assertArrayEquals(expected.bounds(), actual.bounds());
+        this.assertVector(expected.barycenter(), actual.barycenter());
+    }
+
+    /**
+     * Checks that both meshes consist of the same faces and that their vertices have the same positions and normals.
+     */
+    private void assertMesh(ReadableMesh expected, ArrayMesh actual) {
+        assertEquals(expected.numberOfVertices(), actual.numberOfVertices());
+        assertEquals(expected.numberOfFaces(), actual.numberOfFaces());
+        final Vector3f vector = new Vector3f();
+        for (int v = 0; v < expected.numberOfVertices(); v++) {
+            this.assertVector(expected.getVertex(v).getPosition(), actual.getPosition(v, vector));
+            this.assertVector(expected.getVertex(v).getNormal(), actual.getNormal(v, vector));
+        }
+        final List<Mesh.Face> faces = expected.getFaces();
+        for (int f = 0; f < faces.size(); f++) {
+            final List<Mesh.Vertex> vertices = faces.get(f).getVertices();
+            assertEquals(faces.get(f).getType(), actual.getFaceType(f));
+            assertEquals(vertices.size(), actual.getFaceSize(f));
+            for (int c = 0; c < vertices.size(); c++) {
+                this.assertVector(vertices.get(c).getPosition(), actual.getPosition(actual.getFaceVertex(f, c), vector));
+            }
+        }
+    }
+
+    private void assertVector(Vector3fc expected, Vector3fc actual) {
+        assertEquals(expected.x(), actual.x());
+        assertEquals(expected.y(), actual.y());
+        assertEquals(expected.z(), actual.z());
+    }
+
+    /**
+     * Creates a random height field of shared vertices, whose cells are either quads or pairs of triangles, plus a
+     * degenerate triangle that repeats a vertex and has no valid normal.
+     */
+    private Mesh mesh(Random random) {
+        final Mesh mesh = new Mesh(2 * SIDE * SIDE, SIDE * SIDE);
+        for (int i = 0; i < SIDE; i++) {
+            for (int j = 0; j < SIDE; j++) {
+                mesh.addVertex(new Vector3f(i + random.nextFloat() * 0.5f, random.nextFloat(), j - random.nextFloat() * 0.5f), new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()));
+            }
+        }
+        for (int i = 0; i < SIDE - 1; i++) {
+            for (int j = 0; j < SIDE - 1; j++) {
+                final int a = i * SIDE + j, b = a + 1, c = a + SIDE + 1, d = a + SIDE;
+                if (random.nextBoolean()) {
+                    mesh.addFace(new Vector4i(a, b, c, d));
+                } else {
+                    mesh.addFace(new Vector3i(a, b, c));
+                    mesh.addFace(new Vector3i(a, c, d));
+                }
+            }
+        }
+        mesh.addFace(new Vector3i(0, 0, 1));
+        return mesh;
+    }
+}
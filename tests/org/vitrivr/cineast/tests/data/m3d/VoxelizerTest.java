@@ -0,0 +1,139 @@
+package org.vitrivr.cineast.tests.data.m3d;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.joml.Vector4i;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.data.m3d.ArrayMesh;
+import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.VoxelGrid;
+import org.vitrivr.cineast.core.data.m3d.Voxelizer;
+import org.vitrivr.cineast.core.util.math.MathConstants;
+import org.vitrivr.cineast.core.util.mesh.MeshMathUtil;
+
+/**
+ * Compares the voxels the {@link Voxelizer} sets for a small random mesh with the ones of the original, object-based
+ * voxelization and checks that they do not depend on the number of chunks the faces are split into.
+ */
+public class VoxelizerTest {
+
+    private static final int SIZE = 33;
+
+    private static final float RESOLUTION = 2.0f / (SIZE - 1);
+
+    private static final int FACES = 300;
+
+    private static final int[] CHUNKS = {1, 2, 3, 7, 64, FACES + 5};
+
+    @Test
+    @DisplayName("Voxel Occupancy Test")
+    void testOccupancy() {
+        final Mesh mesh = this.mesh(new Random(3));
+        final Voxelizer voxelizer = new Voxelizer(RESOLUTION);
+        final VoxelGrid expected = this.voxelize(mesh, new VoxelGrid(SIZE, SIZE, SIZE, RESOLUTION, false));
+        assertTrue(expected.isVisible());
+
+        for (int chunks : CHUNKS) {
+            this.assertOccupancy(expected, voxelizer.voxelize(mesh, new VoxelGrid(SIZE, SIZE, SIZE, RESOLUTION, false), chunks));
+            this.assertOccupancy(expected, voxelizer.voxelize(ArrayMesh.from(mesh), new VoxelGrid(SIZE, SIZE, SIZE, RESOLUTION, false), chunks));
+        }
+        this.assertOccupancy(expected, voxelizer.voxelize(mesh, SIZE, SIZE, SIZE));
+    }
+
+    private void assertOccupancy(VoxelGrid expected, VoxelGrid actual) {
+        assertEquals(expected.getVisible(), actual.getVisible());
+        assertEquals(expected.getInvisible(), actual.getInvisible());
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    assertEquals(expected.isVisible(x, y, z), actual.isVisible(x, y, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * Voxelizes the mesh the way the Voxelizer did before it was bit-packed and parallelized: Every voxel of the enclosing
+     * grid of a face is tested with a fresh center that is translated by the edge tests, as in the original code.
+     */
+    private VoxelGrid voxelize(Mesh mesh, VoxelGrid grid) {
+        final float rc = RESOLUTION / 2;
+        final float rcsq = (float) Math.pow(rc, 2);
+        for (Mesh.Face face : mesh.getFaces()) {
+            final List<Mesh.Vertex> vertices = face.getVertices();
+            final Vector3f a = new Vector3f(vertices.get(0).getPosition());
+            final Vector3f b = new Vector3f(vertices.get(1).getPosition());
+            final Vector3f c = new Vector3f(vertices.get(2).getPosition());
+            final float[] bounds = MeshMathUtil.bounds(vertices.stream().map(Mesh.Vertex::getPosition).collect(Collectors.toList()));
+            final Vector3i max = grid.coordinateToVoxel(new Vector3f(bounds[0], bounds[2], bounds[4]));
+            final Vector3i min = grid.coordinateToVoxel(new Vector3f(bounds[1], bounds[3], bounds[5]));
+            for (int i = min.x; i <= max.x; i++) {
+                for (int j = min.y; j <= max.y; j++) {
+                    for (int k = min.z; k <= max.z; k++) {
+                        final Vector3f center = grid.getVoxelCenter(i, j, k);
+                        if (a.distanceSquared(center) > rcsq || b.distanceSquared(center) > rcsq || c.distanceSquared(center) > rcsq
+                                || this.edgeTest(a, b, center, rc) || this.edgeTest(b, c, center, rc) || this.edgeTest(c, a, center, rc)
+                                || this.planeTest(a, b, c, center, rc)) {
+                            grid.toggleVoxel(true, i, j, k);
+                        }
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    private boolean edgeTest(Vector3f a, Vector3f b, Vector3f center, float rc) {
+        final Vector3f line = new Vector3f(b).sub(a);
+        final Vector3f pd = center.sub(a);
+        final float lsq = a.distanceSquared(b);
+        final float dot = line.dot(pd);
+        if (dot < 0.0f || dot > lsq) {
+            return false;
+        } else {
+            return pd.lengthSquared() - ((float) Math.pow(dot, 2)) / lsq > rc;
+        }
+    }
+
+    private boolean planeTest(Vector3f a, Vector3f b, Vector3f c, Vector3f center, float rc) {
+        final Vector3f corner = new Vector3f(rc, rc, rc).add(center);
+        final Vector3f normal = new Vector3f(b).sub(a).cross(new Vector3f(c).sub(a));
+        final float t = (float) (rc * MathConstants.SQRT3 * corner.angleCos(center));
+        final Vector3f plus = new Vector3f(normal.x + t, normal.y + t, normal.z + t);
+        final Vector3f minus = new Vector3f(normal.x - t, normal.y - t, normal.z - t);
+        return plus.dot(center) < 0 && minus.dot(center) > 0;
+    }
+
+    /**
+     * Creates a mesh of small, random triangles and quads that lies within the grid.
+     */
+    private Mesh mesh(Random random) {
+        final Mesh mesh = new Mesh(FACES, 4 * FACES);
+        for (int f = 0; f < FACES; f++) {
+            final Vector3f origin = new Vector3f(this.coordinate(random, 0.8f), this.coordinate(random, 0.8f), this.coordinate(random, 0.8f));
+            for (int v = 0; v < 4; v++) {
+                mesh.addVertex(new Vector3f(this.coordinate(random, 0.15f), this.coordinate(random, 0.15f), this.coordinate(random, 0.15f)).add(origin));
+            }
+            final int first = 4 * f;
+            if (f % 3 == 0) {
+                mesh.addFace(new Vector4i(first, first + 1, first + 2, first + 3));
+            } else {
+                mesh.addFace(new Vector3i(first, first + 1, first + 2));
+            }
+        }
+        return mesh;
+    }
+
+    private float coordinate(Random random, float range) {
+        return (2.0f * random.nextFloat() - 1.0f) * range;
+    }
+}
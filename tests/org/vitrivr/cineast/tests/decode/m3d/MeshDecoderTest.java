@@ -0,0 +1,207 @@
+package org.vitrivr.cineast.tests.decode.m3d;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.joml.Vector3fc;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.ReadableMesh;
+import org.vitrivr.cineast.core.decode.general.Decoder;
+import org.vitrivr.cineast.core.decode.m3d.OBJMeshDecoder;
+import org.vitrivr.cineast.core.decode.m3d.OFFMeshDecoder;
+import org.vitrivr.cineast.core.decode.m3d.STLMeshDecoder;
+
+/**
+ * Compares the coordinates read by the mesh decoders with the ones of {@link Float#parseFloat(String)} and checks that
+ * a small mesh survives a round-trip through every supported format.
+ */
+public class MeshDecoderTest {
+
+    /** Tokens the fast path of the tokenizer must parse exactly like {@link Float#parseFloat(String)}. */
+    private static final String[] TOKENS = {
+        "0", "-0", "+0.0", "-0.0", "0.1", "-0.1", ".5", "5.", "-.5e+3", "+1.5E+2", "7.0e-10", "1e22", "1E23", "1e-22", "1e-23",
+        "16777217", "16777219", "9007199254740993", "123456789012345678901234567890", "0.30000000000000004441",
+        "1.00000005960464477539062", "1.000000059604644775390625", "1.0000000596046447753906251", "3.4028235e38",
+        "3.4028236e38", "1.17549435E-38", "1.1754942E-38", "1.4e-45", "1e-45", "7e-46", "0.000000000000000000000000000000000000000000001",
+        "00012.5000", "-00000.000001", "2.7182818284590452353602874713527", "1e0", "1E-0", "6.02214076e+23"
+    };
+
+    /** Number of random tokens per kind. */
+    private static final int RANDOM_TOKENS = 3000;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("cineast-mesh-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    @Test
+    @DisplayName("Float Parsing Test")
+    void testFloatParsing() throws IOException {
+        final Random random = new Random(11);
+        final List<String> tokens = new ArrayList<>(Arrays.asList(TOKENS));
+        for (int i = 0; i < RANDOM_TOKENS; i++) {
+            /* Shortest representation of an arbitrary finite float, including subnormals and large exponents. */
+            float value;
+            do {
+                value = Float.intBitsToFloat(random.nextInt());
+            } while (Float.isNaN(value) || Float.isInfinite(value));
+            tokens.add(Float.toString(value));
+
+            /* Plain decimal with up to 25 digits, sign and exponent. */
+            StringBuilder token = new StringBuilder();
+            token.append(random.nextBoolean() ? "-" : (random.nextBoolean() ? "+" : ""));
+            final int digits = 1 + random.nextInt(25);
+            final int point = random.nextInt(digits + 1);
+            for (int d = 0; d < digits; d++) {
+                if (d == point) {
+                    token.append('.');
+                }
+                token.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextBoolean()) {
+                token.append(random.nextBoolean() ? 'e' : 'E').append(random.nextInt(90) - 45);
+            }
+            tokens.add(token.toString());
+
+            /* Decimal which lies close to the middle between two floats. */
+            final float f = 1.0f + random.nextInt(1 << 20) * Math.ulp(1.0f);
+            tokens.add(new BigDecimal(f).add(new BigDecimal(Math.ulp(1.0f) / 2)).toPlainString());
+        }
+        while (tokens.size() % 3 != 0) {
+            tokens.add("1");
+        }
+
+        StringBuilder obj = new StringBuilder("# float parsing\n");
+        for (int i = 0; i < tokens.size(); i += 3) {
+            obj.append("v ").append(tokens.get(i)).append(' ').append(tokens.get(i + 1)).append('\t').append(tokens.get(i + 2)).append('\n');
+        }
+        final ReadableMesh mesh = this.decode(new OBJMeshDecoder(), "parse.obj", obj.toString().getBytes(StandardCharsets.US_ASCII));
+
+        assertNotNull(mesh);
+        assertEquals(tokens.size() / 3, mesh.numberOfVertices());
+        for (int i = 0; i < tokens.size(); i += 3) {
+            final Vector3fc position = mesh.getVertex(i / 3).getPosition();
+            this.assertParsed(tokens.get(i), position.x());
+            this.assertParsed(tokens.get(i + 1), position.y());
+            this.assertParsed(tokens.get(i + 2), position.z());
+        }
+    }
+
+    @Test
+    @DisplayName("OBJ Round-Trip Test")
+    void testObj() throws IOException {
+        final String obj = "# pyramid\nv 0 0 0\nv 1.5 0 0\nv 1.5 1.5 0\nv 0 1.5 0\nv 0.75 0.75 -2.25e0\n"
+                + "vt 0 0\nvn 0 0 1\nf 1/1/1 2/1/1 3/1/1 4/1/1\nf 1//1 2//1 5//1\nf 2 3 5\nf 3 4 5\nf 4 1 5\n";
+        this.assertPyramid(this.decode(new OBJMeshDecoder(), "pyramid.obj", obj.getBytes(StandardCharsets.US_ASCII)), 5);
+    }
+
+    @Test
+    @DisplayName("OFF Round-Trip Test")
+    void testOff() throws IOException {
+        final String off = "OFF\n# pyramid\n5 5 0\n0 0 0\n1.5 0 0\n1.5 1.5 0\n0 1.5 0\n0.75 0.75 -2.25\n"
+                + "4 0 1 2 3\n3 0 1 4\n3 1 2 4\n3 2 3 4\n3 3 0 4\n";
+        this.assertPyramid(this.decode(new OFFMeshDecoder(), "pyramid.off", off.getBytes(StandardCharsets.US_ASCII)), 5);
+    }
+
+    @Test
+    @DisplayName("ASCII STL Round-Trip Test")
+    void testAsciiStl() throws IOException {
+        StringBuilder stl = new StringBuilder("solid pyramid\n");
+        for (float[][] triangle : this.triangles()) {
+            stl.append("  facet normal 0 0 0\n    outer loop\n");
+            for (float[] vertex : triangle) {
+                stl.append("      vertex ").append(vertex[0]).append(' ').append(vertex[1]).append(' ').append(vertex[2]).append('\n');
+            }
+            stl.append("    endloop\n  endfacet\n");
+        }
+        stl.append("endsolid pyramid\n");
+        this.assertPyramid(this.decode(new STLMeshDecoder(), "pyramid.stl", stl.toString().getBytes(StandardCharsets.US_ASCII)), 6);
+    }
+
+    @Test
+    @DisplayName("Binary STL Round-Trip Test")
+    void testBinaryStl() throws IOException {
+        final List<float[][]> triangles = this.triangles();
+        final ByteBuffer buffer = ByteBuffer.allocate(84 + 50 * triangles.size()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(80);
+        buffer.putInt(triangles.size());
+        for (float[][] triangle : triangles) {
+            buffer.putFloat(0.0f).putFloat(0.0f).putFloat(0.0f);
+            for (float[] vertex : triangle) {
+                buffer.putFloat(vertex[0]).putFloat(vertex[1]).putFloat(vertex[2]);
+            }
+            buffer.putShort((short) 0);
+        }
+        this.assertPyramid(this.decode(new STLMeshDecoder(), "pyramid-binary.stl", buffer.array()), 6);
+    }
+
+    /**
+     * Checks that the mesh is the pyramid used by the round-trip tests; STL has no quads, hence its base consists of two triangles.
+     */
+    private void assertPyramid(ReadableMesh mesh, int faces) {
+        assertNotNull(mesh);
+        assertEquals(5, mesh.numberOfVertices());
+        assertEquals(faces, mesh.numberOfFaces());
+        assertEquals(2.25 + 2.0 * 1.5 * Math.sqrt(2.25 * 2.25 + 0.75 * 0.75), mesh.surfaceArea(), 1e-5);
+        final float[] bounds = mesh.bounds();
+        assertArrayEquals(new float[]{1.5f, 0.0f, 1.5f, 0.0f, 0.0f, -2.25f}, bounds);
+        for (Mesh.Face face : mesh.getFaces()) {
+            for (Mesh.Vertex vertex : face.getVertices()) {
+                assertNotNull(vertex.getPosition());
+            }
+        }
+    }
+
+    /**
+     * The faces of the pyramid as triangles.
+     */
+    private List<float[][]> triangles() {
+        final float[][] v = {{0f, 0f, 0f}, {1.5f, 0f, 0f}, {1.5f, 1.5f, 0f}, {0f, 1.5f, 0f}, {0.75f, 0.75f, -2.25f}};
+        return Arrays.asList(
+            new float[][]{v[0], v[1], v[2]}, new float[][]{v[0], v[2], v[3]}, new float[][]{v[0], v[1], v[4]},
+            new float[][]{v[1], v[2], v[4]}, new float[][]{v[2], v[3], v[4]}, new float[][]{v[3], v[0], v[4]}
+        );
+    }
+
+    private ReadableMesh decode(Decoder<ReadableMesh> decoder, String name, byte[] content) throws IOException {
+        final Path file = this.directory.resolve(name);
+        Files.write(file, content);
+        decoder.init(file, null);
+        return decoder.getNext();
+    }
+
+    private void assertParsed(String token, float actual) {
+        assertEquals(Float.floatToIntBits(Float.parseFloat(token)), Float.floatToIntBits(actual), () -> "Token '" + token + "' parsed as " + actual);
+    }
+}
@@ -0,0 +1,104 @@
+package org.vitrivr.cineast.tests.features;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.util.FastMath;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.data.m3d.VoxelGrid;
+import org.vitrivr.cineast.core.data.m3d.Voxelizer;
+import org.vitrivr.cineast.core.features.SphericalHarmonics;
+import org.vitrivr.cineast.core.util.MathHelper;
+import org.vitrivr.cineast.core.util.math.functions.SphericalHarmonicsFunction;
+
+/**
+ * Compares the descriptors {@link SphericalHarmonics} calculates with its pre-calculated sampling tables with the ones
+ * of the original, direct evaluation for the grid sizes and harmonics of the default, low and high feature modules.
+ */
+public class SphericalHarmonicsTest {
+
+    /** Grid size, minimum and maximum harmonic of the feature modules. */
+    private static final int[][] CONFIGURATIONS = {{64, 0, 4}, {64, 0, 3}, {74, 1, 5}};
+
+    private static final float INCREMENT = 0.1f;
+
+    private static final int CAP = 10;
+
+    private static final int FACES = 200;
+
+    @Test
+    @DisplayName("Descriptor Test")
+    void testDescriptor() {
+        for (int[] configuration : CONFIGURATIONS) {
+            final int size = configuration[0];
+            final VoxelGrid grid = new Voxelizer(2.0f / size).voxelize(this.mesh(new Random(size)), size + 1, size + 1, size + 1);
+            final float[] expected = this.descriptor(grid, size, configuration[1], configuration[2]);
+            assertTrue(IntStream.range(0, expected.length).filter(i -> expected[i] > 0.0f).count() > expected.length / 2);
+            assertArrayEquals(expected, SphericalHarmonics.descriptor(grid, size, configuration[1], configuration[2]));
+
+            /* The tables are shared, hence a second call must yield the same result. */
+            assertArrayEquals(expected, SphericalHarmonics.descriptor(grid, size, configuration[1], configuration[2]));
+        }
+    }
+
+    @Test
+    @DisplayName("Empty Grid Test")
+    void testEmptyGrid() {
+        final VoxelGrid grid = new VoxelGrid(65, 65, 65, 2.0f / 64, false);
+        assertArrayEquals(new float[22 * 15], SphericalHarmonics.descriptor(grid, 64, 0, 4));
+    }
+
+    /**
+     * Calculates the descriptor the way SphericalHarmonics did before the sampling tables were introduced.
+     */
+    private float[] descriptor(VoxelGrid grid, int size, int min_l, int max_l) {
+        final int R = size / 2;
+        final int coefficients = SphericalHarmonicsFunction.numberOfCoefficients(max_l, true) - SphericalHarmonicsFunction.numberOfCoefficients(min_l - 1, true);
+        final float[] feature = new float[(R - CAP) * coefficients];
+        int c = 0;
+        for (int l = min_l; l <= max_l; l++) {
+            for (int m = 0; m <= l; m++, c++) {
+                final SphericalHarmonicsFunction fkt = new SphericalHarmonicsFunction(l, m);
+                for (int r = 0; r < R - CAP; r++) {
+                    Complex result = new Complex(0.0);
+                    for (float theta = 0.0f; theta <= 2 * Math.PI; theta += INCREMENT) {
+                        for (float phi = 0.0f; phi <= Math.PI; phi += INCREMENT) {
+                            final int x = (int) ((r + 1) * FastMath.sin(theta) * FastMath.cos(phi)) + R;
+                            final int y = (int) ((r + 1) * FastMath.cos(theta)) + R;
+                            final int z = (int) ((r + 1) * FastMath.sin(theta) * FastMath.sin(phi)) + R;
+                            if (grid.isVisible(x, y, z)) {
+                                result = result.add(fkt.value(theta, phi).conjugate().multiply(INCREMENT * INCREMENT));
+                            }
+                        }
+                    }
+                    feature[r * coefficients + c] = (float) result.abs();
+                }
+            }
+        }
+        return MathHelper.normalizeL2(feature);
+    }
+
+    /**
+     * Creates a mesh of random triangles within the unit sphere, which reach into all the sampled radii.
+     */
+    private Mesh mesh(Random random) {
+        final Mesh mesh = new Mesh(FACES, 3 * FACES);
+        for (int f = 0; f < FACES; f++) {
+            final Vector3f origin = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalize().mul(0.9f * random.nextFloat());
+            for (int v = 0; v < 3; v++) {
+                mesh.addVertex(new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).mul(0.1f).add(origin));
+            }
+            mesh.addFace(new Vector3i(3 * f, 3 * f + 1, 3 * f + 2));
+        }
+        return mesh;
+    }
+}
@@ -0,0 +1,129 @@
+package org.vitrivr.cineast.tests.features.codebook;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.ddogleg.clustering.kmeans.AssignKMeans_F64;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.features.codebook.CodebookTree;
+
+import boofcv.alg.scene.FeatureToWordHistogram_F64;
+import boofcv.struct.feature.TupleDesc_F64;
+
+/**
+ * Compares the histograms calculated by {@link CodebookTree} with the ones of BoofCV's FeatureToWordHistogram_F64 for
+ * random codebooks and descriptors.
+ */
+public class CodebookTreeTest {
+
+    private static final double DELTA = 1e-12;
+
+    private static final int WORDS = 256;
+
+    private static final int DIMENSIONS = 64;
+
+    private static final int DESCRIPTORS = 500;
+
+    private static final int RUNS = 5;
+
+    @Test
+    @DisplayName("Hard Assignment Test")
+    void testHardAssignment() {
+        for (int run = 0; run < RUNS; run++) {
+            this.executeTest(true, run);
+        }
+    }
+
+    @Test
+    @DisplayName("Soft Assignment Test")
+    void testSoftAssignment() {
+        for (int run = 0; run < RUNS; run++) {
+            this.executeTest(false, run);
+        }
+    }
+
+    @Test
+    @DisplayName("Duplicate Words Test")
+    void testDuplicateWords() {
+        final Random random = new Random(42);
+        final List<double[]> codebook = this.codebook(random);
+
+        /* Every descriptor equals a word that occurs twice; the word with the lower index must win the tie. */
+        final AssignKMeans_F64 assignment = new AssignKMeans_F64(codebook);
+        final CodebookTree tree = new CodebookTree(codebook);
+        for (int i = 0; i < WORDS; i += 16) {
+            final double[] descriptor = codebook.get(i + 1).clone();
+            assertEquals(i, assignment.assign(descriptor));
+            assertEquals(i, tree.assign(descriptor));
+        }
+    }
+
+    private void executeTest(boolean hard, long seed) {
+        final Random random = new Random(seed);
+        final List<double[]> codebook = this.codebook(random);
+        final List<TupleDesc_F64> descriptors = new ArrayList<>(DESCRIPTORS);
+        for (int i = 0; i < DESCRIPTORS; i++) {
+            final TupleDesc_F64 descriptor = new TupleDesc_F64(DIMENSIONS);
+            switch (i % 3) {
+                case 0:
+                    /* Exact copy of a word; every 16th word and its successor are duplicates. */
+                    System.arraycopy(codebook.get(random.nextInt(WORDS)), 0, descriptor.getValue(), 0, DIMENSIONS);
+                    break;
+                case 1:
+                    /* Close to a word. */
+                    final double[] word = codebook.get(random.nextInt(WORDS));
+                    for (int d = 0; d < DIMENSIONS; d++) {
+                        descriptor.getValue()[d] = word[d] + 0.05 * random.nextGaussian();
+                    }
+                    break;
+                default:
+                    /* Anywhere. */
+                    for (int d = 0; d < DIMENSIONS; d++) {
+                        descriptor.getValue()[d] = 2.0 * random.nextDouble() - 1.0;
+                    }
+            }
+            descriptors.add(descriptor);
+        }
+
+        final FeatureToWordHistogram_F64 expected = new FeatureToWordHistogram_F64(new AssignKMeans_F64(codebook), hard);
+        for (TupleDesc_F64 descriptor : descriptors) {
+            expected.addFeature(descriptor);
+        }
+        expected.process();
+
+        final double[] actual = new CodebookTree(codebook).histogram(hard, descriptors);
+        assertArrayEquals(expected.getHistogram(), actual, DELTA);
+    }
+
+    /**
+     * Creates a codebook of clustered words in which every 16th word occurs twice (at index i and i + 1).
+     */
+    private List<double[]> codebook(Random random) {
+        final double[][] centers = new double[8][DIMENSIONS];
+        for (double[] center : centers) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                center[d] = 2.0 * random.nextDouble() - 1.0;
+            }
+        }
+        final List<double[]> codebook = new ArrayList<>(WORDS);
+        for (int i = 0; i < WORDS; i++) {
+            if (i % 16 == 1) {
+                codebook.add(codebook.get(i - 1).clone());
+                continue;
+            }
+            final double[] center = centers[random.nextInt(centers.length)];
+            final double[] word = new double[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                word[d] = center[d] + 0.2 * random.nextGaussian();
+            }
+            codebook.add(word);
+        }
+        return codebook;
+    }
+}
@@ -0,0 +1,147 @@
+package org.vitrivr.cineast.tests.features.codebook;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.features.codebook.DescriptorReservoir;
+
+import boofcv.struct.feature.TupleDesc_F64;
+
+/**
+ * Compares the descriptors kept by a {@link DescriptorReservoir} with the ones that were added and checks that the
+ * sample has the expected size, is uniform and only depends on the seed.
+ */
+public class DescriptorReservoirTest {
+
+    private static final int DIMENSIONS = 8;
+
+    private static final int CAPACITY = 500;
+
+    private static final int BATCH = 64;
+
+    @Test
+    @DisplayName("Round-Trip Test")
+    void testRoundTrip() throws IOException {
+        final List<TupleDesc_F64> descriptors = this.descriptors(new Random(1), CAPACITY - 7);
+        try (DescriptorReservoir reservoir = new DescriptorReservoir(DIMENSIONS, CAPACITY, 1)) {
+            this.add(reservoir, descriptors);
+            reservoir.finish();
+            assertEquals(descriptors.size(), reservoir.size());
+            assertEquals(descriptors.size(), reservoir.seen());
+
+            /* As long as the reservoir is not full, every descriptor is kept in the order of addition (as float). */
+            final double[] descriptor = new double[DIMENSIONS];
+            for (int i = 0; i < descriptors.size(); i++) {
+                reservoir.get(i, descriptor);
+                assertArrayEquals(this.toFloat(descriptors.get(i).getValue()), descriptor);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Capacity Test")
+    void testCapacity() throws IOException {
+        final Random random = new Random(2);
+        try (DescriptorReservoir reservoir = new DescriptorReservoir(DIMENSIONS, CAPACITY, 2)) {
+            int added = 0;
+            for (int batch : new int[]{0, 1, CAPACITY - 2, 1, 1, 3 * CAPACITY}) {
+                this.add(reservoir, this.descriptors(random, batch));
+                added += batch;
+                assertEquals(Math.min(added, CAPACITY), reservoir.size());
+                assertEquals(added, reservoir.seen());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Sampling Test")
+    void testSampling() throws IOException {
+        final List<TupleDesc_F64> descriptors = this.descriptors(new Random(3), 20 * CAPACITY);
+        final List<double[]> first = this.sample(descriptors, 7);
+        final List<double[]> second = this.sample(descriptors, 7);
+        final List<double[]> other = this.sample(descriptors, 8);
+
+        /* The sample only depends on the seed. */
+        assertEquals(CAPACITY, first.size());
+        boolean differs = false;
+        for (int i = 0; i < CAPACITY; i++) {
+            assertArrayEquals(first.get(i), second.get(i));
+            differs |= first.get(i)[0] != other.get(i)[0];
+        }
+        assertTrue(differs);
+
+        /* Every kept descriptor was added exactly once, and every part of the stream is represented about equally. */
+        final Set<Integer> kept = new HashSet<>();
+        final int[] parts = new int[4];
+        for (double[] descriptor : first) {
+            final int index = (int) descriptor[0];
+            assertArrayEquals(this.toFloat(descriptors.get(index).getValue()), descriptor);
+            assertTrue(kept.add(index));
+            parts[index * parts.length / descriptors.size()]++;
+        }
+        for (int part : parts) {
+            assertTrue(Math.abs(part - CAPACITY / parts.length) < CAPACITY / parts.length / 3, () -> "Sample is not uniform: " + part);
+        }
+    }
+
+    /**
+     * Adds all descriptors to a new reservoir with the provided seed and returns the descriptors it kept.
+     */
+    private List<double[]> sample(List<TupleDesc_F64> descriptors, long seed) throws IOException {
+        try (DescriptorReservoir reservoir = new DescriptorReservoir(DIMENSIONS, CAPACITY, seed)) {
+            this.add(reservoir, descriptors);
+            reservoir.finish();
+            final List<double[]> sample = new ArrayList<>(reservoir.size());
+            for (int i = 0; i < reservoir.size(); i++) {
+                final double[] descriptor = new double[DIMENSIONS];
+                reservoir.get(i, descriptor);
+                sample.add(descriptor);
+            }
+            return sample;
+        }
+    }
+
+    /**
+     * Adds the descriptors in batches, like the codebook generators do per image.
+     */
+    private void add(DescriptorReservoir reservoir, List<TupleDesc_F64> descriptors) throws IOException {
+        for (int i = 0; i < descriptors.size(); i += BATCH) {
+            reservoir.add(descriptors.subList(i, Math.min(descriptors.size(), i + BATCH)));
+        }
+    }
+
+    /**
+     * Creates random descriptors whose first component is their index, which is exact in single precision.
+     */
+    private List<TupleDesc_F64> descriptors(Random random, int count) {
+        final List<TupleDesc_F64> descriptors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final TupleDesc_F64 descriptor = new TupleDesc_F64(DIMENSIONS);
+            descriptor.getValue()[0] = i;
+            for (int d = 1; d < DIMENSIONS; d++) {
+                descriptor.getValue()[d] = random.nextGaussian();
+            }
+            descriptors.add(descriptor);
+        }
+        return descriptors;
+    }
+
+    private double[] toFloat(double[] values) {
+        final double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+}
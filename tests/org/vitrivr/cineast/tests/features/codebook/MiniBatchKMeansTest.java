@@ -0,0 +1,109 @@
+package org.vitrivr.cineast.tests.features.codebook;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.ddogleg.clustering.kmeans.AssignKMeans_F64;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.features.codebook.CodebookTree;
+import org.vitrivr.cineast.core.features.codebook.DescriptorReservoir;
+import org.vitrivr.cineast.core.features.codebook.MiniBatchKMeans;
+
+import boofcv.struct.feature.TupleDesc_F64;
+
+/**
+ * Compares the words found by {@link MiniBatchKMeans} with the centers of well-separated, synthetic clusters and checks
+ * that the resulting codebook can be used by a {@link CodebookTree}.
+ */
+public class MiniBatchKMeansTest {
+
+    private static final int WORDS = 8;
+
+    private static final int DIMENSIONS = 16;
+
+    private static final int DESCRIPTORS_PER_WORD = 250;
+
+    /** Spread of the cluster centers and standard deviation of the descriptors around them. */
+    private static final double SPREAD = 100.0, NOISE = 1.0;
+
+    /** Maximum distance between a word and the center of its cluster. */
+    private static final double TOLERANCE = 1.0;
+
+    @Test
+    @DisplayName("Cluster Recovery Test")
+    void testClusterRecovery() throws IOException {
+        final Random random = new Random(4);
+        final double[][] centers = new double[WORDS][DIMENSIONS];
+        for (double[] center : centers) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                center[d] = SPREAD * random.nextDouble();
+            }
+        }
+        final List<TupleDesc_F64> descriptors = new ArrayList<>(WORDS * DESCRIPTORS_PER_WORD);
+        for (int i = 0; i < WORDS * DESCRIPTORS_PER_WORD; i++) {
+            final TupleDesc_F64 descriptor = new TupleDesc_F64(DIMENSIONS);
+            for (int d = 0; d < DIMENSIONS; d++) {
+                descriptor.getValue()[d] = centers[i % WORDS][d] + NOISE * random.nextGaussian();
+            }
+            descriptors.add(descriptor);
+        }
+
+        final AssignKMeans_F64 assignment;
+        try (DescriptorReservoir reservoir = new DescriptorReservoir(DIMENSIONS, descriptors.size(), 4)) {
+            reservoir.add(descriptors);
+            reservoir.finish();
+            assignment = new MiniBatchKMeans(WORDS, 100, 200, 4, false).process(reservoir);
+        }
+
+        /* Every cluster must be represented by exactly one word close to its center. */
+        assertEquals(WORDS, assignment.getClusters().size());
+        final boolean[] used = new boolean[WORDS];
+        final int[] words = new int[WORDS];
+        for (int c = 0; c < WORDS; c++) {
+            words[c] = assignment.assign(centers[c]);
+            assertFalse(used[words[c]], "Two clusters share a word.");
+            used[words[c]] = true;
+            assertTrue(this.distance(centers[c], assignment.getClusters().get(words[c])) < TOLERANCE);
+        }
+
+        /* The codebook must be usable by a CodebookTree, which assigns the descriptors to the words of their clusters. */
+        final CodebookTree tree = CodebookTree.from(assignment);
+        assertNotNull(tree);
+        assertEquals(WORDS, tree.getNumberOfWords());
+        for (int i = 0; i < descriptors.size(); i++) {
+            assertEquals(words[i % WORDS], tree.assign(descriptors.get(i).getValue()));
+        }
+    }
+
+    @Test
+    @DisplayName("Too Few Descriptors Test")
+    void testTooFewDescriptors() throws IOException {
+        try (DescriptorReservoir reservoir = new DescriptorReservoir(DIMENSIONS, 100, 5)) {
+            final List<TupleDesc_F64> descriptors = new ArrayList<>();
+            for (int i = 0; i < WORDS - 1; i++) {
+                descriptors.add(new TupleDesc_F64(DIMENSIONS));
+            }
+            reservoir.add(descriptors);
+            reservoir.finish();
+            assertThrows(IllegalArgumentException.class, () -> new MiniBatchKMeans(WORDS, 100, 10, 5, false).process(reservoir));
+        }
+    }
+
+    private double distance(double[] a, double[] b) {
+        double distance = 0.0;
+        for (int d = 0; d < a.length; d++) {
+            distance += (a[d] - b[d]) * (a[d] - b[d]);
+        }
+        return Math.sqrt(distance);
+    }
+}
@@ -0,0 +1,128 @@
+package org.vitrivr.cineast.tests.render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.joml.Vector3f;
+import org.joml.Vector4i;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.data.m3d.Mesh;
+import org.vitrivr.cineast.core.render.SoftwareRenderer;
+
+/**
+ * Compares the silhouettes rendered by the {@link SoftwareRenderer} with the projections of known meshes under the
+ * 45° perspective the renderer shares with the JOGLOffscreenRenderer.
+ */
+public class SoftwareRendererTest {
+
+    private static final int SIZE = 128;
+
+    /** Distance of the camera from the origin. */
+    private static final float DISTANCE = 2.0f;
+
+    /** Number of pixels at the edge of a silhouette that are not checked. */
+    private static final int EDGE = 2;
+
+    private static final Vector3f WHITE = new Vector3f(1.0f, 1.0f, 1.0f);
+    private static final Vector3f RED = new Vector3f(1.0f, 0.0f, 0.0f);
+    private static final Vector3f BLUE = new Vector3f(0.0f, 0.0f, 1.0f);
+
+    @Test
+    @DisplayName("Square Silhouette Test")
+    void testSquareSilhouette() {
+        final SoftwareRenderer renderer = new SoftwareRenderer(SIZE, SIZE);
+        renderer.clear(Color.BLACK);
+        renderer.assemble(this.square(0.0f, 0.0f, 0.0f, 0.5f, WHITE));
+        renderer.positionCamera(0.0f, 0.0f, DISTANCE);
+        renderer.render();
+        final BufferedImage image = renderer.obtain();
+
+        final double extent = this.project(0.5f, DISTANCE);
+        int covered = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                final double dx = Math.abs(x + 0.5 - SIZE / 2.0);
+                final double dy = Math.abs(y + 0.5 - SIZE / 2.0);
+                final boolean white = image.getRGB(x, y) == Color.WHITE.getRGB();
+                if (dx < extent - EDGE && dy < extent - EDGE) {
+                    assertTrue(white, "Pixel (" + x + "," + y + ") lies inside the silhouette.");
+                } else if (dx > extent + EDGE || dy > extent + EDGE) {
+                    assertEquals(Color.BLACK.getRGB(), image.getRGB(x, y), "Pixel (" + x + "," + y + ") lies outside the silhouette.");
+                }
+                if (white) {
+                    covered += 1;
+                }
+            }
+        }
+        assertEquals(4.0 * extent * extent, covered, 4.0 * extent);
+    }
+
+    @Test
+    @DisplayName("Orientation Test")
+    void testOrientation() {
+        /* A square in the upper right quadrant appears in the upper right quadrant of the AWT image. */
+        final SoftwareRenderer renderer = new SoftwareRenderer(SIZE, SIZE);
+        renderer.clear(Color.BLACK);
+        renderer.assemble(this.square(0.4f, 0.4f, 0.0f, 0.2f, WHITE));
+        renderer.positionCamera(0.0f, 0.0f, DISTANCE);
+        renderer.render();
+        final BufferedImage image = renderer.obtain();
+
+        final int centre = (int) Math.round(SIZE / 2.0 + this.project(0.4f, DISTANCE));
+        assertEquals(Color.WHITE.getRGB(), image.getRGB(centre, SIZE - centre));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(centre, centre));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(SIZE - centre, SIZE - centre));
+        assertEquals(Color.BLACK.getRGB(), image.getRGB(SIZE - centre, centre));
+    }
+
+    @Test
+    @DisplayName("Occlusion Test")
+    void testOcclusion() {
+        /* The nearer square must cover the farther one regardless of the order in which they are assembled. */
+        for (boolean nearFirst : new boolean[]{true, false}) {
+            final SoftwareRenderer renderer = new SoftwareRenderer(SIZE, SIZE);
+            renderer.clear(Color.BLACK);
+            final Mesh near = this.square(0.0f, 0.0f, 0.5f, 0.2f, RED);
+            final Mesh far = this.square(0.0f, 0.0f, 0.0f, 0.5f, BLUE);
+            renderer.assemble(nearFirst ? near : far);
+            renderer.assemble(nearFirst ? far : near);
+            renderer.positionCamera(0.0f, 0.0f, DISTANCE);
+            renderer.render();
+            final BufferedImage image = renderer.obtain();
+
+            final int nearExtent = (int) Math.floor(this.project(0.2f, DISTANCE - 0.5f)) - EDGE;
+            final int farExtent = (int) Math.floor(this.project(0.5f, DISTANCE)) - EDGE;
+            assertEquals(Color.RED.getRGB(), image.getRGB(SIZE / 2, SIZE / 2));
+            assertEquals(Color.RED.getRGB(), image.getRGB(SIZE / 2 + nearExtent, SIZE / 2 - nearExtent));
+            assertEquals(Color.BLUE.getRGB(), image.getRGB(SIZE / 2 + nearExtent + 2 * EDGE, SIZE / 2));
+            assertEquals(Color.BLUE.getRGB(), image.getRGB(SIZE / 2 - farExtent, SIZE / 2 + farExtent));
+            assertEquals(Color.BLACK.getRGB(), image.getRGB(0, 0));
+        }
+    }
+
+    /**
+     * Returns the distance in pixels from the centre of the image at which a point at the provided distance from the
+     * optical axis appears, if it lies at the provided depth in front of the camera.
+     */
+    private double project(float offset, float depth) {
+        return offset / (depth * Math.tan(Math.toRadians(22.5))) * SIZE / 2.0;
+    }
+
+    /**
+     * Creates a uniformly coloured, axis-aligned square facing the positive z-axis.
+     */
+    private Mesh square(float x, float y, float z, float half, Vector3f color) {
+        final Mesh mesh = new Mesh(1, 4);
+        mesh.addVertex(new Vector3f(x - half, y - half, z), color);
+        mesh.addVertex(new Vector3f(x + half, y - half, z), color);
+        mesh.addVertex(new Vector3f(x + half, y + half, z), color);
+        mesh.addVertex(new Vector3f(x - half, y + half, z), color);
+        mesh.addFace(new Vector4i(0, 1, 2, 3));
+        return mesh;
+    }
+}
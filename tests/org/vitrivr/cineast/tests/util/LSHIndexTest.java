@@ -0,0 +1,198 @@
+package org.vitrivr.cineast.tests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.data.distance.SegmentDistanceElement;
+import org.vitrivr.cineast.core.util.LSHIndex;
+
+/**
+ * Compares the results of an {@link LSHIndex} with the exact nearest neighbours of random vectors and checks that
+ * vectors survive flushing and re-indexing.
+ */
+public class LSHIndexTest {
+
+    private static final double DELTA = 1e-6;
+
+    private static final int DIMENSIONS = 32;
+
+    private static final int SEGMENTS = 400;
+
+    private static final int VECTORS_PER_SEGMENT = 5;
+
+    private static final int K = 10;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("cineast-lsh-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    @Test
+    @DisplayName("Round-Trip Test")
+    void testRoundTrip() throws IOException {
+        final LSHIndex index = LSHIndex.forFile(new File(this.directory.toFile(), "roundtrip.lsh"));
+        final Random random = new Random(1);
+        final List<float[]> vectors = this.vectors(random);
+        assertFalse(index.available());
+
+        /* Two flushes between the vectors of two segments; the second one must keep the vectors of the first. */
+        final int half = vectors.size() / 2;
+        for (int v = 0; v < vectors.size(); v++) {
+            index.add(this.segment(v), vectors.get(v));
+            if (v == half - 1) {
+                index.flush();
+                assertTrue(index.available());
+            }
+        }
+        assertEquals(half, index.vectors());
+        index.flush();
+        assertEquals(vectors.size(), index.vectors());
+        assertEquals(SEGMENTS, index.size());
+        assertFalse(Files.exists(this.directory.resolve("roundtrip.lsh.pending")));
+
+        /* Every vector finds its own segment at distance zero. */
+        for (int v = 0; v < vectors.size(); v++) {
+            final List<SegmentDistanceElement> results = index.query(vectors.get(v), K);
+            assertEquals(this.segment(v), results.get(0).getSegmentId());
+            assertEquals(0.0, results.get(0).getDistance(), DELTA);
+            for (int i = 1; i < results.size(); i++) {
+                assertTrue(results.get(i - 1).getDistance() <= results.get(i).getDistance());
+            }
+        }
+
+        /* Re-indexing a segment replaces all its vectors. */
+        final float[] replacement = this.vectors(new Random(2)).get(0);
+        index.add(this.segment(0), replacement);
+        index.flush();
+        assertEquals(vectors.size() - VECTORS_PER_SEGMENT + 1, index.vectors());
+        assertEquals(SEGMENTS, index.size());
+        final List<SegmentDistanceElement> replaced = index.query(replacement, K);
+        assertEquals(this.segment(0), replaced.get(0).getSegmentId());
+        assertEquals(0.0, replaced.get(0).getDistance(), DELTA);
+        for (SegmentDistanceElement result : index.query(vectors.get(1), K)) {
+            assertTrue(!result.getSegmentId().equals(this.segment(0)) || result.getDistance() > DELTA);
+        }
+    }
+
+    @Test
+    @DisplayName("Recall Test")
+    void testRecall() throws IOException {
+        final LSHIndex index = LSHIndex.forFile(new File(this.directory.toFile(), "recall.lsh"));
+        final Random random = new Random(3);
+        final List<float[]> vectors = this.vectors(random);
+        for (int v = 0; v < vectors.size(); v++) {
+            index.add(this.segment(v), vectors.get(v));
+        }
+        index.flush();
+
+        /* Queries close to stored vectors; the closest segments must be found in most cases. */
+        int found = 0;
+        int total = 0;
+        for (int q = 0; q < 100; q++) {
+            final float[] query = this.perturb(vectors.get(random.nextInt(vectors.size())), random, 0.05f);
+            final Set<String> expected = this.exact(vectors, query, K);
+            for (SegmentDistanceElement result : index.query(query, K)) {
+                if (expected.contains(result.getSegmentId())) {
+                    found += 1;
+                }
+            }
+            total += expected.size();
+        }
+        assertTrue(found >= 0.8 * total, () -> "Recall too low.");
+    }
+
+    /**
+     * Returns the segments of the k vectors closest to the query.
+     */
+    private Set<String> exact(List<float[]> vectors, float[] query, int k) {
+        final List<SegmentDistanceElement> distances = new ArrayList<>();
+        for (int v = 0; v < vectors.size(); v++) {
+            double sum = 0.0;
+            for (int i = 0; i < DIMENSIONS; i++) {
+                final double d = vectors.get(v)[i] - query[i];
+                sum += d * d;
+            }
+            distances.add(new SegmentDistanceElement(this.segment(v), Math.sqrt(sum)));
+        }
+        distances.sort((a, b) -> Double.compare(a.getDistance(), b.getDistance()));
+        final Set<String> segments = new HashSet<>();
+        for (SegmentDistanceElement distance : distances) {
+            if (segments.size() == k) {
+                break;
+            }
+            segments.add(distance.getSegmentId());
+        }
+        return segments;
+    }
+
+    private String segment(int vector) {
+        return "s_" + (vector / VECTORS_PER_SEGMENT);
+    }
+
+    /**
+     * Creates L2-normalised vectors around a few random centres.
+     */
+    private List<float[]> vectors(Random random) {
+        final List<float[]> centres = new ArrayList<>();
+        for (int c = 0; c < 20; c++) {
+            final float[] centre = new float[DIMENSIONS];
+            for (int i = 0; i < DIMENSIONS; i++) {
+                centre[i] = (float) random.nextGaussian();
+            }
+            centres.add(this.normalise(centre));
+        }
+        final List<float[]> vectors = new ArrayList<>(SEGMENTS * VECTORS_PER_SEGMENT);
+        for (int v = 0; v < SEGMENTS * VECTORS_PER_SEGMENT; v++) {
+            vectors.add(this.perturb(centres.get(random.nextInt(centres.size())), random, 0.3f));
+        }
+        return vectors;
+    }
+
+    private float[] perturb(float[] vector, Random random, float sigma) {
+        final float[] perturbed = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            perturbed[i] = vector[i] + sigma * (float) random.nextGaussian() / (float) Math.sqrt(DIMENSIONS);
+        }
+        return this.normalise(perturbed);
+    }
+
+    private float[] normalise(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
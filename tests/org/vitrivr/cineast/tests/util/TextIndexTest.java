@@ -0,0 +1,237 @@
+package org.vitrivr.cineast.tests.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.data.score.SegmentScoreElement;
+import org.vitrivr.cineast.core.util.TextIndex;
+
+/**
+ * Compares the scores of a {@link TextIndex} with the ones of a plain BM25 implementation on random texts and checks
+ * phrases, prefix terms and that the results do not depend on how often the index has been flushed.
+ */
+public class TextIndexTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private static final int SEGMENTS = 300;
+
+    private static final int WORDS = 40;
+
+    private static final int FLUSHES = 10;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("cineast-text-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    @Test
+    @DisplayName("BM25 Test")
+    void testBM25() throws IOException {
+        final Random random = new Random(1);
+        final Map<String, String> texts = this.texts(random);
+        final TextIndex index = TextIndex.forFile(new File(this.directory.toFile(), "bm25.idx"));
+        assertFalse(index.available());
+        texts.forEach(index::add);
+        index.flush();
+        assertTrue(index.available());
+        assertEquals(SEGMENTS, index.size());
+
+        for (String query : new String[]{"w3", "w0 w7", "w1 w2 w5 w11", "w39 unknown"}) {
+            final Map<String, Double> expected = this.bm25(texts, query);
+            final List<SegmentScoreElement> actual = index.query(query, SEGMENTS);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(expected.get(actual.get(i).getSegmentId()), actual.get(i).getScore(), DELTA);
+                if (i > 0) {
+                    assertTrue(actual.get(i - 1).getScore() >= actual.get(i).getScore());
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Phrase Test")
+    void testPhrases() throws IOException {
+        final TextIndex index = TextIndex.forFile(new File(this.directory.toFile(), "phrase.idx"));
+        index.add("a", "The end of the movie.");
+        index.add("b", "The end came; no movie has the end.");
+        index.add("c", "The");
+        index.add("c", "End of the line");
+        index.add("d", "Nothing to see here");
+        index.flush();
+
+        /* The phrase must occur in sequence and within a single text. */
+        final Map<String, Double> scores = this.scores(index.query("\"the end\"", 10));
+        assertEquals(2, scores.size());
+        assertTrue(scores.containsKey("a"));
+        assertTrue(scores.containsKey("b"));
+        assertTrue(scores.get("b") > scores.get("a"));
+        assertTrue(index.query("\"end the\"", 10).isEmpty());
+        assertTrue(index.query("\"the nothing\"", 10).isEmpty());
+
+        /* A phrase of one token is a term. */
+        assertEquals(this.scores(index.query("movie", 10)), this.scores(index.query("\"Movie\"", 10)));
+    }
+
+    @Test
+    @DisplayName("Prefix Test")
+    void testPrefixes() throws IOException {
+        final TextIndex index = TextIndex.forFile(new File(this.directory.toFile(), "prefix.idx"));
+        index.add("a", "explosion");
+        index.add("b", "exploring the explosion");
+        index.add("c", "expert");
+        index.add("d", "an explorer explores");
+        index.flush();
+
+        final Map<String, Double> scores = this.scores(index.query("explo*", 10));
+        assertEquals(3, scores.size());
+        assertFalse(scores.containsKey("c"));
+        assertTrue(index.query("explosions*", 10).isEmpty());
+
+        /* Every segment is scored with its best matching expansion rather than the sum of all expansions. */
+        final Map<String, Double> explosion = this.scores(index.query("explosion", 10));
+        assertTrue(scores.get("a") <= explosion.get("a") + DELTA);
+        assertTrue(scores.get("b") < explosion.get("b") * 2.0);
+    }
+
+    @Test
+    @DisplayName("Flush Merging Test")
+    void testFlushMerging() throws IOException {
+        final Random random = new Random(2);
+        final Map<String, String> texts = this.texts(random);
+        final TextIndex once = TextIndex.forFile(new File(this.directory.toFile(), "once.idx"));
+        final TextIndex often = TextIndex.forFile(new File(this.directory.toFile(), "often.idx"));
+
+        /* Flush often and re-index some segments with new texts in later parts. */
+        int added = 0;
+        for (Map.Entry<String, String> text : texts.entrySet()) {
+            text.setValue("outdated " + text.getValue());
+            often.add(text.getKey(), text.getValue());
+            if (++added % (SEGMENTS / FLUSHES) == 0) {
+                often.flush();
+                assertEquals(added, often.size());
+            }
+        }
+        for (int flush = 0; flush < FLUSHES; flush++) {
+            for (int s = flush; s < SEGMENTS; s += FLUSHES / 2 + flush) {
+                final String id = this.segment(s);
+                texts.put(id, this.text(random));
+                often.add(id, texts.get(id));
+            }
+            often.flush();
+            assertEquals(SEGMENTS, often.size());
+        }
+        texts.forEach(once::add);
+        once.flush();
+        assertTrue(this.parts("often.idx") < FLUSHES);
+
+        for (String query : new String[]{"outdated", "w4 w8", "w1*", "\"w2 w3\" w9", "w1* \"w0 w0\""}) {
+            assertEquals(this.scores(once.query(query, SEGMENTS)), this.scores(often.query(query, SEGMENTS)));
+        }
+    }
+
+    /**
+     * Scores the texts with BM25, normalized by the highest score the query could reach.
+     */
+    private Map<String, Double> bm25(Map<String, String> texts, String query) {
+        final Map<String, List<String>> tokens = new HashMap<>();
+        double sum = 0.0;
+        for (Map.Entry<String, String> text : texts.entrySet()) {
+            tokens.put(text.getKey(), TextIndex.tokenize(text.getValue()));
+            sum += tokens.get(text.getKey()).size();
+        }
+        final double average = Math.max(1.0, sum / texts.size());
+        final Map<String, Double> scores = new HashMap<>();
+        double maximum = 0.0;
+        for (String term : TextIndex.tokenize(query)) {
+            final long df = tokens.values().stream().filter(list -> list.contains(term)).count();
+            final double idf = Math.log(1.0 + (texts.size() - df + 0.5) / (df + 0.5));
+            maximum += idf * (K1 + 1.0);
+            for (Map.Entry<String, List<String>> entry : tokens.entrySet()) {
+                final long tf = entry.getValue().stream().filter(term::equals).count();
+                if (tf > 0) {
+                    final double norm = K1 * (1.0 - B + B * entry.getValue().size() / average);
+                    scores.merge(entry.getKey(), idf * tf * (K1 + 1.0) / (tf + norm), Double::sum);
+                }
+            }
+        }
+        final double normalization = maximum;
+        scores.replaceAll((id, score) -> Math.min(1.0, score / normalization));
+        return scores;
+    }
+
+    private Map<String, Double> scores(List<SegmentScoreElement> results) {
+        final Map<String, Double> scores = new HashMap<>();
+        for (SegmentScoreElement result : results) {
+            scores.put(result.getSegmentId(), result.getScore());
+        }
+        return scores;
+    }
+
+    /**
+     * Counts the part files of an index.
+     */
+    private long parts(String name) throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(file -> file.getFileName().toString().matches(name.replace(".", "\\.") + "\\.\\d+")).count();
+        }
+    }
+
+    private Map<String, String> texts(Random random) {
+        final Map<String, String> texts = new LinkedHashMap<>();
+        for (int s = 0; s < SEGMENTS; s++) {
+            texts.put(this.segment(s), this.text(random));
+        }
+        return texts;
+    }
+
+    /**
+     * Creates a text of random words whose frequencies decrease with their index.
+     */
+    private String text(Random random) {
+        final String[] words = new String[5 + random.nextInt(30)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = "w" + (int) (WORDS * Math.pow(random.nextDouble(), 2.0));
+        }
+        return String.join(random.nextBoolean() ? " " : ", ", Arrays.asList(words));
+    }
+
+    private String segment(int s) {
+        return "s_" + s;
+    }
+}
@@ -0,0 +1,169 @@
+package org.vitrivr.cineast.tests.util.audio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.util.audio.FingerprintIndex;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Compares the segments a {@link FingerprintIndex} returns for excerpts of random fingerprints with the segments the
+ * excerpts were taken from and checks that fingerprints survive flushing, merging and re-indexing.
+ */
+public class FingerprintIndexTest {
+
+    private static final int SEGMENTS = 64;
+
+    private static final int HASHES = 300;
+
+    private static final int EXCERPT = 60;
+
+    private static final int FLUSHES = 8;
+
+    private static final int MIN_VOTES = 5;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("cineast-fingerprint-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    @Test
+    @DisplayName("Round-Trip Test")
+    void testRoundTrip() throws IOException {
+        final FingerprintIndex index = FingerprintIndex.forFile(new File(this.directory.toFile(), "roundtrip.idx"));
+        final Random random = new Random(1);
+        final int[][] hashes = new int[SEGMENTS][];
+        assertFalse(index.available());
+
+        /* Every flush writes a part; the parts must be merged along the way. */
+        for (int s = 0; s < SEGMENTS; s++) {
+            hashes[s] = this.hashes(random);
+            index.add(this.segment(s), hashes[s], this.offsets(0));
+            if ((s + 1) % (SEGMENTS / FLUSHES) == 0) {
+                index.flush();
+                assertTrue(index.available());
+                assertEquals(s + 1, index.size());
+            }
+        }
+        assertTrue(this.parts("roundtrip.idx") < FLUSHES / 2);
+
+        /* An excerpt of a fingerprint must find its segment with every hash aligned. */
+        for (int s = 0; s < SEGMENTS; s++) {
+            final int start = random.nextInt(HASHES - EXCERPT);
+            final TObjectIntHashMap<String> results = this.query(index, hashes[s], start);
+            assertEquals(EXCERPT, results.get(this.segment(s)));
+            assertEquals(1, results.size());
+        }
+
+        /* Random hashes must not match. */
+        assertTrue(index.query(this.hashes(random), this.offsets(0), MIN_VOTES).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Re-Index Test")
+    void testReIndex() throws IOException {
+        final FingerprintIndex index = FingerprintIndex.forFile(new File(this.directory.toFile(), "reindex.idx"));
+        final Random random = new Random(2);
+        final int[][] hashes = new int[SEGMENTS][];
+        for (int s = 0; s < SEGMENTS; s++) {
+            hashes[s] = this.hashes(random);
+            index.add(this.segment(s), hashes[s], this.offsets(0));
+        }
+        index.flush();
+
+        /* Replace every fourth segment in a later part; the replaced fingerprints must no longer be found. */
+        final int[][] replacements = new int[SEGMENTS][];
+        for (int s = 0; s < SEGMENTS; s += 4) {
+            replacements[s] = this.hashes(random);
+            index.add(this.segment(s), replacements[s], this.offsets(0));
+        }
+        index.flush();
+        assertEquals(SEGMENTS, index.size());
+
+        /* A second, larger flush merges both parts into one. */
+        for (int s = 0; s < SEGMENTS; s++) {
+            if (s % 2 == 1) {
+                hashes[s] = this.hashes(random);
+                index.add(this.segment(s), hashes[s], this.offsets(0));
+            }
+        }
+        index.flush();
+        assertEquals(SEGMENTS, index.size());
+        assertEquals(1, this.parts("reindex.idx"));
+        assertTrue(index.covers("reindex", () -> SEGMENTS));
+        assertFalse(index.covers("larger", () -> SEGMENTS + 1));
+        assertFalse(index.covers("unknown", () -> -1));
+
+        for (int s = 0; s < SEGMENTS; s++) {
+            if (replacements[s] != null) {
+                assertFalse(this.query(index, hashes[s], 0).containsKey(this.segment(s)));
+                assertEquals(EXCERPT, this.query(index, replacements[s], 0).get(this.segment(s)));
+            } else {
+                assertEquals(EXCERPT, this.query(index, hashes[s], 0).get(this.segment(s)));
+            }
+        }
+    }
+
+    /**
+     * Queries the index with the excerpt of a fingerprint that starts at the provided position.
+     */
+    private TObjectIntHashMap<String> query(FingerprintIndex index, int[] hashes, int start) {
+        return index.query(Arrays.copyOfRange(hashes, start, start + EXCERPT), Arrays.copyOfRange(this.offsets(-start), start, start + EXCERPT), MIN_VOTES);
+    }
+
+    /**
+     * Counts the part files of an index.
+     */
+    private long parts(String name) throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(file -> file.getFileName().toString().matches(name.replace(".", "\\.") + "\\.\\d+")).count();
+        }
+    }
+
+    private int[] hashes(Random random) {
+        final int[] hashes = new int[HASHES];
+        for (int i = 0; i < HASHES; i++) {
+            hashes[i] = random.nextInt(1 << FingerprintIndex.HASH_BITS);
+        }
+        return hashes;
+    }
+
+    private int[] offsets(int shift) {
+        final int[] offsets = new int[HASHES];
+        for (int i = 0; i < HASHES; i++) {
+            offsets[i] = i + shift;
+        }
+        return offsets;
+    }
+
+    private String segment(int s) {
+        return "s_" + s;
+    }
+}
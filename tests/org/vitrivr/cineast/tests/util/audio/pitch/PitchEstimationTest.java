@@ -0,0 +1,217 @@
+package org.vitrivr.cineast.tests.util.audio.pitch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.util.audio.pitch.Melody;
+import org.vitrivr.cineast.core.util.audio.pitch.Pitch;
+import org.vitrivr.cineast.core.util.audio.pitch.estimation.KLF0PitchEstimator;
+import org.vitrivr.cineast.core.util.audio.pitch.tracking.PitchTracker;
+import org.vitrivr.cineast.core.util.dsp.fft.FFT;
+import org.vitrivr.cineast.core.util.dsp.fft.STFT;
+import org.vitrivr.cineast.core.util.dsp.fft.windows.HanningWindow;
+import org.vitrivr.cineast.core.util.dsp.midi.MidiUtil;
+
+/**
+ * Compares the pitches estimated by {@link KLF0PitchEstimator} with the ones of a plain implementation of [1] and the
+ * pitch contours tracked by {@link PitchTracker} with the notes of synthetic harmonic signals.
+ *
+ * [1] Klapuri, A. (2006). Multiple Fundamental Frequency Estimation by Summing Harmonic Amplitudes.
+ */
+public class PitchEstimationTest {
+
+    private static final float SAMPLINGRATE = 22050.0f;
+
+    private static final int WINDOWSIZE = 2048;
+
+    private static final int OVERLAP = 1536;
+
+    /** Number of samples per note. */
+    private static final int NOTE_LENGTH = 11025;
+
+    /** MIDI indexes of the notes of the synthetic melodies. */
+    private static final int[][] MELODIES = {{57, 60, 64, 69}, {45, 52, 48, 55}, {72, 67, 64, 60}};
+
+    @Test
+    @DisplayName("Estimation Equivalence Test")
+    void testEstimationEquivalence() {
+        final KLF0PitchEstimator estimator = new KLF0PitchEstimator();
+        final Random random = new Random(3);
+        for (int[] melody : MELODIES) {
+            final STFT stft = this.stft(this.melody(melody, random, true));
+            final List<List<Pitch>> actual = estimator.estimatePitch(stft);
+
+            assertEquals(stft.getStft().size(), actual.size());
+            for (int t = 0; t < actual.size(); t++) {
+                final FFT fft = stft.getStft().get(t);
+                final double[] spectrum = fft.getPowerSpectrum().array().clone();
+                final List<Pitch> expected = this.reference(spectrum.clone(), fft.getSamplingrate(), fft.getWindowsize());
+
+                /* The estimator must neither change the result nor the spectrum cached by the FFT. */
+                assertArrayEquals(spectrum, fft.getPowerSpectrum().array());
+                assertEquals(expected.size(), actual.get(t).size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).getFrequency(), actual.get(t).get(i).getFrequency());
+                    assertEquals(expected.get(i).getSalience(), actual.get(t).get(i).getSalience());
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Most Salient Pitch Test")
+    void testMostSalientPitch() {
+        final KLF0PitchEstimator estimator = new KLF0PitchEstimator();
+        final Random random = new Random(5);
+        for (int[] melody : MELODIES) {
+            final STFT stft = this.stft(this.melody(melody, random, false));
+            final List<List<Pitch>> pitches = estimator.estimatePitch(stft);
+            final int increment = WINDOWSIZE - OVERLAP;
+            for (int t = 0; t < pitches.size(); t++) {
+                /* Only frames that lie within a single note have a well-defined pitch. */
+                final int note = (t * increment) / NOTE_LENGTH;
+                if (note != (t * increment + WINDOWSIZE - 1) / NOTE_LENGTH) {
+                    continue;
+                }
+                assertEquals(melody[note], pitches.get(t).get(0).getIndex());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Pitch Tracking Test")
+    void testPitchTracking() {
+        final KLF0PitchEstimator estimator = new KLF0PitchEstimator();
+        final Random random = new Random(7);
+        for (int[] notes : MELODIES) {
+            final STFT stft = this.stft(this.melody(notes, random, false));
+            final PitchTracker tracker = new PitchTracker();
+            tracker.initialize(estimator.estimatePitch(stft), stft.timeStepsize());
+            tracker.trackPitches();
+            final Melody melody = tracker.extractMelody(10);
+            assertNotNull(melody);
+
+            /* Every pitch of the melody must belong to a note and the notes must follow each other in their order. */
+            int note = 0;
+            int tracked = 0;
+            for (Pitch pitch : melody) {
+                while (note < notes.length && notes[note] != pitch.getIndex()) {
+                    note++;
+                }
+                assertTrue(note < notes.length, () -> "Pitch " + pitch.getIndex() + " is not a note or out of order.");
+                assertTrue(pitch.getDuration() > 0);
+                tracked++;
+            }
+            assertTrue(tracked >= notes.length / 2);
+        }
+    }
+
+    /**
+     * Estimates the pitches of a power spectrum by evaluating the salience of every candidate and every partial
+     * according to [1], exactly as described therein. The spectrum is modified.
+     */
+    private List<Pitch> reference(double[] spectrum, float samplingrate, int windowsize) {
+        final List<Pitch> candidates = new ArrayList<>();
+        float test = 0, lasttest = 0;
+        int loopcount = 1;
+        while (true) {
+            Pitch candidate = null;
+            for (int n = 28; n <= 96; n++) {
+                final float f0 = MidiUtil.midiToFrequency(n);
+                final double salience = this.salience(f0, spectrum, samplingrate, windowsize, false);
+                if (candidate == null || candidate.getSalience() < salience) {
+                    candidate = new Pitch(f0);
+                    candidate.setSalience(salience);
+                }
+            }
+
+            boolean exists = false;
+            for (Pitch c : candidates) {
+                if (c.getFrequency() == candidate.getFrequency()) {
+                    c.setSalience(candidate.getSalience() + c.getSalience());
+                    exists = true;
+                    break;
+                }
+            }
+            if (!exists) {
+                candidates.add(candidate);
+            }
+
+            lasttest = test;
+            test = (float) ((test + candidate.getSalience()) / Math.pow(loopcount, .7f));
+            if (test <= lasttest) {
+                break;
+            }
+            loopcount++;
+            candidates.add(candidate);
+            this.salience(candidate.getFrequency(), spectrum, samplingrate, windowsize, true);
+        }
+        candidates.sort(Comparator.comparingDouble(Pitch::getSalience));
+        Collections.reverse(candidates);
+        return candidates;
+    }
+
+    /**
+     * Calculates the salience of f0 and optionally subtracts its partials from the spectrum.
+     */
+    private double salience(float f0, double[] spectrum, float samplingrate, int windowsize, boolean subtract) {
+        final float tau = samplingrate / f0;
+        float salience = 0;
+        for (int m = 1; m * f0 < samplingrate / 2; m++) {
+            final int max = Math.round((m * windowsize) / (tau - 0.25f));
+            final int min = Math.round((m * windowsize) / (tau + 0.25f));
+            if (min >= windowsize / 2) {
+                continue;
+            }
+            int bin = min;
+            for (int offset = min; offset <= max && offset < windowsize / 2; offset++) {
+                if (spectrum[offset] > spectrum[bin]) {
+                    bin = offset;
+                }
+            }
+            final double g = (f0 + 27.0f) / (m * f0 + 320.0f);
+            if (subtract) {
+                spectrum[bin] = spectrum[bin] - spectrum[bin] * g;
+            } else {
+                salience += spectrum[bin] * g;
+            }
+        }
+        return salience;
+    }
+
+    private STFT stft(double[] samples) {
+        final STFT stft = new STFT(WINDOWSIZE, OVERLAP, 0, new HanningWindow(), SAMPLINGRATE);
+        stft.forward(samples);
+        return stft;
+    }
+
+    /**
+     * Synthesizes a melody of harmonic tones with decaying partials and, optionally, some noise.
+     */
+    private double[] melody(int[] notes, Random random, boolean noise) {
+        final double[] samples = new double[notes.length * NOTE_LENGTH];
+        for (int n = 0; n < notes.length; n++) {
+            final double f0 = MidiUtil.midiToFrequency(notes[n]);
+            final double phase = 2.0 * Math.PI * random.nextDouble();
+            for (int i = 0; i < NOTE_LENGTH; i++) {
+                double value = 0.0;
+                for (int m = 1; m <= 8 && m * f0 < SAMPLINGRATE / 2; m++) {
+                    value += Math.sin(2.0 * Math.PI * m * f0 * i / SAMPLINGRATE + m * phase) / m;
+                }
+                samples[n * NOTE_LENGTH + i] = 0.5 * value + (noise ? 0.05 * random.nextGaussian() : 0.0);
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,85 @@
+package org.vitrivr.cineast.tests.util.dsp.fft;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math3.complex.Complex;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.util.dsp.fft.RealFFT;
+
+/**
+ * Compares the results of {@link RealFFT} with the ones of the Apache Commons FastFourierTransformer.
+ */
+public class RealFFTTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    @DisplayName("Small Sizes Test")
+    void testSmallSizes() {
+        this.executeTest(2);
+        this.executeTest(4);
+        this.executeTest(8);
+        this.executeTest(16);
+    }
+
+    @Test
+    @DisplayName("Window Sizes Test")
+    void testWindowSizes() {
+        this.executeTest(512);
+        this.executeTest(1024);
+        this.executeTest(2048);
+        this.executeTest(4096);
+    }
+
+    @Test
+    @DisplayName("Offset Test")
+    void testOffset() {
+        final int size = 256;
+        final double[] samples = this.samples(size, 7);
+        final double[] buffer = new double[3 * (size + 2)];
+        System.arraycopy(samples, 0, buffer, size + 2, size);
+        RealFFT.forSize(size).forward(buffer, size + 2);
+
+        final Complex[] expected = new FastFourierTransformer(DftNormalization.STANDARD).transform(samples, TransformType.FORWARD);
+        for (int k = 0; k <= size / 2; k++) {
+            assertEquals(expected[k].getReal(), buffer[size + 2 + 2 * k], DELTA);
+            assertEquals(expected[k].getImaginary(), buffer[size + 2 + 2 * k + 1], DELTA);
+        }
+        for (int i = 0; i < size + 2; i++) {
+            assertEquals(0.0, buffer[i]);
+            assertEquals(0.0, buffer[2 * (size + 2) + i]);
+        }
+    }
+
+    /**
+     * Transforms random data of the given size and compares all N/2+1 bins.
+     */
+    private void executeTest(int size) {
+        final double[] samples = this.samples(size, size);
+        final double[] buffer = new double[size + 2];
+        System.arraycopy(samples, 0, buffer, 0, size);
+        RealFFT.forSize(size).forward(buffer, 0);
+
+        final Complex[] expected = new FastFourierTransformer(DftNormalization.STANDARD).transform(samples, TransformType.FORWARD);
+        for (int k = 0; k <= size / 2; k++) {
+            assertEquals(expected[k].getReal(), buffer[2 * k], DELTA);
+            assertEquals(expected[k].getImaginary(), buffer[2 * k + 1], DELTA);
+        }
+    }
+
+    private double[] samples(int size, long seed) {
+        final Random random = new Random(seed);
+        final double[] samples = new double[size];
+        for (int i = 0; i < size; i++) {
+            samples[i] = random.nextDouble() * 2.0 - 1.0;
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,121 @@
+package org.vitrivr.cineast.tests.util.dsp.fft;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import org.vitrivr.cineast.core.util.dsp.fft.FFT;
+import org.vitrivr.cineast.core.util.dsp.fft.STFT;
+import org.vitrivr.cineast.core.util.dsp.fft.STFTCache;
+import org.vitrivr.cineast.core.util.dsp.fft.STFTStream;
+import org.vitrivr.cineast.core.util.dsp.fft.windows.HanningWindow;
+
+/**
+ * Compares the STFTs of overlapping segments of a {@link STFTStream} with each other and with the STFTs of the
+ * segments transformed on their own.
+ */
+public class STFTStreamTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final float SAMPLINGRATE = 22050.0f;
+
+    private static final int WINDOWSIZE = 1024;
+
+    private static final int OVERLAP = 512;
+
+    private static final int INCREMENT = WINDOWSIZE - OVERLAP;
+
+    @Test
+    @DisplayName("Shared Windows Test")
+    void testSharedWindows() {
+        final double[] signal = this.samples(20000, 3);
+        final STFTStream stream = new STFTStream(1.0f);
+
+        /* The second segment does not start at a multiple of the window increment. */
+        final STFT first = this.transform(stream, signal, 0, 12000);
+        final STFT second = this.transform(stream, signal, 5000, 17000);
+
+        final int offset = Math.floorMod(-5000, INCREMENT);
+        final int shift = (5000 + offset) / INCREMENT;
+        final List<FFT> a = first.getStft();
+        final List<FFT> b = second.getStft();
+        int shared = 0;
+        for (int i = 0; i < b.size(); i++) {
+            final long start = 5000 + offset + (long) i * INCREMENT;
+            if (start + WINDOWSIZE <= 12000) {
+                assertSame(a.get(shift + i), b.get(i));
+                shared += 1;
+            }
+        }
+        assertEquals((12000 - WINDOWSIZE) / INCREMENT - shift + 1, shared);
+    }
+
+    @Test
+    @DisplayName("Grid Alignment Test")
+    void testGridAlignment() {
+        final double[] signal = this.samples(20000, 5);
+        final STFTStream stream = new STFTStream(1.0f);
+        this.transform(stream, signal, 0, 12000);
+        final STFT streamed = this.transform(stream, signal, 5000, 17000);
+
+        /* The STFT of the segment must equal the one of the segment transformed from its first grid point. */
+        final int offset = Math.floorMod(-5000, INCREMENT);
+        final STFT expected = new STFT(WINDOWSIZE, OVERLAP, 0, new HanningWindow(), SAMPLINGRATE);
+        expected.forward(Arrays.copyOfRange(signal, 5000 + offset, 17000));
+
+        assertEquals(expected.getStft().size(), streamed.getStft().size());
+        for (int i = 0; i < expected.getStft().size(); i++) {
+            final FFT e = expected.getStft().get(i);
+            final FFT s = streamed.getStft().get(i);
+            for (int k = 0; k < WINDOWSIZE / 2; k++) {
+                assertEquals(e.getReal(k), s.getReal(k), DELTA);
+                assertEquals(e.getImaginary(k), s.getImaginary(k), DELTA);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Derived Grid Test")
+    void testDerivedGrid() {
+        final double[] signal = this.samples(20000, 7);
+        final STFTStream stream = new STFTStream(1.0f);
+        final double[] segment = Arrays.copyOfRange(signal, 5300, 17000);
+
+        /* A coarser STFT derived from a finer one must lie on the grid of its own increment. */
+        final STFTCache cache = new STFTCache();
+        cache.attach(stream, 5300);
+        final STFT finer = cache.get(WINDOWSIZE, WINDOWSIZE - INCREMENT / 2, 0, new HanningWindow(), SAMPLINGRATE, () -> segment);
+        final STFT derived = cache.get(WINDOWSIZE, OVERLAP, 0, new HanningWindow(), SAMPLINGRATE, () -> segment);
+
+        final int offset = Math.floorMod(-5300, INCREMENT / 2);
+        final int skip = ((5300 + offset) / (INCREMENT / 2)) % 2;
+        assertEquals(1, skip);
+        assertEquals(0, (5300 + offset + skip * INCREMENT / 2) % INCREMENT);
+        for (int i = 0; i < derived.getStft().size(); i++) {
+            assertSame(finer.getStft().get(skip + 2 * i), derived.getStft().get(i));
+        }
+    }
+
+    private STFT transform(STFTStream stream, double[] signal, int from, int to) {
+        final double[] segment = Arrays.copyOfRange(signal, from, to);
+        final STFTCache cache = new STFTCache();
+        cache.attach(stream, from);
+        return cache.get(WINDOWSIZE, OVERLAP, 0, new HanningWindow(), SAMPLINGRATE, () -> segment);
+    }
+
+    private double[] samples(int size, long seed) {
+        final Random random = new Random(seed);
+        final double[] samples = new double[size];
+        for (int i = 0; i < size; i++) {
+            samples[i] = 2.0 * random.nextDouble() - 1.0;
+        }
+        return samples;
+    }
+}